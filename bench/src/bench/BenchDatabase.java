@@ -0,0 +1,95 @@
+package bench;
+
+import config.DatabaseConnection;
+import dao.HistoriaClinicaDAO;
+import dao.PacienteDAO;
+import models.GrupoSanguineo;
+import models.Paciente;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base H2 embebida (modo MySQL) para los benchmarks.
+ * Crea el esquema de sql/create_db_tables.sql y carga datos sintéticos.
+ */
+public final class BenchDatabase {
+
+    /** Argumentos de JVM para cada fork de JMH: DatabaseConnection lee db.* al cargarse. */
+    public static final String DB_URL = "-Ddb.url=jdbc:h2:mem:bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    public static final String DB_USER = "-Ddb.user=sa";
+
+    private static final String ESQUEMA = "sql/create_db_tables.sql";
+
+    private BenchDatabase() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada.");
+    }
+
+    /**
+     * Recrea las tablas y carga filas pacientes con su historia clínica.
+     * DNI del paciente i: String.valueOf(dni(i)).
+     */
+    public static void cargar(int filas) throws Exception {
+        crearEsquema();
+
+        PacienteDAO pacienteDao = new PacienteDAO(new HistoriaClinicaDAO());
+        List<Paciente> pacientes = new ArrayList<>(filas);
+        for (int i = 0; i < filas; i++) {
+            pacientes.add(new Paciente(null, false, "Nombre" + i, "Apellido" + i, dni(i),
+                    LocalDate.of(1950, 1, 1).plusDays(i % 20_000), null));
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            pacienteDao.crearLote(pacientes, 1_000, conn);
+            insertarHistorias(conn, filas);
+            conn.commit();
+        }
+    }
+
+    public static String dni(int i) {
+        return String.valueOf(20_000_000 + i);
+    }
+
+    private static void insertarHistorias(Connection conn, int filas) throws Exception {
+        String sql = "INSERT INTO historia_clinica (nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, paciente_id) VALUES (?, ?, ?, ?, ?, ?)";
+        GrupoSanguineo[] grupos = GrupoSanguineo.values();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 1; i <= filas; i++) {
+                ps.setString(1, "HC-" + i);
+                ps.setString(2, grupos[i % grupos.length].getSimbolo());
+                ps.setString(3, "Hipertensión leve, asma bronquial en la infancia. Paciente " + i);
+                ps.setString(4, "Losartán 50mg, Salbutamol");
+                ps.setString(5, "Control mensual. Evitar humedad.");
+                ps.setLong(6, i);
+                ps.addBatch();
+                if (i % 1_000 == 0) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static void crearEsquema() throws Exception {
+        String ddl = new String(Files.readAllBytes(Path.of(ESQUEMA)), StandardCharsets.UTF_8);
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement st = conn.createStatement()) {
+            st.execute("DROP ALL OBJECTS");
+            for (String sentencia : ddl.split(";")) {
+                String sql = sentencia.replaceAll("(?m)^\\s*--.*$", "").trim();
+                // CREATE DATABASE / USE no aplican a la base embebida
+                if (sql.isEmpty() || sql.startsWith("CREATE DATABASE") || sql.startsWith("USE ")) {
+                    continue;
+                }
+                st.execute(sql);
+            }
+        }
+    }
+}
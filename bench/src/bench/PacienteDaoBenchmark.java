@@ -0,0 +1,97 @@
+package bench;
+
+import config.DatabaseConnection;
+import dao.FetchMode;
+import dao.HistoriaClinicaDAO;
+import dao.PacienteDAO;
+import models.Paciente;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operaciones de PacienteDAO contra H2 embebido, con tablas de distintos tamaños.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {BenchDatabase.DB_URL, BenchDatabase.DB_USER})
+public class PacienteDaoBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int filas;
+
+    private PacienteDAO pacienteDao;
+    private Connection conn;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchDatabase.cargar(filas);
+        pacienteDao = new PacienteDAO(new HistoriaClinicaDAO());
+    }
+
+    @Setup(Level.Iteration)
+    public void abrirTransaccion() throws Exception {
+        conn = DatabaseConnection.getConnection();
+        conn.setAutoCommit(false);
+    }
+
+    @TearDown(Level.Iteration)
+    public void cerrarTransaccion() throws Exception {
+        // Los INSERT de crear() se descartan para que la tabla no crezca entre iteraciones
+        conn.rollback();
+        conn.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DatabaseConnection.shutdown();
+    }
+
+    @Benchmark
+    public Paciente leer() throws Exception {
+        return pacienteDao.leer(ThreadLocalRandom.current().nextInt(filas) + 1L);
+    }
+
+    @Benchmark
+    public Paciente buscarPorDni() throws Exception {
+        return pacienteDao.buscarPorDni(BenchDatabase.dni(ThreadLocalRandom.current().nextInt(filas)));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Paciente> leerTodos() throws Exception {
+        return pacienteDao.leerTodos();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Paciente> leerTodosSinHistoria() throws Exception {
+        return pacienteDao.leerTodos(FetchMode.SIN_HISTORIA);
+    }
+
+    @Benchmark
+    public long crear() throws Exception {
+        long n = ThreadLocalRandom.current().nextLong(1_000_000_000L);
+        Paciente paciente = new Paciente(null, false, "Nuevo", "Paciente", "X" + n, LocalDate.of(1990, 5, 14), null);
+        return pacienteDao.crear(paciente, conn);
+    }
+}
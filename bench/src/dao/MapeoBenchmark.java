@@ -0,0 +1,151 @@
+package dao;
+
+import bench.BenchDatabase;
+import config.DatabaseConnection;
+import models.GrupoSanguineo;
+import models.HistoriaClinica;
+import models.Paciente;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo del mapeo ResultSet → entidad.
+ *
+ * recorrer() solo avanza el cursor: la diferencia con los demás benchmarks es el costo
+ * del mapeo en sí. Está en el paquete dao para acceder a los mapeadores.
+ *
+ * Los benchmarks *PorEtiqueta reproducen el mapeo anterior (getXxx por nombre de columna,
+ * java.sql.Date, GrupoSanguineo.valueOf) como referencia frente a los mapeadores compilados.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {BenchDatabase.DB_URL, BenchDatabase.DB_USER})
+public class MapeoBenchmark {
+
+    private static final String SQL =
+            "SELECT p.id, p.nombre, p.apellido, p.dni, p.fecha_nacimiento, p.eliminado, "
+            + HistoriaClinicaDAO.JOINED_COLUMNS
+            + " FROM paciente p LEFT JOIN historia_clinica h ON h.paciente_id = p.id";
+
+    /** La base guarda el símbolo; el mapeo anterior esperaba el nombre del enum. */
+    private static final Map<String, String> NOMBRE_POR_SIMBOLO = new HashMap<>();
+
+    static {
+        for (GrupoSanguineo grupo : GrupoSanguineo.values()) {
+            NOMBRE_POR_SIMBOLO.put(grupo.getSimbolo(), grupo.name());
+        }
+    }
+
+    @Param({"1000", "10000", "100000"})
+    public int filas;
+
+    private PacienteDAO pacienteDao;
+    private Connection conn;
+    private PreparedStatement ps;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchDatabase.cargar(filas);
+        pacienteDao = new PacienteDAO(new HistoriaClinicaDAO());
+        conn = DatabaseConnection.getConnection();
+        ps = conn.prepareStatement(SQL);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ps.close();
+        conn.close();
+        DatabaseConnection.shutdown();
+    }
+
+    @Benchmark
+    public void recorrer(Blackhole bh) throws Exception {
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                bh.consume(rs.getLong(1));
+            }
+        }
+    }
+
+    @Benchmark
+    public void mapearPaciente(Blackhole bh) throws Exception {
+        try (ResultSet rs = ps.executeQuery()) {
+            RowMapper<Paciente> mapper = pacienteDao.mapper(FetchMode.CON_HISTORIA, rs);
+            while (rs.next()) {
+                bh.consume(mapper.map(rs));
+            }
+        }
+    }
+
+    @Benchmark
+    public void mapearSoloPaciente(Blackhole bh) throws Exception {
+        try (ResultSet rs = ps.executeQuery()) {
+            RowMapper<Paciente> mapper = pacienteDao.mapper(FetchMode.SIN_HISTORIA, rs);
+            while (rs.next()) {
+                bh.consume(mapper.map(rs));
+            }
+        }
+    }
+
+    @Benchmark
+    public void mapearPacientePorEtiqueta(Blackhole bh) throws Exception {
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                bh.consume(porEtiqueta(rs, true));
+            }
+        }
+    }
+
+    @Benchmark
+    public void mapearSoloPacientePorEtiqueta(Blackhole bh) throws Exception {
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                bh.consume(porEtiqueta(rs, false));
+            }
+        }
+    }
+
+    private static Paciente porEtiqueta(ResultSet rs, boolean conHistoria) throws Exception {
+        HistoriaClinica hc = null;
+        if (conHistoria) {
+            long hcId = rs.getLong("hc_id");
+            if (!rs.wasNull()) {
+                String grupo = rs.getString("hc_grupo_sanguineo");
+                hc = new HistoriaClinica(hcId, rs.getBoolean("hc_eliminado"), rs.getString("hc_nro_historia"),
+                        grupo != null ? GrupoSanguineo.valueOf(NOMBRE_POR_SIMBOLO.get(grupo)) : null,
+                        rs.getString("hc_antecedentes"), rs.getString("hc_medicacion_actual"),
+                        rs.getString("hc_observaciones"));
+                hc.iniciarSeguimiento();
+            }
+        }
+        Date fechaNacimiento = rs.getDate("fecha_nacimiento");
+        Paciente paciente = new Paciente(rs.getLong("id"), rs.getBoolean("eliminado"), rs.getString("nombre"),
+                rs.getString("apellido"), rs.getString("dni"),
+                fechaNacimiento != null ? fechaNacimiento.toLocalDate() : null, hc);
+        paciente.iniciarSeguimiento();
+        return paciente;
+    }
+}
@@ -11,7 +11,12 @@ CREATE TABLE IF NOT EXISTS paciente (
     nombre VARCHAR(80) NOT NULL,
     apellido VARCHAR(80) NOT NULL,
     dni VARCHAR(15) NOT NULL UNIQUE,
-    fecha_nacimiento DATE
+    fecha_nacimiento DATE,
+    actualizado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    version BIGINT NOT NULL DEFAULT 0,
+    INDEX idx_paciente_actualizado_en (actualizado_en),
+    -- dao.ArchivadorEliminados recorre y bloquea solo las filas eliminadas, en orden de ID
+    INDEX idx_paciente_eliminado (eliminado, id)
 );
 
 -- Creamos la tabla historia_clinica si no existe
@@ -24,9 +29,83 @@ CREATE TABLE IF NOT EXISTS historia_clinica (
     medicacion_actual TEXT,
     observaciones TEXT,
     paciente_id BIGINT UNIQUE,
+    actualizado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    version BIGINT NOT NULL DEFAULT 0,
+    INDEX idx_historia_clinica_actualizado_en (actualizado_en),
+    INDEX idx_historia_clinica_eliminado (eliminado, id),
     CONSTRAINT fk_historia_clinica_paciente
 		FOREIGN KEY (paciente_id) 
 		REFERENCES paciente(id)
         ON DELETE CASCADE
         ON UPDATE CASCADE
-);
\ No newline at end of file
+);
+
+-- Próximo ID libre de cada tabla en esta base. Los DAOs reservan rangos de IDs desde aquí
+-- (ver dao.RangoIds) e insertan con el ID ya asignado, sin leer claves generadas.
+-- Si se insertan filas por fuera de la aplicación, hacerlo antes del primer alta o
+-- actualizar proximo a MAX(id) + 1.
+CREATE TABLE IF NOT EXISTS secuencia_id (
+    tabla VARCHAR(64) PRIMARY KEY,
+    proximo BIGINT NOT NULL
+);
+
+-- Registro de cambios (outbox): una fila por alta, modificación o baja de paciente o
+-- historia_clinica, escrita por los DAOs en la misma transacción que el cambio. Se lee con
+-- dao.FeedCambios, en orden de id (que sigue el orden de commit, ver cambio_turno), desde la
+-- última posición procesada.
+CREATE TABLE IF NOT EXISTS cambio (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    tabla VARCHAR(64) NOT NULL,
+    entidad_id BIGINT NOT NULL,
+    version BIGINT NOT NULL,
+    tipo VARCHAR(16) NOT NULL,
+    registrado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_cambio_registrado_en (registrado_en)
+);
+
+-- Turno de escritura en cambio (ver dao.RegistroCambios): cada transacción que registra
+-- cambios bloquea esta fila hasta su commit, para que los id de cambio sigan el orden de
+-- commit. Debe tener exactamente la fila id = 1.
+CREATE TABLE IF NOT EXISTS cambio_turno (
+    id TINYINT PRIMARY KEY,
+    transacciones BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT IGNORE INTO cambio_turno (id) VALUES (1);
+
+-- Pacientes e historias clínicas eliminados hace más del período de retención, movidos aquí
+-- por dao.ArchivadorEliminados. Mismas columnas más archivado_en, sin UNIQUE ni FK: un DNI
+-- dado de baja puede volver a registrarse y archivarse otra vez.
+CREATE TABLE IF NOT EXISTS paciente_archivo (
+    id BIGINT PRIMARY KEY,
+    eliminado BOOLEAN DEFAULT FALSE,
+    nombre VARCHAR(80) NOT NULL,
+    apellido VARCHAR(80) NOT NULL,
+    dni VARCHAR(15) NOT NULL,
+    fecha_nacimiento DATE,
+    actualizado_en TIMESTAMP(3) NOT NULL,
+    version BIGINT NOT NULL DEFAULT 0,
+    archivado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_paciente_archivo_dni (dni)
+);
+
+CREATE TABLE IF NOT EXISTS historia_clinica_archivo (
+    id BIGINT PRIMARY KEY,
+    eliminado BOOLEAN DEFAULT FALSE,
+    nro_historia VARCHAR(20),
+    grupo_sanguineo ENUM('A+', 'A-', 'B+', 'B-', 'AB+', 'AB-', 'O+', 'O-'),
+    antecedentes TEXT,
+    medicacion_actual TEXT,
+    observaciones TEXT,
+    paciente_id BIGINT,
+    actualizado_en TIMESTAMP(3) NOT NULL,
+    version BIGINT NOT NULL DEFAULT 0,
+    archivado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_historia_clinica_archivo_paciente (paciente_id)
+);
+
+-- Último ID archivado de cada tabla en la pasada en curso, para continuar tras un corte.
+CREATE TABLE IF NOT EXISTS archivado_progreso (
+    tabla VARCHAR(64) PRIMARY KEY,
+    ultimo_id BIGINT NOT NULL
+);
@@ -0,0 +1,12 @@
+-- Agrega la marca de última modificación a bases creadas antes de la columna actualizado_en.
+-- La usa la instantánea de analítica (analitica.InstantaneaPacientes) para refrescarse
+-- leyendo solo las filas que cambiaron. Ejecutar una vez en cada partición.
+USE historia_clinica_db;
+
+ALTER TABLE paciente
+    ADD COLUMN actualizado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    ADD INDEX idx_paciente_actualizado_en (actualizado_en);
+
+ALTER TABLE historia_clinica
+    ADD COLUMN actualizado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    ADD INDEX idx_historia_clinica_actualizado_en (actualizado_en);
@@ -0,0 +1,8 @@
+-- Agrega la tabla de rangos de IDs (dao.RangoIds). Ejecutar una vez en cada partición.
+-- La fila de cada tabla se crea sola en el primer alta, a partir de MAX(id) + 1.
+USE historia_clinica_db;
+
+CREATE TABLE IF NOT EXISTS secuencia_id (
+    tabla VARCHAR(64) PRIMARY KEY,
+    proximo BIGINT NOT NULL
+);
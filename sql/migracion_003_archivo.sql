@@ -0,0 +1,45 @@
+-- Agrega las tablas de archivo de eliminados (dao.ArchivadorEliminados). Ejecutar una vez en
+-- cada partición. Si secuencia_id todavía no tiene fila para paciente o historia_clinica,
+-- se crea tomando también el mayor ID archivado, así no se reutilizan IDs.
+USE historia_clinica_db;
+
+-- Para que cada lote bloquee solo filas eliminadas: sin este índice el SELECT ... FOR UPDATE
+-- recorre la clave primaria y, en REPEATABLE READ, bloquea también filas activas y el final
+-- de la tabla, donde insertan las altas.
+CREATE INDEX idx_paciente_eliminado ON paciente (eliminado, id);
+CREATE INDEX idx_historia_clinica_eliminado ON historia_clinica (eliminado, id);
+
+-- Pacientes e historias clínicas eliminados hace más del período de retención, movidos aquí
+-- por dao.ArchivadorEliminados. Mismas columnas más archivado_en, sin UNIQUE ni FK: un DNI
+-- dado de baja puede volver a registrarse y archivarse otra vez.
+CREATE TABLE IF NOT EXISTS paciente_archivo (
+    id BIGINT PRIMARY KEY,
+    eliminado BOOLEAN DEFAULT FALSE,
+    nombre VARCHAR(80) NOT NULL,
+    apellido VARCHAR(80) NOT NULL,
+    dni VARCHAR(15) NOT NULL,
+    fecha_nacimiento DATE,
+    actualizado_en TIMESTAMP(3) NOT NULL,
+    archivado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_paciente_archivo_dni (dni)
+);
+
+CREATE TABLE IF NOT EXISTS historia_clinica_archivo (
+    id BIGINT PRIMARY KEY,
+    eliminado BOOLEAN DEFAULT FALSE,
+    nro_historia VARCHAR(20),
+    grupo_sanguineo ENUM('A+', 'A-', 'B+', 'B-', 'AB+', 'AB-', 'O+', 'O-'),
+    antecedentes TEXT,
+    medicacion_actual TEXT,
+    observaciones TEXT,
+    paciente_id BIGINT,
+    actualizado_en TIMESTAMP(3) NOT NULL,
+    archivado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_historia_clinica_archivo_paciente (paciente_id)
+);
+
+-- Último ID archivado de cada tabla en la pasada en curso, para continuar tras un corte.
+CREATE TABLE IF NOT EXISTS archivado_progreso (
+    tabla VARCHAR(64) PRIMARY KEY,
+    ultimo_id BIGINT NOT NULL
+);
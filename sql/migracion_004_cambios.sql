@@ -0,0 +1,36 @@
+-- Agrega la versión de fila y el registro de cambios (dao.FeedCambios). Ejecutar una vez en
+-- cada partición. Las filas existentes quedan en versión 0; el registro empieza vacío, así que
+-- un consumidor nuevo debe hacer una carga completa antes de seguir los cambios.
+USE historia_clinica_db;
+
+ALTER TABLE paciente
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE historia_clinica
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE paciente_archivo
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE historia_clinica_archivo
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+CREATE TABLE IF NOT EXISTS cambio (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    tabla VARCHAR(64) NOT NULL,
+    entidad_id BIGINT NOT NULL,
+    version BIGINT NOT NULL,
+    tipo VARCHAR(16) NOT NULL,
+    registrado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_cambio_registrado_en (registrado_en)
+);
+
+-- Turno de escritura en cambio (ver dao.RegistroCambios): cada transacción que registra
+-- cambios bloquea esta fila hasta su commit, para que los id de cambio sigan el orden de
+-- commit. Debe tener exactamente la fila id = 1.
+CREATE TABLE IF NOT EXISTS cambio_turno (
+    id TINYINT PRIMARY KEY,
+    transacciones BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT IGNORE INTO cambio_turno (id) VALUES (1);
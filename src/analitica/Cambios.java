@@ -0,0 +1,118 @@
+package analitica;
+
+import dao.ConsumidorDemografia;
+import models.GrupoSanguineo;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Filas leídas en un refresco, en arreglos primitivos que crecen al agregar.
+ * Antes de aplicarse quedan ordenadas por ID y sin repetidos (gana la última).
+ */
+final class Cambios implements ConsumidorDemografia {
+
+    static final byte ELIMINADO = 1;
+    static final byte CON_HISTORIA = 2;
+
+    long[] ids;
+    int[] nacimientos;
+    byte[] grupos;
+    byte[] marcas;
+    int tamanio;
+
+    Cambios() {
+        this(1_024);
+    }
+
+    private Cambios(int capacidad) {
+        ids = new long[capacidad];
+        nacimientos = new int[capacidad];
+        grupos = new byte[capacidad];
+        marcas = new byte[capacidad];
+    }
+
+    @Override
+    public void aceptar(long id, boolean eliminado, LocalDate fechaNacimiento, GrupoSanguineo grupo,
+                        boolean conHistoria) {
+        if (tamanio == ids.length) {
+            int capacidad = tamanio * 2;
+            ids = Arrays.copyOf(ids, capacidad);
+            nacimientos = Arrays.copyOf(nacimientos, capacidad);
+            grupos = Arrays.copyOf(grupos, capacidad);
+            marcas = Arrays.copyOf(marcas, capacidad);
+        }
+        ids[tamanio] = id;
+        nacimientos[tamanio] = fechaNacimiento != null ? Columnas.diaEpoch(fechaNacimiento) : Columnas.SIN_FECHA;
+        grupos[tamanio] = grupo != null ? (byte) grupo.ordinal() : Columnas.SIN_GRUPO;
+        marcas[tamanio] = (byte) ((eliminado ? ELIMINADO : 0) | (conHistoria ? CON_HISTORIA : 0));
+        tamanio++;
+    }
+
+    /**
+     * Concatena las filas de cada partición en orden de partición. Como los rangos de IDs de
+     * las particiones no se superponen (ver ShardRouter), el resultado ya suele quedar ordenado.
+     */
+    static Cambios unir(List<Cambios> porParticion) {
+        int total = 0;
+        for (Cambios cambios : porParticion) {
+            total += cambios.tamanio;
+        }
+        Cambios unidos = new Cambios(Math.max(1, total));
+        for (Cambios cambios : porParticion) {
+            System.arraycopy(cambios.ids, 0, unidos.ids, unidos.tamanio, cambios.tamanio);
+            System.arraycopy(cambios.nacimientos, 0, unidos.nacimientos, unidos.tamanio, cambios.tamanio);
+            System.arraycopy(cambios.grupos, 0, unidos.grupos, unidos.tamanio, cambios.tamanio);
+            System.arraycopy(cambios.marcas, 0, unidos.marcas, unidos.tamanio, cambios.tamanio);
+            unidos.tamanio += cambios.tamanio;
+        }
+        unidos.ordenar();
+        return unidos;
+    }
+
+    /**
+     * Ordena por ID (solo si hace falta) y deja una fila por ID, la última leída.
+     */
+    private void ordenar() {
+        boolean ordenado = true;
+        for (int i = 1; i < tamanio && ordenado; i++) {
+            ordenado = ids[i - 1] <= ids[i];
+        }
+        if (!ordenado) {
+            Integer[] orden = new Integer[tamanio];
+            for (int i = 0; i < tamanio; i++) {
+                orden[i] = i;
+            }
+            // Estable: entre IDs iguales se conserva el orden de lectura
+            Arrays.sort(orden, Comparator.comparingLong(i -> ids[i]));
+            long[] ordenIds = new long[tamanio];
+            int[] ordenNacimientos = new int[tamanio];
+            byte[] ordenGrupos = new byte[tamanio];
+            byte[] ordenMarcas = new byte[tamanio];
+            for (int i = 0; i < tamanio; i++) {
+                ordenIds[i] = ids[orden[i]];
+                ordenNacimientos[i] = nacimientos[orden[i]];
+                ordenGrupos[i] = grupos[orden[i]];
+                ordenMarcas[i] = marcas[orden[i]];
+            }
+            ids = ordenIds;
+            nacimientos = ordenNacimientos;
+            grupos = ordenGrupos;
+            marcas = ordenMarcas;
+        }
+        int unicos = 0;
+        for (int i = 0; i < tamanio; i++) {
+            if (unicos > 0 && ids[unicos - 1] == ids[i]) {
+                unicos--;
+            }
+            ids[unicos] = ids[i];
+            nacimientos[unicos] = nacimientos[i];
+            grupos[unicos] = grupos[i];
+            marcas[unicos] = marcas[i];
+            unicos++;
+        }
+        tamanio = unicos;
+    }
+}
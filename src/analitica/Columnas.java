@@ -0,0 +1,121 @@
+package analitica;
+
+import java.time.LocalDate;
+
+/**
+ * Una versión inmutable de la instantánea: una posición por paciente, ordenadas por ID, y un
+ * arreglo primitivo por atributo. Los refrescos arman una versión nueva en vez de modificar
+ * esta, así los escaneos en curso nunca ven una fila a medio aplicar.
+ *
+ * - nacimientos: día epoch (LocalDate.toEpochDay) o SIN_FECHA.
+ * - grupos: ordinal de GrupoSanguineo o SIN_GRUPO.
+ * - eliminados / conHistoria: bitsets de una palabra long cada 64 filas.
+ */
+final class Columnas {
+
+    static final int SIN_FECHA = Integer.MIN_VALUE;
+    static final byte SIN_GRUPO = -1;
+
+    static final Columnas VACIA = new Columnas(new long[0], new int[0], new byte[0], new long[0], new long[0], 0);
+
+    final int filas;
+    final long[] ids;
+    final int[] nacimientos;
+    final byte[] grupos;
+    final long[] eliminados;
+    final long[] conHistoria;
+
+    /** Filas de la última aplicación cuyo valor cambió (las nuevas no cuentan). */
+    final int modificadas;
+
+    private Columnas(long[] ids, int[] nacimientos, byte[] grupos, long[] eliminados, long[] conHistoria,
+                     int modificadas) {
+        this.filas = ids.length;
+        this.ids = ids;
+        this.nacimientos = nacimientos;
+        this.grupos = grupos;
+        this.eliminados = eliminados;
+        this.conHistoria = conHistoria;
+        this.modificadas = modificadas;
+    }
+
+    static int palabras(int filas) {
+        return (filas + 63) >>> 6;
+    }
+
+    static int diaEpoch(LocalDate fecha) {
+        long dia = fecha.toEpochDay();
+        if (dia <= SIN_FECHA || dia > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Fecha fuera de rango: " + fecha);
+        }
+        return (int) dia;
+    }
+
+    long bytes() {
+        return (long) filas * (Long.BYTES + Integer.BYTES + Byte.BYTES) + 2L * palabras(filas) * Long.BYTES;
+    }
+
+    /**
+     * Combina estas columnas con los cambios (ordenados por ID): los IDs existentes se
+     * reemplazan y los nuevos se intercalan en orden. Un merge lineal de las dos secuencias.
+     */
+    Columnas aplicar(Cambios cambios) {
+        int total = filas;
+        for (int i = 0, j = 0; j < cambios.tamanio; j++) {
+            while (i < filas && ids[i] < cambios.ids[j]) {
+                i++;
+            }
+            if (i == filas || ids[i] != cambios.ids[j]) {
+                total++;
+            }
+        }
+
+        long[] nuevosIds = new long[total];
+        int[] nuevosNacimientos = new int[total];
+        byte[] nuevosGrupos = new byte[total];
+        long[] nuevosEliminados = new long[palabras(total)];
+        long[] nuevosConHistoria = new long[palabras(total)];
+        int cambiadas = 0;
+        int i = 0;
+        int j = 0;
+        for (int fila = 0; fila < total; fila++) {
+            boolean eliminado;
+            boolean historia;
+            if (j == cambios.tamanio || (i < filas && ids[i] < cambios.ids[j])) {
+                nuevosIds[fila] = ids[i];
+                nuevosNacimientos[fila] = nacimientos[i];
+                nuevosGrupos[fila] = grupos[i];
+                eliminado = bit(eliminados, i);
+                historia = bit(conHistoria, i);
+                i++;
+            } else {
+                byte marcas = cambios.marcas[j];
+                nuevosIds[fila] = cambios.ids[j];
+                nuevosNacimientos[fila] = cambios.nacimientos[j];
+                nuevosGrupos[fila] = cambios.grupos[j];
+                eliminado = (marcas & Cambios.ELIMINADO) != 0;
+                historia = (marcas & Cambios.CON_HISTORIA) != 0;
+                if (i < filas && ids[i] == cambios.ids[j]) {
+                    if (nacimientos[i] != nuevosNacimientos[fila] || grupos[i] != nuevosGrupos[fila]
+                            || bit(eliminados, i) != eliminado || bit(conHistoria, i) != historia) {
+                        cambiadas++;
+                    }
+                    i++;
+                }
+                j++;
+            }
+            if (eliminado) {
+                nuevosEliminados[fila >>> 6] |= 1L << fila;
+            }
+            if (historia) {
+                nuevosConHistoria[fila >>> 6] |= 1L << fila;
+            }
+        }
+        return new Columnas(nuevosIds, nuevosNacimientos, nuevosGrupos, nuevosEliminados, nuevosConHistoria,
+                cambiadas);
+    }
+
+    static boolean bit(long[] bits, int fila) {
+        return (bits[fila >>> 6] & (1L << fila)) != 0;
+    }
+}
@@ -0,0 +1,11 @@
+package analitica;
+
+/**
+ * Pacientes activos y dados de baja (eliminado = true).
+ */
+public record ConteoEstados(long activos, long eliminados) {
+
+    public long total() {
+        return activos + eliminados;
+    }
+}
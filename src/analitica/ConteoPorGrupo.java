@@ -0,0 +1,20 @@
+package analitica;
+
+import models.GrupoSanguineo;
+
+import java.util.Map;
+
+/**
+ * @param porGrupo  Pacientes por grupo sanguíneo de su historia activa (todos los grupos, aun en 0)
+ * @param sinGrupo  Pacientes sin historia activa o con historia sin grupo cargado
+ */
+public record ConteoPorGrupo(Map<GrupoSanguineo, Long> porGrupo, long sinGrupo) {
+
+    public long total() {
+        long total = sinGrupo;
+        for (long cantidad : porGrupo.values()) {
+            total += cantidad;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,139 @@
+package analitica;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Cuenta las filas que pasan un filtro, separadas por clase, recorriendo las columnas en
+ * paralelo con fork/join: cada tarea toma un rango de palabras de los bitsets y lo divide
+ * a la mitad mientras supere PALABRAS_POR_TAREA.
+ *
+ * - Estado e historia se filtran con operaciones sobre palabras enteras (64 filas por vez).
+ * - Si no queda nada que mirar fila por fila, se cuenta con Long.bitCount.
+ */
+final class Escaneo extends RecursiveTask<long[]> {
+
+    /** Un solo contador. */
+    static final int TOTAL = 0;
+    /** Un contador por ordinal de GrupoSanguineo y uno más para sin grupo. */
+    static final int GRUPO = 1;
+    /** Activos y eliminados. */
+    static final int ESTADO = 2;
+    /** Un contador por tramo de edad y uno más para sin fecha o nacidos después de la referencia. */
+    static final int EDAD = 3;
+
+    /** 64K filas por tarea. */
+    private static final int PALABRAS_POR_TAREA = 1 << 10;
+
+    private static final long serialVersionUID = 1L;
+
+    /** Fork/join no serializa tareas; transient solo para no declarar tipos no serializables. */
+    private final transient Columnas columnas;
+    private final transient Filtro filtro;
+    private final int agrupacion;
+    private final int clases;
+    /** Para EDAD: día epoch hasta el que se cumple la edad inicial de cada tramo (decreciente). */
+    private final int[] cortes;
+    private final int desdePalabra;
+    private final int hastaPalabra;
+
+    Escaneo(Columnas columnas, Filtro filtro, int agrupacion, int clases, int[] cortes) {
+        this(columnas, filtro, agrupacion, clases, cortes, 0, Columnas.palabras(columnas.filas));
+    }
+
+    private Escaneo(Columnas columnas, Filtro filtro, int agrupacion, int clases, int[] cortes,
+                    int desdePalabra, int hastaPalabra) {
+        this.columnas = columnas;
+        this.filtro = filtro;
+        this.agrupacion = agrupacion;
+        this.clases = clases;
+        this.cortes = cortes;
+        this.desdePalabra = desdePalabra;
+        this.hastaPalabra = hastaPalabra;
+    }
+
+    @Override
+    protected long[] compute() {
+        if (hastaPalabra - desdePalabra <= PALABRAS_POR_TAREA) {
+            return contar();
+        }
+        int medio = (desdePalabra + hastaPalabra) >>> 1;
+        Escaneo izquierda = new Escaneo(columnas, filtro, agrupacion, clases, cortes, desdePalabra, medio);
+        Escaneo derecha = new Escaneo(columnas, filtro, agrupacion, clases, cortes, medio, hastaPalabra);
+        izquierda.fork();
+        long[] resultado = derecha.compute();
+        long[] otro = izquierda.join();
+        for (int i = 0; i < clases; i++) {
+            resultado[i] += otro[i];
+        }
+        return resultado;
+    }
+
+    private long[] contar() {
+        long[] cuentas = new long[clases];
+        long[] eliminados = columnas.eliminados;
+        long[] conHistoria = columnas.conHistoria;
+        boolean porFila = filtro.grupos != Filtro.CUALQUIER_GRUPO || filtro.porFecha() || agrupacion != TOTAL;
+        int ultima = Columnas.palabras(columnas.filas) - 1;
+        for (int p = desdePalabra; p < hastaPalabra; p++) {
+            long mascara = p < ultima || (columnas.filas & 63) == 0 ? -1L : (1L << columnas.filas) - 1;
+            switch (filtro.estado) {
+                case Filtro.ACTIVOS:
+                    mascara &= ~eliminados[p];
+                    break;
+                case Filtro.ELIMINADOS:
+                    mascara &= eliminados[p];
+                    break;
+                default:
+                    break;
+            }
+            if (filtro.historia != null) {
+                mascara &= filtro.historia ? conHistoria[p] : ~conHistoria[p];
+            }
+            if (!porFila) {
+                cuentas[0] += Long.bitCount(mascara);
+                continue;
+            }
+            while (mascara != 0) {
+                int fila = (p << 6) + Long.numberOfTrailingZeros(mascara);
+                mascara &= mascara - 1;
+                if (acepta(fila)) {
+                    cuentas[clase(fila)]++;
+                }
+            }
+        }
+        return cuentas;
+    }
+
+    private boolean acepta(int fila) {
+        if (filtro.grupos != Filtro.CUALQUIER_GRUPO) {
+            int grupo = columnas.grupos[fila];
+            if (grupo < 0 || (filtro.grupos & (1 << grupo)) == 0) {
+                return false;
+            }
+        }
+        int nacimiento = columnas.nacimientos[fila];
+        return nacimiento >= filtro.desde && nacimiento <= filtro.hasta;
+    }
+
+    private int clase(int fila) {
+        switch (agrupacion) {
+            case GRUPO:
+                int grupo = columnas.grupos[fila];
+                return grupo >= 0 ? grupo : clases - 1;
+            case ESTADO:
+                return Columnas.bit(columnas.eliminados, fila) ? 1 : 0;
+            case EDAD:
+                int nacimiento = columnas.nacimientos[fila];
+                if (nacimiento == Columnas.SIN_FECHA || nacimiento > cortes[0]) {
+                    return clases - 1;
+                }
+                int tramo = cortes.length - 1;
+                while (nacimiento > cortes[tramo]) {
+                    tramo--;
+                }
+                return tramo;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package analitica;
+
+import java.time.Instant;
+
+/**
+ * @param filas          Pacientes en la instantánea, activos y eliminados
+ * @param bytes          Memoria de las columnas (arreglos primitivos, sin cabeceras)
+ * @param refrescadaEn   Fin del último refresco, o null si nunca se cargó
+ */
+public record EstadisticasInstantanea(int filas, long bytes, Instant refrescadaEn) {
+}
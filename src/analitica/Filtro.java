@@ -0,0 +1,126 @@
+package analitica;
+
+import models.GrupoSanguineo;
+
+import java.time.LocalDate;
+
+/**
+ * Condición sobre las filas de {@link InstantaneaPacientes}. Es inmutable: cada método
+ * retorna un filtro nuevo que agrega la condición (con AND) a las anteriores.
+ *
+ * Uso:
+ * <pre>
+ * Filtro.activos().conGrupo(GrupoSanguineo.O_NEG).conEdadEntre(LocalDate.now(), 18, 65)
+ * </pre>
+ */
+public final class Filtro {
+
+    static final int TODOS = 0;
+    static final int ACTIVOS = 1;
+    static final int ELIMINADOS = 2;
+
+    static final int CUALQUIER_GRUPO = -1;
+
+    private static final Filtro SIN_CONDICIONES =
+            new Filtro(TODOS, null, CUALQUIER_GRUPO, Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+    final int estado;
+    /** TRUE solo con historia activa, FALSE solo sin historia, null indistinto. */
+    final Boolean historia;
+    /** Bit por ordinal de GrupoSanguineo, o CUALQUIER_GRUPO. */
+    final int grupos;
+    /** Días epoch, inclusive. Si hay límites, las filas sin fecha no pasan. */
+    final int desde;
+    final int hasta;
+
+    private Filtro(int estado, Boolean historia, int grupos, int desde, int hasta) {
+        this.estado = estado;
+        this.historia = historia;
+        this.grupos = grupos;
+        this.desde = desde;
+        this.hasta = hasta;
+    }
+
+    /** Todos los pacientes, activos y eliminados. */
+    public static Filtro todos() {
+        return SIN_CONDICIONES;
+    }
+
+    public static Filtro activos() {
+        return SIN_CONDICIONES.conEstado(ACTIVOS);
+    }
+
+    public static Filtro eliminados() {
+        return SIN_CONDICIONES.conEstado(ELIMINADOS);
+    }
+
+    public Filtro conHistoria() {
+        return conHistoria(Boolean.TRUE);
+    }
+
+    public Filtro sinHistoria() {
+        return conHistoria(Boolean.FALSE);
+    }
+
+    /**
+     * Pacientes cuya historia activa tiene alguno de los grupos indicados.
+     */
+    public Filtro conGrupo(GrupoSanguineo... opciones) {
+        if (opciones.length == 0) {
+            throw new IllegalArgumentException("Debe indicarse al menos un grupo sanguíneo.");
+        }
+        int mascara = 0;
+        for (GrupoSanguineo grupo : opciones) {
+            mascara |= 1 << grupo.ordinal();
+        }
+        return new Filtro(estado, historia, grupos & mascara, desde, hasta);
+    }
+
+    /**
+     * Pacientes nacidos en el rango, inclusive.
+     *
+     * @param desdeFecha Null para no limitar por abajo
+     * @param hastaFecha Null para no limitar por arriba
+     */
+    public Filtro nacidosEntre(LocalDate desdeFecha, LocalDate hastaFecha) {
+        int nuevoDesde = desdeFecha != null ? limitar(desdeFecha.toEpochDay()) : Integer.MIN_VALUE + 1;
+        int nuevoHasta = hastaFecha != null ? limitar(hastaFecha.toEpochDay()) : Integer.MAX_VALUE;
+        return new Filtro(estado, historia, grupos, Math.max(desde, nuevoDesde), Math.min(hasta, nuevoHasta));
+    }
+
+    /**
+     * Pacientes que en la fecha de referencia tienen entre edadMinima y edadMaxima años cumplidos.
+     */
+    public Filtro conEdadEntre(LocalDate referencia, int edadMinima, int edadMaxima) {
+        if (edadMinima < 0 || edadMaxima < edadMinima) {
+            throw new IllegalArgumentException("Rango de edades inválido: " + edadMinima + " a " + edadMaxima);
+        }
+        // Tener al menos n años equivale a haber nacido hasta referencia.minusYears(n) inclusive
+        return nacidosEntre(referencia.minusYears(edadMaxima + 1L).plusDays(1), referencia.minusYears(edadMinima));
+    }
+
+    /** El mismo filtro sin la condición de estado, para agrupar por estado. */
+    Filtro sinEstado() {
+        return conEstado(TODOS);
+    }
+
+    boolean porFecha() {
+        return desde != Integer.MIN_VALUE || hasta != Integer.MAX_VALUE;
+    }
+
+    private Filtro conEstado(int nuevo) {
+        return new Filtro(nuevo, historia, grupos, desde, hasta);
+    }
+
+    private Filtro conHistoria(Boolean nueva) {
+        if (historia != null && !historia.equals(nueva)) {
+            throw new IllegalArgumentException("El filtro ya exige " + (historia ? "con" : "sin") + " historia.");
+        }
+        return new Filtro(estado, nueva, grupos, desde, hasta);
+    }
+
+    /** Las fechas fuera del rango de int igual quedan fuera de cualquier fecha cargada. */
+    private static int limitar(long dia) {
+        return (int) Math.max(Integer.MIN_VALUE + 1L, Math.min(Integer.MAX_VALUE, dia));
+    }
+}
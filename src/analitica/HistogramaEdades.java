@@ -0,0 +1,27 @@
+package analitica;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * @param referencia Fecha en la que se calculan las edades
+ * @param tramos     Tramos consecutivos desde 0 años; el último no tiene tope
+ * @param sinEdad    Pacientes sin fecha de nacimiento o nacidos después de la referencia
+ */
+public record HistogramaEdades(LocalDate referencia, List<Tramo> tramos, long sinEdad) {
+
+    /**
+     * @param desde Edad inicial, inclusive
+     * @param hasta Edad final, exclusiva; Integer.MAX_VALUE en el último tramo
+     */
+    public record Tramo(int desde, int hasta, long cantidad) {
+    }
+
+    public long total() {
+        long total = sinEdad;
+        for (Tramo tramo : tramos) {
+            total += tramo.cantidad();
+        }
+        return total;
+    }
+}
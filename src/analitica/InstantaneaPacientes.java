@@ -0,0 +1,221 @@
+package analitica;
+
+import config.DatabaseConnection;
+import dao.PacienteDAO;
+import models.GrupoSanguineo;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Instantánea en memoria, por columnas, de todos los pacientes (activos y eliminados) para
+ * los reportes de gestión: conteos por grupo sanguíneo, por estado y distribución de edades,
+ * sin cargar objetos Paciente ni consultar la base por cada reporte.
+ *
+ * - Cada paciente ocupa ~13 bytes: ID (long), nacimiento en día epoch (int), ordinal del
+ *   grupo sanguíneo (byte) y un bit en cada bitset (eliminado, con historia).
+ * - Las consultas escanean las columnas en paralelo (ver Escaneo) sobre la versión vigente;
+ *   un refresco arma una versión nueva y la publica de una vez.
+ * - refrescar() lee solo los pacientes cuya fila o historia cambió según actualizado_en
+ *   (ver sql/migracion_001_actualizado_en.sql), con una marca por partición. Se relee desde
+ *   la marca menos un margen porque una transacción puede confirmar filas con una marca
+ *   anterior a la última vista; una transacción más larga que el margen puede perderse hasta
+ *   el próximo recargar().
+ * - Los borrados físicos no dejan marca: solo recargar() los quita de la instantánea.
+ *
+ * Configuración (system properties):
+ * - -Ddb.analitica.fetchSize (default 5000)
+ * - -Ddb.analitica.margenSeg (default 5)
+ */
+public class InstantaneaPacientes {
+
+    private static final Logger LOG = Logger.getLogger(InstantaneaPacientes.class.getName());
+
+    private final PacienteDAO pacienteDao;
+    private final int fetchSize;
+    private final long margenMillis;
+
+    private volatile Columnas columnas = Columnas.VACIA;
+    private volatile Instant refrescadaEn;
+
+    /** Última marca actualizado_en vista por partición; null hasta la primera carga. */
+    private Timestamp[] marcas;
+
+    public InstantaneaPacientes(PacienteDAO pacienteDao) {
+        this(pacienteDao, Integer.getInteger("db.analitica.fetchSize", 5_000),
+                Duration.ofSeconds(Long.getLong("db.analitica.margenSeg", 5)));
+    }
+
+    public InstantaneaPacientes(PacienteDAO pacienteDao, int fetchSize, Duration margen) {
+        if (fetchSize < 1 || margen.isNegative()) {
+            throw new IllegalArgumentException("fetchSize y margen deben ser positivos.");
+        }
+        this.pacienteDao = pacienteDao;
+        this.fetchSize = fetchSize;
+        this.margenMillis = margen.toMillis();
+    }
+
+    /**
+     * Vuelve a leer todos los pacientes y reemplaza la instantánea.
+     */
+    public synchronized ResultadoRefresco recargar() throws Exception {
+        return cargar(true);
+    }
+
+    /**
+     * Aplica los cambios desde el refresco anterior. Si nunca se cargó, equivale a recargar().
+     */
+    public synchronized ResultadoRefresco refrescar() throws Exception {
+        return cargar(marcas == null);
+    }
+
+    public long contar(Filtro filtro) {
+        return escanear(filtro, Escaneo.TOTAL, 1, null)[0];
+    }
+
+    public ConteoPorGrupo contarPorGrupoSanguineo(Filtro filtro) {
+        GrupoSanguineo[] grupos = GrupoSanguineo.values();
+        long[] cuentas = escanear(filtro, Escaneo.GRUPO, grupos.length + 1, null);
+        Map<GrupoSanguineo, Long> porGrupo = new EnumMap<>(GrupoSanguineo.class);
+        for (GrupoSanguineo grupo : grupos) {
+            porGrupo.put(grupo, cuentas[grupo.ordinal()]);
+        }
+        return new ConteoPorGrupo(Collections.unmodifiableMap(porGrupo), cuentas[grupos.length]);
+    }
+
+    /**
+     * Activos y eliminados entre los pacientes que cumplen el resto del filtro
+     * (la condición de estado del filtro se ignora).
+     */
+    public ConteoEstados contarPorEstado(Filtro filtro) {
+        long[] cuentas = escanear(filtro.sinEstado(), Escaneo.ESTADO, 2, null);
+        return new ConteoEstados(cuentas[0], cuentas[1]);
+    }
+
+    /**
+     * Distribución de edades en la fecha de referencia, en tramos de anchoAnios hasta
+     * edadMaxima; el último tramo agrupa edadMaxima o más.
+     */
+    public HistogramaEdades histogramaEdades(Filtro filtro, LocalDate referencia, int anchoAnios, int edadMaxima) {
+        if (anchoAnios < 1 || edadMaxima < anchoAnios) {
+            throw new IllegalArgumentException("Tramos inválidos: ancho " + anchoAnios + ", edad máxima " + edadMaxima);
+        }
+        List<Integer> inicios = new ArrayList<>();
+        for (int edad = 0; edad < edadMaxima; edad += anchoAnios) {
+            inicios.add(edad);
+        }
+        inicios.add(edadMaxima);
+        int[] cortes = new int[inicios.size()];
+        for (int i = 0; i < cortes.length; i++) {
+            // Tener al menos esa edad equivale a haber nacido hasta este día inclusive
+            cortes[i] = Columnas.diaEpoch(referencia.minusYears(inicios.get(i)));
+        }
+        long[] cuentas = escanear(filtro, Escaneo.EDAD, cortes.length + 1, cortes);
+        List<HistogramaEdades.Tramo> tramos = new ArrayList<>(cortes.length);
+        for (int i = 0; i < cortes.length; i++) {
+            int hasta = i + 1 < cortes.length ? inicios.get(i + 1) : Integer.MAX_VALUE;
+            tramos.add(new HistogramaEdades.Tramo(inicios.get(i), hasta, cuentas[i]));
+        }
+        return new HistogramaEdades(referencia, List.copyOf(tramos), cuentas[cortes.length]);
+    }
+
+    public EstadisticasInstantanea getEstadisticas() {
+        Columnas actuales = columnas;
+        return new EstadisticasInstantanea(actuales.filas, actuales.bytes(), refrescadaEn);
+    }
+
+    private long[] escanear(Filtro filtro, int agrupacion, int clases, int[] cortes) {
+        return new Escaneo(columnas, filtro, agrupacion, clases, cortes).invoke();
+    }
+
+    private ResultadoRefresco cargar(boolean completo) throws Exception {
+        long inicio = System.nanoTime();
+        int particiones = DatabaseConnection.getShardCount();
+        Timestamp[] desde = new Timestamp[particiones];
+        if (!completo) {
+            for (int shard = 0; shard < particiones; shard++) {
+                Timestamp marca = shard < marcas.length ? marcas[shard] : null;
+                desde[shard] = marca != null ? new Timestamp(marca.getTime() - margenMillis) : null;
+            }
+        }
+
+        List<Cambios> porParticion = new ArrayList<>(particiones);
+        Timestamp[] nuevasMarcas = new Timestamp[particiones];
+        for (int shard = 0; shard < particiones; shard++) {
+            porParticion.add(new Cambios());
+        }
+        leerParticiones(desde, porParticion, nuevasMarcas);
+        Cambios cambios = Cambios.unir(porParticion);
+
+        Columnas anteriores = completo ? Columnas.VACIA : columnas;
+        Columnas nuevas = cambios.tamanio == 0 ? anteriores : anteriores.aplicar(cambios);
+        columnas = nuevas;
+        if (!completo) {
+            // Releer el margen no debe hacer retroceder la marca
+            for (int shard = 0; shard < particiones && shard < marcas.length; shard++) {
+                Timestamp anterior = marcas[shard];
+                if (anterior != null && (nuevasMarcas[shard] == null || nuevasMarcas[shard].before(anterior))) {
+                    nuevasMarcas[shard] = anterior;
+                }
+            }
+        }
+        marcas = nuevasMarcas;
+        refrescadaEn = Instant.now();
+
+        int agregadas = nuevas.filas - anteriores.filas;
+        ResultadoRefresco resultado = new ResultadoRefresco(completo, cambios.tamanio, agregadas,
+                nuevas == anteriores ? 0 : nuevas.modificadas, nuevas.filas,
+                Duration.ofNanos(System.nanoTime() - inicio));
+        LOG.log(completo ? Level.INFO : Level.FINE, "Instantánea de pacientes: {0}", resultado);
+        return resultado;
+    }
+
+    /**
+     * Lee los cambios de cada partición en paralelo (un hilo virtual por partición), como las
+     * consultas sin clave de partición de los DAO.
+     */
+    private void leerParticiones(Timestamp[] desde, List<Cambios> porParticion, Timestamp[] nuevasMarcas)
+            throws Exception {
+        if (desde.length == 1) {
+            nuevasMarcas[0] = pacienteDao.recorrerDemografia(0, desde[0], fetchSize, porParticion.get(0));
+            return;
+        }
+        Exception error = null;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Timestamp>> futuros = new ArrayList<>(desde.length);
+            for (int shard = 0; shard < desde.length; shard++) {
+                int particion = shard;
+                futuros.add(executor.submit(() -> pacienteDao.recorrerDemografia(particion, desde[particion],
+                        fetchSize, porParticion.get(particion))));
+            }
+            for (int shard = 0; shard < desde.length; shard++) {
+                try {
+                    nuevasMarcas[shard] = futuros.get(shard).get();
+                } catch (ExecutionException e) {
+                    Exception causa = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    if (error == null) {
+                        error = causa;
+                    } else {
+                        error.addSuppressed(causa);
+                    }
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package analitica;
+
+import java.time.Duration;
+
+/**
+ * @param completo    Si se releyeron todos los pacientes (recargar) o solo los cambios
+ * @param leidas      Filas traídas de la base (en un refresco incluye las del margen ya vistas)
+ * @param agregadas   Pacientes nuevos en la instantánea
+ * @param modificadas Pacientes existentes con algún valor distinto
+ * @param filas       Pacientes en la instantánea después del refresco
+ */
+public record ResultadoRefresco(boolean completo, int leidas, int agregadas, int modificadas, int filas,
+                                Duration duracion) {
+}
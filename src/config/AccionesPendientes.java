@@ -0,0 +1,115 @@
+package config;
+
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Acciones registradas con {@link TransactionSynchronization#afterCommit} y
+ * {@link TransactionSynchronization#afterRollback} en una conexión, con la posición de cada
+ * savepoint abierto: un rollback(savepoint) descarta o ejecuta solo las registradas después de él.
+ *
+ * No es thread-safe: pertenece a una única conexión (préstamo del pool o conexión particionada).
+ */
+final class AccionesPendientes {
+
+    /** Savepoint abierto y cuántas acciones de cada tipo había al crearlo. */
+    private record Marca(Savepoint savepoint, int afterCommit, int afterRollback) {
+    }
+
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final List<Runnable> afterRollback = new ArrayList<>();
+    private final List<Marca> marcas = new ArrayList<>();
+
+    void afterCommit(Runnable action) {
+        afterCommit.add(action);
+    }
+
+    void afterRollback(Runnable action) {
+        afterRollback.add(action);
+    }
+
+    void savepoint(Savepoint savepoint) {
+        marcas.add(new Marca(savepoint, afterCommit.size(), afterRollback.size()));
+    }
+
+    /**
+     * Descarta las acciones afterCommit posteriores al savepoint y ejecuta las afterRollback.
+     * El savepoint sigue abierto; los creados después de él, no.
+     */
+    void rollback(Savepoint savepoint) {
+        int i = indice(savepoint);
+        if (i < 0) {
+            return;
+        }
+        Marca marca = marcas.get(i);
+        truncar(afterCommit, marca.afterCommit());
+        truncar(marcas, i + 1);
+        deshacerHasta(marca.afterRollback());
+    }
+
+    /**
+     * Las acciones quedan en la transacción; se olvida el savepoint y los creados después.
+     */
+    void releaseSavepoint(Savepoint savepoint) {
+        int i = indice(savepoint);
+        if (i >= 0) {
+            truncar(marcas, i);
+        }
+    }
+
+    /**
+     * Ejecuta las acciones pendientes tras un commit.
+     */
+    void commit() {
+        marcas.clear();
+        afterRollback.clear();
+        if (afterCommit.isEmpty()) {
+            return;
+        }
+        List<Runnable> actions = new ArrayList<>(afterCommit);
+        afterCommit.clear();
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /**
+     * Rollback completo o conexión devuelta sin confirmar: descarta las acciones afterCommit
+     * y ejecuta las afterRollback.
+     */
+    void rollback() {
+        marcas.clear();
+        afterCommit.clear();
+        deshacerHasta(0);
+    }
+
+    /**
+     * Ejecuta las acciones afterRollback desde la más reciente, hasta dejar tamanio.
+     */
+    private void deshacerHasta(int tamanio) {
+        if (afterRollback.size() <= tamanio) {
+            return;
+        }
+        List<Runnable> actions = new ArrayList<>(afterRollback.subList(tamanio, afterRollback.size()));
+        truncar(afterRollback, tamanio);
+        for (int i = actions.size() - 1; i >= 0; i--) {
+            actions.get(i).run();
+        }
+    }
+
+    private int indice(Savepoint savepoint) {
+        for (int i = marcas.size() - 1; i >= 0; i--) {
+            if (marcas.get(i).savepoint() == savepoint) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void truncar(List<?> lista, int tamanio) {
+        if (lista.size() > tamanio) {
+            lista.subList(tamanio, lista.size()).clear();
+        }
+    }
+}
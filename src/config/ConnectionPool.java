@@ -0,0 +1,575 @@
+package config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Savepoint;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool acotado de conexiones JDBC.
+ *
+ * Funcionamiento:
+ * - Mantiene entre minSize y maxSize conexiones físicas abiertas.
+ * - borrow() entrega la conexión ociosa más reciente (LIFO) y la valida con isValid().
+ * - Si no hay ociosas y no se alcanzó maxSize, abre una nueva fuera del lock.
+ * - Si el pool está lleno, espera hasta borrowTimeoutMs y luego lanza SQLException.
+ * - Un hilo daemon descarta conexiones ociosas por más de idleTimeoutMs (respetando minSize)
+ *   y las que superaron maxLifetimeMs, y repone hasta minSize.
+ *
+ * Las conexiones entregadas son proxies: close() devuelve la conexión física al pool
+ * en lugar de cerrarla, por lo que el uso con try-with-resources no cambia.
+ *
+ * Cada conexión física tiene además una caché LRU de hasta statementCacheSize sentencias
+ * preparadas (ver {@link StatementCache}): los DAOs preparan siempre el mismo SQL y así
+ * reutilizan la sentencia en lugar de volver a prepararla en cada préstamo.
+ */
+public final class ConnectionPool {
+
+    /** SQLState de la excepción de borrow() cuando se vence la espera (timeout expired). */
+    static final String SQLSTATE_TIMEOUT = "HYT00";
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final long maxLifetimeNanos;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+    private final StatementCache.Contadores statementCacheCounters = new StatementCache.Contadores();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    /** Conexiones de openDedicated(), para cerrar las que sigan abiertas en shutdown(). */
+    private final List<Connection> dedicated = new ArrayList<>();
+    private final ScheduledExecutorService evictor;
+
+    /** Conexiones físicas existentes (ociosas + prestadas + en apertura). Protegido por lock. */
+    private int total;
+    /** Hilos esperando una conexión. Protegido por lock. */
+    private int waiting;
+    private boolean closed;
+
+    private long borrowCount;
+    private long timeoutCount;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long borrowTimeoutMs, long idleTimeoutMs, long maxLifetimeMs,
+                          int validationTimeoutSeconds, long evictionIntervalMs, int statementCacheSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Tamaños de pool inválidos: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMs);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        this.maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(maxLifetimeMs);
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        this.evictor.scheduleWithFixedDelay(this::evict, evictionIntervalMs, evictionIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Obtiene una conexión del pool.
+     * El caller debe cerrarla (close()) para devolverla.
+     *
+     * @return Proxy de conexión válido
+     * @throws SQLException Si se agota borrowTimeoutMs o no se puede abrir una conexión nueva
+     */
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        long remaining = borrowTimeoutNanos;
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean create = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("El pool de conexiones está cerrado.");
+                    }
+                    candidate = idle.pollFirst();
+                    if (candidate != null) {
+                        break;
+                    }
+                    if (total < maxSize) {
+                        total++;
+                        create = true;
+                        break;
+                    }
+                    if (remaining <= 0L) {
+                        timeoutCount++;
+                        throw new SQLTransientConnectionException("Timeout esperando una conexión del pool ("
+                                + stats() + ").", SQLSTATE_TIMEOUT);
+                    }
+                    waiting++;
+                    try {
+                        remaining = available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrumpido esperando una conexión del pool.", e);
+                    } finally {
+                        waiting--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (create) {
+                candidate = open();
+            } else if (isExpired(candidate, System.nanoTime()) || !isValid(candidate)) {
+                destroy(candidate);
+                remaining = borrowTimeoutNanos - (System.nanoTime() - start);
+                continue;
+            }
+
+            recordWait(System.nanoTime() - start);
+            return candidate.lease();
+        }
+    }
+
+    /**
+     * Indica si el error de borrow() es por pool agotado (la espera se venció) y no por una
+     * falla al conectar o validar.
+     */
+    static boolean isBorrowTimeout(SQLException e) {
+        return e instanceof SQLTransientConnectionException && SQLSTATE_TIMEOUT.equals(e.getSQLState());
+    }
+
+    /**
+     * Retorna un snapshot de las estadísticas del pool.
+     */
+    public PoolStats stats() {
+        lock.lock();
+        try {
+            int idleCount = idle.size();
+            long avgWait = borrowCount == 0 ? 0L : totalWaitNanos / borrowCount;
+            return new PoolStats(total - idleCount, idleCount, waiting, total, borrowCount, timeoutCount,
+                    TimeUnit.NANOSECONDS.toMillis(totalWaitNanos),
+                    TimeUnit.NANOSECONDS.toMicros(avgWait),
+                    TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Conexiones que borrow() puede entregar ahora sin esperar: las ociosas más las que todavía
+     * se pueden abrir, menos los hilos que ya están esperando.
+     */
+    public int available() {
+        lock.lock();
+        try {
+            return Math.max(0, idle.size() + (maxSize - total) - waiting);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retorna un snapshot de los contadores de la caché de sentencias (todas las conexiones).
+     */
+    public StatementCacheStats statementCacheStats() {
+        return statementCacheCounters.snapshot();
+    }
+
+    /**
+     * Cantidad máxima de conexiones físicas que puede abrir el pool.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Abre una conexión física con la configuración del pool, sin prestarla: no espera a que se
+     * libere una conexión ni cuenta en maxSize. El caller la cierra cuando deja de usarla; las
+     * que sigan abiertas se cierran en shutdown().
+     */
+    public Connection openDedicated() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, user, password);
+        lock.lock();
+        try {
+            if (!closed) {
+                dedicated.removeIf(ConnectionPool::isClosedQuietly);
+                dedicated.add(conn);
+                return conn;
+            }
+        } finally {
+            lock.unlock();
+        }
+        conn.close();
+        throw new SQLException("El pool de conexiones está cerrado.");
+    }
+
+    private static boolean isClosedQuietly(Connection conn) {
+        try {
+            return conn.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Cierra el pool, todas las conexiones ociosas y las abiertas con openDedicated().
+     * Las conexiones prestadas se cierran físicamente al devolverse.
+     */
+    public void shutdown() {
+        evictor.shutdownNow();
+        lock.lock();
+        try {
+            closed = true;
+            for (PooledConnection pc : idle) {
+                pc.closePhysical();
+                total--;
+            }
+            idle.clear();
+            for (Connection conn : dedicated) {
+                try {
+                    conn.close();
+                } catch (SQLException ignored) {
+                    // Se cierra de todas formas
+                }
+            }
+            dedicated.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Abre las conexiones necesarias para alcanzar minSize.
+     */
+    public void warmUp() {
+        fillToMinimum();
+    }
+
+    private PooledConnection open() throws SQLException {
+        try {
+            return new PooledConnection(DriverManager.getConnection(url, user, password));
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                total--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        boolean reusable;
+        try {
+            reusable = !pc.physical.isClosed() && !isExpired(pc, System.nanoTime()) && resetState(pc);
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        if (!reusable) {
+            destroy(pc);
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (closed) {
+                total--;
+                pc.closePhysical();
+                return;
+            }
+            pc.lastUsedNanos = System.nanoTime();
+            idle.addFirst(pc);
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deja la conexión física como la encontraría un nuevo caller:
+     * sin transacción pendiente y con autocommit activo.
+     */
+    private boolean resetState(PooledConnection pc) throws SQLException {
+        Connection c = pc.physical;
+        if (!c.getAutoCommit()) {
+            c.rollback();
+            c.setAutoCommit(true);
+        }
+        if (c.isReadOnly()) {
+            c.setReadOnly(false);
+        }
+        c.clearWarnings();
+        return true;
+    }
+
+    private void destroy(PooledConnection pc) {
+        pc.closePhysical();
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isValid(PooledConnection pc) {
+        try {
+            return pc.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean isExpired(PooledConnection pc, long now) {
+        return maxLifetimeNanos > 0L && now - pc.createdNanos > maxLifetimeNanos;
+    }
+
+    private void recordWait(long waitNanos) {
+        lock.lock();
+        try {
+            borrowCount++;
+            totalWaitNanos += waitNanos;
+            if (waitNanos > maxWaitNanos) {
+                maxWaitNanos = waitNanos;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        Deque<PooledConnection> toClose = new ArrayDeque<>();
+
+        lock.lock();
+        try {
+            // Las más antiguas en uso están al final de la cola (LIFO)
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext()) {
+                PooledConnection pc = it.next();
+                boolean idleTooLong = idleTimeoutNanos > 0L && now - pc.lastUsedNanos > idleTimeoutNanos && total > minSize;
+                if (idleTooLong || isExpired(pc, now)) {
+                    it.remove();
+                    total--;
+                    toClose.add(pc);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection pc : toClose) {
+            pc.closePhysical();
+        }
+        fillToMinimum();
+    }
+
+    private void fillToMinimum() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || total >= minSize) {
+                    return;
+                }
+                total++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                release(open());
+            } catch (SQLException e) {
+                // La base no está disponible: se reintenta en la próxima ejecución del evictor
+                return;
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException ignored) {
+            // La conexión se descarta de todas formas
+        }
+    }
+
+    /**
+     * Conexión física administrada por el pool.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final long createdNanos;
+        private long lastUsedNanos;
+        /** Solo la usa quien tiene la conexión prestada (o el pool, con la conexión ociosa). */
+        private final StatementCache statements;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.createdNanos = System.nanoTime();
+            this.lastUsedNanos = createdNanos;
+            this.statements = new StatementCache(statementCacheSize, statementCacheCounters);
+        }
+
+        private void closePhysical() {
+            statements.descartar();
+            closeQuietly(physical);
+        }
+
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(this));
+        }
+    }
+
+    /**
+     * Proxy que intercepta close() para devolver la conexión al pool.
+     * Un mismo préstamo solo puede devolverse una vez; luego cualquier uso falla.
+     *
+     * También guarda las acciones registradas con {@link TransactionSynchronization#afterCommit}:
+     * se ejecutan tras un commit() exitoso (o al volver a autocommit) y se descartan
+     * con rollback() completo o al devolver la conexión. rollback(savepoint) descarta
+     * solo las registradas después del savepoint. Las de
+     * {@link TransactionSynchronization#afterRollback} hacen lo inverso.
+     */
+    private final class LeaseHandler implements InvocationHandler, TransactionSynchronization.Registry {
+        private PooledConnection pc;
+        private final AccionesPendientes acciones = new AccionesPendientes();
+        /** Sentencias cacheadas entregadas en este préstamo y todavía no cerradas. */
+        private final List<StatementCache.Sentencia> openStatements = new ArrayList<>();
+
+        private LeaseHandler(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public void afterCommit(Runnable action) {
+            acciones.afterCommit(action);
+        }
+
+        @Override
+        public void afterRollback(Runnable action) {
+            acciones.afterRollback(action);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (pc != null) {
+                        PooledConnection returned = pc;
+                        pc = null;
+                        acciones.rollback();
+                        closeOpenStatements();
+                        release(returned);
+                    }
+                    return null;
+                case "isClosed":
+                    return pc == null || pc.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + (pc == null ? "devuelta" : pc.physical) + "]";
+                case "isWrapperFor":
+                    if (args[0] == TransactionSynchronization.Registry.class) {
+                        return true;
+                    }
+                    break;
+                case "unwrap":
+                    if (args[0] == TransactionSynchronization.Registry.class) {
+                        return this;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (pc == null) {
+                throw new SQLException("La conexión ya fue devuelta al pool.");
+            }
+
+            String name = method.getName();
+            if (name.equals("prepareStatement") && statementCacheSize > 0) {
+                PreparedStatement cached = pc.statements.preparar(pc.physical, (Connection) proxy, method, args,
+                        openStatements);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            boolean commits = name.equals("commit")
+                    || (name.equals("setAutoCommit") && Boolean.TRUE.equals(args[0]) && !pc.physical.getAutoCommit());
+            Object result;
+            try {
+                result = method.invoke(pc.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+
+            switch (name) {
+                case "setSavepoint":
+                    acciones.savepoint((Savepoint) result);
+                    break;
+                case "releaseSavepoint":
+                    acciones.releaseSavepoint((Savepoint) args[0]);
+                    break;
+                case "rollback":
+                    if (args == null) {
+                        acciones.rollback();
+                    } else {
+                        acciones.rollback((Savepoint) args[0]);
+                    }
+                    break;
+                default:
+                    if (commits) {
+                        acciones.commit();
+                    }
+                    break;
+            }
+            return result;
+        }
+
+        private void closeOpenStatements() {
+            for (StatementCache.Sentencia sentencia : openStatements) {
+                sentencia.cerrarFisica();
+            }
+            openStatements.clear();
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package config;
 
+import metrics.QueryMetrics;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Clase utilitaria para gestionar conexiones a la base de datos MySQL.
@@ -19,6 +25,57 @@ import java.sql.SQLException;
  *
  * Override mediante system properties:
  * - java -Ddb.url=... -Ddb.user=... -Ddb.password=...
+ *
+ * Pool de conexiones (ver {@link ConnectionPool}):
+ * - -Ddb.pool.minSize (default 2), -Ddb.pool.maxSize (default 10)
+ * - -Ddb.pool.borrowTimeoutMs (default 5000)
+ * - -Ddb.pool.idleTimeoutMs (default 300000), -Ddb.pool.maxLifetimeMs (default 1800000)
+ * - -Ddb.pool.validationTimeoutSec (default 2), -Ddb.pool.evictionIntervalMs (default 30000)
+ *
+ * Caché de sentencias preparadas por conexión (ver {@link StatementCache}):
+ * - -Ddb.stmtCache.size (default 64 por conexión, 0 = desactivada)
+ * - -Ddb.stmtCache.serverPrepare (default false): con MySQL agrega useServerPrepStmts=true a la URL,
+ *   así cada sentencia cacheada queda preparada en el servidor y solo viajan los parámetros
+ *
+ * Alta de pacientes (ver PacienteDAO.admitir):
+ * - -Ddb.admision.unaSentencia (default false): paciente e historia en un único envío; con
+ *   MySQL agrega allowMultiQueries=true a la URL
+ * - -Ddb.ids.rango (default 1000): IDs reservados por vez en secuencia_id
+ *
+ * Lectura con cursor (ver dao.CursorStream):
+ * - -Ddb.stream.cursorFetch (default false): con MySQL agrega useCursorFetch=true a la URL, sin la
+ *   cual Connector/J ignora un fetchSize positivo y trae el resultado completo a memoria.
+ *   Connector/J activa con ella useServerPrepStmts=true: todas las sentencias del pool pasan a
+ *   prepararse en el servidor, como con db.stmtCache.serverPrepare=true
+ *
+ * Réplicas de lectura (ver {@link ReplicaRouter}):
+ * - -Ddb.replicas: URLs JDBC separadas por coma (default ninguna: todo va al primario db.url)
+ * - -Ddb.replicas.user / -Ddb.replicas.password (default los del primario)
+ * - -Ddb.replicas.seleccion: round-robin (default) o least-loaded
+ * - -Ddb.replicas.healthCheckMs (default 5000)
+ * - Cada réplica tiene su propio pool con los mismos parámetros db.pool.*.
+ * - getReadConnection() entrega una conexión de réplica, o una del primario si no hay réplicas
+ *   sanas. Dentro de una unidad de trabajo de TransactionManager entrega la de la unidad.
+ * Para probarlo en local alcanza con dos instancias, ej:
+ *   -Ddb.url=jdbc:mysql://localhost:3306/historia_clinica_db
+ *   -Ddb.replicas=jdbc:mysql://localhost:3307/historia_clinica_db
+ *
+ * Particiones (ver {@link ShardRouter}):
+ * - -Ddb.shards: URLs JDBC de las particiones adicionales, separadas por coma; db.url es la
+ *   partición 0 (default ninguna: una sola base). El orden no debe cambiar una vez cargados datos.
+ * - -Ddb.shards.user / -Ddb.shards.password (default los de db.url)
+ * - -Ddb.shards.virtualNodes (default 64): puntos por partición en el anillo de hash consistente
+ * - Cada partición tiene su propio pool con los mismos parámetros db.pool.*.
+ * - getConnection() entrega una conexión lógica sobre todas las particiones; los DAOs usan
+ *   enShard() para obtener la de la partición del paciente.
+ * - No se combina con db.replicas.
+ * Para probarlo en local alcanza con varias bases, ej:
+ *   -Ddb.url=jdbc:mysql://localhost:3306/historia_clinica_db
+ *   -Ddb.shards=jdbc:mysql://localhost:3306/historia_clinica_db_1,jdbc:mysql://localhost:3306/historia_clinica_db_2
+ *
+ * Métricas por sentencia (ver {@link QueryMetrics}):
+ * - -Ddb.metrics.enabled (default true), -Ddb.metrics.jmx (default true)
+ * - -Ddb.metrics.maxSentencias (default 500), -Ddb.metrics.logIntervalSec (default 300, 0 = sin volcado)
  */
 public final class DatabaseConnection {
     /** URL de conexión JDBC. Configurable via -Ddb.url */
@@ -30,6 +87,19 @@ public final class DatabaseConnection {
     /** Contraseña del usuario. Configurable via -Ddb.password */
     private static final String PASSWORD = System.getProperty("db.password", "");
 
+    /** Pool compartido por todos los DAOs. Se crea en el bloque static. */
+    private static final ConnectionPool POOL;
+
+    /** Réplicas para lecturas. Null si no se configuró -Ddb.replicas. */
+    private static final ReplicaRouter REPLICAS;
+
+    /** Particiones. Null si no se configuró -Ddb.shards. */
+    private static final ShardRouter SHARDS;
+
+
+    /** Métricas de sentencias y de adquisición de conexiones. Null si están desactivadas. */
+    private static final QueryMetrics METRICS;
+
     /**
      * Bloque de inicialización estática.
      * Se ejecuta una sola vez cuando la clase se carga en memoria.
@@ -37,6 +107,9 @@ public final class DatabaseConnection {
      * Acciones:
      * 1. Carga el driver JDBC de MySQL.
      * 2. Valida que la configuración sea correcta.
+     * 3. Crea el pool de conexiones (sin abrir conexiones todavía).
+     * 4. Crea los pools de las réplicas o de las particiones, si hay.
+     * 5. Crea el registro de métricas, si está activado.
      *
      * Si falla, lanza ExceptionInInitializerError y detiene la aplicación.
      * Esto es intencional: sin BD correcta, la app no puede funcionar.
@@ -47,9 +120,22 @@ public final class DatabaseConnection {
             Class.forName("com.mysql.cj.jdbc.Driver");
             // Valida configuración tempranamente
             validateConfiguration();
+            POOL = crearPool(URL, USER, PASSWORD);
+            REPLICAS = crearReplicas();
+            SHARDS = crearParticiones();
+            if (REPLICAS != null && SHARDS != null) {
+                throw new IllegalStateException("db.replicas y db.shards no se pueden usar juntos.");
+            }
+            if (Boolean.parseBoolean(System.getProperty("db.metrics.enabled", "true"))) {
+                METRICS = new QueryMetrics(intProperty("db.metrics.maxSentencias", 500),
+                        Boolean.parseBoolean(System.getProperty("db.metrics.jmx", "true")));
+                METRICS.iniciarVolcadoPeriodico(longProperty("db.metrics.logIntervalSec", 300L));
+            } else {
+                METRICS = null;
+            }
         } catch (ClassNotFoundException e) {
             throw new ExceptionInInitializerError("No se encontró el driver JDBC de MySQL: " + e.getMessage());
-        } catch (IllegalStateException e) {
+        } catch (IllegalStateException | IllegalArgumentException e) {
             throw new ExceptionInInitializerError("Error en la configuración de la base de datos: " + e.getMessage());
         }
     }
@@ -63,11 +149,12 @@ public final class DatabaseConnection {
     }
 
     /**
-     * Obtiene una nueva conexión a la base de datos.
+     * Obtiene una conexión del pool.
      *
      * Importante:
-     * - Cada llamada crea una nueva conexión.
+     * - La conexión se reutiliza: close() la devuelve al pool en lugar de cerrarla.
      * - El caller es responsable de cerrar la conexión.
+     * - Si el pool está agotado, espera hasta db.pool.borrowTimeoutMs.
      * - La configuración ya fue validada en el bloque static.
      *
      * Uso correcto:
@@ -78,10 +165,222 @@ public final class DatabaseConnection {
      * </pre>
      *
      * @return Conexión JDBC activa
-     * @throws SQLException Si no se puede establecer la conexión
+     * @throws SQLException Si no se puede establecer la conexión o se agota el timeout
      */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        if (SHARDS != null) {
+            return ShardedConnection.create(SHARDS, shard -> prestar(SHARDS.pool(shard)));
+        }
+        return prestar(POOL);
+    }
+
+    /**
+     * Toma una conexión del pool, midiendo la espera e instrumentándola si hay métricas.
+     */
+    private static Connection prestar(ConnectionPool pool) throws SQLException {
+        if (METRICS == null) {
+            return pool.borrow();
+        }
+        long inicio = System.nanoTime();
+        Connection conn;
+        try {
+            conn = pool.borrow();
+        } catch (SQLException e) {
+            METRICS.registrarAdquisicion(System.nanoTime() - inicio, true);
+            throw e;
+        }
+        METRICS.registrarAdquisicion(System.nanoTime() - inicio, false);
+        return METRICS.instrumentar(conn);
+    }
+
+    /**
+     * Obtiene una conexión para una operación de solo lectura.
+     *
+     * - Con réplicas configuradas, la toma de una réplica sana (round-robin o la menos cargada).
+     * - Dentro de una unidad de trabajo de TransactionManager retorna la conexión de la unidad
+     *   (ver {@link #sinCerrar}): la lectura ve las escrituras todavía sin confirmar y no ocupa
+     *   otra conexión del pool.
+     * - Si ninguna réplica está disponible, usa el primario.
+     *
+     * No debe usarse para escribir: la réplica puede rechazar la escritura o perderla.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        Connection actual = TransactionManager.conexionActual();
+        if (actual != null) {
+            return sinCerrar(actual);
+        }
+        if (REPLICAS == null) {
+            return getConnection();
+        }
+        long inicio = System.nanoTime();
+        Connection conn = REPLICAS.borrow();
+        if (conn == null) {
+            return getConnection();
+        }
+        if (METRICS == null) {
+            return conn;
+        }
+        METRICS.registrarAdquisicion(System.nanoTime() - inicio, false);
+        return METRICS.instrumentar(conn);
+    }
+
+    /**
+     * Conexión de lectura de una partición. Sin particiones, equivale a getReadConnection().
+     * Dentro de una unidad de trabajo, la de la partición en la conexión de la unidad.
+     */
+    public static Connection getReadConnection(int shard) throws SQLException {
+        if (SHARDS == null) {
+            return getReadConnection();
+        }
+        Connection actual = TransactionManager.conexionActual();
+        if (actual != null) {
+            return sinCerrar(enShard(actual, shard));
+        }
+        return prestar(SHARDS.pool(shard));
+    }
+
+    /**
+     * Conexión de la unidad de trabajo para un lector que la cierra al terminar: close() no la
+     * devuelve al pool, y confirmar o deshacer la transacción queda a cargo de la unidad.
+     */
+    private static Connection sinCerrar(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            return null;
+                        case "commit":
+                        case "rollback":
+                        case "setAutoCommit":
+                            throw new SQLException("La conexión de lectura pertenece a la unidad de trabajo: "
+                                    + method.getName() + " no está permitido.");
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            try {
+                                return method.invoke(conn, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+
+    /**
+     * Conexión física nueva a la partición (al primario si no hay particiones), fuera del pool:
+     * no espera a que se libere una ni cuenta en db.pool.maxSize. El caller la cierra.
+     * Para trabajo interno breve que se hace mientras el hilo ya tiene conexiones prestadas.
+     * Las que sigan abiertas se cierran en shutdown().
+     */
+    public static Connection getConexionDedicada(int shard) throws SQLException {
+        return (SHARDS != null ? SHARDS.pool(shard) : POOL).openDedicated();
+    }
+
+    /**
+     * Conexión de la partición dentro de una conexión obtenida con getConnection().
+     * Sin particiones (o si conn no es una conexión lógica particionada) retorna conn.
+     * La conexión retornada pertenece a conn: no debe cerrarse por separado.
+     */
+    public static Connection enShard(Connection conn, int shard) throws SQLException {
+        if (SHARDS == null || !conn.isWrapperFor(ShardedConnection.class)) {
+            return conn;
+        }
+        return conn.unwrap(ShardedConnection.class).shard(shard);
+    }
+
+    /**
+     * Cantidad de particiones (1 si no se configuró db.shards).
+     */
+    public static int getShardCount() {
+        return SHARDS != null ? SHARDS.shardCount() : 1;
+    }
+
+    /**
+     * Partición del paciente con ese DNI (hash consistente).
+     */
+    public static int shardDeDni(String dni) {
+        return SHARDS != null ? SHARDS.shardOf(dni) : 0;
+    }
+
+    /**
+     * Partición de un ID de paciente o de historia clínica.
+     */
+    public static int shardDeId(long id) {
+        return SHARDS != null ? ShardRouter.shardOfId(id) : 0;
+    }
+
+    /**
+     * Estado de las réplicas de lectura; lista vacía si no hay réplicas configuradas.
+     */
+    public static List<ReplicaStatus> getReplicaStatus() {
+        return REPLICAS != null ? REPLICAS.status() : List.of();
+    }
+
+    /**
+     * Retorna el registro de métricas por sentencia, o null si está desactivado (-Ddb.metrics.enabled=false).
+     */
+    public static QueryMetrics getQueryMetrics() {
+        return METRICS;
+    }
+
+    /**
+     * Retorna las estadísticas actuales del pool (activas, ociosas, en espera, tiempos de espera).
+     */
+    public static PoolStats getPoolStats() {
+        return POOL.stats();
+    }
+
+    /**
+     * Conexiones que getReadConnection(shard) puede entregar ahora sin esperar: las del pool de
+     * la partición, o las de las réplicas sanas (si no hay ninguna, las del primario).
+     */
+    public static int getConexionesLecturaLibres(int shard) {
+        if (SHARDS != null) {
+            return SHARDS.pool(shard).available();
+        }
+        if (REPLICAS != null) {
+            int replicas = REPLICAS.available();
+            if (replicas >= 0) {
+                return replicas;
+            }
+        }
+        return POOL.available();
+    }
+
+    /**
+     * Retorna los contadores de la caché de sentencias preparadas (hits, misses, expulsiones).
+     */
+    public static StatementCacheStats getStatementCacheStats() {
+        return POOL.statementCacheStats();
+    }
+
+    /**
+     * Cantidad máxima de conexiones simultáneas (db.pool.maxSize).
+     * Sirve para acotar la concurrencia de quien reparte trabajo en paralelo.
+     */
+    public static int getMaxConexiones() {
+        return POOL.getMaxSize();
+    }
+
+    /**
+     * Cierra los pools y sus conexiones, incluidas las dedicadas de reserva de ids.
+     * Llamar al finalizar la aplicación.
+     */
+    public static void shutdown() {
+        if (METRICS != null) {
+            METRICS.detener();
+        }
+        if (REPLICAS != null) {
+            REPLICAS.shutdown();
+        }
+        if (SHARDS != null) {
+            SHARDS.shutdown();
+        }
+        POOL.shutdown();
     }
 
     /**
@@ -106,4 +405,105 @@ public final class DatabaseConnection {
             throw new IllegalStateException("La contraseña de la base de datos no está configurada.");
         }
     }
+
+    private static ConnectionPool crearPool(String url, String user, String password) {
+        return new ConnectionPool(urlConOpciones(url), user, password,
+                intProperty("db.pool.minSize", 2),
+                intProperty("db.pool.maxSize", 10),
+                longProperty("db.pool.borrowTimeoutMs", 5_000L),
+                longProperty("db.pool.idleTimeoutMs", 300_000L),
+                longProperty("db.pool.maxLifetimeMs", 1_800_000L),
+                intProperty("db.pool.validationTimeoutSec", 2),
+                longProperty("db.pool.evictionIntervalMs", 30_000L),
+                intProperty("db.stmtCache.size", 64));
+    }
+
+    private static ReplicaRouter crearReplicas() {
+        String urls = System.getProperty("db.replicas", "").trim();
+        if (urls.isEmpty()) {
+            return null;
+        }
+        List<String> lista = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (!url.trim().isEmpty()) {
+                lista.add(url.trim());
+            }
+        }
+        String user = System.getProperty("db.replicas.user", USER);
+        String password = System.getProperty("db.replicas.password", PASSWORD);
+        String seleccion = System.getProperty("db.replicas.seleccion", "round-robin").trim();
+        ReplicaRouter.Selection selection;
+        try {
+            selection = ReplicaRouter.Selection.valueOf(seleccion.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Valor inválido para db.replicas.seleccion: " + seleccion);
+        }
+        return new ReplicaRouter(lista, url -> crearPool(url, user, password), selection,
+                longProperty("db.replicas.healthCheckMs", 5_000L),
+                intProperty("db.pool.validationTimeoutSec", 2));
+    }
+
+    private static ShardRouter crearParticiones() {
+        String urls = System.getProperty("db.shards", "").trim();
+        if (urls.isEmpty()) {
+            return null;
+        }
+        String user = System.getProperty("db.shards.user", USER);
+        String password = System.getProperty("db.shards.password", PASSWORD);
+        List<ConnectionPool> pools = new ArrayList<>();
+        pools.add(POOL);
+        for (String url : urls.split(",")) {
+            if (!url.trim().isEmpty()) {
+                pools.add(crearPool(url.trim(), user, password));
+            }
+        }
+        return new ShardRouter(pools, intProperty("db.shards.virtualNodes", 64));
+    }
+
+    /**
+     * URL a usar por el pool, con las opciones de MySQL que piden otras propiedades (salvo que
+     * la URL ya las defina):
+     * - -Ddb.stmtCache.serverPrepare=true: useServerPrepStmts=true (sentencias preparadas en el servidor)
+     * - -Ddb.admision.unaSentencia=true: allowMultiQueries=true (ver PacienteDAO.admitir)
+     * - -Ddb.stream.cursorFetch=true: useCursorFetch=true (cursor del servidor para las sentencias
+     *   con fetchSize positivo; el driver además prepara todas las sentencias en el servidor)
+     */
+    private static String urlConOpciones(String url) {
+        if (!url.startsWith("jdbc:mysql:")) {
+            return url;
+        }
+        if (Boolean.parseBoolean(System.getProperty("db.stmtCache.serverPrepare", "false"))) {
+            url = conOpcion(url, "useServerPrepStmts");
+        }
+        if (Boolean.getBoolean("db.admision.unaSentencia")) {
+            url = conOpcion(url, "allowMultiQueries");
+        }
+        if (Boolean.parseBoolean(System.getProperty("db.stream.cursorFetch", "false"))) {
+            url = conOpcion(url, "useCursorFetch");
+        }
+        return url;
+    }
+
+    private static String conOpcion(String url, String opcion) {
+        if (url.contains(opcion)) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + opcion + "=true";
+    }
+
+    private static int intProperty(String key, int defaultValue) {
+        return (int) longProperty(key, defaultValue);
+    }
+
+    private static long longProperty(String key, long defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Valor inválido para " + key + ": " + value);
+        }
+    }
 }
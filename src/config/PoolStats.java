@@ -0,0 +1,26 @@
+package config;
+
+/**
+ * Snapshot inmutable de las estadísticas de {@link ConnectionPool}.
+ *
+ * @param active          Conexiones prestadas en este momento
+ * @param idle            Conexiones ociosas listas para prestar
+ * @param waiting         Hilos bloqueados esperando una conexión
+ * @param total           Conexiones físicas abiertas
+ * @param borrowCount     Préstamos exitosos desde el inicio
+ * @param timeoutCount    Préstamos que fallaron por borrow timeout
+ * @param totalWaitMillis Tiempo total acumulado de espera en borrow()
+ * @param avgWaitMicros   Espera promedio por préstamo
+ * @param maxWaitMillis   Espera máxima observada
+ */
+public record PoolStats(int active, int idle, int waiting, int total,
+                        long borrowCount, long timeoutCount,
+                        long totalWaitMillis, long avgWaitMicros, long maxWaitMillis) {
+
+    @Override
+    public String toString() {
+        return "active=" + active + ", idle=" + idle + ", waiting=" + waiting + ", total=" + total
+                + ", borrows=" + borrowCount + ", timeouts=" + timeoutCount
+                + ", avgWait=" + avgWaitMicros + "us, maxWait=" + maxWaitMillis + "ms";
+    }
+}
@@ -0,0 +1,231 @@
+package config;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Reparte las lecturas entre réplicas de la base, cada una con su propio {@link ConnectionPool}.
+ *
+ * Funcionamiento:
+ * - borrow() elige una réplica sana por round-robin o la menos cargada (menos conexiones prestadas).
+ * - Si la réplica elegida falla al conectar o validar, se marca caída y se prueba la siguiente.
+ *   Si solo tiene el pool agotado, se prueba la siguiente sin cambiar su estado.
+ * - Si no queda ninguna réplica sana, borrow() retorna null y el caller usa el primario.
+ * - Un hilo daemon valida cada réplica cada healthCheckIntervalMs y reincorpora las que se recuperan.
+ *
+ * Las réplicas van atrasadas respecto del primario: una lectura puede no ver una escritura
+ * recién confirmada. Por eso DatabaseConnection manda al primario las lecturas hechas
+ * dentro de una unidad de trabajo de {@link TransactionManager}.
+ */
+public final class ReplicaRouter {
+
+    /**
+     * Criterio para elegir réplica.
+     */
+    public enum Selection {
+        ROUND_ROBIN, LEAST_LOADED
+    }
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Selection selection;
+    private final int validationTimeoutSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder fallbacks = new LongAdder();
+    private final ScheduledExecutorService healthCheck;
+
+    /**
+     * @param urls        URLs JDBC de las réplicas
+     * @param poolFactory Crea el pool de cada réplica a partir de su URL
+     */
+    public ReplicaRouter(List<String> urls, Function<String, ConnectionPool> poolFactory, Selection selection,
+                         long healthCheckIntervalMs, int validationTimeoutSeconds) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("Se necesita al menos una réplica.");
+        }
+        for (String url : urls) {
+            replicas.add(new Replica(url, poolFactory.apply(url)));
+        }
+        this.selection = selection;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+
+        this.healthCheck = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-replica-health");
+            t.setDaemon(true);
+            return t;
+        });
+        this.healthCheck.scheduleWithFixedDelay(this::checkHealth, healthCheckIntervalMs, healthCheckIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Obtiene una conexión de alguna réplica sana.
+     *
+     * @return Conexión de réplica, o null si no hay ninguna disponible (usar el primario)
+     */
+    public Connection borrow() {
+        List<Replica> probadas = new ArrayList<>(1);
+        for (int intento = 0; intento < replicas.size(); intento++) {
+            Replica replica = choose(probadas);
+            if (replica == null) {
+                break;
+            }
+            try {
+                Connection conn = replica.pool.borrow();
+                replica.reads.increment();
+                return conn;
+            } catch (SQLException e) {
+                if (!ConnectionPool.isBorrowTimeout(e)) {
+                    replica.markDown();
+                }
+                probadas.add(replica);
+            }
+        }
+        fallbacks.increment();
+        return null;
+    }
+
+    /**
+     * Conexiones que las réplicas sanas pueden entregar sin esperar, sumadas.
+     * -1 si no hay ninguna sana (las lecturas van al primario).
+     */
+    public int available() {
+        int total = -1;
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                total = Math.max(total, 0) + replica.pool.available();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Estado de cada réplica, en el orden de configuración.
+     */
+    public List<ReplicaStatus> status() {
+        List<ReplicaStatus> status = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            status.add(new ReplicaStatus(replica.url, replica.healthy, replica.reads.sum(),
+                    replica.failures.sum(), replica.pool.stats(), replica.lagSeconds));
+        }
+        return status;
+    }
+
+    /**
+     * Lecturas que fueron al primario porque no había réplicas disponibles.
+     */
+    public long fallbackCount() {
+        return fallbacks.sum();
+    }
+
+    public void shutdown() {
+        healthCheck.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.pool.shutdown();
+        }
+    }
+
+    /**
+     * Réplica sana según el criterio de selección, salvo las ya probadas en este borrow().
+     */
+    private Replica choose(List<Replica> excluded) {
+        if (selection == Selection.LEAST_LOADED) {
+            Replica best = null;
+            int bestActive = Integer.MAX_VALUE;
+            for (Replica replica : replicas) {
+                if (!replica.healthy || excluded.contains(replica)) {
+                    continue;
+                }
+                int active = replica.pool.stats().active();
+                if (active < bestActive) {
+                    best = replica;
+                    bestActive = active;
+                }
+            }
+            return best;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.healthy && !excluded.contains(replica)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean valid;
+            try (Connection conn = replica.pool.borrow()) {
+                valid = conn.isValid(validationTimeoutSeconds);
+                replica.lagSeconds = valid ? measureLag(conn) : -1L;
+            } catch (SQLException e) {
+                if (ConnectionPool.isBorrowTimeout(e)) {
+                    // Pool ocupado: la réplica está atendiendo, se revisa en la próxima pasada
+                    continue;
+                }
+                valid = false;
+            } catch (RuntimeException e) {
+                valid = false;
+            }
+            if (valid) {
+                replica.healthy = true;
+            } else {
+                replica.markDown();
+            }
+        }
+    }
+
+    /**
+     * Atraso informado por la réplica, o -1 si no se puede saber. Se prueba la sintaxis de
+     * MySQL 8.0.22+ y luego la anterior.
+     */
+    private static long measureLag(Connection conn) {
+        String[][] queries = {
+                {"SHOW REPLICA STATUS", "Seconds_Behind_Source"},
+                {"SHOW SLAVE STATUS", "Seconds_Behind_Master"}
+        };
+        for (String[] query : queries) {
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery(query[0])) {
+                if (!rs.next()) {
+                    return -1L;
+                }
+                long lag = rs.getLong(query[1]);
+                return rs.wasNull() ? -1L : lag;
+            } catch (SQLException e) {
+                // Sintaxis no soportada o sin permiso REPLICATION CLIENT: se prueba la siguiente
+            }
+        }
+        return -1L;
+    }
+
+    private static final class Replica {
+        private final String url;
+        private final ConnectionPool pool;
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private volatile boolean healthy = true;
+        private volatile long lagSeconds = -1L;
+
+        private Replica(String url, ConnectionPool pool) {
+            this.url = url;
+            this.pool = pool;
+        }
+
+        private void markDown() {
+            healthy = false;
+            failures.increment();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package config;
+
+/**
+ * Snapshot del estado de una réplica de {@link ReplicaRouter}.
+ *
+ * @param url      URL JDBC de la réplica
+ * @param healthy  false si falló la última validación o el último préstamo
+ * @param reads    Conexiones de lectura entregadas por esta réplica
+ * @param failures Veces que se marcó caída
+ * @param pool     Estadísticas de su pool de conexiones
+ * @param lagSeconds Atraso respecto del primario en la última validación (Seconds_Behind_Source),
+ *                 o -1 si no se pudo medir (sin permiso, replicación detenida o no es MySQL)
+ */
+public record ReplicaStatus(String url, boolean healthy, long reads, long failures, PoolStats pool,
+                            long lagSeconds) {
+}
@@ -0,0 +1,130 @@
+package config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mapa de particiones (shards): una base por partición, cada una con su {@link ConnectionPool}.
+ *
+ * Funcionamiento:
+ * - Un paciente vive en la partición que indica el hash consistente de su DNI: un anillo con
+ *   virtualNodes puntos por partición, así agregar una partición solo mueve ~1/N de los DNI.
+ * - Su historia clínica se guarda en la misma partición, por eso las operaciones de un
+ *   paciente siguen siendo locales (y atómicas) a una base.
+ * - Los IDs son únicos entre particiones: los de la partición k empiezan en firstId(k) =
+ *   k * 2^40 + 1, de modo que shardOfId() obtiene la partición de cualquier ID sin consultar.
+ *   Los asigna dao.RangoIds desde la tabla secuencia_id de cada partición; las cargas por SQL
+ *   en una partición distinta de la 0 deben usar IDs de su rango.
+ *   El orden de las particiones en la configuración no debe cambiar.
+ */
+public final class ShardRouter {
+
+    /** Bits bajos del ID que numeran las filas dentro de una partición. */
+    static final int ID_BITS = 40;
+
+    private final List<ConnectionPool> pools;
+    private final long[] ringHashes;
+    private final int[] ringShards;
+
+    /**
+     * @param pools        Pool de cada partición; la posición en la lista es el número de partición
+     * @param virtualNodes Puntos del anillo por partición
+     */
+    public ShardRouter(List<ConnectionPool> pools, int virtualNodes) {
+        if (pools.isEmpty() || pools.size() > (1 << (Long.SIZE - 1 - ID_BITS))) {
+            throw new IllegalArgumentException("Cantidad de particiones inválida: " + pools.size());
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes debe ser al menos 1: " + virtualNodes);
+        }
+        this.pools = new ArrayList<>(pools);
+
+        int points = pools.size() * virtualNodes;
+        long[] hashes = new long[points];
+        int[] shards = new int[points];
+        int n = 0;
+        for (int shard = 0; shard < pools.size(); shard++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                hashes[n] = hash("shard-" + shard + "#" + v);
+                shards[n] = shard;
+                n++;
+            }
+        }
+        // Ordena los puntos del anillo por hash (y sus particiones con ellos)
+        Integer[] order = new Integer[points];
+        for (int i = 0; i < points; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        this.ringHashes = new long[points];
+        this.ringShards = new int[points];
+        for (int i = 0; i < points; i++) {
+            ringHashes[i] = hashes[order[i]];
+            ringShards[i] = shards[order[i]];
+        }
+    }
+
+    public int shardCount() {
+        return pools.size();
+    }
+
+    /**
+     * Partición del paciente con ese DNI: el primer punto del anillo con hash >= hash(dni).
+     */
+    public int shardOf(String dni) {
+        if (dni == null) {
+            throw new IllegalArgumentException("El DNI es la clave de partición y no puede ser null.");
+        }
+        int i = Arrays.binarySearch(ringHashes, hash(dni));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return ringShards[i == ringHashes.length ? 0 : i];
+    }
+
+    /**
+     * Partición a la que pertenece un ID generado por cualquiera de las tablas particionadas.
+     */
+    public static int shardOfId(long id) {
+        return (int) (id >>> ID_BITS);
+    }
+
+    /**
+     * Primer ID que genera la partición.
+     */
+    public static long firstId(int shard) {
+        return ((long) shard << ID_BITS) + 1;
+    }
+
+    ConnectionPool pool(int shard) {
+        if (shard < 0 || shard >= pools.size()) {
+            throw new IllegalArgumentException("Partición inexistente: " + shard);
+        }
+        return pools.get(shard);
+    }
+
+    public void shutdown() {
+        for (ConnectionPool pool : pools) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * FNV-1a de 64 bits con el finalizador de MurmurHash3, para repartir bien DNIs consecutivos.
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe1a85ec5L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,274 @@
+package config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+
+/**
+ * Conexión lógica sobre todas las particiones de {@link ShardRouter}.
+ *
+ * - Es lo que entrega DatabaseConnection.getConnection() con particiones: los DAOs obtienen
+ *   la conexión de la partición que les corresponde con DatabaseConnection.enShard().
+ * - Las conexiones de cada partición se piden al pool recién cuando se usan y heredan el
+ *   estado de la lógica (autocommit, read-only, aislamiento).
+ * - commit(), rollback(), savepoints y close() se aplican a todas las particiones usadas.
+ *   No hay commit en dos fases: si falla el commit de una partición, las anteriores ya
+ *   quedaron confirmadas. Como un paciente y su historia viven en la misma partición, las
+ *   unidades de trabajo sobre un solo paciente no tienen ese problema.
+ * - No prepara sentencias: sin partición elegida no hay a qué base enviarlas.
+ */
+final class ShardedConnection implements InvocationHandler, TransactionSynchronization.Registry {
+
+    /**
+     * Entrega la conexión física (prestada) de una partición.
+     */
+    @FunctionalInterface
+    interface Opener {
+        Connection open(int shard) throws SQLException;
+    }
+
+    private final ShardRouter router;
+    private final Opener opener;
+    private final Connection[] shards;
+    private boolean closed;
+    private boolean autoCommit = true;
+    private boolean readOnly;
+    private Integer isolation;
+    private final AccionesPendientes acciones = new AccionesPendientes();
+
+    private ShardedConnection(ShardRouter router, Opener opener) {
+        this.router = router;
+        this.opener = opener;
+        this.shards = new Connection[router.shardCount()];
+    }
+
+    static Connection create(ShardRouter router, Opener opener) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ShardedConnection(router, opener));
+    }
+
+    /**
+     * Conexión de la partición, abriéndola si todavía no se usó en esta conexión lógica.
+     */
+    Connection shard(int shard) throws SQLException {
+        if (closed) {
+            throw new SQLException("La conexión ya fue cerrada.");
+        }
+        Connection conn = shards[shard];
+        if (conn == null) {
+            conn = opener.open(shard);
+            try {
+                if (!autoCommit) {
+                    conn.setAutoCommit(false);
+                }
+                if (readOnly) {
+                    conn.setReadOnly(true);
+                }
+                if (isolation != null) {
+                    conn.setTransactionIsolation(isolation);
+                }
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+            shards[shard] = conn;
+        }
+        return conn;
+    }
+
+    @Override
+    public void afterCommit(Runnable action) {
+        acciones.afterCommit(action);
+    }
+
+    @Override
+    public void afterRollback(Runnable action) {
+        acciones.afterRollback(action);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "close":
+                if (!closed) {
+                    closed = true;
+                    acciones.rollback();
+                    forEachShard(Connection::close);
+                }
+                return null;
+            case "isClosed":
+                return closed;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "ShardedConnection[" + router.shardCount() + " particiones]";
+            case "isWrapperFor":
+                return args[0] == ShardedConnection.class || args[0] == TransactionSynchronization.Registry.class;
+            case "unwrap":
+                if (args[0] == ShardedConnection.class || args[0] == TransactionSynchronization.Registry.class) {
+                    return this;
+                }
+                throw new SQLException("No se puede obtener " + args[0] + " de una conexión particionada.");
+            default:
+                break;
+        }
+        if (closed) {
+            throw new SQLException("La conexión ya fue cerrada.");
+        }
+
+        switch (name) {
+            case "getAutoCommit":
+                return autoCommit;
+            case "setAutoCommit":
+                boolean commits = !autoCommit && (Boolean) args[0];
+                autoCommit = (Boolean) args[0];
+                forEachShard(c -> c.setAutoCommit(autoCommit));
+                if (commits) {
+                    acciones.commit();
+                }
+                return null;
+            case "commit":
+                forEachShard(Connection::commit);
+                acciones.commit();
+                return null;
+            case "rollback":
+                if (args == null) {
+                    acciones.rollback();
+                    forEachShard(Connection::rollback);
+                } else {
+                    rollback((ShardedSavepoint) args[0]);
+                }
+                return null;
+            case "setSavepoint":
+                return setSavepoint();
+            case "releaseSavepoint":
+                releaseSavepoint((ShardedSavepoint) args[0]);
+                return null;
+            case "isReadOnly":
+                return readOnly;
+            case "setReadOnly":
+                readOnly = (Boolean) args[0];
+                forEachShard(c -> c.setReadOnly(readOnly));
+                return null;
+            case "getTransactionIsolation":
+                return isolation != null ? isolation : Connection.TRANSACTION_REPEATABLE_READ;
+            case "setTransactionIsolation":
+                isolation = (Integer) args[0];
+                forEachShard(c -> c.setTransactionIsolation(isolation));
+                return null;
+            case "isValid":
+                for (Connection c : shards) {
+                    if (c != null && !c.isValid((Integer) args[0])) {
+                        return false;
+                    }
+                }
+                return true;
+            case "getWarnings":
+                return null;
+            case "clearWarnings":
+                return null;
+            default:
+                throw new SQLFeatureNotSupportedException("Conexión particionada: " + name
+                        + " debe usarse sobre la conexión de una partición (DatabaseConnection.enShard).");
+        }
+    }
+
+    private Savepoint setSavepoint() throws SQLException {
+        Savepoint[] parts = new Savepoint[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i] != null) {
+                parts[i] = shards[i].setSavepoint();
+            }
+        }
+        ShardedSavepoint savepoint = new ShardedSavepoint(parts);
+        acciones.savepoint(savepoint);
+        return savepoint;
+    }
+
+    /**
+     * Las particiones abiertas después del savepoint no tienen uno propio:
+     * todo su trabajo es posterior, así que se deshacen completas.
+     */
+    private void rollback(ShardedSavepoint savepoint) throws SQLException {
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i] == null) {
+                continue;
+            }
+            if (savepoint.parts[i] != null) {
+                shards[i].rollback(savepoint.parts[i]);
+            } else {
+                shards[i].rollback();
+            }
+        }
+        acciones.rollback(savepoint);
+    }
+
+    private void releaseSavepoint(ShardedSavepoint savepoint) throws SQLException {
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i] != null && savepoint.parts[i] != null) {
+                shards[i].releaseSavepoint(savepoint.parts[i]);
+            }
+        }
+        acciones.releaseSavepoint(savepoint);
+    }
+
+    @FunctionalInterface
+    private interface ShardAction {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Aplica la acción a cada partición abierta; el primer error se relanza al final,
+     * con los siguientes como suprimidos.
+     */
+    private void forEachShard(ShardAction action) throws SQLException {
+        SQLException error = null;
+        for (Connection c : shards) {
+            if (c == null) {
+                continue;
+            }
+            try {
+                action.apply(c);
+            } catch (SQLException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Savepoint compuesto: uno por cada partición abierta al momento de crearlo.
+     */
+    private static final class ShardedSavepoint implements Savepoint {
+        private final Savepoint[] parts;
+
+        private ShardedSavepoint(Savepoint[] parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        public int getSavepointId() throws SQLException {
+            throw new SQLException("Savepoint compuesto sin ID.");
+        }
+
+        @Override
+        public String getSavepointName() throws SQLException {
+            throw new SQLException("Savepoint compuesto sin nombre.");
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché LRU de PreparedStatement de una conexión física del pool.
+ *
+ * - Se usa desde el LeaseHandler de {@link ConnectionPool}: solo el hilo que tiene la conexión
+ *   prestada la toca, por eso no necesita sincronización propia.
+ * - La clave es el SQL más el modo (claves generadas, tipo y concurrencia del ResultSet).
+ * - prepareStatement() entrega una sentencia cacheada (o una nueva) envuelta en un proxy;
+ *   close() limpia los parámetros y la devuelve a la caché en lugar de cerrarla.
+ * - Si el caller cambia la configuración de la sentencia (maxRows, queryTimeout, ...) se cierra
+ *   de verdad al devolverla; el fetchSize se restaura, ya que CursorStream lo ajusta siempre.
+ * - Las sentencias que siguen abiertas cuando se devuelve la conexión se cierran físicamente.
+ */
+final class StatementCache {
+
+    /** Setters que dejan la sentencia con una configuración distinta a la de una recién preparada. */
+    private static final List<String> CONFIGURACION = List.of("setMaxRows", "setLargeMaxRows", "setQueryTimeout",
+            "setFetchDirection", "setMaxFieldSize", "setPoolable", "setEscapeProcessing", "setCursorName",
+            "closeOnCompletion");
+
+    /**
+     * Contadores compartidos por las cachés de todas las conexiones del pool.
+     */
+    static final class Contadores {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder expulsiones = new LongAdder();
+        private final AtomicInteger tamanio = new AtomicInteger();
+
+        StatementCacheStats snapshot() {
+            return new StatementCacheStats(hits.sum(), misses.sum(), expulsiones.sum(), tamanio.get());
+        }
+    }
+
+    private record Clave(String sql, int clavesGeneradas, int tipo, int concurrencia) {
+    }
+
+    private final int maxSentencias;
+    private final Contadores contadores;
+    /** Sentencias ociosas, en orden de uso (LRU). */
+    private final LinkedHashMap<Clave, PreparedStatement> ociosas = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(int maxSentencias, Contadores contadores) {
+        this.maxSentencias = maxSentencias;
+        this.contadores = contadores;
+    }
+
+    /**
+     * Prepara la sentencia pedida con method/args, reutilizando una cacheada si la hay.
+     *
+     * @param lease   Conexión prestada (la que ve el caller en getConnection())
+     * @param abiertas Sentencias entregadas durante este préstamo; se cierran al devolver la conexión
+     * @return La sentencia, o null si esa variante de prepareStatement no se cachea
+     */
+    PreparedStatement preparar(Connection physical, Connection lease, Method method, Object[] args,
+                               List<Sentencia> abiertas) throws Throwable {
+        Clave clave = clave(method, args);
+        if (clave == null) {
+            return null;
+        }
+        PreparedStatement ps = ociosas.remove(clave);
+        if (ps != null) {
+            contadores.tamanio.decrementAndGet();
+            if (ps.isClosed()) {
+                ps = null;
+            }
+        }
+        if (ps != null) {
+            contadores.hits.increment();
+        } else {
+            contadores.misses.increment();
+            try {
+                ps = (PreparedStatement) method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+        Sentencia sentencia = new Sentencia(clave, ps, lease, abiertas);
+        abiertas.add(sentencia);
+        return sentencia.proxy;
+    }
+
+    /**
+     * Cierra todas las sentencias ociosas (la conexión física se va a cerrar).
+     */
+    void descartar() {
+        contadores.tamanio.addAndGet(-ociosas.size());
+        for (PreparedStatement ps : ociosas.values()) {
+            cerrar(ps);
+        }
+        ociosas.clear();
+    }
+
+    /**
+     * Solo se cachean prepareStatement(sql), (sql, autoGeneratedKeys) y (sql, tipo, concurrencia).
+     */
+    private static Clave clave(Method method, Object[] args) {
+        Class<?>[] tipos = method.getParameterTypes();
+        if (tipos.length == 1) {
+            return new Clave((String) args[0], Statement.NO_GENERATED_KEYS,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        }
+        if (tipos.length == 2 && tipos[1] == int.class) {
+            return new Clave((String) args[0], (Integer) args[1],
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        }
+        if (tipos.length == 3) {
+            return new Clave((String) args[0], Statement.NO_GENERATED_KEYS, (Integer) args[1], (Integer) args[2]);
+        }
+        return null;
+    }
+
+    private void devolver(Clave clave, PreparedStatement ps, boolean reutilizable, int fetchSizeInicial) {
+        if (!reutilizable || maxSentencias < 1) {
+            cerrar(ps);
+            return;
+        }
+        try {
+            ps.clearParameters();
+            // Un lote que quedó sin ejecutar (el binder falló a mitad) no debe llegar al próximo uso
+            ps.clearBatch();
+            if (ps.getFetchSize() != fetchSizeInicial) {
+                ps.setFetchSize(fetchSizeInicial);
+            }
+        } catch (SQLException e) {
+            cerrar(ps);
+            return;
+        }
+        PreparedStatement anterior = ociosas.put(clave, ps);
+        if (anterior != null) {
+            // La misma sentencia se preparó dos veces en el préstamo: queda una sola
+            cerrar(anterior);
+        } else {
+            contadores.tamanio.incrementAndGet();
+        }
+        Iterator<Map.Entry<Clave, PreparedStatement>> it = ociosas.entrySet().iterator();
+        while (ociosas.size() > maxSentencias && it.hasNext()) {
+            PreparedStatement expulsada = it.next().getValue();
+            it.remove();
+            cerrar(expulsada);
+            contadores.tamanio.decrementAndGet();
+            contadores.expulsiones.increment();
+        }
+    }
+
+    private static void cerrar(Statement st) {
+        try {
+            st.close();
+        } catch (SQLException ignored) {
+            // La sentencia se descarta de todas formas
+        }
+    }
+
+    /**
+     * Sentencia entregada al caller. close() la devuelve a la caché una sola vez.
+     */
+    final class Sentencia implements InvocationHandler {
+        private final Clave clave;
+        private final PreparedStatement ps;
+        private final Connection lease;
+        private final List<Sentencia> abiertas;
+        private final PreparedStatement proxy;
+        private final int fetchSizeInicial;
+        private boolean cerrada;
+        private boolean reutilizable = true;
+
+        private Sentencia(Clave clave, PreparedStatement ps, Connection lease, List<Sentencia> abiertas)
+                throws SQLException {
+            this.clave = clave;
+            this.ps = ps;
+            this.lease = lease;
+            this.abiertas = abiertas;
+            this.fetchSizeInicial = ps.getFetchSize();
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!cerrada) {
+                        cerrada = true;
+                        abiertas.remove(this);
+                        devolver(clave, ps, reutilizable, fetchSizeInicial);
+                    }
+                    return null;
+                case "isClosed":
+                    return cerrada || ps.isClosed();
+                case "getConnection":
+                    return lease;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + clave.sql() + "]";
+                default:
+                    break;
+            }
+            if (cerrada) {
+                throw new SQLException("La sentencia ya fue cerrada.");
+            }
+            if (CONFIGURACION.contains(name)) {
+                reutilizable = false;
+            }
+            try {
+                return method.invoke(ps, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Cierra la sentencia física: la conexión se devolvió con la sentencia todavía abierta.
+         */
+        void cerrarFisica() {
+            cerrada = true;
+            cerrar(ps);
+        }
+    }
+}
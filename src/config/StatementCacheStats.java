@@ -0,0 +1,18 @@
+package config;
+
+/**
+ * Snapshot de los contadores de la caché de sentencias preparadas del pool,
+ * sumando las cachés de todas las conexiones.
+ *
+ * @param hits        prepareStatement() resueltos con una sentencia ya preparada
+ * @param misses      prepareStatement() que prepararon una sentencia nueva
+ * @param expulsiones Sentencias cerradas por superar db.stmtCache.size en su conexión
+ * @param tamanio     Sentencias ociosas cacheadas en este momento
+ */
+public record StatementCacheStats(long hits, long misses, long expulsiones, int tamanio) {
+
+    public double hitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
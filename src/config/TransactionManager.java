@@ -1,5 +1,309 @@
 package config;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.Savepoint;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Administra unidades de trabajo transaccionales sobre una única conexión.
+ *
+ * Funcionamiento:
+ * - ejecutar() toma una conexión del pool, desactiva autocommit y la asocia al hilo actual.
+ * - Si ya hay una unidad de trabajo activa en el hilo, la llamada anidada reutiliza la
+ *   misma conexión y se aísla con un SAVEPOINT: si falla, solo se deshace su parte.
+ * - Los deadlocks y lock wait timeouts se reintentan en la unidad externa con backoff
+ *   exponencial; por eso el trabajo debe poder ejecutarse más de una vez.
+ * - Los DAOs pueden diferir sus UPDATE con {@link #diferirActualizacion}: varias llamadas
+ *   a actualizar() sobre la misma instancia de entidad se combinan en un único UPDATE antes
+ *   del commit. Se agrupa por instancia (no por ID) para no perder cambios de otra copia.
+ *   Antes de una escritura inmediata sobre la misma fila (por ejemplo, una baja) el DAO
+ *   aplica la diferida con {@link #aplicarDiferidas}, para respetar el orden de las llamadas.
+ *
+ * Configuración (system properties):
+ * - -Ddb.tx.maxIntentos (default 3)
+ * - -Ddb.tx.backoffMs (default 50): espera base antes del primer reintento
+ * - -Ddb.tx.coalescer (default true)
+ *
+ * Uso:
+ * <pre>
+ * TransactionManager tx = new TransactionManager();
+ * tx.ejecutar(conn -> {
+ *     pacienteDao.actualizar(paciente, conn);
+ *     historiaClinicaDao.actualizar(hc, conn);
+ *     return null;
+ * });
+ * </pre>
+ */
 public class TransactionManager {
-    
+
+    /** Código de error MySQL para deadlock. */
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    /** Código de error MySQL para lock wait timeout. */
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+
+    /**
+     * Trabajo a ejecutar dentro de la transacción.
+     */
+    @FunctionalInterface
+    public interface UnidadDeTrabajo<R> {
+        R ejecutar(Connection conn) throws Exception;
+    }
+
+    /**
+     * Escritura diferida hasta el commit.
+     */
+    @FunctionalInterface
+    public interface Escritura {
+        void ejecutar() throws Exception;
+    }
+
+    private static final ThreadLocal<Ambito> ACTUAL = new ThreadLocal<>();
+
+    private final int maxIntentos;
+    private final long backoffBaseMs;
+    private final boolean coalescer;
+
+    public TransactionManager() {
+        this(Integer.getInteger("db.tx.maxIntentos", 3),
+                Long.getLong("db.tx.backoffMs", 50L),
+                Boolean.parseBoolean(System.getProperty("db.tx.coalescer", "true")));
+    }
+
+    public TransactionManager(int maxIntentos, long backoffBaseMs, boolean coalescer) {
+        if (maxIntentos < 1) {
+            throw new IllegalArgumentException("maxIntentos debe ser al menos 1: " + maxIntentos);
+        }
+        this.maxIntentos = maxIntentos;
+        this.backoffBaseMs = backoffBaseMs;
+        this.coalescer = coalescer;
+    }
+
+    /**
+     * Ejecuta el trabajo en una transacción (o en un savepoint si ya hay una activa en el hilo).
+     *
+     * @param trabajo Trabajo a ejecutar con la conexión de la unidad de trabajo
+     * @return El resultado del trabajo
+     * @throws Exception La excepción del trabajo, luego de deshacer sus cambios
+     */
+    public <R> R ejecutar(UnidadDeTrabajo<R> trabajo) throws Exception {
+        Ambito padre = ACTUAL.get();
+        if (padre != null) {
+            return ejecutarAnidado(padre, trabajo);
+        }
+
+        for (int intento = 1; ; intento++) {
+            try {
+                return ejecutarExterno(trabajo);
+            } catch (Exception e) {
+                if (intento >= maxIntentos || !esReintentable(e)) {
+                    throw e;
+                }
+                esperar(intento);
+            }
+        }
+    }
+
+    /**
+     * Conexión de la unidad de trabajo activa en el hilo actual, o null si no hay ninguna.
+     */
+    public static Connection conexionActual() {
+        Ambito ambito = ACTUAL.get();
+        return ambito != null ? ambito.conn : null;
+    }
+
+    /**
+     * Difiere una escritura hasta el commit de la unidad de trabajo, reemplazando cualquier
+     * escritura anterior registrada para la misma entidad.
+     *
+     * @param conn Conexión recibida por el DAO
+     * @param entidad Entidad a actualizar; se compara por identidad
+     * @param escritura UPDATE a ejecutar antes del commit
+     * @return true si quedó diferida; false si conn no pertenece a una unidad de trabajo
+     *         con coalescing activo, en cuyo caso el DAO debe ejecutarla en el momento
+     */
+    public static boolean diferirActualizacion(Connection conn, Object entidad, Escritura escritura) {
+        Ambito ambito = ACTUAL.get();
+        if (ambito == null || ambito.conn != conn || !ambito.coalescer) {
+            return false;
+        }
+        ambito.diferidas.remove(entidad);
+        ambito.diferidas.put(entidad, escritura);
+        return true;
+    }
+
+    /**
+     * Ejecuta en el momento, en el orden en que se registraron, las escrituras diferidas de las
+     * entidades indicadas, incluidas las de ámbitos externos al actual.
+     *
+     * @param conn Conexión recibida por el DAO
+     * @param entidades Entidades cuya escritura debe aplicarse ya
+     * @return Las entidades cuya escritura se ejecutó; vacía si no había ninguna o conn no
+     *         pertenece a la unidad de trabajo activa
+     */
+    public static List<Object> aplicarDiferidas(Connection conn, Predicate<Object> entidades) throws Exception {
+        Ambito actual = ACTUAL.get();
+        if (actual == null || actual.conn != conn) {
+            return List.of();
+        }
+        Deque<Ambito> ambitos = new ArrayDeque<>();
+        for (Ambito a = actual; a != null; a = a.padre) {
+            ambitos.addFirst(a);
+        }
+        Map<Object, Escritura> pendientes = new LinkedHashMap<>();
+        for (Ambito a : ambitos) {
+            Iterator<Map.Entry<Object, Escritura>> it = a.diferidas.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Object, Escritura> e = it.next();
+                if (entidades.test(e.getKey())) {
+                    it.remove();
+                    pendientes.remove(e.getKey());
+                    pendientes.put(e.getKey(), e.getValue());
+                    if (a != actual) {
+                        // Si el ámbito actual se deshace, la escritura vuelve a quedar pendiente
+                        actual.tomadas.put(e.getKey(), e.getValue());
+                    }
+                }
+            }
+        }
+        List<Object> aplicadas = new ArrayList<>(pendientes.size());
+        for (Map.Entry<Object, Escritura> e : pendientes.entrySet()) {
+            e.getValue().ejecutar();
+            aplicadas.add(e.getKey());
+        }
+        return aplicadas;
+    }
+
+    private <R> R ejecutarExterno(UnidadDeTrabajo<R> trabajo) throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            Ambito ambito = new Ambito(conn, coalescer, null);
+            ACTUAL.set(ambito);
+            Exception error = null;
+            try {
+                R resultado = trabajo.ejecutar(conn);
+                ambito.aplicarDiferidas();
+                conn.commit();
+                return resultado;
+            } catch (Exception e) {
+                error = e;
+                rollback(conn, e);
+                throw e;
+            } finally {
+                ACTUAL.remove();
+                restaurarAutoCommit(conn, error);
+            }
+        }
+    }
+
+    private <R> R ejecutarAnidado(Ambito padre, UnidadDeTrabajo<R> trabajo) throws Exception {
+        Savepoint savepoint = padre.conn.setSavepoint();
+        Ambito ambito = new Ambito(padre.conn, padre.coalescer, padre);
+        ACTUAL.set(ambito);
+        try {
+            R resultado = trabajo.ejecutar(padre.conn);
+            padre.conn.releaseSavepoint(savepoint);
+            // Las escrituras diferidas del ámbito anidado pasan al padre
+            for (Map.Entry<Object, Escritura> e : ambito.diferidas.entrySet()) {
+                padre.diferidas.remove(e.getKey());
+                padre.diferidas.put(e.getKey(), e.getValue());
+            }
+            return resultado;
+        } catch (Exception e) {
+            try {
+                padre.conn.rollback(savepoint);
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            for (Map.Entry<Object, Escritura> tomada : ambito.tomadas.entrySet()) {
+                padre.diferidas.putIfAbsent(tomada.getKey(), tomada.getValue());
+            }
+            throw e;
+        } finally {
+            ACTUAL.set(padre);
+        }
+    }
+
+    /**
+     * Un error al volver a autocommit no debe ocultar el del trabajo: si hubo uno, queda como
+     * suprimido. Si el trabajo terminó bien, se propaga.
+     */
+    private static void restaurarAutoCommit(Connection conn, Exception causa) throws SQLException {
+        try {
+            conn.setAutoCommit(true);
+        } catch (SQLException e) {
+            if (causa == null) {
+                throw e;
+            }
+            causa.addSuppressed(e);
+        }
+    }
+
+    private static void rollback(Connection conn, Exception causa) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            causa.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Deadlocks y lock wait timeouts: la transacción se puede reintentar completa.
+     */
+    private static boolean esReintentable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransactionRollbackException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                SQLException sql = (SQLException) t;
+                if ("40001".equals(sql.getSQLState())
+                        || sql.getErrorCode() == ER_LOCK_DEADLOCK
+                        || sql.getErrorCode() == ER_LOCK_WAIT_TIMEOUT) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void esperar(int intento) throws InterruptedException {
+        long maximo = backoffBaseMs << Math.min(intento - 1, 10);
+        // Jitter completo para que las transacciones en conflicto no reintenten juntas
+        Thread.sleep(ThreadLocalRandom.current().nextLong(maximo / 2, maximo + 1));
+    }
+
+    /**
+     * Estado de una unidad de trabajo (o de un ámbito anidado) en el hilo actual.
+     */
+    private static final class Ambito {
+        private final Connection conn;
+        private final boolean coalescer;
+        private final Ambito padre;
+        private final Map<Object, Escritura> diferidas = new LinkedHashMap<>();
+        /** Escrituras de ámbitos externos aplicadas desde este; se devuelven si se deshace. */
+        private final Map<Object, Escritura> tomadas = new LinkedHashMap<>();
+
+        private Ambito(Connection conn, boolean coalescer, Ambito padre) {
+            this.conn = conn;
+            this.coalescer = coalescer;
+            this.padre = padre;
+        }
+
+        private void aplicarDiferidas() throws Exception {
+            for (Escritura escritura : diferidas.values()) {
+                escritura.ejecutar();
+            }
+            diferidas.clear();
+        }
+    }
 }
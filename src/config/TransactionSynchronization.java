@@ -0,0 +1,66 @@
+package config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Permite postergar acciones (por ejemplo, invalidar una caché) hasta que la
+ * transacción de una conexión se confirme.
+ *
+ * - Si la conexión está en autocommit, la acción se ejecuta en el momento.
+ * - Si es una conexión del pool con una transacción abierta, se ejecuta tras commit()
+ *   y se descarta si se hace rollback(), o rollback(savepoint) de un savepoint anterior
+ *   a su registro (por ejemplo, una unidad de trabajo anidada que falla).
+ * - Con conexiones externas al pool no hay forma de observar el commit, así que
+ *   la acción también se ejecuta en el momento.
+ */
+public final class TransactionSynchronization {
+
+    /**
+     * Implementado por las conexiones que pueden avisar del commit.
+     * Se obtiene con conn.unwrap(Registry.class).
+     */
+    interface Registry {
+        void afterCommit(Runnable action);
+
+        void afterRollback(Runnable action);
+    }
+
+    private TransactionSynchronization() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada.");
+    }
+
+    /**
+     * Ejecuta la acción cuando la transacción actual de conn se confirme.
+     *
+     * @param conn Conexión sobre la que se hizo la escritura
+     * @param action Acción a ejecutar tras el commit
+     * @throws SQLException Si no se puede consultar el estado de la conexión
+     */
+    public static void afterCommit(Connection conn, Runnable action) throws SQLException {
+        if (!conn.getAutoCommit() && conn.isWrapperFor(Registry.class)) {
+            conn.unwrap(Registry.class).afterCommit(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Ejecuta la acción si la transacción actual de conn se deshace, por completo o hasta un
+     * savepoint anterior a su registro; se descarta con el commit. Sirve para devolver al estado
+     * previo lo que se cambió en memoria junto con la escritura. Las acciones se ejecutan desde
+     * la más reciente.
+     *
+     * En autocommit la escritura ya quedó confirmada, y con conexiones externas al pool no se
+     * puede observar el rollback: en ambos casos la acción se descarta.
+     *
+     * @param conn Conexión sobre la que se hizo la escritura
+     * @param action Acción a ejecutar tras el rollback
+     * @throws SQLException Si no se puede consultar el estado de la conexión
+     */
+    public static void afterRollback(Connection conn, Runnable action) throws SQLException {
+        if (!conn.getAutoCommit() && conn.isWrapperFor(Registry.class)) {
+            conn.unwrap(Registry.class).afterRollback(action);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package dao;
+
+import config.DatabaseConnection;
+import config.ReplicaStatus;
+import config.TransactionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mueve a paciente_archivo e historia_clinica_archivo las filas eliminadas (baja lógica) hace
+ * más de db.archivo.retencionDias, para que las tablas de trabajo y sus índices solo tengan
+ * lo que la aplicación consulta. Pensado para correr en segundo plano, por ejemplo una vez
+ * por noche, con la aplicación en uso.
+ *
+ * Funcionamiento, en cada partición:
+ * - Primera etapa: pacientes eliminados, junto con su historia clínica (eliminada o no).
+ *   Segunda etapa: historias eliminadas de pacientes que siguen activos. En el archivo la
+ *   historia conserva su paciente_id, así la relación 1→1 se puede reconstruir.
+ * - La antigüedad de la baja se toma de actualizado_en: una fila eliminada no vuelve a
+ *   modificarse, así que es el momento de la baja.
+ * - Cada lote es una transacción corta: bloquea hasta db.archivo.filasPorLote filas en orden
+ *   de ID con SELECT ... FOR UPDATE, las copia con INSERT ... SELECT, las borra y guarda el
+ *   último ID en archivado_progreso. Las sentencias filtran por el rango de IDs del lote y no
+ *   por una lista, así su forma no cambia entre lotes. Un deadlock reintenta el lote entero.
+ * - El bloqueo recorre el índice (eliminado, id) (ver migracion_003_archivo.sql): solo toca
+ *   filas eliminadas, y los bloqueos de hueco de REPEATABLE READ quedan entre ellas y al final
+ *   de la parte eliminada del índice. Las altas y las ediciones de filas activas no esperan;
+ *   una baja con ID dentro del lote en curso espera a su commit.
+ * - Si el proceso se corta, la próxima llamada continúa desde archivado_progreso. Al terminar
+ *   una etapa el progreso vuelve a cero y la pasada siguiente recorre la tabla desde el principio.
+ *
+ * Freno: entre lotes se espera db.archivo.pausaMs, y si alguna réplica va más de
+ * db.archivo.maxLagSeg atrasada (ver ReplicaStatus.lagSeconds) se espera a que se ponga al
+ * día: los DELETE masivos son lo que más atrasa la replicación. Sin réplicas o sin permiso
+ * para medir el atraso, solo rige la pausa.
+ *
+ * Las filas archivadas se leen con PacienteDAO.leerIncluyendoArchivados y
+ * buscarPorDniIncluyendoArchivados. La instantánea de analítica no ve las filas que se van de
+ * la tabla en un refresco incremental: sigue contándolas como eliminadas hasta recargar().
+ *
+ * Configuración (system properties):
+ * - -Ddb.archivo.retencionDias (default 365)
+ * - -Ddb.archivo.filasPorLote (default 500)
+ * - -Ddb.archivo.pausaMs (default 100)
+ * - -Ddb.archivo.maxLagSeg (default 10)
+ */
+public class ArchivadorEliminados {
+
+    private static final Logger LOG = Logger.getLogger(ArchivadorEliminados.class.getName());
+
+    private static final String COLUMNAS_PACIENTE =
+            "id, eliminado, nombre, apellido, dni, fecha_nacimiento, actualizado_en, version";
+    private static final String COLUMNAS_HISTORIA =
+            "id, eliminado, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones,"
+            + " paciente_id, actualizado_en, version";
+
+    /** Pacientes del lote; parámetros: desde (exclusivo), hasta, corte. */
+    private static final String PACIENTES_DEL_LOTE =
+            "SELECT id FROM paciente WHERE id > ? AND id <= ? AND eliminado = TRUE AND actualizado_en < ?";
+
+    private static final String BLOQUEAR_PACIENTES =
+            "SELECT id FROM paciente WHERE id > ? AND eliminado = TRUE AND actualizado_en < ?"
+            + " ORDER BY id LIMIT ? FOR UPDATE";
+    private static final String BLOQUEAR_HISTORIAS_DE_PACIENTES =
+            "SELECT id FROM historia_clinica WHERE paciente_id IN (" + PACIENTES_DEL_LOTE + ") FOR UPDATE";
+    private static final String ARCHIVAR_HISTORIAS_DE_PACIENTES =
+            "INSERT INTO historia_clinica_archivo (" + COLUMNAS_HISTORIA + ") SELECT " + COLUMNAS_HISTORIA
+            + " FROM historia_clinica WHERE paciente_id IN (" + PACIENTES_DEL_LOTE + ")";
+    private static final String ARCHIVAR_PACIENTES =
+            "INSERT INTO paciente_archivo (" + COLUMNAS_PACIENTE + ") SELECT " + COLUMNAS_PACIENTE
+            + " FROM paciente WHERE id > ? AND id <= ? AND eliminado = TRUE AND actualizado_en < ?";
+    private static final String BORRAR_HISTORIAS_DE_PACIENTES =
+            "DELETE FROM historia_clinica WHERE paciente_id IN (" + PACIENTES_DEL_LOTE + ")";
+    private static final String BORRAR_PACIENTES =
+            "DELETE FROM paciente WHERE id > ? AND id <= ? AND eliminado = TRUE AND actualizado_en < ?";
+
+    private static final String BLOQUEAR_HISTORIAS =
+            "SELECT id FROM historia_clinica WHERE id > ? AND eliminado = TRUE AND actualizado_en < ?"
+            + " ORDER BY id LIMIT ? FOR UPDATE";
+    private static final String ARCHIVAR_HISTORIAS =
+            "INSERT INTO historia_clinica_archivo (" + COLUMNAS_HISTORIA + ") SELECT " + COLUMNAS_HISTORIA
+            + " FROM historia_clinica WHERE id > ? AND id <= ? AND eliminado = TRUE AND actualizado_en < ?";
+    private static final String BORRAR_HISTORIAS =
+            "DELETE FROM historia_clinica WHERE id > ? AND id <= ? AND eliminado = TRUE AND actualizado_en < ?";
+
+    private static final String LEER_PROGRESO = "SELECT ultimo_id FROM archivado_progreso WHERE tabla = ?";
+    private static final String ACTUALIZAR_PROGRESO = "UPDATE archivado_progreso SET ultimo_id = ? WHERE tabla = ?";
+    private static final String CREAR_PROGRESO = "INSERT INTO archivado_progreso (tabla, ultimo_id) VALUES (?, ?)";
+
+    /** Cada cuánto se vuelve a mirar el atraso de las réplicas mientras se espera. */
+    private static final long CONSULTA_LAG_MS = 1_000L;
+
+    private final TransactionManager tx;
+    private final Duration retencion;
+    private final int filasPorLote;
+    private final long pausaMs;
+    private final long maxLagSeg;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+    private volatile boolean detenido;
+
+    public ArchivadorEliminados(TransactionManager tx) {
+        this(tx, Duration.ofDays(Long.getLong("db.archivo.retencionDias", 365L)),
+                Integer.getInteger("db.archivo.filasPorLote", 500),
+                Long.getLong("db.archivo.pausaMs", 100L),
+                Long.getLong("db.archivo.maxLagSeg", 10L));
+    }
+
+    public ArchivadorEliminados(TransactionManager tx, Duration retencion, int filasPorLote, long pausaMs,
+                                long maxLagSeg) {
+        if (retencion.isNegative()) {
+            throw new IllegalArgumentException("La retención no puede ser negativa: " + retencion);
+        }
+        if (filasPorLote < 1) {
+            throw new IllegalArgumentException("filasPorLote debe ser mayor a cero: " + filasPorLote);
+        }
+        this.tx = tx;
+        this.retencion = retencion;
+        this.filasPorLote = filasPorLote;
+        this.pausaMs = pausaMs;
+        this.maxLagSeg = maxLagSeg;
+    }
+
+    /**
+     * Corre una pasada completa (o la termina, si la anterior se cortó) sobre todas las
+     * particiones, una después de otra.
+     *
+     * @throws IllegalStateException Si ya hay una pasada en curso en esta instancia
+     */
+    public ResultadoArchivado archivar() throws Exception {
+        if (!enCurso.compareAndSet(false, true)) {
+            throw new IllegalStateException("Ya hay un archivado en curso.");
+        }
+        detenido = false;
+        try {
+            Pasada pasada = new Pasada(new Timestamp(System.currentTimeMillis() - retencion.toMillis()));
+            for (int shard = 0; shard < DatabaseConnection.getShardCount() && !detenido; shard++) {
+                pasada.etapa(shard, "paciente");
+                pasada.etapa(shard, "historia_clinica");
+            }
+            ResultadoArchivado resultado = pasada.resultado(!detenido);
+            LOG.log(Level.INFO, "Archivado de eliminados terminado: {0}", resultado);
+            return resultado;
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    /**
+     * Pide que la pasada en curso se detenga después del lote actual.
+     */
+    public void detener() {
+        detenido = true;
+    }
+
+    /**
+     * Filas movidas por una transacción; hasta es el último ID del lote.
+     */
+    private record Lote(long hasta, int pacientes, int historias) {
+    }
+
+    /**
+     * Estado de una llamada a archivar().
+     */
+    private final class Pasada {
+        private final Timestamp corte;
+        private final long inicio = System.nanoTime();
+        private long pacientes;
+        private long historias;
+        private long lotes;
+        private long lagMaximo = -1L;
+        private long esperaLagNanos;
+
+        Pasada(Timestamp corte) {
+            this.corte = corte;
+        }
+
+        /**
+         * Archiva lotes de la tabla hasta que no quedan filas que cumplan la retención.
+         */
+        void etapa(int shard, String tabla) throws Exception {
+            long desde = leerProgreso(shard, tabla);
+            long pacientesAntes = pacientes;
+            long historiasAntes = historias;
+            while (!detenido) {
+                esperarReplicas();
+                if (detenido) {
+                    break;
+                }
+                final long inicioLote = desde;
+                Lote lote = tx.ejecutar(conn -> "paciente".equals(tabla)
+                        ? lotePacientes(DatabaseConnection.enShard(conn, shard), inicioLote)
+                        : loteHistorias(DatabaseConnection.enShard(conn, shard), inicioLote));
+                if (lote == null) {
+                    break;
+                }
+                // Se cuenta después del commit: un lote reintentado por deadlock no suma dos veces
+                desde = lote.hasta();
+                pacientes += lote.pacientes();
+                historias += lote.historias();
+                lotes++;
+                pausa(pausaMs);
+            }
+            LOG.log(Level.FINE, "Partición {0}, {1}: {2} pacientes y {3} historias archivados{4}",
+                    new Object[]{shard, tabla, pacientes - pacientesAntes, historias - historiasAntes,
+                            detenido ? " (detenido)" : ""});
+        }
+
+        /**
+         * @return El lote archivado, o null si no quedaba ninguno (el progreso vuelve a cero)
+         */
+        private Lote lotePacientes(Connection conn, long desde) throws SQLException {
+            long hasta = bloquear(conn, BLOQUEAR_PACIENTES, desde);
+            if (hasta == 0) {
+                guardarProgreso(conn, "paciente", 0);
+                return null;
+            }
+            ejecutar(conn, BLOQUEAR_HISTORIAS_DE_PACIENTES, desde, hasta, true);
+            int historiasMovidas = ejecutar(conn, ARCHIVAR_HISTORIAS_DE_PACIENTES, desde, hasta, false);
+            int pacientesMovidos = ejecutar(conn, ARCHIVAR_PACIENTES, desde, hasta, false);
+            if (ejecutar(conn, BORRAR_HISTORIAS_DE_PACIENTES, desde, hasta, false) != historiasMovidas
+                    || ejecutar(conn, BORRAR_PACIENTES, desde, hasta, false) != pacientesMovidos) {
+                throw new SQLException("Se borraron filas distintas de las archivadas entre los IDs "
+                        + desde + " y " + hasta + " de paciente.");
+            }
+            guardarProgreso(conn, "paciente", hasta);
+            return new Lote(hasta, pacientesMovidos, historiasMovidas);
+        }
+
+        private Lote loteHistorias(Connection conn, long desde) throws SQLException {
+            long hasta = bloquear(conn, BLOQUEAR_HISTORIAS, desde);
+            if (hasta == 0) {
+                guardarProgreso(conn, "historia_clinica", 0);
+                return null;
+            }
+            int movidas = ejecutar(conn, ARCHIVAR_HISTORIAS, desde, hasta, false);
+            if (ejecutar(conn, BORRAR_HISTORIAS, desde, hasta, false) != movidas) {
+                throw new SQLException("Se borraron filas distintas de las archivadas entre los IDs "
+                        + desde + " y " + hasta + " de historia_clinica.");
+            }
+            guardarProgreso(conn, "historia_clinica", hasta);
+            return new Lote(hasta, 0, movidas);
+        }
+
+        /**
+         * Bloquea las próximas filas a archivar. Con las filas bloqueadas, el rango
+         * (desde, hasta] selecciona exactamente esas filas en las sentencias que siguen: las que
+         * no cumplen la retención no pueden empezar a cumplirla, porque modificarlas mueve su
+         * actualizado_en al presente.
+         *
+         * @return El mayor ID bloqueado, o 0 si no hay filas
+         */
+        private long bloquear(Connection conn, String sql, long desde) throws SQLException {
+            long hasta = 0;
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setLong(1, desde);
+                ps.setTimestamp(2, corte);
+                ps.setInt(3, filasPorLote);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        hasta = rs.getLong(1);
+                    }
+                }
+            }
+            return hasta;
+        }
+
+        /**
+         * Ejecuta una sentencia del lote con los parámetros (desde, hasta, corte).
+         *
+         * @return Filas modificadas, o 0 si es una consulta
+         */
+        private int ejecutar(Connection conn, String sql, long desde, long hasta, boolean consulta)
+                throws SQLException {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setLong(1, desde);
+                ps.setLong(2, hasta);
+                ps.setTimestamp(3, corte);
+                if (!consulta) {
+                    return ps.executeUpdate();
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        // Solo interesa el bloqueo
+                    }
+                }
+                return 0;
+            }
+        }
+
+        private long leerProgreso(int shard, String tabla) throws Exception {
+            return tx.ejecutar(conn -> {
+                try (PreparedStatement ps = DatabaseConnection.enShard(conn, shard).prepareStatement(LEER_PROGRESO)) {
+                    ps.setString(1, tabla);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getLong(1) : 0L;
+                    }
+                }
+            });
+        }
+
+        private void guardarProgreso(Connection conn, String tabla, long ultimoId) throws SQLException {
+            try (PreparedStatement ps = conn.prepareStatement(ACTUALIZAR_PROGRESO)) {
+                ps.setLong(1, ultimoId);
+                ps.setString(2, tabla);
+                if (ps.executeUpdate() == 1) {
+                    return;
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(CREAR_PROGRESO)) {
+                ps.setString(1, tabla);
+                ps.setLong(2, ultimoId);
+                ps.executeUpdate();
+            }
+        }
+
+        /**
+         * Espera mientras alguna réplica sana esté más atrasada que maxLagSeg.
+         */
+        private void esperarReplicas() {
+            long lag = lagReplicas();
+            lagMaximo = Math.max(lagMaximo, lag);
+            if (lag <= maxLagSeg) {
+                return;
+            }
+            long desdeNanos = System.nanoTime();
+            LOG.log(Level.INFO, "Réplicas atrasadas {0} s: se pausa el archivado", lag);
+            while (lag > maxLagSeg && !detenido) {
+                pausa(CONSULTA_LAG_MS);
+                lag = lagReplicas();
+                lagMaximo = Math.max(lagMaximo, lag);
+            }
+            esperaLagNanos += System.nanoTime() - desdeNanos;
+        }
+
+        ResultadoArchivado resultado(boolean completo) {
+            Duration duracion = Duration.ofNanos(System.nanoTime() - inicio);
+            double filasPorSegundo = (pacientes + historias) * 1e9 / Math.max(1, duracion.toNanos());
+            return new ResultadoArchivado(pacientes, historias, lotes, duracion, filasPorSegundo, lagMaximo,
+                    Duration.ofNanos(esperaLagNanos), completo);
+        }
+    }
+
+    /**
+     * Mayor atraso entre las réplicas sanas, o -1 si no hay réplicas o no se pudo medir.
+     */
+    private static long lagReplicas() {
+        long lag = -1L;
+        for (ReplicaStatus replica : DatabaseConnection.getReplicaStatus()) {
+            if (replica.healthy()) {
+                lag = Math.max(lag, replica.lagSeconds());
+            }
+        }
+        return lag;
+    }
+
+    private void pausa(long ms) {
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            detenido = true;
+        }
+    }
+}
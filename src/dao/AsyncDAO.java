@@ -0,0 +1,155 @@
+package dao;
+
+import config.DatabaseConnection;
+import models.HistoriaClinica;
+import models.Paciente;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fachada asíncrona sobre PacienteDAO y HistoriaClinicaDAO.
+ *
+ * - Cada consulta corre en su propio hilo virtual, así las búsquedas independientes
+ *   superponen sus viajes a la base en lugar de hacer cola.
+ * - Un semáforo limita las consultas simultáneas al tamaño del pool (db.pool.maxSize,
+ *   o -Ddb.async.maxConcurrencia): el resto espera en su hilo virtual sin ocupar
+ *   hilos de plataforma ni agotar el borrow timeout del pool.
+ * - Los futures fallan con CompletionException envolviendo la excepción del DAO.
+ *
+ * Debe cerrarse (close()) al terminar de usarla.
+ */
+public class AsyncDAO implements AutoCloseable {
+
+    /**
+     * Consulta bloqueante a ejecutar en un hilo virtual.
+     */
+    @FunctionalInterface
+    private interface Consulta<R> {
+        R ejecutar() throws Exception;
+    }
+
+    /**
+     * Búsqueda asíncrona por una clave, para repartir una colección de claves.
+     */
+    @FunctionalInterface
+    private interface Busqueda<R> {
+        CompletableFuture<R> buscar(String clave);
+    }
+
+    private final PacienteDAO pacienteDao;
+    private final HistoriaClinicaDAO historiaClinicaDao;
+    private final ExecutorService executor;
+    private final Semaphore permisos;
+
+    public AsyncDAO(PacienteDAO pacienteDao, HistoriaClinicaDAO historiaClinicaDao) {
+        this(pacienteDao, historiaClinicaDao,
+                Integer.getInteger("db.async.maxConcurrencia", DatabaseConnection.getMaxConexiones()));
+    }
+
+    /**
+     * @param maxConcurrencia Consultas simultáneas como máximo; no debería superar db.pool.maxSize
+     */
+    public AsyncDAO(PacienteDAO pacienteDao, HistoriaClinicaDAO historiaClinicaDao, int maxConcurrencia) {
+        if (maxConcurrencia < 1) {
+            throw new IllegalArgumentException("maxConcurrencia debe ser al menos 1: " + maxConcurrencia);
+        }
+        this.pacienteDao = pacienteDao;
+        this.historiaClinicaDao = historiaClinicaDao;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.permisos = new Semaphore(maxConcurrencia, true);
+    }
+
+    public CompletableFuture<Paciente> leerAsync(long id) {
+        return enviar(() -> pacienteDao.leer(id));
+    }
+
+    public CompletableFuture<Paciente> leerAsync(long id, FetchMode modo) {
+        return enviar(() -> pacienteDao.leer(id, modo));
+    }
+
+    public CompletableFuture<Paciente> buscarPorDniAsync(String dni) {
+        return enviar(() -> pacienteDao.buscarPorDni(dni));
+    }
+
+    /**
+     * Busca todos los DNI en paralelo.
+     * @return Mapa DNI → Paciente, en el orden de entrada; los DNI sin paciente activo no aparecen
+     */
+    public CompletableFuture<Map<String, Paciente>> buscarPorDnisAsync(Collection<String> dnis) {
+        return enParalelo(dnis, this::buscarPorDniAsync);
+    }
+
+    public CompletableFuture<HistoriaClinica> leerHistoriaAsync(long id) {
+        return enviar(() -> historiaClinicaDao.leer(id));
+    }
+
+    public CompletableFuture<HistoriaClinica> leerPorPacienteIdAsync(long pacienteId) {
+        return enviar(() -> historiaClinicaDao.leerPorPacienteId(pacienteId));
+    }
+
+    public CompletableFuture<HistoriaClinica> buscarPorNroHistoriaAsync(String nroHistoria) {
+        return enviar(() -> historiaClinicaDao.buscarPorNroHistoria(nroHistoria));
+    }
+
+    /**
+     * Busca todos los números de historia en paralelo.
+     * @return Mapa nro_historia → HistoriaClinica, en el orden de entrada; los no encontrados no aparecen
+     */
+    public CompletableFuture<Map<String, HistoriaClinica>> buscarPorNrosHistoriaAsync(Collection<String> nrosHistoria) {
+        return enParalelo(nrosHistoria, this::buscarPorNroHistoriaAsync);
+    }
+
+    /**
+     * Cierra el executor; espera a que terminen las consultas en curso.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private <R> CompletableFuture<R> enviar(Consulta<R> consulta) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permisos.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return consulta.ejecutar();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                permisos.release();
+            }
+        }, executor);
+    }
+
+    private static <R> CompletableFuture<Map<String, R>> enParalelo(Collection<String> claves, Busqueda<R> busqueda) {
+        List<String> unicas = new ArrayList<>(new LinkedHashSet<>(claves));
+        List<CompletableFuture<R>> futuros = new ArrayList<>(unicas.size());
+        for (String clave : unicas) {
+            futuros.add(busqueda.buscar(clave));
+        }
+        return CompletableFuture.allOf(futuros.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            Map<String, R> resultado = new LinkedHashMap<>();
+            for (int i = 0; i < unicas.size(); i++) {
+                R valor = futuros.get(i).join();
+                if (valor != null) {
+                    resultado.put(unicas.get(i), valor);
+                }
+            }
+            return resultado;
+        });
+    }
+}
@@ -0,0 +1,111 @@
+package dao;
+
+import config.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Utilidad interna para INSERT por lotes. Las filas llevan su ID ya asignado (ver
+ * {@link RangoIds}), así que no se leen claves generadas.
+ *
+ * Con MySQL conviene agregar rewriteBatchedStatements=true a db.url: el driver
+ * reescribe cada lote como un único INSERT multi-fila.
+ */
+final class BatchInsert {
+
+    /**
+     * Asigna los parámetros de una fila al PreparedStatement.
+     */
+    @FunctionalInterface
+    interface Binder<T> {
+        void bind(PreparedStatement ps, T entidad, int indice) throws SQLException;
+    }
+
+    private BatchInsert() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada.");
+    }
+
+    /**
+     * Ejecuta el INSERT para todas las entidades en lotes de tamanioLote.
+     *
+     * @param indice posición de la entidad en la lista de entrada (se pasa al binder)
+     */
+    static <T> void ejecutar(Connection conn, String sql, List<T> entidades, int tamanioLote, Binder<T> binder)
+            throws SQLException {
+        if (tamanioLote < 1) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser mayor a cero: " + tamanioLote);
+        }
+        if (entidades.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int enLote = 0;
+            for (int i = 0; i < entidades.size(); i++) {
+                binder.bind(ps, entidades.get(i), i);
+                ps.addBatch();
+                if (++enLote == tamanioLote) {
+                    ejecutarLote(ps, enLote);
+                    enLote = 0;
+                }
+            }
+            if (enLote > 0) {
+                ejecutarLote(ps, enLote);
+            }
+        }
+    }
+
+    /**
+     * Igual que {@link #ejecutar}, pero cada entidad se inserta en su partición.
+     * conn es la conexión lógica de DatabaseConnection.getConnection(); sin particiones
+     * equivale a ejecutar() sobre conn.
+     *
+     * @param shardDe Partición de la entidad en la posición indicada
+     */
+    static <T> void ejecutarPorParticion(Connection conn, String sql, List<T> entidades, int tamanioLote,
+                                               IntUnaryOperator shardDe, Binder<T> binder) throws SQLException {
+        int particiones = DatabaseConnection.getShardCount();
+        if (particiones == 1) {
+            ejecutar(DatabaseConnection.enShard(conn, 0), sql, entidades, tamanioLote, binder);
+            return;
+        }
+        List<List<Integer>> posiciones = new ArrayList<>(particiones);
+        for (int shard = 0; shard < particiones; shard++) {
+            posiciones.add(new ArrayList<>());
+        }
+        for (int i = 0; i < entidades.size(); i++) {
+            posiciones.get(shardDe.applyAsInt(i)).add(i);
+        }
+
+        for (int shard = 0; shard < particiones; shard++) {
+            List<Integer> enShard = posiciones.get(shard);
+            if (enShard.isEmpty()) {
+                continue;
+            }
+            List<T> grupo = new ArrayList<>(enShard.size());
+            for (int i : enShard) {
+                grupo.add(entidades.get(i));
+            }
+            // El binder recibe la posición original de la entidad, no la del grupo
+            ejecutar(DatabaseConnection.enShard(conn, shard), sql, grupo, tamanioLote,
+                    (ps, entidad, i) -> binder.bind(ps, entidad, enShard.get(i)));
+        }
+    }
+
+    private static void ejecutarLote(PreparedStatement ps, int filas) throws SQLException {
+        int[] resultados = ps.executeBatch();
+        ps.clearBatch();
+        // Con rewriteBatchedStatements el driver informa SUCCESS_NO_INFO en vez de la cantidad
+        for (int resultado : resultados) {
+            if (resultado == 0 || resultado == Statement.EXECUTE_FAILED) {
+                throw new SQLException("Inserción por lotes incompleta: no se insertaron las " + filas + " filas del lote.");
+            }
+        }
+    }
+}
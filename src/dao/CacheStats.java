@@ -0,0 +1,17 @@
+package dao;
+
+/**
+ * Snapshot de los contadores de {@link PacienteCache}.
+ *
+ * @param hits        Lecturas resueltas desde la caché
+ * @param misses      Lecturas que tuvieron que ir a la base
+ * @param expulsiones Entradas descartadas por tamaño o por TTL
+ * @param tamanio     Entradas actuales
+ */
+public record CacheStats(long hits, long misses, long expulsiones, int tamanio) {
+
+    public double hitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
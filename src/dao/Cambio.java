@@ -0,0 +1,18 @@
+package dao;
+
+import java.sql.Timestamp;
+
+/**
+ * Un cambio leído con {@link FeedCambios}. Informa qué fila cambió, no su contenido: el
+ * consumidor lee el estado actual (por ejemplo con PacienteDAO.leerPorIds) y descarta los
+ * cambios con una versión menor a la que ya procesó de esa fila.
+ *
+ * @param shard        Partición donde se registró
+ * @param secuencia    Posición en el registro de la partición
+ * @param tabla        "paciente" o "historia_clinica"
+ * @param version      Versión de la fila después del cambio
+ * @param registradoEn Momento del cambio según la base
+ */
+public record Cambio(int shard, long secuencia, String tabla, long entidadId, long version, TipoCambio tipo,
+                     Timestamp registradoEn) {
+}
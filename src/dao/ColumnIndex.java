@@ -0,0 +1,50 @@
+package dao;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Posiciones de las columnas de un ResultSet, resueltas por etiqueta una sola vez.
+ * Lo usan los mapeadores compilados para leer por índice en cada fila.
+ */
+final class ColumnIndex {
+
+    private final Map<String, Integer> porEtiqueta;
+
+    private ColumnIndex(Map<String, Integer> porEtiqueta) {
+        this.porEtiqueta = porEtiqueta;
+    }
+
+    static ColumnIndex de(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columnas = meta.getColumnCount();
+        Map<String, Integer> porEtiqueta = new HashMap<>(columnas * 2);
+        for (int i = 1; i <= columnas; i++) {
+            porEtiqueta.putIfAbsent(meta.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+        return new ColumnIndex(porEtiqueta);
+    }
+
+    /**
+     * @throws SQLException si la consulta no trae la columna
+     */
+    int requerida(String etiqueta) throws SQLException {
+        Integer indice = porEtiqueta.get(etiqueta);
+        if (indice == null) {
+            throw new SQLException("La consulta no incluye la columna " + etiqueta + ".");
+        }
+        return indice;
+    }
+
+    /**
+     * @return el índice, o 0 si la consulta no trae la columna
+     */
+    int opcional(String etiqueta) {
+        Integer indice = porEtiqueta.get(etiqueta);
+        return indice != null ? indice : 0;
+    }
+}
@@ -0,0 +1,48 @@
+package dao;
+
+import models.Base;
+
+import java.sql.SQLException;
+
+/**
+ * Un UPDATE no se aplicó porque la fila cambió desde que se leyó la entidad: otro usuario la
+ * modificó (o la dio de baja) antes. Trae la fila actual para que el caller combine los cambios
+ * y vuelva a guardar con su versión; la transacción debe deshacerse.
+ */
+public class ConflictoVersionException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Las entidades no son serializables: una excepción deserializada no trae la fila. */
+    private final transient Base actual;
+    private final long versionEsperada;
+
+    public ConflictoVersionException(String tabla, long versionEsperada, Base actual) {
+        super("La fila de " + tabla + " con ID " + actual.getId() + " fue modificada por otro usuario:"
+                + " se esperaba la versión " + versionEsperada + " y la actual es " + actual.getVersion() + ".");
+        this.actual = actual;
+        this.versionEsperada = versionEsperada;
+    }
+
+    /**
+     * Estado actual de la fila, incluso si está eliminada (isEliminado()). En los pacientes no
+     * incluye la historia clínica, que tiene su propia versión. null si la excepción se deserializó.
+     */
+    public Base getActual() {
+        return actual;
+    }
+
+    /**
+     * @throws ClassCastException Si el conflicto es de otra entidad
+     */
+    public <T extends Base> T getActual(Class<T> tipo) {
+        return tipo.cast(actual);
+    }
+
+    /**
+     * Versión que tenía la entidad del caller.
+     */
+    public long getVersionEsperada() {
+        return versionEsperada;
+    }
+}
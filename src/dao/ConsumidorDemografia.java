@@ -0,0 +1,20 @@
+package dao;
+
+import models.GrupoSanguineo;
+
+import java.time.LocalDate;
+
+/**
+ * Recibe las filas de {@link PacienteDAO#recorrerDemografia} sin armar objetos Paciente.
+ */
+@FunctionalInterface
+public interface ConsumidorDemografia {
+
+    /**
+     * @param eliminado       Si el paciente está dado de baja
+     * @param fechaNacimiento Null si no se cargó
+     * @param grupo           Grupo de la historia activa; null sin historia o sin grupo
+     * @param conHistoria     Si el paciente tiene historia clínica activa
+     */
+    void aceptar(long id, boolean eliminado, LocalDate fechaNacimiento, GrupoSanguineo grupo, boolean conHistoria);
+}
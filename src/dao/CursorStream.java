@@ -0,0 +1,107 @@
+package dao;
+
+import config.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Stream perezoso respaldado por un cursor forward-only.
+ *
+ * - La conexión, el statement y el ResultSet quedan abiertos mientras se consume el stream.
+ * - Se liberan al cerrar el stream, por eso debe usarse con try-with-resources.
+ * - fetchSize controla cuántas filas trae el driver por viaje. Con MySQL solo se respeta con
+ *   -Ddb.stream.cursorFetch=true (DatabaseConnection agrega useCursorFetch=true a la URL, lo
+ *   que también prepara en el servidor todas las sentencias); sin esa opción el driver trae
+ *   todo el resultado a memoria.
+ *
+ * Uso:
+ * <pre>
+ * try (Stream&lt;Paciente&gt; s = pacienteDao.leerTodosStream(500)) {
+ *     s.forEach(exportador::escribir);
+ * }
+ * </pre>
+ */
+final class CursorStream {
+
+    /** Filas por viaje al servidor por defecto. Configurable via -Ddb.stream.fetchSize */
+    static final int FETCH_SIZE_DEFAULT = Integer.getInteger("db.stream.fetchSize", 1_000);
+
+    private CursorStream() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada.");
+    }
+
+    /**
+     * @param shard   Partición sobre la que se abre el cursor (0 si no hay particiones)
+     * @param mappers Arma el mapeador una vez ejecutada la consulta (con las columnas ya resueltas)
+     */
+    static <T> Stream<T> abrir(int shard, String sql, int fetchSize, RowMapper.Factory<T> mappers)
+            throws SQLException {
+        Connection conn = DatabaseConnection.getReadConnection(shard);
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        RowMapper<T> mapper;
+        try {
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            rs = ps.executeQuery();
+            mapper = mappers.para(rs);
+        } catch (SQLException | RuntimeException e) {
+            cerrar(e, rs, ps, conn);
+            throw e;
+        }
+
+        final PreparedStatement statement = ps;
+        final ResultSet resultSet = rs;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(resultSet));
+                    return true;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Error leyendo el cursor: " + e.getMessage(), e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            Exception error = cerrar(null, resultSet, statement, conn);
+            if (error != null) {
+                throw new IllegalStateException("Error cerrando el cursor: " + error.getMessage(), error);
+            }
+        });
+    }
+
+    /**
+     * Cierra los recursos en orden. El primer error se retorna (o se agrega como suprimido a error).
+     */
+    private static Exception cerrar(Exception error, AutoCloseable... recursos) {
+        for (AutoCloseable recurso : recursos) {
+            if (recurso == null) {
+                continue;
+            }
+            try {
+                recurso.close();
+            } catch (Exception e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        return error;
+    }
+}
@@ -0,0 +1,135 @@
+package dao;
+
+import config.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Lectura incremental de los cambios de paciente e historia_clinica, para sistemas que hoy
+ * vuelven a leer todo con leerTodos() para encontrar qué cambió.
+ *
+ * Los DAOs escriben una fila en la tabla cambio por cada alta, modificación y baja, en la misma
+ * transacción (ver RegistroCambios): si el cambio se confirma, su registro también. Cada
+ * partición tiene su propio registro, ordenado por su secuencia (id AUTO_INCREMENT).
+ *
+ * Uso, con entrega al menos una vez:
+ * <pre>
+ * MarcaCambios marca = MarcaCambios.desdeTexto(guardada);   // o MarcaCambios.inicial()
+ * PaginaCambios pagina = feed.leer(marca, 500);
+ * procesar(pagina.cambios());
+ * guardar(pagina.siguiente().toString());                   // recién después de procesar
+ * </pre>
+ * Si el consumidor se corta entre procesar y guardar, vuelve a recibir la misma página. Los
+ * cambios repetidos o desordenados entre particiones se reconocen por entidad y versión.
+ *
+ * Orden de commit: la secuencia se asigna al insertar, pero los escritores de una partición
+ * registran de a uno, con el turno de cambio_turno tomado hasta su commit (ver RegistroCambios).
+ * Mientras una transacción tiene filas sin confirmar ninguna otra puede insertar, así que todo
+ * id confirmado después es mayor: avanzar la marca hasta el último id visible no saltea nada,
+ * sin importar cuánto dure la transacción. Se lee del primario.
+ */
+public class FeedCambios {
+
+    private static final String SELECT_CAMBIOS =
+            "SELECT id, tabla, entidad_id, version, tipo, registrado_en FROM cambio WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String PURGAR = "DELETE FROM cambio WHERE registrado_en < ? LIMIT ?";
+
+    /** Orden de entrega entre particiones; dentro de cada una se respeta la secuencia. */
+    private static final Comparator<Cambio> POR_REGISTRO = Comparator.comparing(Cambio::registradoEn)
+            .thenComparingInt(Cambio::shard)
+            .thenComparingLong(Cambio::secuencia);
+
+    /**
+     * Cambios posteriores a la marca, hasta limite en total. Las particiones se leen en paralelo
+     * y se combinan por momento de registro, tomando de cada una un prefijo de su secuencia.
+     */
+    public PaginaCambios leer(MarcaCambios desde, int limite) throws Exception {
+        if (limite < 1) {
+            throw new IllegalArgumentException("El límite debe ser mayor a cero: " + limite);
+        }
+        if (desde.particiones() != DatabaseConnection.getShardCount()) {
+            throw new IllegalArgumentException("La marca " + desde + " es de otra cantidad de particiones.");
+        }
+        List<Lectura> lecturas = ScatterGather.enTodas(shard -> leerParticion(shard, desde.posicion(shard), limite));
+
+        boolean hayMas = false;
+        List<Iterator<Cambio>> fuentes = new ArrayList<>(lecturas.size());
+        for (Lectura lectura : lecturas) {
+            fuentes.add(lectura.cambios().iterator());
+            hayMas |= lectura.llena();
+        }
+        List<Cambio> cambios = new ArrayList<>(limite);
+        long[] posiciones = new long[lecturas.size()];
+        Iterator<Cambio> merge = ScatterGather.merge(fuentes, POR_REGISTRO);
+        while (cambios.size() < limite && merge.hasNext()) {
+            Cambio cambio = merge.next();
+            cambios.add(cambio);
+            posiciones[cambio.shard()] = cambio.secuencia();
+        }
+        hayMas |= merge.hasNext();
+        return new PaginaCambios(cambios, desde.avanzar(posiciones), hayMas);
+    }
+
+    /**
+     * Borra, de a filasPorLote por sentencia, los cambios registrados hace más de antiguedad.
+     * Un consumidor cuya marca quedó antes de lo purgado pierde esos cambios: la antigüedad debe
+     * superar el mayor atraso tolerado de los consumidores.
+     *
+     * @return Cambios borrados
+     */
+    public long purgar(Duration antiguedad, int filasPorLote) throws Exception {
+        Timestamp corte = new Timestamp(System.currentTimeMillis() - antiguedad.toMillis());
+        long borrados = 0;
+        for (long porParticion : ScatterGather.enTodas(shard -> purgarParticion(shard, corte, filasPorLote))) {
+            borrados += porParticion;
+        }
+        return borrados;
+    }
+
+    /**
+     * @param llena Si la partición puede tener más cambios de los que se leyeron
+     */
+    private record Lectura(List<Cambio> cambios, boolean llena) {
+    }
+
+    private static Lectura leerParticion(int shard, long desde, int limite) throws SQLException {
+        List<Cambio> cambios = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = DatabaseConnection.enShard(conn, shard).prepareStatement(SELECT_CAMBIOS)) {
+            ps.setLong(1, desde);
+            ps.setInt(2, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    cambios.add(new Cambio(shard, rs.getLong(1), rs.getString(2), rs.getLong(3), rs.getLong(4),
+                            TipoCambio.valueOf(rs.getString(5)), rs.getTimestamp(6)));
+                }
+            }
+        }
+        return new Lectura(cambios, cambios.size() == limite);
+    }
+
+    private static long purgarParticion(int shard, Timestamp corte, int filasPorLote) throws SQLException {
+        long borrados = 0;
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = DatabaseConnection.enShard(conn, shard).prepareStatement(PURGAR)) {
+            ps.setTimestamp(1, corte);
+            ps.setInt(2, filasPorLote);
+            int filas;
+            do {
+                filas = ps.executeUpdate();
+                borrados += filas;
+            } while (filas == filasPorLote);
+        }
+        return borrados;
+    }
+}
@@ -0,0 +1,18 @@
+package dao;
+
+/**
+ * Estrategia de carga de la HistoriaClinica al leer pacientes.
+ */
+public enum FetchMode {
+    /** Paciente + HistoriaClinica en una sola consulta (LEFT JOIN). */
+    CON_HISTORIA,
+    /** Solo los datos del paciente; getHistoriaClinica() queda en null. */
+    SIN_HISTORIA,
+    /** Solo los datos del paciente; la historia se consulta en el primer getHistoriaClinica(). */
+    HISTORIA_DIFERIDA,
+    /**
+     * Paciente + historia en un JOIN, sin los campos TEXT (antecedentes, medicación actual,
+     * observaciones): se consultan en el primer acceso a cualquiera de ellos.
+     */
+    HISTORIA_SIN_TEXTOS
+}
@@ -2,6 +2,7 @@ package dao;
 
 import java.sql.Connection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Interfaz generica para el patron DAO.
@@ -10,6 +11,11 @@ import java.util.List;
  */
 public interface GenericDAO<T> {
 
+    /**
+     * Tamaño de lote por defecto para crearLote. Configurable via -Ddb.batch.size
+     */
+    int TAMANIO_LOTE_DEFAULT = Integer.getInteger("db.batch.size", 500);
+
     /**
      * Inserta una nueva entidad en la base de datos.
      * @param entidad La entidad a crear.
@@ -19,6 +25,28 @@ public interface GenericDAO<T> {
      */
     long crear(T entidad, Connection conn) throws Exception;
 
+    /**
+     * Inserta varias entidades usando JDBC batching, en lotes de TAMANIO_LOTE_DEFAULT filas.
+     * @param entidades Las entidades a crear.
+     * @param conn La conexión a usar (para transacciones en Service).
+     * @return Los IDs generados, en el mismo orden que la lista de entrada.
+     * @throws Exception Si ocurre un error de base de datos o de negocio.
+     */
+    default List<Long> crearLote(List<T> entidades, Connection conn) throws Exception {
+        return crearLote(entidades, TAMANIO_LOTE_DEFAULT, conn);
+    }
+
+    /**
+     * Inserta varias entidades usando JDBC batching.
+     * Cada lote de tamanioLote filas se envía con un único executeBatch().
+     * @param entidades Las entidades a crear.
+     * @param tamanioLote Cantidad máxima de filas por executeBatch().
+     * @param conn La conexión a usar (para transacciones en Service).
+     * @return Los IDs generados, en el mismo orden que la lista de entrada.
+     * @throws Exception Si ocurre un error de base de datos o de negocio.
+     */
+    List<Long> crearLote(List<T> entidades, int tamanioLote, Connection conn) throws Exception;
+
     /**
      * Busca y retorna una entidad por su clave primaria.
      * @param id El ID de la entidad a buscar.
@@ -34,6 +62,33 @@ public interface GenericDAO<T> {
      */
     List<T> leerTodos() throws Exception;
 
+    /**
+     * Retorna una página de entidades activas ordenadas por ID (paginación keyset).
+     * Para recorrer la tabla completa se pasa como despuesDeId el ID de la última entidad
+     * de la página anterior (0 para la primera página), hasta recibir una página vacía.
+     * @param despuesDeId Solo se retornan entidades con ID mayor a este valor.
+     * @param limite Cantidad máxima de entidades en la página.
+     * @return Una lista de como máximo limite entidades.
+     * @throws Exception Si ocurre un error de base de datos.
+     */
+    List<T> leerPagina(long despuesDeId, int limite) throws Exception;
+
+    /**
+     * Retorna todas las entidades activas como un Stream perezoso respaldado por un cursor.
+     * La conexión se libera al cerrar el Stream: usar siempre try-with-resources.
+     * @param fetchSize Filas que trae el driver por cada viaje a la base.
+     * @return Un Stream de entidades, ordenado por ID.
+     * @throws Exception Si ocurre un error de base de datos al abrir el cursor.
+     */
+    Stream<T> leerTodosStream(int fetchSize) throws Exception;
+
+    /**
+     * Igual que {@link #leerTodosStream(int)} con el fetch size por defecto (-Ddb.stream.fetchSize).
+     */
+    default Stream<T> leerTodosStream() throws Exception {
+        return leerTodosStream(CursorStream.FETCH_SIZE_DEFAULT);
+    }
+
     /**
      * Actualiza una entidad existente en la base de datos.
      * @param entidad La entidad con los datos actualizados.
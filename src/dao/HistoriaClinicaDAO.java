@@ -1,104 +1,520 @@
 package dao;
 
 import config.DatabaseConnection;
+import config.TransactionManager;
+import config.TransactionSynchronization;
 import models.GrupoSanguineo;
 import models.HistoriaClinica;
+import search.IndiceTextos;
+import search.ResultadoBusqueda;
 
 import java.sql.*;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class HistoriaClinicaDAO implements GenericDAO<HistoriaClinica> {
 
+    static final String INSERT_HISTORIA =
+            "INSERT INTO historia_clinica (id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, paciente_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /** Parámetros de INSERT_HISTORIA. */
+    static final int PARAMETROS_INSERT = 8;
+
+    /** IDs de historia asignados del lado del cliente. */
+    private static final RangoIds IDS = new RangoIds("historia_clinica");
+
+    /**
+     * Columnas de historia_clinica (alias h) con prefijo hc_, para consultas JOIN desde paciente.
+     */
+    static final String JOINED_COLUMNS =
+            "h.id AS hc_id, h.nro_historia AS hc_nro_historia, h.grupo_sanguineo AS hc_grupo_sanguineo, "
+            + "h.antecedentes AS hc_antecedentes, h.medicacion_actual AS hc_medicacion_actual, "
+            + "h.observaciones AS hc_observaciones, h.eliminado AS hc_eliminado, h.version AS hc_version";
+
+    /**
+     * Igual que {@link #JOINED_COLUMNS} pero sin los campos TEXT.
+     */
+    static final String JOINED_COLUMNS_SIN_TEXTOS =
+            "h.id AS hc_id, h.nro_historia AS hc_nro_historia, h.grupo_sanguineo AS hc_grupo_sanguineo, "
+            + "h.eliminado AS hc_eliminado, h.version AS hc_version";
+
+    /** Fila actual, eliminada o no, para informar un conflicto de versión. */
+    private static final String SELECT_ACTUAL =
+            "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version"
+            + " FROM historia_clinica WHERE id = ? FOR UPDATE";
+
+    /** Orden de los listados: el merge de particiones lo necesita explícito. */
+    private static final Comparator<HistoriaClinica> POR_ID = Comparator.comparingLong(HistoriaClinica::getId);
+
+    /** Caché de pacientes a invalidar cuando cambia una historia. La asigna PacienteDAO. */
+    private volatile PacienteCache pacienteCache;
+
+    /** Mapeadores compilados por consulta (clave: el SQL). */
+    private final MapperCache<HistoriaClinica> mappers = new MapperCache<>();
+
+    /** Índice de texto completo a mantener al día tras cada escritura, o null si no se usa. */
+    private final IndiceTextos indice;
+
+    public HistoriaClinicaDAO() {
+        this(null);
+    }
+
+    /**
+     * @param indice Índice de los campos TEXT para {@link #buscarEnTextos}; null para no usarlo
+     */
+    public HistoriaClinicaDAO(IndiceTextos indice) {
+        this.indice = indice;
+    }
+
+    void setPacienteCache(PacienteCache pacienteCache) {
+        this.pacienteCache = pacienteCache;
+    }
+
     @Override
     public long crear(HistoriaClinica hc, Connection conn) throws Exception {
-        String sql = "INSERT INTO historia_clinica (nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, paciente_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
         if (hc.getId() == null) {
             throw new IllegalArgumentException("HistoriaClinica debe tener asociado el ID del Paciente (paciente_id) antes de crear.");
         }
+        long pacienteId = hc.getId();
 
-        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, hc.getNroHistoria());
-            ps.setString(2, hc.getGrupoSanguineo().name());
-            ps.setString(3, hc.getAntecedentes());
-            ps.setString(4, hc.getMedicacionActual());
-            ps.setString(5, hc.getObservaciones());
-            ps.setBoolean(6, hc.isEliminado());
-            ps.setLong(7, hc.getId());
+        // La historia va a la partición de su paciente
+        int shard = DatabaseConnection.shardDeId(pacienteId);
+        long id = IDS.siguiente(shard);
+        Connection shardConn = DatabaseConnection.enShard(conn, shard);
+        try (PreparedStatement ps = shardConn.prepareStatement(INSERT_HISTORIA)) {
+            bindInsert(ps, 0, hc, id, pacienteId);
 
             if (ps.executeUpdate() == 0) {
                 throw new SQLException("Fallo al crear la Historia Clínica, no se afectaron filas.");
             }
+        }
+        RegistroCambios.alta(shardConn, RegistroCambios.HISTORIA, id);
+        registrarAltas(List.of(id), List.of(hc), List.of(pacienteId), conn);
+        return id;
+    }
 
-            try (ResultSet generatedKeys = ps.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    return generatedKeys.getLong(1);
-                } else {
-                    throw new SQLException("Fallo al crear la Historia Clínica, no se obtuvo ID.");
-                }
+    /**
+     * Igual que {@link #crear}: cada HistoriaClinica debe traer en getId() el ID del Paciente.
+     */
+    @Override
+    public List<Long> crearLote(List<HistoriaClinica> historias, int tamanioLote, Connection conn) throws Exception {
+        List<Long> pacienteIds = new ArrayList<>(historias.size());
+        for (HistoriaClinica hc : historias) {
+            if (hc.getId() == null) {
+                throw new IllegalArgumentException("HistoriaClinica debe tener asociado el ID del Paciente (paciente_id) antes de crear.");
             }
+            pacienteIds.add(hc.getId());
+        }
+        return crearLote(historias, pacienteIds, tamanioLote, conn);
+    }
+
+    /**
+     * Inserta por lotes vinculando cada historia con el paciente de la misma posición en pacienteIds.
+     * Usado por PacienteDAO.crearLote tras crear los pacientes.
+     */
+    List<Long> crearLote(List<HistoriaClinica> historias, List<Long> pacienteIds, int tamanioLote, Connection conn)
+            throws SQLException {
+        List<Long> ids = new ArrayList<>(historias.size());
+        for (long pacienteId : pacienteIds) {
+            ids.add(IDS.siguiente(DatabaseConnection.shardDeId(pacienteId)));
+        }
+        BatchInsert.ejecutarPorParticion(conn, INSERT_HISTORIA, historias, tamanioLote,
+                i -> DatabaseConnection.shardDeId(pacienteIds.get(i)),
+                (ps, hc, i) -> bindInsert(ps, 0, hc, ids.get(i), pacienteIds.get(i)));
+        RegistroCambios.altas(conn, RegistroCambios.HISTORIA, ids, tamanioLote);
+        registrarAltas(ids, historias, pacienteIds, conn);
+        return ids;
+    }
+
+    /**
+     * Próximo ID de historia en la partición, para altas que arman su propio INSERT.
+     */
+    long siguienteId(int shard) throws SQLException {
+        return IDS.siguiente(shard);
+    }
+
+    /**
+     * Tras insertar historias: invalida sus pacientes en la caché e indexa los textos al confirmar.
+     */
+    void registrarAltas(List<Long> ids, List<HistoriaClinica> historias, List<Long> pacienteIds, Connection conn)
+            throws SQLException {
+        for (long pacienteId : pacienteIds) {
+            invalidarPacienteTrasCommit(pacienteId, conn);
+        }
+        indexarTrasCommit(ids, historias, conn);
+    }
+
+    /**
+     * Indexa las historias creadas cuando se confirma la transacción. Los textos se toman ahora:
+     * el caller puede seguir modificando las entidades.
+     */
+    private void indexarTrasCommit(List<Long> ids, List<HistoriaClinica> historias, Connection conn)
+            throws SQLException {
+        IndiceTextos indice = this.indice;
+        if (indice == null) {
+            return;
+        }
+        List<String[]> textos = new ArrayList<>(historias.size());
+        for (HistoriaClinica hc : historias) {
+            textos.add(new String[]{hc.getAntecedentes(), hc.getMedicacionActual(), hc.getObservaciones()});
+        }
+        TransactionSynchronization.afterCommit(conn, () -> {
+            for (int i = 0; i < ids.size(); i++) {
+                String[] t = textos.get(i);
+                indice.indexar(ids.get(i), t[0], t[1], t[2]);
+            }
+        });
+    }
+
+    /**
+     * Reindexa solo los campos TEXT incluidos en el UPDATE.
+     */
+    private void reindexarTrasCommit(HistoriaClinica hc, Connection conn) throws SQLException {
+        if (indice == null) {
+            return;
+        }
+        long id = hc.getId();
+        Map<IndiceTextos.Campo, String> cambios = new EnumMap<>(IndiceTextos.Campo.class);
+        if (hc.fueModificado(HistoriaClinica.ANTECEDENTES)) {
+            cambios.put(IndiceTextos.Campo.ANTECEDENTES, hc.getAntecedentes());
+        }
+        if (hc.fueModificado(HistoriaClinica.MEDICACION_ACTUAL)) {
+            cambios.put(IndiceTextos.Campo.MEDICACION_ACTUAL, hc.getMedicacionActual());
+        }
+        if (hc.fueModificado(HistoriaClinica.OBSERVACIONES)) {
+            cambios.put(IndiceTextos.Campo.OBSERVACIONES, hc.getObservaciones());
+        }
+        if (!cambios.isEmpty()) {
+            TransactionSynchronization.afterCommit(conn,
+                    () -> cambios.forEach((campo, texto) -> indice.actualizarCampo(id, campo, texto)));
+        }
+    }
+
+    private void invalidarTrasCommit(long historiaId, Connection conn) throws SQLException {
+        PacienteCache cache = pacienteCache;
+        if (cache != null) {
+            TransactionSynchronization.afterCommit(conn, () -> cache.invalidarPorHistoria(historiaId));
+        }
+    }
+
+    /**
+     * Un paciente cacheado sin historia queda desactualizado cuando se le crea una.
+     */
+    private void invalidarPacienteTrasCommit(long pacienteId, Connection conn) throws SQLException {
+        PacienteCache cache = pacienteCache;
+        if (cache != null) {
+            TransactionSynchronization.afterCommit(conn, () -> cache.invalidar(pacienteId));
+        }
+    }
+
+    /**
+     * @param desde Parámetros ya ocupados por sentencias anteriores del mismo envío
+     */
+    static void bindInsert(PreparedStatement ps, int desde, HistoriaClinica hc, long id, long pacienteId)
+            throws SQLException {
+        ps.setLong(desde + 1, id);
+        ps.setString(desde + 2, hc.getNroHistoria());
+        setGrupo(ps, desde + 3, hc.getGrupoSanguineo());
+        ps.setString(desde + 4, hc.getAntecedentes());
+        ps.setString(desde + 5, hc.getMedicacionActual());
+        ps.setString(desde + 6, hc.getObservaciones());
+        ps.setBoolean(desde + 7, Boolean.TRUE.equals(hc.isEliminado()));
+        ps.setLong(desde + 8, pacienteId);
+    }
+
+    /**
+     * La columna grupo_sanguineo es un ENUM de símbolos ('A+', 'O-', ...): se guarda el símbolo.
+     */
+    private static void setGrupo(PreparedStatement ps, int indice, GrupoSanguineo grupo) throws SQLException {
+        if (grupo != null) {
+            ps.setString(indice, grupo.getSimbolo());
+        } else {
+            ps.setNull(indice, Types.VARCHAR);
         }
     }
 
     public HistoriaClinica leerPorPacienteId(long pacienteId) throws Exception {
-        String sql = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado FROM historia_clinica WHERE paciente_id = ? AND eliminado = FALSE";
-        try (Connection conn = DatabaseConnection.getConnection();
+        String sql = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version FROM historia_clinica WHERE paciente_id = ? AND eliminado = FALSE";
+        try (Connection conn = DatabaseConnection.getReadConnection(DatabaseConnection.shardDeId(pacienteId));
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setLong(1, pacienteId);
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return mapResultSetToHistoriaClinica(rs);
+                    return mapper(sql, rs).map(rs);
                 }
             }
         }
         return null;
     }
 
+    public Map<Long, HistoriaClinica> leerPorPacienteIds(Collection<Long> pacienteIds) throws Exception {
+        return leerPorPacienteIds(pacienteIds, InListQuery.TAMANIO_TRAMO_DEFAULT);
+    }
+
+    /**
+     * Lee las historias de muchos pacientes con consultas IN de a tamanioTramo claves
+     * (ver {@link InListQuery}).
+     *
+     * @return Mapa ID de paciente → HistoriaClinica, en el orden de entrada;
+     *         los pacientes sin historia activa no aparecen
+     */
+    public Map<Long, HistoriaClinica> leerPorPacienteIds(Collection<Long> pacienteIds, int tamanioTramo)
+            throws Exception {
+        // paciente_id va primero: la clave del resultado se lee por posición
+        String sql = "SELECT paciente_id, id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version FROM historia_clinica WHERE eliminado = FALSE AND paciente_id IN";
+        return buscarPorClaves(sql, pacienteIds, tamanioTramo);
+    }
+
+    /**
+     * Lee muchas historias por ID con consultas IN (ver {@link InListQuery}).
+     *
+     * @return Mapa ID → HistoriaClinica, en el orden de entrada; las eliminadas no aparecen
+     */
+    public Map<Long, HistoriaClinica> leerPorIds(Collection<Long> ids) throws Exception {
+        String sql = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version FROM historia_clinica WHERE eliminado = FALSE AND id IN";
+        return buscarPorClaves(sql, ids, InListQuery.TAMANIO_TRAMO_DEFAULT);
+    }
+
+    /**
+     * Consulta IN por IDs de paciente o de historia; la clave es la primera columna de sql.
+     */
+    private Map<Long, HistoriaClinica> buscarPorClaves(String sql, Collection<Long> claves, int tamanioTramo)
+            throws Exception {
+        return InListQuery.buscarPorParticion(sql, "", claves, DatabaseConnection::shardDeId, tamanioTramo,
+                PreparedStatement::setLong, rs -> mapper(sql, rs), (rs, hc) -> rs.getLong(1));
+    }
+
+    /**
+     * Busca en antecedentes, medicación actual y observaciones con el índice de texto completo
+     * (sintaxis: "asma losartan", "asma OR epoc", "losart*"), sin tocar la base más que para
+     * leer las historias encontradas.
+     *
+     * @return Historias de la más a la menos relevante
+     * @throws IllegalStateException Si el DAO se creó sin índice
+     */
+    public List<HistoriaClinica> buscarEnTextos(String consulta, int limite) throws Exception {
+        if (indice == null) {
+            throw new IllegalStateException("HistoriaClinicaDAO se creó sin índice de texto completo.");
+        }
+        List<ResultadoBusqueda> resultados = indice.buscar(consulta, limite);
+        List<Long> ids = new ArrayList<>(resultados.size());
+        for (ResultadoBusqueda resultado : resultados) {
+            ids.add(resultado.historiaId());
+        }
+        Map<Long, HistoriaClinica> historias = leerPorIds(ids);
+        List<HistoriaClinica> ordenadas = new ArrayList<>(historias.size());
+        for (Long id : ids) {
+            HistoriaClinica hc = historias.get(id);
+            if (hc != null) {
+                ordenadas.add(hc);
+            }
+        }
+        return ordenadas;
+    }
+
+    /**
+     * Reconstruye el índice de texto completo leyendo todas las historias activas.
+     * Necesario la primera vez, o si otra instancia escribió en la base.
+     */
+    public void reconstruirIndice() throws Exception {
+        if (indice == null) {
+            throw new IllegalStateException("HistoriaClinicaDAO se creó sin índice de texto completo.");
+        }
+        try (Stream<HistoriaClinica> historias = leerTodosStream(CursorStream.FETCH_SIZE_DEFAULT)) {
+            indice.reconstruir(historias);
+        }
+    }
+
+    /**
+     * El número de historia no es clave de partición: con particiones se consulta en todas.
+     */
+    public HistoriaClinica buscarPorNroHistoria(String nroHistoria) throws Exception {
+        String sql = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version FROM historia_clinica WHERE nro_historia = ? AND eliminado = FALSE ORDER BY id LIMIT 1";
+        List<HistoriaClinica> encontradas = ScatterGather.lista(sql, ps -> ps.setString(1, nroHistoria),
+                rs -> mapper(sql, rs), POR_ID, 1);
+        return encontradas.isEmpty() ? null : encontradas.get(0);
+    }
+
+    /**
+     * Con control de versión, como PacienteDAO.actualizar.
+     *
+     * @throws ConflictoVersionException Si otro usuario modificó la historia desde la lectura
+     */
     @Override
     public void actualizar(HistoriaClinica hc, Connection conn) throws Exception {
-        String sql = "UPDATE historia_clinica SET nro_historia = ?, grupo_sanguineo = ?, antecedentes = ?, medicacion_actual = ?, observaciones = ? WHERE id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, hc.getNroHistoria());
-            // 🎯 Usar name() para guardar el nombre interno del Enum (ej: A_POS)
-            ps.setString(2, hc.getGrupoSanguineo().name());
-            ps.setString(3, hc.getAntecedentes());
-            ps.setString(4, hc.getMedicacionActual());
-            ps.setString(5, hc.getObservaciones());
-            ps.setLong(6, hc.getId());
+        // Dentro de una unidad de trabajo, varias actualizaciones de la misma HC se combinan en una
+        if (!hc.tieneCambios()) {
+            return;
+        }
+        if (TransactionManager.diferirActualizacion(conn, hc,
+                () -> ejecutarActualizar(hc, conn))) {
+            return;
+        }
+        ejecutarActualizar(hc, conn);
+    }
+
+    /**
+     * UPDATE solo de las columnas modificadas: evita reenviar los campos TEXT que no cambiaron.
+     * Si la HC viene de la base y no cambió nada, no se envía ninguna sentencia.
+     */
+    private void ejecutarActualizar(HistoriaClinica hc, Connection conn) throws SQLException {
+        if (!hc.tieneCambios()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder("UPDATE historia_clinica SET ");
+        int columnas = 0;
+        if (hc.fueModificado(HistoriaClinica.NRO_HISTORIA)) {
+            sql.append(columnas++ > 0 ? ", " : "").append("nro_historia = ?");
+        }
+        if (hc.fueModificado(HistoriaClinica.GRUPO_SANGUINEO)) {
+            sql.append(columnas++ > 0 ? ", " : "").append("grupo_sanguineo = ?");
+        }
+        if (hc.fueModificado(HistoriaClinica.ANTECEDENTES)) {
+            sql.append(columnas++ > 0 ? ", " : "").append("antecedentes = ?");
+        }
+        if (hc.fueModificado(HistoriaClinica.MEDICACION_ACTUAL)) {
+            sql.append(columnas++ > 0 ? ", " : "").append("medicacion_actual = ?");
+        }
+        if (hc.fueModificado(HistoriaClinica.OBSERVACIONES)) {
+            sql.append(columnas++ > 0 ? ", " : "").append("observaciones = ?");
+        }
+        sql.append(", version = version + 1 WHERE id = ? AND version = ?");
+
+        Connection shardConn = DatabaseConnection.enShard(conn, DatabaseConnection.shardDeId(hc.getId()));
+        try (PreparedStatement ps = shardConn.prepareStatement(sql.toString())) {
+            int i = 1;
+            if (hc.fueModificado(HistoriaClinica.NRO_HISTORIA)) {
+                ps.setString(i++, hc.getNroHistoria());
+            }
+            if (hc.fueModificado(HistoriaClinica.GRUPO_SANGUINEO)) {
+                setGrupo(ps, i++, hc.getGrupoSanguineo());
+            }
+            if (hc.fueModificado(HistoriaClinica.ANTECEDENTES)) {
+                ps.setString(i++, hc.getAntecedentes());
+            }
+            if (hc.fueModificado(HistoriaClinica.MEDICACION_ACTUAL)) {
+                ps.setString(i++, hc.getMedicacionActual());
+            }
+            if (hc.fueModificado(HistoriaClinica.OBSERVACIONES)) {
+                ps.setString(i++, hc.getObservaciones());
+            }
+            ps.setLong(i++, hc.getId());
+            ps.setLong(i, hc.getVersion());
 
             if (ps.executeUpdate() == 0) {
-                throw new SQLException("Actualización fallida para HC ID " + hc.getId() + ".");
+                throw conflicto(shardConn, hc.getId(), hc.getVersion(), "Actualización fallida");
+            }
+        }
+        // Igual que en PacienteDAO: se restaura si la transacción se deshace
+        TransactionSynchronization.afterRollback(conn, hc.capturarEstado());
+        hc.setVersion(hc.getVersion() + 1);
+        RegistroCambios.registrar(shardConn, RegistroCambios.HISTORIA, hc.getId(), TipoCambio.MODIFICACION);
+        reindexarTrasCommit(hc, conn);
+        hc.limpiarCambios();
+        invalidarTrasCommit(hc.getId(), conn);
+    }
+
+    /**
+     * Un UPDATE con control de versión no afectó filas: si la fila existe, el conflicto lleva su
+     * estado actual, leído con FOR UPDATE para ver la última versión confirmada.
+     */
+    private SQLException conflicto(Connection shardConn, long id, long version, String operacion) throws SQLException {
+        try (PreparedStatement ps = shardConn.prepareStatement(SELECT_ACTUAL)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return new ConflictoVersionException("historia_clinica", version, mapper(SELECT_ACTUAL, rs).map(rs));
+                }
             }
         }
+        return new SQLException(operacion + " para HC ID " + id + ": no encontrada.");
+    }
+
+    /**
+     * Mapeador de las consultas propias (columnas sin prefijo), compilado la primera vez que se ejecuta sql.
+     */
+    private RowMapper<HistoriaClinica> mapper(String sql, ResultSet rs) throws SQLException {
+        return mappers.obtener(sql, rs, columnas -> compilar(columnas, "", true));
     }
 
-    private HistoriaClinica mapResultSetToHistoriaClinica(ResultSet rs) throws SQLException {
-        String grupoSanguineoString = rs.getString("grupo_sanguineo");
-        // 🎯 Usar valueOf() para convertir el String guardado (ej: A_POS) de vuelta al Enum
-        GrupoSanguineo grupo = GrupoSanguineo.valueOf(grupoSanguineoString);
+    /**
+     * Arma un mapeador que lee por índice las columnas de historia_clinica ya resueltas.
+     * Para las consultas JOIN desde paciente se usa el prefijo "hc_" ({@link #JOINED_COLUMNS});
+     * el mapeador retorna null si el LEFT JOIN no encontró historia para el paciente.
+     *
+     * @param conTextos false si la consulta usa {@link #JOINED_COLUMNS_SIN_TEXTOS}:
+     *                  los campos TEXT quedan con carga diferida.
+     */
+    RowMapper<HistoriaClinica> compilar(ColumnIndex columnas, String prefijo, boolean conTextos) throws SQLException {
+        final int id = columnas.requerida(prefijo + "id");
+        final int eliminado = columnas.requerida(prefijo + "eliminado");
+        final int nroHistoria = columnas.requerida(prefijo + "nro_historia");
+        final int grupo = columnas.requerida(prefijo + "grupo_sanguineo");
+        final int antecedentes = conTextos ? columnas.requerida(prefijo + "antecedentes") : 0;
+        final int medicacionActual = conTextos ? columnas.requerida(prefijo + "medicacion_actual") : 0;
+        final int observaciones = conTextos ? columnas.requerida(prefijo + "observaciones") : 0;
+        final int version = columnas.requerida(prefijo + "version");
 
-        return new HistoriaClinica(
-                rs.getLong("id"),
-                rs.getBoolean("eliminado"),
-                rs.getString("nro_historia"),
-                grupo,
-                rs.getString("antecedentes"),
-                rs.getString("medicacion_actual"),
-                rs.getString("observaciones")
-        );
+        return rs -> {
+            long hcId = rs.getLong(id);
+            if (rs.wasNull()) {
+                return null;
+            }
+            HistoriaClinica hc = new HistoriaClinica(
+                    hcId,
+                    rs.getBoolean(eliminado),
+                    rs.getString(nroHistoria),
+                    GrupoSanguineo.desdeSimbolo(rs.getString(grupo)),
+                    conTextos ? rs.getString(antecedentes) : null,
+                    conTextos ? rs.getString(medicacionActual) : null,
+                    conTextos ? rs.getString(observaciones) : null
+            );
+            hc.setVersion(rs.getLong(version));
+            if (!conTextos) {
+                hc.setCargadorTextos(() -> leerTextos(hcId));
+            }
+            hc.iniciarSeguimiento();
+            return hc;
+        };
+    }
+
+    /**
+     * Lee solo los campos TEXT de una historia clínica (para la carga diferida).
+     */
+    public HistoriaClinica.Textos leerTextos(long historiaId) throws Exception {
+        String sql = "SELECT antecedentes, medicacion_actual, observaciones FROM historia_clinica WHERE id = ?";
+        try (Connection conn = DatabaseConnection.getReadConnection(DatabaseConnection.shardDeId(historiaId));
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, historiaId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return new HistoriaClinica.Textos(
+                            rs.getString("antecedentes"),
+                            rs.getString("medicacion_actual"),
+                            rs.getString("observaciones"));
+                }
+            }
+        }
+        return null;
     }
 
     @Override
     public HistoriaClinica leer(long id) throws Exception {
-        String sql = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado FROM historia_clinica WHERE id = ? AND eliminado = FALSE";
-        try (Connection conn = DatabaseConnection.getConnection();
+        String sql = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version FROM historia_clinica WHERE id = ? AND eliminado = FALSE";
+        try (Connection conn = DatabaseConnection.getReadConnection(DatabaseConnection.shardDeId(id));
              PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setLong(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return mapResultSetToHistoriaClinica(rs);
+                    return mapper(sql, rs).map(rs);
                 }
             }
         }
@@ -107,26 +523,100 @@ public class HistoriaClinicaDAO implements GenericDAO<HistoriaClinica> {
 
     @Override
     public List<HistoriaClinica> leerTodos() throws Exception {
-        String sql = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado FROM historia_clinica WHERE eliminado = FALSE";
+        if (DatabaseConnection.getShardCount() > 1) {
+            try (Stream<HistoriaClinica> historias = leerTodosStream(CursorStream.FETCH_SIZE_DEFAULT)) {
+                return historias.collect(Collectors.toCollection(ArrayList::new));
+            }
+        }
+        String sql = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version FROM historia_clinica WHERE eliminado = FALSE";
         List<HistoriaClinica> lista = new ArrayList<>();
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection(0);
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
+            RowMapper<HistoriaClinica> mapper = mapper(sql, rs);
             while (rs.next()) {
-                lista.add(mapResultSetToHistoriaClinica(rs));
+                lista.add(mapper.map(rs));
             }
         }
         return lista;
     }
 
+    @Override
+    public List<HistoriaClinica> leerPagina(long despuesDeId, int limite) throws Exception {
+        String sql = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version FROM historia_clinica WHERE eliminado = FALSE AND id > ? ORDER BY id LIMIT ?";
+        return ScatterGather.lista(sql, ps -> {
+            ps.setLong(1, despuesDeId);
+            ps.setInt(2, limite);
+        }, rs -> mapper(sql, rs), POR_ID, limite);
+    }
+
+    @Override
+    public Stream<HistoriaClinica> leerTodosStream(int fetchSize) throws Exception {
+        String sql = "SELECT id, nro_historia, grupo_sanguineo, antecedentes, medicacion_actual, observaciones, eliminado, version FROM historia_clinica WHERE eliminado = FALSE ORDER BY id";
+        return ScatterGather.stream(sql, fetchSize, rs -> mapper(sql, rs), POR_ID);
+    }
+
+    /**
+     * Baja lógica sin control de versión: gana sobre cualquier edición concurrente.
+     */
     @Override
     public void eliminar(long id, Connection conn) throws Exception {
-        String sql =  "UPDATE historia_clinica SET eliminado = TRUE WHERE id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        aplicarPendiente(id, 0L, conn);
+        String sql =  "UPDATE historia_clinica SET eliminado = TRUE, version = version + 1 WHERE id = ?";
+        Connection shardConn = DatabaseConnection.enShard(conn, DatabaseConnection.shardDeId(id));
+        try (PreparedStatement ps = shardConn.prepareStatement(sql)) {
             ps.setLong(1, id);
             if (ps.executeUpdate() == 0) {
                 throw new SQLException("Eliminación (lógica) fallida para HC ID " + id + ".");
             }
         }
+        despuesDeEliminar(shardConn, id, conn);
+    }
+
+    /**
+     * Baja lógica solo si la fila sigue en la versión leída (getVersion() de la entidad).
+     *
+     * @throws ConflictoVersionException Si otro usuario la modificó desde entonces
+     */
+    public void eliminar(long id, long version, Connection conn) throws Exception {
+        long esperada = aplicarPendiente(id, version, conn);
+        String sql = "UPDATE historia_clinica SET eliminado = TRUE, version = version + 1 WHERE id = ? AND version = ?";
+        Connection shardConn = DatabaseConnection.enShard(conn, DatabaseConnection.shardDeId(id));
+        try (PreparedStatement ps = shardConn.prepareStatement(sql)) {
+            ps.setLong(1, id);
+            ps.setLong(2, esperada);
+            if (ps.executeUpdate() == 0) {
+                throw conflicto(shardConn, id, esperada, "Eliminación (lógica) fallida");
+            }
+        }
+        despuesDeEliminar(shardConn, id, conn);
+    }
+
+    /**
+     * Aplica el UPDATE diferido de la entidad, si lo hay, antes de una escritura inmediata sobre
+     * la misma fila. Si la versión recibida es la que esa instancia tenía antes del UPDATE,
+     * retorna la nueva: el cambio es de esta misma transacción.
+     */
+    private static long aplicarPendiente(long id, long version, Connection conn) throws Exception {
+        long esperada = version;
+        for (Object aplicada : TransactionManager.aplicarDiferidas(conn,
+                e -> e instanceof HistoriaClinica historia && historia.getId() == id)) {
+            // Cada escritura aplicada incrementó la versión en uno
+            if (((HistoriaClinica) aplicada).getVersion() == version + 1) {
+                esperada = version + 1;
+            }
+        }
+        return esperada;
+    }
+
+    /**
+     * Registro de cambios, caché e índice de textos tras una baja.
+     */
+    private void despuesDeEliminar(Connection shardConn, long id, Connection conn) throws SQLException {
+        RegistroCambios.registrar(shardConn, RegistroCambios.HISTORIA, id, TipoCambio.BAJA);
+        invalidarTrasCommit(id, conn);
+        if (indice != null) {
+            TransactionSynchronization.afterCommit(conn, () -> indice.eliminar(id));
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,246 @@
+package dao;
+
+import config.DatabaseConnection;
+import config.TransactionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * Utilidad interna para búsquedas de muchas claves con "... IN (?, ?, ...)".
+ *
+ * - Las claves se parten en tramos de a lo sumo tamanioTramo.
+ * - Cada tramo se completa repitiendo su última clave hasta la siguiente potencia de 2
+ *   (o hasta tamanioTramo): así solo hay unas pocas formas de sentencia distintas y el
+ *   driver y el servidor reutilizan sus planes en lugar de preparar una por cantidad de claves.
+ * - Si hay varios tramos y el pool de lectura de la partición tiene conexiones libres, los
+ *   tramos se reparten entre varios hilos virtuales, cada uno con su conexión.
+ * - Dentro de una unidad de trabajo de TransactionManager los tramos se ejecutan en orden en el
+ *   hilo del caller, sobre la conexión de la unidad (ven sus escrituras sin confirmar).
+ *
+ * Configuración (system properties):
+ * - -Ddb.inlist.tamanio (default 256): claves por tramo
+ * - -Ddb.inlist.paralelismo (default la mitad de db.pool.maxSize): conexiones simultáneas
+ *   como máximo por búsqueda, para no acaparar el pool
+ */
+final class InListQuery {
+
+    /** Claves por tramo por defecto. Configurable via -Ddb.inlist.tamanio */
+    static final int TAMANIO_TRAMO_DEFAULT = Integer.getInteger("db.inlist.tamanio", 256);
+
+    private static final int PARALELISMO_MAX = Integer.getInteger("db.inlist.paralelismo",
+            Math.max(1, DatabaseConnection.getMaxConexiones() / 2));
+
+    /** Marcadores "?, ?, ..." por cantidad, para no rearmarlos en cada tramo. */
+    private static final Map<Integer, String> MARCADORES = new ConcurrentHashMap<>();
+
+    /**
+     * Asigna una clave al parámetro indicado.
+     */
+    @FunctionalInterface
+    interface Binder<K> {
+        void bind(PreparedStatement ps, int parametro, K clave) throws SQLException;
+    }
+
+    /**
+     * Obtiene la clave de búsqueda de una fila ya mapeada.
+     */
+    @FunctionalInterface
+    interface Clave<K, T> {
+        K de(ResultSet rs, T entidad) throws SQLException;
+    }
+
+    private InListQuery() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada.");
+    }
+
+    /**
+     * Igual que {@link #buscar(int, String, String, Collection, int, Binder, RowMapper.Factory, Clave)},
+     * pero cada clave se busca solo en su partición (sin particiones, todas en la 0).
+     *
+     * @param particion Partición de cada clave
+     * @return Mapa clave → entidad en el orden de entrada; las claves sin fila no aparecen
+     */
+    static <K, T> Map<K, T> buscarPorParticion(String sqlPrefijo, String sqlSufijo, Collection<K> claves,
+                                               ToIntFunction<K> particion, int tamanioTramo, Binder<K> binder,
+                                               RowMapper.Factory<T> mappers, Clave<K, T> clave) throws Exception {
+        if (DatabaseConnection.getShardCount() == 1) {
+            return buscar(0, sqlPrefijo, sqlSufijo, claves, tamanioTramo, binder, mappers, clave);
+        }
+        Map<Integer, List<K>> porParticion = new HashMap<>();
+        for (K k : new LinkedHashSet<>(claves)) {
+            if (k == null) {
+                throw new IllegalArgumentException("Las claves de búsqueda no pueden ser null.");
+            }
+            porParticion.computeIfAbsent(particion.applyAsInt(k), shard -> new ArrayList<>()).add(k);
+        }
+        Map<K, T> encontrados = new HashMap<>();
+        for (Map.Entry<Integer, List<K>> entrada : porParticion.entrySet()) {
+            encontrados.putAll(buscar(entrada.getKey(), sqlPrefijo, sqlSufijo, entrada.getValue(), tamanioTramo,
+                    binder, mappers, clave));
+        }
+        Map<K, T> resultado = new LinkedHashMap<>();
+        for (K k : new LinkedHashSet<>(claves)) {
+            T entidad = encontrados.get(k);
+            if (entidad != null) {
+                resultado.put(k, entidad);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Ejecuta la búsqueda para todas las claves.
+     *
+     * @param shard      Partición donde están las claves (0 si no hay particiones)
+     * @param sqlPrefijo Consulta hasta el IN inclusive, ej: "SELECT ... WHERE p.dni IN"
+     * @param sqlSufijo  Resto de la consulta tras la lista (puede ser "")
+     * @return Mapa clave → entidad en el orden de entrada; las claves sin fila no aparecen
+     */
+    static <K, T> Map<K, T> buscar(int shard, String sqlPrefijo, String sqlSufijo, Collection<K> claves, int tamanioTramo,
+                                   Binder<K> binder, RowMapper.Factory<T> mappers, Clave<K, T> clave)
+            throws Exception {
+        if (tamanioTramo < 1) {
+            throw new IllegalArgumentException("El tamaño de tramo debe ser mayor a cero: " + tamanioTramo);
+        }
+        List<K> unicas = new ArrayList<>(new LinkedHashSet<>(claves));
+        if (unicas.contains(null)) {
+            throw new IllegalArgumentException("Las claves de búsqueda no pueden ser null.");
+        }
+        Map<K, T> encontrados = new ConcurrentHashMap<>();
+        int tramos = (unicas.size() + tamanioTramo - 1) / tamanioTramo;
+        // Los hilos virtuales no ven la unidad de trabajo del caller
+        int hilos = TransactionManager.conexionActual() != null
+                ? 1 : Math.min(tramos, conexionesDisponibles(shard));
+
+        if (hilos <= 1) {
+            try (Connection conn = DatabaseConnection.getReadConnection(shard)) {
+                for (int t = 0; t < tramos; t++) {
+                    ejecutarTramo(conn, sqlPrefijo, sqlSufijo, unicas, t, tamanioTramo, binder, mappers, clave, encontrados);
+                }
+            }
+        } else {
+            AtomicInteger siguiente = new AtomicInteger();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<Void>> trabajadores = new ArrayList<>(hilos);
+                for (int h = 0; h < hilos; h++) {
+                    trabajadores.add(executor.submit(() -> {
+                        try (Connection conn = DatabaseConnection.getReadConnection(shard)) {
+                            for (int t = siguiente.getAndIncrement(); t < tramos; t = siguiente.getAndIncrement()) {
+                                ejecutarTramo(conn, sqlPrefijo, sqlSufijo, unicas, t, tamanioTramo,
+                                        binder, mappers, clave, encontrados);
+                            }
+                        } catch (Exception e) {
+                            // Los demás trabajadores dejan de tomar tramos
+                            siguiente.set(tramos);
+                            throw e;
+                        }
+                        return null;
+                    }));
+                }
+                esperar(trabajadores);
+            }
+        }
+
+        Map<K, T> resultado = new LinkedHashMap<>();
+        for (K k : unicas) {
+            T entidad = encontrados.get(k);
+            if (entidad != null) {
+                resultado.put(k, entidad);
+            }
+        }
+        return resultado;
+    }
+
+    private static <K, T> void ejecutarTramo(Connection conn, String sqlPrefijo, String sqlSufijo, List<K> claves,
+                                             int tramo, int tamanioTramo, Binder<K> binder,
+                                             RowMapper.Factory<T> mappers, Clave<K, T> clave,
+                                             Map<K, T> encontrados) throws SQLException {
+        int desde = tramo * tamanioTramo;
+        int hasta = Math.min(desde + tamanioTramo, claves.size());
+        int forma = forma(hasta - desde, tamanioTramo);
+
+        String sql = sqlPrefijo + " (" + marcadores(forma) + ")" + sqlSufijo;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < forma; i++) {
+                // El relleno repite la última clave: no cambia el resultado
+                binder.bind(ps, i + 1, claves.get(Math.min(desde + i, hasta - 1)));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                RowMapper<T> mapper = mappers.para(rs);
+                while (rs.next()) {
+                    T entidad = mapper.map(rs);
+                    encontrados.put(clave.de(rs, entidad), entidad);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cantidad de parámetros de la sentencia para un tramo de n claves:
+     * la potencia de 2 siguiente, sin pasar de tamanioTramo.
+     */
+    private static int forma(int n, int tamanioTramo) {
+        int potencia = Integer.highestOneBit(n);
+        if (potencia < n) {
+            potencia <<= 1;
+        }
+        return Math.min(potencia, tamanioTramo);
+    }
+
+    private static String marcadores(int cantidad) {
+        return MARCADORES.computeIfAbsent(cantidad, n -> {
+            StringBuilder sb = new StringBuilder(n * 3);
+            for (int i = 0; i < n; i++) {
+                sb.append(i > 0 ? ", ?" : "?");
+            }
+            return sb.toString();
+        });
+    }
+
+    /**
+     * Conexiones que la búsqueda puede usar sin hacer esperar a otros: las que el pool de lectura
+     * de la partición (o sus réplicas) entrega sin espera, acotadas por db.inlist.paralelismo.
+     */
+    private static int conexionesDisponibles(int shard) {
+        return Math.max(1, Math.min(PARALELISMO_MAX, DatabaseConnection.getConexionesLecturaLibres(shard)));
+    }
+
+    /**
+     * Espera a todos los trabajadores y relanza la causa original del primer error.
+     */
+    private static void esperar(List<Future<Void>> trabajadores) throws Exception {
+        Exception error = null;
+        for (Future<Void> trabajador : trabajadores) {
+            try {
+                trabajador.get();
+            } catch (ExecutionException e) {
+                Exception causa = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                if (error == null) {
+                    error = causa;
+                } else {
+                    error.addSuppressed(causa);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
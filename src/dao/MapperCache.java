@@ -0,0 +1,40 @@
+package dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché de mapeadores compilados por forma de consulta.
+ *
+ * La primera vez que se ejecuta una consulta se resuelven las posiciones de sus columnas
+ * (ColumnIndex) y se arma un RowMapper que lee por índice; las ejecuciones siguientes
+ * de la misma consulta reutilizan ese mapeador sin mirar la metadata.
+ */
+final class MapperCache<T> {
+
+    /**
+     * Arma un mapeador a partir de las posiciones de las columnas.
+     */
+    @FunctionalInterface
+    interface Compilador<T> {
+        RowMapper<T> compilar(ColumnIndex columnas) throws SQLException;
+    }
+
+    private final ConcurrentHashMap<String, RowMapper<T>> porConsulta = new ConcurrentHashMap<>();
+
+    /**
+     * @param clave Identifica la forma de la consulta (su SQL, más el modo de carga si afecta el mapeo)
+     */
+    RowMapper<T> obtener(String clave, ResultSet rs, Compilador<T> compilador) throws SQLException {
+        RowMapper<T> mapper = porConsulta.get(clave);
+        if (mapper == null) {
+            mapper = compilador.compilar(ColumnIndex.de(rs));
+            RowMapper<T> previo = porConsulta.putIfAbsent(clave, mapper);
+            if (previo != null) {
+                mapper = previo;
+            }
+        }
+        return mapper;
+    }
+}
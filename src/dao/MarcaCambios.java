@@ -0,0 +1,92 @@
+package dao;
+
+import config.DatabaseConnection;
+
+import java.util.Arrays;
+
+/**
+ * Posición de un consumidor en el registro de cambios: la última secuencia procesada de cada
+ * partición. Es inmutable; {@link FeedCambios#leer} retorna la siguiente.
+ *
+ * Para guardarla entre ejecuciones se usa {@link #toString()} ("secuencia0,secuencia1,...")
+ * y se recupera con {@link #desdeTexto}.
+ */
+public final class MarcaCambios {
+
+    private final long[] posiciones;
+
+    private MarcaCambios(long[] posiciones) {
+        this.posiciones = posiciones;
+    }
+
+    /**
+     * Marca de un consumidor que todavía no leyó nada: el primer cambio registrado.
+     */
+    public static MarcaCambios inicial() {
+        return new MarcaCambios(new long[DatabaseConnection.getShardCount()]);
+    }
+
+    /**
+     * @throws IllegalArgumentException Si el texto no es una marca o es de otra cantidad de particiones
+     */
+    public static MarcaCambios desdeTexto(String texto) {
+        String[] partes = texto.trim().split(",");
+        if (partes.length != DatabaseConnection.getShardCount()) {
+            throw new IllegalArgumentException("La marca " + texto + " tiene " + partes.length
+                    + " particiones y hay " + DatabaseConnection.getShardCount() + ".");
+        }
+        long[] posiciones = new long[partes.length];
+        for (int i = 0; i < partes.length; i++) {
+            try {
+                posiciones[i] = Long.parseLong(partes[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Marca de cambios inválida: " + texto, e);
+            }
+            if (posiciones[i] < 0) {
+                throw new IllegalArgumentException("Marca de cambios inválida: " + texto);
+            }
+        }
+        return new MarcaCambios(posiciones);
+    }
+
+    /**
+     * Última secuencia procesada de la partición (0 = ninguna).
+     */
+    public long posicion(int shard) {
+        return posiciones[shard];
+    }
+
+    int particiones() {
+        return posiciones.length;
+    }
+
+    MarcaCambios avanzar(long[] nuevas) {
+        long[] copia = posiciones.clone();
+        for (int i = 0; i < copia.length; i++) {
+            copia[i] = Math.max(copia[i], nuevas[i]);
+        }
+        return new MarcaCambios(copia);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof MarcaCambios && Arrays.equals(posiciones, ((MarcaCambios) o).posiciones);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(posiciones);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < posiciones.length; i++) {
+            if (i > 0) {
+                texto.append(',');
+            }
+            texto.append(posiciones[i]);
+        }
+        return texto.toString();
+    }
+}
@@ -0,0 +1,237 @@
+package dao;
+
+import models.HistoriaClinica;
+import models.Paciente;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caché en proceso de pacientes (con su historia clínica) para PacienteDAO.
+ *
+ * Características:
+ * - Acotada por cantidad de entradas (expulsión LRU) y por TTL.
+ * - Indexada por ID de paciente y por DNI; ambos índices apuntan a la misma entrada.
+ * - Guarda y entrega copias, así los cambios del caller no alteran la caché.
+ * - Los DAOs invalidan las entradas afectadas después del commit de la escritura.
+ * - Con réplicas de lectura (db.replicas) una carga puede traer un valor atrasado;
+ *   el TTL acota cuánto tiempo puede quedar en caché.
+ *
+ * Para evitar que una lectura iniciada antes de una invalidación vuelva a cargar
+ * un valor viejo, cada carga toma una marca con {@link #marca()} y put() la
+ * descarta si hubo invalidaciones desde entonces.
+ */
+public final class PacienteCache {
+
+    private final int maxEntradas;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Entradas por ID de paciente, en orden de acceso (LRU). Protegido por lock. */
+    private final LinkedHashMap<Long, Entrada> porId = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> idPorDni = new HashMap<>();
+    private final Map<Long, Long> idPorHistoria = new HashMap<>();
+
+    private long invalidaciones;
+    private long hits;
+    private long misses;
+    private long expulsiones;
+
+    /**
+     * @param maxEntradas Cantidad máxima de pacientes en caché
+     * @param ttl Tiempo de vida de cada entrada desde que se carga
+     */
+    public PacienteCache(int maxEntradas, Duration ttl) {
+        if (maxEntradas < 1) {
+            throw new IllegalArgumentException("La caché debe admitir al menos una entrada: " + maxEntradas);
+        }
+        this.maxEntradas = maxEntradas;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Crea la caché con -Ddb.cache.pacientes.maxEntradas (default 10000)
+     * y -Ddb.cache.pacientes.ttlSegundos (default 300).
+     */
+    public static PacienteCache desdeSystemProperties() {
+        return new PacienteCache(
+                Integer.getInteger("db.cache.pacientes.maxEntradas", 10_000),
+                Duration.ofSeconds(Long.getLong("db.cache.pacientes.ttlSegundos", 300L)));
+    }
+
+    Paciente getPorId(long id) {
+        lock.lock();
+        try {
+            return copiaVigente(porId.get(id));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Paciente getPorDni(String dni) {
+        lock.lock();
+        try {
+            Long id = idPorDni.get(dni);
+            return copiaVigente(id != null ? porId.get(id) : null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marca a tomar antes de leer de la base; se pasa luego a put().
+     */
+    long marca() {
+        lock.lock();
+        try {
+            return invalidaciones;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void put(Paciente paciente, long marca) {
+        if (paciente == null || paciente.getId() == null) {
+            return;
+        }
+        Entrada nueva = new Entrada(copiar(paciente), System.nanoTime() + ttlNanos);
+        lock.lock();
+        try {
+            if (marca != invalidaciones) {
+                return;
+            }
+            quitar(paciente.getId());
+            porId.put(paciente.getId(), nueva);
+            indexar(nueva.paciente);
+            Iterator<Map.Entry<Long, Entrada>> it = porId.entrySet().iterator();
+            while (porId.size() > maxEntradas && it.hasNext()) {
+                Entrada expulsada = it.next().getValue();
+                it.remove();
+                desindexar(expulsada.paciente);
+                expulsiones++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Invalida el paciente con ese ID (y su entrada por DNI).
+     */
+    public void invalidar(long pacienteId) {
+        lock.lock();
+        try {
+            invalidaciones++;
+            quitar(pacienteId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Invalida el paciente dueño de la historia clínica con ese ID, si está en caché.
+     */
+    public void invalidarPorHistoria(long historiaId) {
+        lock.lock();
+        try {
+            invalidaciones++;
+            Long pacienteId = idPorHistoria.get(historiaId);
+            if (pacienteId != null) {
+                quitar(pacienteId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidarTodo() {
+        lock.lock();
+        try {
+            invalidaciones++;
+            porId.clear();
+            idPorDni.clear();
+            idPorHistoria.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public CacheStats stats() {
+        lock.lock();
+        try {
+            return new CacheStats(hits, misses, expulsiones, porId.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Paciente copiaVigente(Entrada entrada) {
+        if (entrada == null) {
+            misses++;
+            return null;
+        }
+        if (System.nanoTime() - entrada.expira > 0L) {
+            quitar(entrada.paciente.getId());
+            expulsiones++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return copiar(entrada.paciente);
+    }
+
+    private void quitar(long pacienteId) {
+        Entrada anterior = porId.remove(pacienteId);
+        if (anterior != null) {
+            desindexar(anterior.paciente);
+        }
+    }
+
+    private void indexar(Paciente p) {
+        if (p.getDni() != null) {
+            idPorDni.put(p.getDni(), p.getId());
+        }
+        if (p.getHistoriaClinica() != null && p.getHistoriaClinica().getId() != null) {
+            idPorHistoria.put(p.getHistoriaClinica().getId(), p.getId());
+        }
+    }
+
+    private void desindexar(Paciente p) {
+        if (p.getDni() != null) {
+            idPorDni.remove(p.getDni(), p.getId());
+        }
+        if (p.getHistoriaClinica() != null && p.getHistoriaClinica().getId() != null) {
+            idPorHistoria.remove(p.getHistoriaClinica().getId(), p.getId());
+        }
+    }
+
+    private static Paciente copiar(Paciente p) {
+        HistoriaClinica hc = p.getHistoriaClinica();
+        HistoriaClinica copiaHc = hc == null ? null : new HistoriaClinica(
+                hc.getId(), hc.isEliminado(), hc.getNroHistoria(), hc.getGrupoSanguineo(),
+                hc.getAntecedentes(), hc.getMedicacionActual(), hc.getObservaciones());
+        if (copiaHc != null) {
+            copiaHc.setVersion(hc.getVersion());
+            copiaHc.iniciarSeguimiento();
+        }
+        Paciente copia = new Paciente(p.getId(), p.isEliminado(), p.getNombre(), p.getApellido(), p.getDni(),
+                p.getFechaNacimiento(), copiaHc);
+        copia.setVersion(p.getVersion());
+        copia.iniciarSeguimiento();
+        return copia;
+    }
+
+    private static final class Entrada {
+        private final Paciente paciente;
+        private final long expira;
+
+        private Entrada(Paciente paciente, long expira) {
+            this.paciente = paciente;
+            this.expira = expira;
+        }
+    }
+}
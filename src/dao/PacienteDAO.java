@@ -1,58 +1,332 @@
 package dao;
 
 import config.DatabaseConnection;
+import config.TransactionManager;
+import config.TransactionSynchronization;
+import models.GrupoSanguineo;
 import models.HistoriaClinica;
 import models.Paciente;
+import models.PacienteResumen;
+import search.CoincidenciaNombre;
+import search.IndiceNombres;
 
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class PacienteDAO implements GenericDAO<Paciente> {
 
+    /** Orden de los listados: el merge de particiones lo necesita explícito. */
+    private static final Comparator<Paciente> POR_ID = Comparator.comparingLong(Paciente::getId);
+    private static final Comparator<PacienteResumen> RESUMEN_POR_ID = Comparator.comparingLong(PacienteResumen::getId);
+
+    private static final String INSERT_PACIENTE =
+            "INSERT INTO paciente (id, nombre, apellido, dni, fecha_nacimiento, eliminado) VALUES (?,?,?,?,?,?)";
+
+    /** Parámetros de INSERT_PACIENTE: en el alta combinada los de la historia van a continuación. */
+    private static final int PARAMETROS_INSERT = 6;
+
+    /**
+     * Alta de paciente e historia en un único envío (cuatro sentencias separadas por ';', las
+     * dos últimas para el registro de cambios: su turno y las altas).
+     * Con MySQL requiere allowMultiQueries=true, que DatabaseConnection agrega con esta opción.
+     */
+    private static final String INSERT_ADMISION = INSERT_PACIENTE + "; " + HistoriaClinicaDAO.INSERT_HISTORIA
+            + "; " + RegistroCambios.TURNO + "; " + RegistroCambios.ALTA_ADMISION;
+
+    /** Ver {@link #admitir}. Configurable via -Ddb.admision.unaSentencia */
+    private static final boolean ADMISION_EN_UNA_SENTENCIA = Boolean.getBoolean("db.admision.unaSentencia");
+
+    /** IDs de paciente asignados del lado del cliente. */
+    private static final RangoIds IDS = new RangoIds("paciente");
+
+    private static final String SELECT_PACIENTE =
+            "SELECT p.id, p.nombre, p.apellido, p.dni, p.fecha_nacimiento, p.eliminado, p.version FROM paciente p WHERE p.eliminado = FALSE";
+
+    private static final String SELECT_PACIENTE_CON_HISTORIA =
+            "SELECT p.id, p.nombre, p.apellido, p.dni, p.fecha_nacimiento, p.eliminado, p.version, "
+            + HistoriaClinicaDAO.JOINED_COLUMNS
+            + " FROM paciente p LEFT JOIN historia_clinica h ON h.paciente_id = p.id AND h.eliminado = FALSE"
+            + " WHERE p.eliminado = FALSE";
+
+    private static final String SELECT_PACIENTE_CON_HISTORIA_SIN_TEXTOS =
+            "SELECT p.id, p.nombre, p.apellido, p.dni, p.fecha_nacimiento, p.eliminado, p.version, "
+            + HistoriaClinicaDAO.JOINED_COLUMNS_SIN_TEXTOS
+            + " FROM paciente p LEFT JOIN historia_clinica h ON h.paciente_id = p.id AND h.eliminado = FALSE"
+            + " WHERE p.eliminado = FALSE";
+
+    private static final String SELECT_RESUMEN =
+            "SELECT p.id, p.nombre, p.apellido, p.dni, h.nro_historia, h.grupo_sanguineo"
+            + " FROM paciente p LEFT JOIN historia_clinica h ON h.paciente_id = p.id AND h.eliminado = FALSE"
+            + " WHERE p.eliminado = FALSE";
+
+    /** Fila actual, eliminada o no, para informar un conflicto de versión. */
+    private static final String SELECT_ACTUAL =
+            "SELECT p.id, p.nombre, p.apellido, p.dni, p.fecha_nacimiento, p.eliminado, p.version FROM paciente p"
+            + " WHERE p.id = ? FOR UPDATE";
+
+    /**
+     * Columnas de recorrerDemografia. Se trae la historia aunque esté eliminada para detectar
+     * la baja por su actualizado_en; "actualizado" es la última modificación de las dos filas.
+     */
+    private static final String SELECT_DEMOGRAFIA =
+            "SELECT p.id, p.eliminado, p.fecha_nacimiento, h.grupo_sanguineo, h.eliminado AS h_eliminado, h.id AS h_id,"
+            + " GREATEST(p.actualizado_en, COALESCE(h.actualizado_en, p.actualizado_en)) AS actualizado"
+            + " FROM paciente p LEFT JOIN historia_clinica h ON h.paciente_id = p.id";
+
+    /**
+     * Paciente activo, eliminado o archivado (ver ArchivadorEliminados), de más a menos
+     * reciente según fuente: 0 = paciente e historia en las tablas de trabajo, 1 = paciente en
+     * trabajo con su historia archivada (o sin historia), 2 = ambos archivados. La historia
+     * archivada de un paciente en trabajo solo cuenta si ya no tiene una en trabajo.
+     */
+    private static final String SELECT_INCLUYENDO_ARCHIVADOS = incluyendoArchivados();
+
     private HistoriaClinicaDAO historiaClinicaDao;
 
+    /** Mapeadores compilados por modo de carga: todas las consultas de un modo traen las mismas columnas. */
+    private final MapperCache<Paciente> mappers = new MapperCache<>();
+    private final MapperCache<PacienteResumen> resumenes = new MapperCache<>();
+
+    /** Caché opcional de lecturas por ID y DNI. Null si no se usa. */
+    private final PacienteCache cache;
+
+    /** Índice de nombres a mantener al día tras cada escritura, o null si no se usa. */
+    private final IndiceNombres indiceNombres;
+
     public PacienteDAO(HistoriaClinicaDAO historiaClinicaDao) {
+        this(historiaClinicaDao, null);
+    }
+
+    /**
+     * @param cache Caché para leer() y buscarPorDni(); las escrituras de este DAO y de
+     *              historiaClinicaDao la invalidan tras el commit.
+     */
+    public PacienteDAO(HistoriaClinicaDAO historiaClinicaDao, PacienteCache cache) {
+        this(historiaClinicaDao, cache, null);
+    }
+
+    /**
+     * @param indiceNombres Índice para {@link #buscarPorNombre} y {@link #autocompletarNombre};
+     *                      null para no usarlo
+     */
+    public PacienteDAO(HistoriaClinicaDAO historiaClinicaDao, PacienteCache cache, IndiceNombres indiceNombres) {
         this.historiaClinicaDao = historiaClinicaDao;
+        this.cache = cache;
+        this.indiceNombres = indiceNombres;
+        if (cache != null) {
+            historiaClinicaDao.setPacienteCache(cache);
+        }
     }
 
     @Override
     public long crear(Paciente paciente, Connection conn) throws Exception {
-        String sql = "INSERT INTO paciente (nombre, apellido, dni, fechaNacimiento, eliminado) VALUES (?,?,?,?,?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, paciente.getNombre());
-            ps.setString(2, paciente.getApellido());
-            ps.setString(3, paciente.getDni());
-            ps.setDate(4, Date.valueOf(paciente.getFechaNacimiento()));
-            ps.setBoolean(5, paciente.isEliminado());
-
-            int affectedRows = ps.executeUpdate();
+        // Con particiones, el paciente va a la partición de su DNI
+        int shard = DatabaseConnection.shardDeDni(paciente.getDni());
+        long id = IDS.siguiente(shard);
+        Connection shardConn = DatabaseConnection.enShard(conn, shard);
+        try (PreparedStatement ps = shardConn.prepareStatement(INSERT_PACIENTE)) {
+            bindInsert(ps, 0, paciente, id);
 
-            if (affectedRows == 0) {
+            if (ps.executeUpdate() == 0) {
                 throw new SQLException("Fallo al crear el paciente, no se afectaron filas.");
             }
+        }
+        RegistroCambios.alta(shardConn, RegistroCambios.PACIENTE, id);
+        indexarTrasCommit(List.of(id), List.of(paciente), conn);
+        return id;
+    }
 
-            try (ResultSet generatedKeys = ps.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    return generatedKeys.getLong(1);
-                } else {
-                    throw new SQLException("Fallo al crear el paciente, no se obtuvo ID.");
-                }
+    /**
+     * Alta de un paciente junto con su historia clínica (si tiene), en la transacción de conn.
+     *
+     * - Los dos IDs se asignan antes de escribir (ver RangoIds): no se lee ninguna clave generada
+     *   y la historia se vincula con el paciente en el mismo envío.
+     * - Con -Ddb.admision.unaSentencia=true los INSERT (paciente, historia y registro de cambios)
+     *   viajan juntos en una sola sentencia; si no, van en sentencias preparadas (cacheadas).
+     * - Al terminar, paciente y historia tienen su ID asignado (setId).
+     *
+     * @return El ID del paciente
+     */
+    public long admitir(Paciente paciente, Connection conn) throws Exception {
+        HistoriaClinica historia = paciente.getHistoriaClinica();
+        if (historia == null) {
+            long id = crear(paciente, conn);
+            paciente.setId(id);
+            return id;
+        }
+        int shard = DatabaseConnection.shardDeDni(paciente.getDni());
+        long id = IDS.siguiente(shard);
+        long historiaId = historiaClinicaDao.siguienteId(shard);
+        Connection shardConn = DatabaseConnection.enShard(conn, shard);
+        if (ADMISION_EN_UNA_SENTENCIA) {
+            try (PreparedStatement ps = shardConn.prepareStatement(INSERT_ADMISION)) {
+                bindInsert(ps, 0, paciente, id);
+                HistoriaClinicaDAO.bindInsert(ps, PARAMETROS_INSERT, historia, historiaId, id);
+                ps.setLong(PARAMETROS_INSERT + HistoriaClinicaDAO.PARAMETROS_INSERT + 1, id);
+                ps.setLong(PARAMETROS_INSERT + HistoriaClinicaDAO.PARAMETROS_INSERT + 2, historiaId);
+                ps.execute();
+                verificarAltas(ps);
+            }
+        } else {
+            try (PreparedStatement ps = shardConn.prepareStatement(INSERT_PACIENTE)) {
+                bindInsert(ps, 0, paciente, id);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = shardConn.prepareStatement(HistoriaClinicaDAO.INSERT_HISTORIA)) {
+                HistoriaClinicaDAO.bindInsert(ps, 0, historia, historiaId, id);
+                ps.executeUpdate();
             }
+            RegistroCambios.altaAdmision(shardConn, id, historiaId);
         }
+        indexarTrasCommit(List.of(id), List.of(paciente), conn);
+        historiaClinicaDao.registrarAltas(List.of(historiaId), List.of(historia), List.of(id), conn);
+        paciente.setId(id);
+        historia.setId(historiaId);
+        return id;
+    }
+
+    /**
+     * Cada sentencia del envío combinado debe haber insertado una fila.
+     */
+    private static void verificarAltas(PreparedStatement ps) throws SQLException {
+        int sentencias = 0;
+        int filas = ps.getUpdateCount();
+        while (filas != -1) {
+            if (filas == 0) {
+                throw new SQLException("Fallo al admitir el paciente, no se afectaron filas.");
+            }
+            sentencias++;
+            ps.getMoreResults();
+            filas = ps.getUpdateCount();
+        }
+        if (sentencias == 0) {
+            throw new SQLException("Fallo al admitir el paciente, el driver no informó filas.");
+        }
+    }
+
+    /**
+     * Inserta los pacientes por lotes y luego sus historias clínicas (si tienen).
+     * A cada Paciente se le asigna el ID generado (setId) y cada HistoriaClinica
+     * queda vinculada a su paciente sin consultas adicionales por fila.
+     * Conviene ejecutarlo dentro de una transacción (conn con autocommit en false).
+     * Con particiones, cada paciente (y su historia) va a la partición de su DNI.
+     */
+    @Override
+    public List<Long> crearLote(List<Paciente> pacientes, int tamanioLote, Connection conn) throws Exception {
+        int[] shards = new int[pacientes.size()];
+        List<Long> ids = new ArrayList<>(pacientes.size());
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = DatabaseConnection.shardDeDni(pacientes.get(i).getDni());
+            ids.add(IDS.siguiente(shards[i]));
+        }
+        BatchInsert.ejecutarPorParticion(conn, INSERT_PACIENTE, pacientes, tamanioLote, i -> shards[i],
+                (ps, paciente, i) -> bindInsert(ps, 0, paciente, ids.get(i)));
+        RegistroCambios.altas(conn, RegistroCambios.PACIENTE, ids, tamanioLote);
+
+        List<HistoriaClinica> historias = new ArrayList<>();
+        List<Long> pacienteIds = new ArrayList<>();
+        for (int i = 0; i < pacientes.size(); i++) {
+            Paciente paciente = pacientes.get(i);
+            paciente.setId(ids.get(i));
+            if (paciente.getHistoriaClinica() != null) {
+                historias.add(paciente.getHistoriaClinica());
+                pacienteIds.add(ids.get(i));
+            }
+        }
+        indexarTrasCommit(ids, pacientes, conn);
+
+        if (!historias.isEmpty()) {
+            List<Long> hcIds = historiaClinicaDao.crearLote(historias, pacienteIds, tamanioLote, conn);
+            for (int i = 0; i < historias.size(); i++) {
+                historias.get(i).setId(hcIds.get(i));
+            }
+        }
+        return ids;
+    }
+
+    private void invalidarTrasCommit(long id, Connection conn) throws SQLException {
+        if (cache != null) {
+            TransactionSynchronization.afterCommit(conn, () -> cache.invalidar(id));
+        }
+    }
+
+    /**
+     * Indexa los nombres cuando se confirma la transacción. Se toman ahora: el caller
+     * puede seguir modificando las entidades.
+     */
+    private void indexarTrasCommit(List<Long> ids, List<Paciente> pacientes, Connection conn) throws SQLException {
+        IndiceNombres indice = indiceNombres;
+        if (indice == null) {
+            return;
+        }
+        String[] nombres = new String[pacientes.size()];
+        String[] apellidos = new String[pacientes.size()];
+        for (int i = 0; i < nombres.length; i++) {
+            nombres[i] = pacientes.get(i).getNombre();
+            apellidos[i] = pacientes.get(i).getApellido();
+        }
+        TransactionSynchronization.afterCommit(conn, () -> {
+            for (int i = 0; i < nombres.length; i++) {
+                indice.indexar(ids.get(i), nombres[i], apellidos[i]);
+            }
+        });
+    }
+
+    /**
+     * @param desde Parámetros ya ocupados por sentencias anteriores del mismo envío
+     */
+    private static void bindInsert(PreparedStatement ps, int desde, Paciente paciente, long id) throws SQLException {
+        ps.setLong(desde + 1, id);
+        ps.setString(desde + 2, paciente.getNombre());
+        ps.setString(desde + 3, paciente.getApellido());
+        ps.setString(desde + 4, paciente.getDni());
+        if (paciente.getFechaNacimiento() != null) {
+            ps.setDate(desde + 5, Date.valueOf(paciente.getFechaNacimiento()));
+        } else {
+            ps.setNull(desde + 5, Types.DATE);
+        }
+        ps.setBoolean(desde + 6, Boolean.TRUE.equals(paciente.isEliminado()));
     }
 
     @Override
     public Paciente leer(long id) throws Exception {
-        String sql = "SELECT id, nombre, apellido, dni, fecha_nacimiento, eliminado FROM paciente WHERE id = ? AND eliminado = FALSE";
-        try (Connection conn = DatabaseConnection.getConnection();
+        return leer(id, FetchMode.CON_HISTORIA);
+    }
+
+    public Paciente leer(long id, FetchMode modo) throws Exception {
+        if (cache == null) {
+            return leerDeBase(id, modo);
+        }
+        Paciente cacheado = cache.getPorId(id);
+        if (cacheado != null) {
+            return segunModo(cacheado, modo);
+        }
+        long marca = cache.marca();
+        Paciente paciente = leerDeBase(id, FetchMode.CON_HISTORIA);
+        cache.put(paciente, marca);
+        return segunModo(paciente, modo);
+    }
+
+    private Paciente leerDeBase(long id, FetchMode modo) throws Exception {
+        String sql = selectPacientes(modo) + " AND p.id = ?";
+        try (Connection conn = DatabaseConnection.getReadConnection(DatabaseConnection.shardDeId(id));
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setLong(1, id);
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return mapResultSetToPaciente(rs);
+                    return mapper(modo, rs).map(rs);
                 }
             }
         }
@@ -61,40 +335,151 @@ public class PacienteDAO implements GenericDAO<Paciente> {
 
     @Override
     public List<Paciente> leerTodos() throws Exception {
-        String sql = "SELECT id, nombre, apellido, dni, fecha_nacimiento, eliminado FROM paciente WHERE eliminado = FALSE";
+        return leerTodos(FetchMode.CON_HISTORIA);
+    }
+
+    public List<Paciente> leerTodos(FetchMode modo) throws Exception {
+        if (DatabaseConnection.getShardCount() > 1) {
+            // Scatter-gather: todas las particiones en paralelo, combinadas por ID a medida que llegan
+            try (Stream<Paciente> pacientes = leerTodosStream(CursorStream.FETCH_SIZE_DEFAULT, modo)) {
+                return pacientes.collect(Collectors.toCollection(ArrayList::new));
+            }
+        }
+        String sql = selectPacientes(modo);
         List<Paciente> pacientes = new ArrayList<>();
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection(0);
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
+            RowMapper<Paciente> mapper = mapper(modo, rs);
             while (rs.next()) {
-                pacientes.add(mapResultSetToPaciente(rs));
+                pacientes.add(mapper.map(rs));
             }
         }
         return pacientes;
     }
 
+    @Override
+    public List<Paciente> leerPagina(long despuesDeId, int limite) throws Exception {
+        return leerPagina(despuesDeId, limite, FetchMode.CON_HISTORIA);
+    }
+
+    public List<Paciente> leerPagina(long despuesDeId, int limite, FetchMode modo) throws Exception {
+        String sql = selectPacientes(modo) + " AND p.id > ? ORDER BY p.id LIMIT ?";
+        return ScatterGather.lista(sql, ps -> {
+            ps.setLong(1, despuesDeId);
+            ps.setInt(2, limite);
+        }, rs -> mapper(modo, rs), POR_ID, limite);
+    }
+
+    @Override
+    public Stream<Paciente> leerTodosStream(int fetchSize) throws Exception {
+        return leerTodosStream(fetchSize, FetchMode.CON_HISTORIA);
+    }
+
+    public Stream<Paciente> leerTodosStream(int fetchSize, FetchMode modo) throws Exception {
+        String sql = selectPacientes(modo) + " ORDER BY p.id";
+        return ScatterGather.stream(sql, fetchSize, rs -> mapper(modo, rs), POR_ID);
+    }
+
+    /**
+     * Guarda los cambios solo si la fila sigue en la versión con que se leyó el paciente
+     * (getVersion()); al guardar, la versión de la entidad avanza junto con la de la fila. No se
+     * bloquea nada mientras se edita. Si la transacción se deshace, la entidad vuelve a la versión
+     * y los cambios pendientes que tenía.
+     *
+     * @throws ConflictoVersionException Si otro usuario modificó la fila desde la lectura
+     */
     @Override
     public void actualizar(Paciente paciente, Connection conn) throws Exception {
-        String sql = "UPDATE paciente SET nombre = ?, apellido = ?, dni = ?, fecha_nacimiento = ? WHERE id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, paciente.getNombre());
-            ps.setString(2, paciente.getApellido());
-            ps.setString(3, paciente.getDni());
-            ps.setDate(4, Date.valueOf(paciente.getFechaNacimiento()));
-            ps.setLong(5, paciente.getId());
+        // Dentro de una unidad de trabajo, varias actualizaciones del mismo paciente se combinan en una
+        if (!paciente.tieneCambios()) {
+            return;
+        }
+        if (TransactionManager.diferirActualizacion(conn, paciente,
+                () -> ejecutarActualizar(paciente, conn))) {
+            return;
+        }
+        ejecutarActualizar(paciente, conn);
+    }
+
+    /**
+     * UPDATE solo de las columnas modificadas. Si la entidad viene de la base y no cambió nada,
+     * no se envía ninguna sentencia. Sin seguimiento de cambios se actualizan todas.
+     */
+    private void ejecutarActualizar(Paciente paciente, Connection conn) throws SQLException {
+        if (!paciente.tieneCambios()) {
+            return;
+        }
+        int shard = DatabaseConnection.shardDeId(paciente.getId());
+        if (paciente.fueModificado(Paciente.DNI) && DatabaseConnection.shardDeDni(paciente.getDni()) != shard) {
+            throw new IllegalArgumentException("El nuevo DNI " + paciente.getDni()
+                    + " corresponde a otra partición: el paciente " + paciente.getId() + " no se puede mover.");
+        }
+        StringBuilder sql = new StringBuilder("UPDATE paciente SET ");
+        int columnas = 0;
+        if (paciente.fueModificado(Paciente.NOMBRE)) {
+            sql.append(columnas++ > 0 ? ", " : "").append("nombre = ?");
+        }
+        if (paciente.fueModificado(Paciente.APELLIDO)) {
+            sql.append(columnas++ > 0 ? ", " : "").append("apellido = ?");
+        }
+        if (paciente.fueModificado(Paciente.DNI)) {
+            sql.append(columnas++ > 0 ? ", " : "").append("dni = ?");
+        }
+        if (paciente.fueModificado(Paciente.FECHA_NACIMIENTO)) {
+            sql.append(columnas++ > 0 ? ", " : "").append("fecha_nacimiento = ?");
+        }
+        sql.append(", version = version + 1 WHERE id = ? AND version = ?");
+
+        Connection shardConn = DatabaseConnection.enShard(conn, shard);
+        try (PreparedStatement ps = shardConn.prepareStatement(sql.toString())) {
+            int i = 1;
+            if (paciente.fueModificado(Paciente.NOMBRE)) {
+                ps.setString(i++, paciente.getNombre());
+            }
+            if (paciente.fueModificado(Paciente.APELLIDO)) {
+                ps.setString(i++, paciente.getApellido());
+            }
+            if (paciente.fueModificado(Paciente.DNI)) {
+                ps.setString(i++, paciente.getDni());
+            }
+            if (paciente.fueModificado(Paciente.FECHA_NACIMIENTO)) {
+                if (paciente.getFechaNacimiento() != null) {
+                    ps.setDate(i++, Date.valueOf(paciente.getFechaNacimiento()));
+                } else {
+                    ps.setNull(i++, Types.DATE);
+                }
+            }
+            ps.setLong(i++, paciente.getId());
+            ps.setLong(i, paciente.getVersion());
 
             int affectedRows = ps.executeUpdate();
             if (affectedRows == 0) {
-                throw new SQLException("Actualización fallida, ID " + paciente.getId() + " no encontrado o eliminado.");
+                throw conflicto(shardConn, paciente.getId(), paciente.getVersion(), "Actualización fallida");
             }
         }
+        // Si la transacción se deshace (o se reintenta tras un deadlock), la entidad vuelve a
+        // la versión y los cambios pendientes de antes del UPDATE
+        TransactionSynchronization.afterRollback(conn, paciente.capturarEstado());
+        paciente.setVersion(paciente.getVersion() + 1);
+        RegistroCambios.registrar(shardConn, RegistroCambios.PACIENTE, paciente.getId(), TipoCambio.MODIFICACION);
+        if (paciente.fueModificado(Paciente.NOMBRE) || paciente.fueModificado(Paciente.APELLIDO)) {
+            indexarTrasCommit(List.of(paciente.getId()), List.of(paciente), conn);
+        }
+        paciente.limpiarCambios();
+        invalidarTrasCommit(paciente.getId(), conn);
     }
 
+    /**
+     * Baja lógica sin control de versión: gana sobre cualquier edición concurrente.
+     */
     @Override
     public void eliminar(long id, Connection conn) throws Exception {
-        String sql = "UPDATE paciente SET eliminado = TRUE WHERE id = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        aplicarPendiente(id, 0L, conn);
+        String sql = "UPDATE paciente SET eliminado = TRUE, version = version + 1 WHERE id = ?";
+        Connection shardConn = DatabaseConnection.enShard(conn, DatabaseConnection.shardDeId(id));
+        try (PreparedStatement ps = shardConn.prepareStatement(sql)) {
             ps.setLong(1, id);
 
             int affectedRows = ps.executeUpdate();
@@ -102,37 +487,445 @@ public class PacienteDAO implements GenericDAO<Paciente> {
                 throw new SQLException("Eliminación fallida, ID " + id + " no encontrado.");
             }
         }
+        despuesDeEliminar(shardConn, id, conn);
+    }
+
+    /**
+     * Baja lógica solo si la fila sigue en la versión leída (getVersion() de la entidad).
+     *
+     * @throws ConflictoVersionException Si otro usuario la modificó desde entonces
+     */
+    public void eliminar(long id, long version, Connection conn) throws Exception {
+        long esperada = aplicarPendiente(id, version, conn);
+        String sql = "UPDATE paciente SET eliminado = TRUE, version = version + 1 WHERE id = ? AND version = ?";
+        Connection shardConn = DatabaseConnection.enShard(conn, DatabaseConnection.shardDeId(id));
+        try (PreparedStatement ps = shardConn.prepareStatement(sql)) {
+            ps.setLong(1, id);
+            ps.setLong(2, esperada);
+
+            if (ps.executeUpdate() == 0) {
+                throw conflicto(shardConn, id, esperada, "Eliminación fallida");
+            }
+        }
+        despuesDeEliminar(shardConn, id, conn);
+    }
+
+    /**
+     * Aplica el UPDATE diferido de la entidad, si lo hay, antes de una escritura inmediata sobre
+     * la misma fila. Si la versión recibida es la que esa instancia tenía antes del UPDATE,
+     * retorna la nueva: el cambio es de esta misma transacción.
+     */
+    private static long aplicarPendiente(long id, long version, Connection conn) throws Exception {
+        long esperada = version;
+        for (Object aplicada : TransactionManager.aplicarDiferidas(conn,
+                e -> e instanceof Paciente paciente && paciente.getId() == id)) {
+            // Cada escritura aplicada incrementó la versión en uno
+            if (((Paciente) aplicada).getVersion() == version + 1) {
+                esperada = version + 1;
+            }
+        }
+        return esperada;
+    }
+
+    /**
+     * Registro de cambios, caché e índice de nombres tras una baja.
+     */
+    private void despuesDeEliminar(Connection shardConn, long id, Connection conn) throws SQLException {
+        RegistroCambios.registrar(shardConn, RegistroCambios.PACIENTE, id, TipoCambio.BAJA);
+        invalidarTrasCommit(id, conn);
+        if (indiceNombres != null) {
+            TransactionSynchronization.afterCommit(conn, () -> indiceNombres.eliminar(id));
+        }
     }
 
     public Paciente buscarPorDni(String dni) throws Exception {
-        String sql = "SELECT id, nombre, apellido, dni, fecha_nacimiento, eliminado FROM paciente WHERE dni = ? AND eliminado = FALSE";
-        try (Connection conn = DatabaseConnection.getConnection();
+        return buscarPorDni(dni, FetchMode.CON_HISTORIA);
+    }
+
+    public Paciente buscarPorDni(String dni, FetchMode modo) throws Exception {
+        if (cache == null) {
+            return buscarPorDniEnBase(dni, modo);
+        }
+        Paciente cacheado = cache.getPorDni(dni);
+        if (cacheado != null) {
+            return segunModo(cacheado, modo);
+        }
+        long marca = cache.marca();
+        Paciente paciente = buscarPorDniEnBase(dni, FetchMode.CON_HISTORIA);
+        cache.put(paciente, marca);
+        return segunModo(paciente, modo);
+    }
+
+    private Paciente buscarPorDniEnBase(String dni, FetchMode modo) throws Exception {
+        String sql = selectPacientes(modo) + " AND p.dni = ?";
+        try (Connection conn = DatabaseConnection.getReadConnection(DatabaseConnection.shardDeDni(dni));
              PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setString(1, dni);
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return mapResultSetToPaciente(rs);
+                    return mapper(modo, rs).map(rs);
                 }
             }
         }
         return null;
     }
 
-    private Paciente mapResultSetToPaciente(ResultSet rs) throws SQLException, Exception {
-        long pacienteId = rs.getLong("id");
+    /**
+     * Lee un paciente aunque esté eliminado o ya archivado, con la historia clínica que tenga
+     * (activa, eliminada o archivada). Es una lectura de consulta: no pasa por la caché y las
+     * entidades archivadas no se pueden actualizar.
+     *
+     * @return El paciente, o null si el ID nunca existió
+     */
+    public Paciente leerIncluyendoArchivados(long id) throws Exception {
+        List<Paciente> pacientes = leerIncluyendoArchivados(DatabaseConnection.shardDeId(id), "p.id = ?", id);
+        return pacientes.isEmpty() ? null : pacientes.get(0);
+    }
+
+    /**
+     * Todos los pacientes que tuvieron el DNI, activos, eliminados o archivados: primero el de
+     * las tablas de trabajo y luego los archivados, del más reciente al más antiguo.
+     */
+    public List<Paciente> buscarPorDniIncluyendoArchivados(String dni) throws Exception {
+        return leerIncluyendoArchivados(DatabaseConnection.shardDeDni(dni), "p.dni = ?", dni);
+    }
 
-        HistoriaClinica hc = historiaClinicaDao.leerPorPacienteId(pacienteId);
+    private List<Paciente> leerIncluyendoArchivados(int shard, String filtro, Object valor) throws SQLException {
+        String sql = SELECT_INCLUYENDO_ARCHIVADOS.replace("{filtro}", filtro);
+        List<Paciente> pacientes = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getReadConnection(shard);
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            // El mismo filtro en las tres ramas
+            for (int i = 1; i <= 3; i++) {
+                ps.setObject(i, valor);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                RowMapper<Paciente> mapper = mappers.obtener("INCLUYENDO_ARCHIVADOS", rs,
+                        columnas -> compilar(columnas, FetchMode.CON_HISTORIA));
+                long anterior = 0;
+                while (rs.next()) {
+                    // Un paciente puede tener varias historias archivadas: vale la primera (la más nueva)
+                    long id = rs.getLong(1);
+                    if (id != anterior) {
+                        pacientes.add(mapper.map(rs));
+                        anterior = id;
+                    }
+                }
+            }
+        }
+        return pacientes;
+    }
+
+    private static String incluyendoArchivados() {
+        String columnas = "SELECT p.id, p.nombre, p.apellido, p.dni, p.fecha_nacimiento, p.eliminado, p.version, "
+                + HistoriaClinicaDAO.JOINED_COLUMNS;
+        return columnas + ", 0 AS fuente FROM paciente p JOIN historia_clinica h ON h.paciente_id = p.id"
+                + " WHERE {filtro}"
+                + " UNION ALL " + columnas + ", 1 AS fuente FROM paciente p"
+                + " LEFT JOIN historia_clinica_archivo h ON h.paciente_id = p.id"
+                + " WHERE {filtro} AND NOT EXISTS (SELECT 1 FROM historia_clinica t WHERE t.paciente_id = p.id)"
+                + " UNION ALL " + columnas + ", 2 AS fuente FROM paciente_archivo p"
+                + " LEFT JOIN historia_clinica_archivo h ON h.paciente_id = p.id"
+                + " WHERE {filtro}"
+                + " ORDER BY fuente, id DESC, hc_id DESC";
+    }
+
+    public Map<String, Paciente> buscarPorDnis(Collection<String> dnis) throws Exception {
+        return buscarPorDnis(dnis, FetchMode.CON_HISTORIA);
+    }
+
+    public Map<String, Paciente> buscarPorDnis(Collection<String> dnis, FetchMode modo) throws Exception {
+        return buscarPorDnis(dnis, modo, InListQuery.TAMANIO_TRAMO_DEFAULT);
+    }
+
+    /**
+     * Busca muchos DNI con consultas IN de a tamanioTramo claves (ver {@link InListQuery}).
+     * Con caché, solo se consultan los DNI que no están cacheados.
+     *
+     * @return Mapa DNI → Paciente, en el orden de entrada; los DNI sin paciente activo no aparecen
+     */
+    public Map<String, Paciente> buscarPorDnis(Collection<String> dnis, FetchMode modo, int tamanioTramo)
+            throws Exception {
+        if (cache == null) {
+            return buscarPorDnisEnBase(dnis, modo, tamanioTramo);
+        }
+        Map<String, Paciente> cacheados = new HashMap<>();
+        List<String> faltantes = new ArrayList<>();
+        for (String dni : new LinkedHashSet<>(dnis)) {
+            Paciente cacheado = dni != null ? cache.getPorDni(dni) : null;
+            if (cacheado != null) {
+                cacheados.put(dni, segunModo(cacheado, modo));
+            } else {
+                faltantes.add(dni);
+            }
+        }
+        long marca = cache.marca();
+        Map<String, Paciente> leidos = buscarPorDnisEnBase(faltantes, FetchMode.CON_HISTORIA, tamanioTramo);
+        Map<String, Paciente> resultado = new LinkedHashMap<>();
+        for (String dni : new LinkedHashSet<>(dnis)) {
+            Paciente paciente = cacheados.get(dni);
+            if (paciente == null && (paciente = leidos.get(dni)) != null) {
+                cache.put(paciente, marca);
+                paciente = segunModo(paciente, modo);
+            }
+            if (paciente != null) {
+                resultado.put(dni, paciente);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Con particiones, cada DNI se busca solo en la suya.
+     */
+    private Map<String, Paciente> buscarPorDnisEnBase(Collection<String> dnis, FetchMode modo, int tamanioTramo)
+            throws Exception {
+        return InListQuery.buscarPorParticion(selectPacientes(modo) + " AND p.dni IN", "", dnis,
+                DatabaseConnection::shardDeDni, tamanioTramo,
+                PreparedStatement::setString, rs -> mapper(modo, rs), (rs, paciente) -> paciente.getDni());
+    }
+
+    /**
+     * Lee muchos pacientes por ID con consultas IN (ver {@link InListQuery}), sin pasar por la caché.
+     *
+     * @return Mapa ID → Paciente, en el orden de entrada; los eliminados no aparecen
+     */
+    public Map<Long, Paciente> leerPorIds(Collection<Long> ids, FetchMode modo) throws Exception {
+        return InListQuery.buscarPorParticion(selectPacientes(modo) + " AND p.id IN", "", ids,
+                DatabaseConnection::shardDeId, InListQuery.TAMANIO_TRAMO_DEFAULT,
+                PreparedStatement::setLong, rs -> mapper(modo, rs), (rs, paciente) -> paciente.getId());
+    }
+
+    /**
+     * Búsqueda por nombre y apellido tolerante a errores de tipeo y tildes
+     * (ver {@link IndiceNombres#buscar}). El índice responde sin ir a la base;
+     * después se leen los pacientes encontrados con una consulta IN.
+     *
+     * @return Pacientes (sin historia) del más al menos parecido
+     * @throws IllegalStateException Si el DAO se creó sin índice de nombres
+     */
+    public List<Paciente> buscarPorNombre(String consulta, int limite) throws Exception {
+        return leerEnOrden(indiceNombres().buscar(consulta, limite));
+    }
 
-        return new Paciente(
-                pacienteId,
-                rs.getBoolean("eliminado"),
-                rs.getString("nombre"),
-                rs.getString("apellido"),
-                rs.getString("dni"),
-                rs.getDate("fecha_nacimiento").toLocalDate(),
-                hc
-        );
+    /**
+     * Autocompletado por prefijo de nombre o apellido (ver {@link IndiceNombres#autocompletar}).
+     *
+     * @return Pacientes (sin historia) en orden alfabético
+     * @throws IllegalStateException Si el DAO se creó sin índice de nombres
+     */
+    public List<Paciente> autocompletarNombre(String prefijo, int limite) throws Exception {
+        return leerEnOrden(indiceNombres().autocompletar(prefijo, limite));
+    }
+
+    /**
+     * Reconstruye el índice de nombres leyendo todos los pacientes activos.
+     */
+    public void reconstruirIndiceNombres() throws Exception {
+        try (Stream<Paciente> pacientes = leerTodosStream(CursorStream.FETCH_SIZE_DEFAULT, FetchMode.SIN_HISTORIA)) {
+            indiceNombres().reconstruir(pacientes);
+        }
+    }
+
+    private IndiceNombres indiceNombres() {
+        if (indiceNombres == null) {
+            throw new IllegalStateException("PacienteDAO se creó sin índice de nombres.");
+        }
+        return indiceNombres;
+    }
+
+    private List<Paciente> leerEnOrden(List<CoincidenciaNombre> coincidencias) throws Exception {
+        List<Long> ids = new ArrayList<>(coincidencias.size());
+        for (CoincidenciaNombre coincidencia : coincidencias) {
+            ids.add(coincidencia.pacienteId());
+        }
+        Map<Long, Paciente> leidos = leerPorIds(ids, FetchMode.SIN_HISTORIA);
+        List<Paciente> pacientes = new ArrayList<>(leidos.size());
+        for (Long id : ids) {
+            Paciente paciente = leidos.get(id);
+            if (paciente != null) {
+                pacientes.add(paciente);
+            }
+        }
+        return pacientes;
+    }
+
+    /**
+     * Lista todos los pacientes activos como proyección liviana (sin campos TEXT de la historia).
+     */
+    public List<PacienteResumen> listarResumen() throws Exception {
+        return ScatterGather.lista(SELECT_RESUMEN + " ORDER BY p.id", null, this::mapperResumen,
+                RESUMEN_POR_ID, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Página de la proyección liviana, con la misma paginación keyset que {@link #leerPagina}.
+     */
+    public List<PacienteResumen> listarResumen(long despuesDeId, int limite) throws Exception {
+        return ScatterGather.lista(SELECT_RESUMEN + " AND p.id > ? ORDER BY p.id LIMIT ?", ps -> {
+            ps.setLong(1, despuesDeId);
+            ps.setInt(2, limite);
+        }, this::mapperResumen, RESUMEN_POR_ID, limite);
+    }
+
+    private RowMapper<PacienteResumen> mapperResumen(ResultSet rs) throws SQLException {
+        return resumenes.obtener(SELECT_RESUMEN, rs, columnas -> {
+            final int id = columnas.requerida("id");
+            final int nombre = columnas.requerida("nombre");
+            final int apellido = columnas.requerida("apellido");
+            final int dni = columnas.requerida("dni");
+            final int nroHistoria = columnas.requerida("nro_historia");
+            final int grupo = columnas.requerida("grupo_sanguineo");
+            return fila -> new PacienteResumen(
+                    fila.getLong(id),
+                    fila.getString(nombre),
+                    fila.getString(apellido),
+                    fila.getString(dni),
+                    fila.getString(nroHistoria),
+                    GrupoSanguineo.desdeSimbolo(fila.getString(grupo)));
+        });
+    }
+
+    /**
+     * Recorre una partición con un cursor y entrega cada paciente, incluidos los eliminados,
+     * con los datos que usa la instantánea de analítica. Las filas llegan ordenadas por ID.
+     *
+     * @param desde Null para todos los pacientes; si no, solo aquellos cuya fila o historia
+     *              cambió (actualizado_en) desde ese momento inclusive
+     * @return La mayor marca actualizado_en entregada, o desde si no hubo filas
+     */
+    public Timestamp recorrerDemografia(int shard, Timestamp desde, int fetchSize,
+                                        ConsumidorDemografia consumidor) throws SQLException {
+        // Un UNION en vez de un OR entre tablas, así cada rama usa el índice de actualizado_en
+        String sql = desde == null
+                ? SELECT_DEMOGRAFIA + " ORDER BY id"
+                : SELECT_DEMOGRAFIA + " WHERE p.actualizado_en >= ?"
+                + " UNION " + SELECT_DEMOGRAFIA + " WHERE h.actualizado_en >= ? ORDER BY id";
+        Timestamp ultima = desde;
+        try (Connection conn = DatabaseConnection.getReadConnection(shard);
+             PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(fetchSize);
+            if (desde != null) {
+                ps.setTimestamp(1, desde);
+                ps.setTimestamp(2, desde);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Date fecha = rs.getDate(3);
+                    String grupo = rs.getString(4);
+                    boolean conHistoria = rs.getObject(6) != null && !rs.getBoolean(5);
+                    consumidor.aceptar(rs.getLong(1), rs.getBoolean(2), fecha != null ? fecha.toLocalDate() : null,
+                            conHistoria ? GrupoSanguineo.desdeSimbolo(grupo) : null, conHistoria);
+                    Timestamp actualizado = rs.getTimestamp(7);
+                    if (ultima == null || actualizado.after(ultima)) {
+                        ultima = actualizado;
+                    }
+                }
+            }
+        }
+        return ultima;
+    }
+
+    /**
+     * Un UPDATE con control de versión no afectó filas: si la fila existe, el conflicto lleva su
+     * estado actual. Se lee con FOR UPDATE para ver la última versión confirmada y no la
+     * instantánea de la transacción (REPEATABLE READ).
+     */
+    private SQLException conflicto(Connection shardConn, long id, long version, String operacion) throws SQLException {
+        try (PreparedStatement ps = shardConn.prepareStatement(SELECT_ACTUAL)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    Paciente actual = mappers.obtener("ACTUAL", rs,
+                            columnas -> compilar(columnas, FetchMode.SIN_HISTORIA)).map(rs);
+                    return new ConflictoVersionException("paciente", version, actual);
+                }
+            }
+        }
+        return new SQLException(operacion + ", ID " + id + " no encontrado.");
+    }
+
+    /**
+     * Estadísticas de la caché, o null si este DAO no usa caché.
+     */
+    public CacheStats getCacheStats() {
+        return cache != null ? cache.stats() : null;
+    }
+
+    /**
+     * Las entradas de la caché siempre tienen la historia cargada; se descarta si no se pidió.
+     */
+    private static Paciente segunModo(Paciente paciente, FetchMode modo) {
+        if (paciente != null && modo == FetchMode.SIN_HISTORIA) {
+            paciente.setHistoriaClinica(null);
+        }
+        return paciente;
+    }
+
+    /**
+     * SELECT base de pacientes activos según el modo de carga.
+     * Con CON_HISTORIA se trae la historia clínica en la misma fila (LEFT JOIN 1→1),
+     * evitando una consulta extra por paciente.
+     * Los filtros adicionales se agregan con " AND ...".
+     */
+    private static String selectPacientes(FetchMode modo) {
+        switch (modo) {
+            case SIN_HISTORIA:
+            case HISTORIA_DIFERIDA:
+                return SELECT_PACIENTE;
+            case HISTORIA_SIN_TEXTOS:
+                return SELECT_PACIENTE_CON_HISTORIA_SIN_TEXTOS;
+            default:
+                return SELECT_PACIENTE_CON_HISTORIA;
+        }
+    }
+
+    /**
+     * Mapeador compilado para el modo de carga: las posiciones de las columnas se resuelven
+     * con la primera consulta del modo y las siguientes leen por índice.
+     */
+    RowMapper<Paciente> mapper(FetchMode modo, ResultSet rs) throws SQLException {
+        return mappers.obtener(modo.name(), rs, columnas -> compilar(columnas, modo));
+    }
+
+    private RowMapper<Paciente> compilar(ColumnIndex columnas, FetchMode modo) throws SQLException {
+        final int id = columnas.requerida("id");
+        final int eliminado = columnas.requerida("eliminado");
+        final int nombre = columnas.requerida("nombre");
+        final int apellido = columnas.requerida("apellido");
+        final int dni = columnas.requerida("dni");
+        final int fechaNacimiento = columnas.requerida("fecha_nacimiento");
+        final int version = columnas.requerida("version");
+        final RowMapper<HistoriaClinica> historia;
+        if (modo == FetchMode.CON_HISTORIA) {
+            historia = historiaClinicaDao.compilar(columnas, "hc_", true);
+        } else if (modo == FetchMode.HISTORIA_SIN_TEXTOS) {
+            historia = historiaClinicaDao.compilar(columnas, "hc_", false);
+        } else {
+            historia = null;
+        }
+        final boolean diferida = modo == FetchMode.HISTORIA_DIFERIDA;
+
+        return rs -> {
+            Paciente paciente = new Paciente(
+                    rs.getLong(id),
+                    rs.getBoolean(eliminado),
+                    rs.getString(nombre),
+                    rs.getString(apellido),
+                    rs.getString(dni),
+                    // LocalDate directo del driver, sin pasar por java.sql.Date
+                    rs.getObject(fechaNacimiento, LocalDate.class),
+                    historia != null ? historia.map(rs) : null
+            );
+            paciente.setVersion(rs.getLong(version));
+            if (diferida) {
+                long pacienteId = paciente.getId();
+                paciente.setCargadorHistoria(() -> historiaClinicaDao.leerPorPacienteId(pacienteId));
+            }
+            paciente.iniciarSeguimiento();
+            return paciente;
+        };
     }
 }
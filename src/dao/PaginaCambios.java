@@ -0,0 +1,13 @@
+package dao;
+
+import java.util.List;
+
+/**
+ * Resultado de {@link FeedCambios#leer}.
+ *
+ * @param cambios   Cambios en orden de registro dentro de cada partición
+ * @param siguiente Marca a guardar una vez procesados los cambios, para pedir la página siguiente
+ * @param hayMas    Si quedaron cambios sin entregar; si es false conviene esperar antes de volver a leer
+ */
+public record PaginaCambios(List<Cambio> cambios, MarcaCambios siguiente, boolean hayMas) {
+}
@@ -0,0 +1,175 @@
+package dao;
+
+import config.DatabaseConnection;
+import config.ShardRouter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * IDs asignados del lado del cliente por rangos (hi/lo), para insertar con el ID ya conocido
+ * en vez de leer la clave generada después de cada INSERT.
+ *
+ * - Cada partición tiene en secuencia_id el próximo ID libre de la tabla. Reservar un rango
+ *   suma su tamaño a esa fila en una transacción propia (no la del caller): aunque el alta se
+ *   deshaga, el rango no se vuelve a entregar. Los IDs no usados quedan como huecos.
+ * - La reserva usa una conexión propia por partición, abierta fuera del pool y reutilizada, una
+ *   vez cada db.ids.rango IDs. Quien pide un ID ya suele tener una conexión prestada: tomar
+ *   otra del mismo pool podía esperar hasta db.pool.borrowTimeoutMs con el pool agotado.
+ *   DatabaseConnection.shutdown() las cierra junto con los pools.
+ * - Cada partición se protege con un ReentrantLock (no synchronized), para no fijar el hilo
+ *   portador de un hilo virtual mientras espera a la base.
+ * - La fila se crea en la primera reserva a partir de MAX(id) + 1, contando también la tabla
+ *   de archivo (ver ArchivadorEliminados), o del primer ID de la partición (ver ShardRouter)
+ *   si las dos están vacías.
+ * - El AUTO_INCREMENT de la tabla deja de usarse en los altas de la aplicación; sigue
+ *   sirviendo para cargas por SQL hechas antes de la primera reserva.
+ *
+ * Configuración (system properties):
+ * - -Ddb.ids.rango (default 1000): IDs por reserva
+ */
+final class RangoIds {
+
+    private static final String RESERVAR = "UPDATE secuencia_id SET proximo = proximo + ? WHERE tabla = ?";
+    private static final String LEER = "SELECT proximo FROM secuencia_id WHERE tabla = ?";
+
+    private static final int VALIDACION_SEG = 2;
+
+    private final String tabla;
+    private final int tamanio;
+    private final Rango[] rangos;
+
+    /** IDs pendientes de una partición: [proximo, limite). */
+    private static final class Rango {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long proximo;
+        private long limite;
+        /** Conexión de reserva; null hasta la primera o después de un error. */
+        private Connection conn;
+    }
+
+    RangoIds(String tabla) {
+        this(tabla, Integer.getInteger("db.ids.rango", 1_000));
+    }
+
+    RangoIds(String tabla, int tamanio) {
+        if (tamanio < 1) {
+            throw new IllegalArgumentException("El tamaño del rango debe ser mayor a cero: " + tamanio);
+        }
+        this.tabla = tabla;
+        this.tamanio = tamanio;
+        this.rangos = new Rango[DatabaseConnection.getShardCount()];
+        for (int shard = 0; shard < rangos.length; shard++) {
+            rangos[shard] = new Rango();
+        }
+    }
+
+    /**
+     * Próximo ID de la tabla en la partición. Solo consulta la base al agotarse el rango.
+     */
+    long siguiente(int shard) throws SQLException {
+        Rango rango = rangos[shard];
+        rango.lock.lock();
+        try {
+            if (rango.proximo == rango.limite) {
+                rango.limite = reservar(rango, shard);
+                rango.proximo = rango.limite - tamanio;
+            }
+            return rango.proximo++;
+        } finally {
+            rango.lock.unlock();
+        }
+    }
+
+    /**
+     * @return El fin (exclusivo) del rango reservado
+     */
+    private long reservar(Rango rango, int shard) throws SQLException {
+        Connection conn = conexion(rango, shard);
+        try {
+            if (!incrementar(conn)) {
+                crearFila(conn, shard);
+                if (!incrementar(conn)) {
+                    throw new SQLException("No se pudo reservar IDs de " + tabla + ".");
+                }
+            }
+            long limite;
+            try (PreparedStatement ps = conn.prepareStatement(LEER)) {
+                ps.setString(1, tabla);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    limite = rs.getLong(1);
+                }
+            }
+            conn.commit();
+            return limite;
+        } catch (SQLException | RuntimeException e) {
+            // La próxima reserva abre otra: esta pudo quedar rota o con la transacción a medias
+            rango.conn = null;
+            try {
+                conn.rollback();
+                conn.close();
+            } catch (SQLException cierre) {
+                e.addSuppressed(cierre);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Conexión de reserva de la partición, abriéndola si no hay o si el servidor la cerró
+     * (por ejemplo, por wait_timeout entre reservas).
+     */
+    private static Connection conexion(Rango rango, int shard) throws SQLException {
+        if (rango.conn != null && !rango.conn.isValid(VALIDACION_SEG)) {
+            try {
+                rango.conn.close();
+            } catch (SQLException ignored) {
+                // Se reemplaza de todas formas
+            }
+            rango.conn = null;
+        }
+        if (rango.conn == null) {
+            Connection conn = DatabaseConnection.getConexionDedicada(shard);
+            try {
+                conn.setAutoCommit(false);
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+            rango.conn = conn;
+        }
+        return rango.conn;
+    }
+
+    private boolean incrementar(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(RESERVAR)) {
+            ps.setInt(1, tamanio);
+            ps.setString(2, tabla);
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    /**
+     * Crea la fila de la tabla. Si otro proceso la creó primero, el INSERT falla por clave
+     * duplicada y se usa la existente.
+     */
+    private void crearFila(Connection conn, int shard) throws SQLException {
+        // Los IDs archivados tampoco se reutilizan: la tabla de archivo los conserva como clave
+        String sql = "INSERT INTO secuencia_id (tabla, proximo) SELECT ?, GREATEST(COALESCE(MAX(id) + 1, ?),"
+                + " (SELECT COALESCE(MAX(id) + 1, ?) FROM " + tabla + "_archivo)) FROM " + tabla;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, tabla);
+            ps.setLong(2, ShardRouter.firstId(shard));
+            ps.setLong(3, ShardRouter.firstId(shard));
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            if (e.getSQLState() == null || !e.getSQLState().startsWith("23")) {
+                throw e;
+            }
+        }
+    }
+}
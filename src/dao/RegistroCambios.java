@@ -0,0 +1,128 @@
+package dao;
+
+import config.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Utilidad interna de los DAOs para escribir en la tabla cambio (ver {@link FeedCambios}).
+ * Siempre con la conexión del cambio: la fila del registro se confirma o se deshace con él.
+ *
+ * - Las altas se registran con versión 0 (el default de la columna version).
+ * - Modificaciones y bajas toman la versión de la fila recién actualizada con INSERT ... SELECT,
+ *   sin leerla desde la aplicación.
+ * - Antes de insertar se toma el turno de la partición (TURNO, la única fila de cambio_turno),
+ *   que queda bloqueado hasta el commit o rollback. Así las transacciones escriben en cambio de a
+ *   una por partición y el id AUTO_INCREMENT sigue el orden de commit: ninguna fila se confirma
+ *   con un id menor que otro ya visible, y FeedCambios puede avanzar sin saltear ninguna.
+ *   El costo es que los escritores de una partición se serializan desde su primer cambio hasta
+ *   el commit; un interbloqueo con otras filas lo reintenta TransactionManager.
+ * - Requiere una transacción: con autocommit el turno se libera antes de insertar.
+ */
+final class RegistroCambios {
+
+    static final String PACIENTE = "paciente";
+    static final String HISTORIA = "historia_clinica";
+
+    /** Toma el turno de la partición hasta el fin de la transacción; afecta una fila. */
+    static final String TURNO = "UPDATE cambio_turno SET transacciones = transacciones + 1 WHERE id = 1";
+
+    private static final String ALTA =
+            "INSERT INTO cambio (tabla, entidad_id, version, tipo) VALUES (?, ?, 0, 'ALTA')";
+
+    /**
+     * Alta de un paciente con su historia; parámetros: ID del paciente, ID de la historia.
+     * Debe ir después de TURNO.
+     */
+    static final String ALTA_ADMISION =
+            "INSERT INTO cambio (tabla, entidad_id, version, tipo) VALUES ('paciente', ?, 0, 'ALTA'),"
+            + " ('historia_clinica', ?, 0, 'ALTA')";
+
+    private static final String CAMBIO_PACIENTE =
+            "INSERT INTO cambio (tabla, entidad_id, version, tipo) SELECT 'paciente', id, version, ? FROM paciente WHERE id = ?";
+    private static final String CAMBIO_HISTORIA =
+            "INSERT INTO cambio (tabla, entidad_id, version, tipo) SELECT 'historia_clinica', id, version, ?"
+            + " FROM historia_clinica WHERE id = ?";
+
+    private RegistroCambios() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada.");
+    }
+
+    /**
+     * @param shardConn Conexión de la partición de la fila
+     */
+    static void alta(Connection shardConn, String tabla, long id) throws SQLException {
+        tomarTurno(shardConn);
+        try (PreparedStatement ps = shardConn.prepareStatement(ALTA)) {
+            ps.setString(1, tabla);
+            ps.setLong(2, id);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Registra altas por lotes, cada una en la partición de su ID.
+     *
+     * @param conn Conexión de la unidad de trabajo (lógica si hay particiones)
+     */
+    static void altas(Connection conn, String tabla, List<Long> ids, int tamanioLote) throws SQLException {
+        // En orden de partición, como cualquier otra transacción con altas en varias
+        TreeSet<Integer> shards = new TreeSet<>();
+        for (long id : ids) {
+            shards.add(DatabaseConnection.shardDeId(id));
+        }
+        for (int shard : shards) {
+            tomarTurno(DatabaseConnection.enShard(conn, shard));
+        }
+        BatchInsert.ejecutarPorParticion(conn, ALTA, ids, tamanioLote, i -> DatabaseConnection.shardDeId(ids.get(i)),
+                (ps, id, i) -> {
+                    ps.setString(1, tabla);
+                    ps.setLong(2, id);
+                });
+    }
+
+    /**
+     * Registra una modificación o baja, con la versión que quedó en la fila.
+     *
+     * @param shardConn Conexión de la partición de la fila, en la misma transacción que el UPDATE
+     */
+    static void registrar(Connection shardConn, String tabla, long id, TipoCambio tipo) throws SQLException {
+        tomarTurno(shardConn);
+        String sql = PACIENTE.equals(tabla) ? CAMBIO_PACIENTE : CAMBIO_HISTORIA;
+        try (PreparedStatement ps = shardConn.prepareStatement(sql)) {
+            ps.setString(1, tipo.name());
+            ps.setLong(2, id);
+            if (ps.executeUpdate() == 0) {
+                throw new SQLException("No se pudo registrar el cambio de " + tabla + " ID " + id + ".");
+            }
+        }
+    }
+
+    /**
+     * Registra el alta de un paciente con su historia, en la partición de ambos.
+     */
+    static void altaAdmision(Connection shardConn, long pacienteId, long historiaId) throws SQLException {
+        tomarTurno(shardConn);
+        try (PreparedStatement ps = shardConn.prepareStatement(ALTA_ADMISION)) {
+            ps.setLong(1, pacienteId);
+            ps.setLong(2, historiaId);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Bloquea el turno de la partición hasta el fin de la transacción de shardConn. Si la
+     * transacción ya lo tiene, no espera.
+     */
+    static void tomarTurno(Connection shardConn) throws SQLException {
+        try (PreparedStatement ps = shardConn.prepareStatement(TURNO)) {
+            if (ps.executeUpdate() == 0) {
+                throw new SQLException("Falta la fila de cambio_turno (ver sql/migracion_004_cambios.sql).");
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package dao;
+
+import java.time.Duration;
+
+/**
+ * Resultado de {@link ArchivadorEliminados#archivar}.
+ *
+ * @param pacientes       Pacientes movidos a paciente_archivo
+ * @param historias       Historias clínicas movidas a historia_clinica_archivo (las de esos
+ *                        pacientes y las eliminadas de pacientes activos)
+ * @param lotes           Transacciones confirmadas
+ * @param filasPorSegundo Filas movidas (pacientes más historias) por segundo de duración,
+ *                        incluidas las pausas
+ * @param lagMaximoSeg    Mayor atraso de réplica observado entre lotes, o -1 si no se pudo medir
+ * @param esperaPorLag    Tiempo detenido esperando que las réplicas se pusieran al día
+ * @param completo        false si se detuvo antes de terminar la pasada; la próxima continúa
+ *                        desde el último lote confirmado
+ */
+public record ResultadoArchivado(long pacientes, long historias, long lotes, Duration duracion,
+                                 double filasPorSegundo, long lagMaximoSeg, Duration esperaPorLag,
+                                 boolean completo) {
+}
@@ -0,0 +1,20 @@
+package dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Convierte la fila actual de un ResultSet en una entidad.
+ */
+@FunctionalInterface
+interface RowMapper<T> {
+    T map(ResultSet rs) throws SQLException;
+
+    /**
+     * Arma el RowMapper para un ResultSet ya ejecutado (resolviendo sus columnas).
+     */
+    @FunctionalInterface
+    interface Factory<T> {
+        RowMapper<T> para(ResultSet rs) throws SQLException;
+    }
+}
@@ -0,0 +1,250 @@
+package dao;
+
+import config.DatabaseConnection;
+import config.TransactionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Utilidad interna para consultas sin clave de partición: se ejecutan en todas las particiones
+ * a la vez (un hilo virtual por partición) y los resultados se combinan en orden.
+ *
+ * - Cada partición debe devolver sus filas ordenadas por el mismo criterio que recibe el merge.
+ * - Con una sola partición la consulta se ejecuta directamente en el hilo del caller.
+ * - Dentro de una unidad de trabajo de TransactionManager las particiones se recorren en orden
+ *   en el hilo del caller: la conexión de la unidad se asocia al hilo y no admite uso concurrente.
+ */
+final class ScatterGather {
+
+    /**
+     * Asigna los parámetros de la consulta (los mismos en todas las particiones).
+     */
+    @FunctionalInterface
+    interface Parametros {
+        void asignar(PreparedStatement ps) throws SQLException;
+    }
+
+    /**
+     * Trabajo a ejecutar sobre una partición.
+     */
+    @FunctionalInterface
+    interface PorParticion<R> {
+        R ejecutar(int shard) throws Exception;
+    }
+
+    private ScatterGather() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada.");
+    }
+
+    /**
+     * Ejecuta la consulta en todas las particiones y combina las listas por orden.
+     *
+     * @param parametros Puede ser null si la consulta no tiene parámetros
+     * @param limite     Cantidad máxima de resultados (la consulta de cada partición ya debería limitarse igual)
+     */
+    static <T> List<T> lista(String sql, Parametros parametros, RowMapper.Factory<T> mappers,
+                             Comparator<? super T> orden, int limite) throws Exception {
+        List<List<T>> porParticion = enTodas(shard -> consultar(shard, sql, parametros, mappers));
+        if (porParticion.size() == 1) {
+            List<T> unica = porParticion.get(0);
+            return unica.size() > limite ? new ArrayList<>(unica.subList(0, limite)) : unica;
+        }
+        List<Iterator<T>> fuentes = new ArrayList<>(porParticion.size());
+        for (List<T> filas : porParticion) {
+            fuentes.add(filas.iterator());
+        }
+        List<T> resultado = new ArrayList<>();
+        Iterator<T> merge = merge(fuentes, orden);
+        while (resultado.size() < limite && merge.hasNext()) {
+            resultado.add(merge.next());
+        }
+        return resultado;
+    }
+
+    /**
+     * Abre un cursor en cada partición (en paralelo) y retorna un stream que los combina por
+     * orden a medida que se consume. Cerrar el stream cierra todos los cursores.
+     */
+    static <T> Stream<T> stream(String sql, int fetchSize, RowMapper.Factory<T> mappers,
+                                Comparator<? super T> orden) throws Exception {
+        if (DatabaseConnection.getShardCount() == 1) {
+            return CursorStream.abrir(0, sql, fetchSize, mappers);
+        }
+        // Si falla la apertura en alguna partición, enTodas cierra los cursores ya abiertos
+        List<Stream<T>> cursores = enTodas(shard -> CursorStream.abrir(shard, sql, fetchSize, mappers));
+        List<Iterator<T>> fuentes = new ArrayList<>(cursores.size());
+        for (Stream<T> cursor : cursores) {
+            fuentes.add(cursor.iterator());
+        }
+        Iterator<T> merge = merge(fuentes, orden);
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(merge,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            RuntimeException error = null;
+            for (Stream<T> cursor : cursores) {
+                try {
+                    cursor.close();
+                } catch (RuntimeException e) {
+                    if (error == null) {
+                        error = e;
+                    } else {
+                        error.addSuppressed(e);
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        });
+    }
+
+    private static <T> List<T> consultar(int shard, String sql, Parametros parametros,
+                                         RowMapper.Factory<T> mappers) throws SQLException {
+        List<T> filas = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getReadConnection(shard);
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            if (parametros != null) {
+                parametros.asignar(ps);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                RowMapper<T> mapper = mappers.para(rs);
+                while (rs.next()) {
+                    filas.add(mapper.map(rs));
+                }
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Ejecuta el trabajo en cada partición y retorna los resultados en orden de partición.
+     * Si alguna falla, se espera a las demás, se cierran los resultados AutoCloseable
+     * obtenidos y se relanza el primer error.
+     */
+    static <R> List<R> enTodas(PorParticion<R> trabajo) throws Exception {
+        int particiones = DatabaseConnection.getShardCount();
+        List<R> resultados = new ArrayList<>(particiones);
+        if (particiones == 1 || TransactionManager.conexionActual() != null) {
+            enOrden(trabajo, particiones, resultados);
+            return resultados;
+        }
+        Exception error = null;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<R>> futuros = new ArrayList<>(particiones);
+            for (int shard = 0; shard < particiones; shard++) {
+                int particion = shard;
+                futuros.add(executor.submit(() -> trabajo.ejecutar(particion)));
+            }
+            for (Future<R> futuro : futuros) {
+                try {
+                    resultados.add(futuro.get());
+                } catch (ExecutionException e) {
+                    Exception causa = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    if (error == null) {
+                        error = causa;
+                    } else {
+                        error.addSuppressed(causa);
+                    }
+                }
+            }
+        }
+        if (error != null) {
+            cerrarResultados(resultados, error);
+            throw error;
+        }
+        return resultados;
+    }
+
+    private static <R> void cerrarResultados(List<R> resultados, Exception error) {
+        for (R resultado : resultados) {
+            if (resultado instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) resultado).close();
+                } catch (Exception e) {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+    }
+
+    private static <R> void enOrden(PorParticion<R> trabajo, int particiones, List<R> resultados)
+            throws Exception {
+        try {
+            for (int shard = 0; shard < particiones; shard++) {
+                resultados.add(trabajo.ejecutar(shard));
+            }
+        } catch (Exception e) {
+            cerrarResultados(resultados, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Merge de k fuentes ordenadas con una cola de prioridad de sus cabezas.
+     */
+    static <T> Iterator<T> merge(List<Iterator<T>> fuentes, Comparator<? super T> orden) {
+        return new Iterator<T>() {
+            private PriorityQueue<Cabeza<T>> cola;
+
+            @Override
+            public boolean hasNext() {
+                iniciar();
+                return !cola.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                iniciar();
+                Cabeza<T> cabeza = cola.poll();
+                if (cabeza == null) {
+                    throw new NoSuchElementException();
+                }
+                T valor = cabeza.valor;
+                if (cabeza.fuente.hasNext()) {
+                    cola.add(new Cabeza<>(cabeza.fuente.next(), cabeza.fuente));
+                }
+                return valor;
+            }
+
+            /** Las cabezas se leen recién al consumir, así el stream no avanza los cursores antes de tiempo. */
+            private void iniciar() {
+                if (cola != null) {
+                    return;
+                }
+                cola = new PriorityQueue<>(Math.max(1, fuentes.size()), (a, b) -> orden.compare(a.valor, b.valor));
+                for (Iterator<T> fuente : fuentes) {
+                    if (fuente.hasNext()) {
+                        cola.add(new Cabeza<>(fuente.next(), fuente));
+                    }
+                }
+            }
+        };
+    }
+
+    private static final class Cabeza<T> {
+        private final T valor;
+        private final Iterator<T> fuente;
+
+        private Cabeza(T valor, Iterator<T> fuente) {
+            this.valor = valor;
+            this.fuente = fuente;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package dao;
+
+/**
+ * Operación registrada en el registro de cambios (ver {@link FeedCambios}).
+ */
+public enum TipoCambio {
+    /** Fila nueva; su versión es 0. */
+    ALTA,
+    /** UPDATE de columnas de la fila. */
+    MODIFICACION,
+    /** Baja lógica (eliminado = TRUE). */
+    BAJA
+}
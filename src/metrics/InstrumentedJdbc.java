@@ -0,0 +1,194 @@
+package metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Proxies JDBC que alimentan a {@link QueryMetrics}.
+ */
+final class InstrumentedJdbc {
+
+    private InstrumentedJdbc() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada.");
+    }
+
+    private static Object invocar(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * equals/hashCode/toString del proxy; null si el método no es uno de ellos.
+     */
+    private static Object metodoObject(Object proxy, Object target, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return method.getParameterCount() == 1 ? proxy == args[0] : null;
+            case "hashCode":
+                return method.getParameterCount() == 0 ? System.identityHashCode(proxy) : null;
+            case "toString":
+                return method.getParameterCount() == 0 ? "Instrumented[" + target + "]" : null;
+            default:
+                return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> tipo, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(tipo.getClassLoader(), new Class<?>[]{tipo}, handler);
+    }
+
+    static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final QueryMetrics metrics;
+
+        ConnectionHandler(Connection target, QueryMetrics metrics) {
+            this.target = target;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object especial = metodoObject(proxy, target, method, args);
+            if (especial != null) {
+                return especial;
+            }
+            Object result = invocar(target, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return proxy(PreparedStatement.class,
+                            new StatementHandler(result, metrics, metrics.stats((String) args[0])));
+                case "prepareCall":
+                    return proxy(CallableStatement.class,
+                            new StatementHandler(result, metrics, metrics.stats((String) args[0])));
+                case "createStatement":
+                    return proxy(Statement.class, new StatementHandler(result, metrics, null));
+                default:
+                    return result;
+            }
+        }
+    }
+
+    /**
+     * Mide los execute*. Para Statement (sin SQL fijo) la forma sale del SQL de cada llamada.
+     * Las filas afectadas se suman una vez por resultado, al ejecutar y en cada getMoreResults().
+     */
+    static final class StatementHandler implements InvocationHandler {
+        private final Object target;
+        private final QueryMetrics metrics;
+        private final StatementStats fija;
+        private StatementStats ultima;
+
+        StatementHandler(Object target, QueryMetrics metrics, StatementStats fija) {
+            this.target = target;
+            this.metrics = metrics;
+            this.fija = fija;
+            this.ultima = fija;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object especial = metodoObject(proxy, target, method, args);
+            if (especial != null) {
+                return especial;
+            }
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                Object result = invocar(target, method, args);
+                if (name.equals("getResultSet") && result != null && ultima != null) {
+                    return proxy(ResultSet.class, new ResultSetHandler((ResultSet) result, ultima));
+                }
+                if (name.equals("getMoreResults") && Boolean.FALSE.equals(result) && ultima != null) {
+                    // Siguiente resultado de un envío con varias sentencias; -1 si no hay más
+                    ultima.sumarFilas(filas(((Statement) target).getUpdateCount()));
+                }
+                return result;
+            }
+
+            StatementStats stats = fija;
+            if (args != null && args.length > 0 && args[0] instanceof String) {
+                stats = metrics.stats((String) args[0]);
+            }
+            if (stats == null) {
+                return invocar(target, method, args);
+            }
+            ultima = stats;
+
+            long inicio = System.nanoTime();
+            Object result;
+            try {
+                result = invocar(target, method, args);
+            } catch (Throwable t) {
+                stats.registrar(System.nanoTime() - inicio, true);
+                throw t;
+            }
+            stats.registrar(System.nanoTime() - inicio, false);
+
+            if (result instanceof ResultSet) {
+                return proxy(ResultSet.class, new ResultSetHandler((ResultSet) result, stats));
+            }
+            if (Boolean.FALSE.equals(result)) {
+                // execute() sin ResultSet: la cantidad está en getUpdateCount()
+                stats.sumarFilas(filas(((Statement) target).getUpdateCount()));
+            } else if (result instanceof Integer || result instanceof Long) {
+                stats.sumarFilas(filas(((Number) result).longValue()));
+            } else if (result instanceof int[]) {
+                for (int n : (int[]) result) {
+                    stats.sumarFilas(filas(n));
+                }
+            } else if (result instanceof long[]) {
+                for (long n : (long[]) result) {
+                    stats.sumarFilas(filas(n));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Filas de un resultado de actualización. SUCCESS_NO_INFO (con rewriteBatchedStatements)
+         * cuenta como una; EXECUTE_FAILED y -1 (sin cantidad), como ninguna.
+         */
+        private static long filas(long resultado) {
+            if (resultado >= 0) {
+                return resultado;
+            }
+            return resultado == Statement.SUCCESS_NO_INFO ? 1 : 0;
+        }
+    }
+
+    /**
+     * Cuenta las filas leídas con next().
+     */
+    static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final StatementStats stats;
+
+        ResultSetHandler(ResultSet target, StatementStats stats) {
+            this.target = target;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object especial = metodoObject(proxy, target, method, args);
+            if (especial != null) {
+                return especial;
+            }
+            Object result = invocar(target, method, args);
+            if (Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+                stats.sumarFilas(1);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registro de métricas por forma de sentencia SQL.
+ *
+ * - {@link #instrumentar} envuelve una conexión: cada execute* de sus statements registra
+ *   latencia, errores y filas (leídas con next() o afectadas por un UPDATE/INSERT).
+ * - La forma de una sentencia es su SQL con espacios normalizados y listas IN colapsadas,
+ *   así "IN (?, ?, ?)" e "IN (?, ?)" se agrupan juntas.
+ * - La adquisición de conexiones se mide aparte, para distinguir un pool agotado de
+ *   consultas lentas.
+ * - Cada forma se publica como MBean "ClinicaApp:type=Sentencia,name=..." y la adquisición
+ *   como "ClinicaApp:type=Conexion,name=adquisicion".
+ * - Si logIntervalSegundos > 0, se vuelca un resumen periódico al log (nivel INFO).
+ */
+public final class QueryMetrics {
+
+    private static final Logger LOG = Logger.getLogger(QueryMetrics.class.getName());
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+    private static final Pattern LISTA_IN = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+    private static final String DOMINIO_JMX = "ClinicaApp";
+    private static final String OTRAS = "(otras sentencias)";
+
+    private final int maxFormas;
+    private final ConcurrentHashMap<String, StatementStats> porSql = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StatementStats> porForma = new ConcurrentHashMap<>();
+    private final StatementStats adquisicion = new StatementStats("adquisicion de conexion");
+    private final StatementStats otras = new StatementStats(OTRAS);
+    private final MBeanServer mbeanServer;
+    private ScheduledExecutorService volcado;
+
+    /**
+     * @param maxFormas Cantidad máxima de formas distintas; las demás se agrupan en "(otras sentencias)"
+     * @param registrarJmx Si se publican los MBeans en el platform MBeanServer
+     */
+    public QueryMetrics(int maxFormas, boolean registrarJmx) {
+        this.maxFormas = maxFormas;
+        this.mbeanServer = registrarJmx ? ManagementFactory.getPlatformMBeanServer() : null;
+        registrarMBean("Conexion", "adquisicion", adquisicion);
+        registrarMBean("Sentencia", OTRAS, otras);
+    }
+
+    /**
+     * Vuelca el resumen al log cada intervaloSegundos (hilo daemon).
+     */
+    public synchronized void iniciarVolcadoPeriodico(long intervaloSegundos) {
+        if (intervaloSegundos <= 0 || volcado != null) {
+            return;
+        }
+        volcado = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-metrics-log");
+            t.setDaemon(true);
+            return t;
+        });
+        volcado.scheduleAtFixedRate(() -> LOG.log(Level.INFO, resumen()),
+                intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    public synchronized void detener() {
+        if (volcado != null) {
+            volcado.shutdownNow();
+            volcado = null;
+        }
+    }
+
+    /**
+     * Envuelve la conexión para medir sus sentencias.
+     */
+    public Connection instrumentar(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new InstrumentedJdbc.ConnectionHandler(conn, this));
+    }
+
+    public void registrarAdquisicion(long nanos, boolean error) {
+        adquisicion.registrar(nanos, error);
+    }
+
+    public StatementStats getAdquisicion() {
+        return adquisicion;
+    }
+
+    /**
+     * Métricas de todas las formas registradas, de mayor a menor tiempo p99.
+     */
+    public List<StatementStats> getSentencias() {
+        List<StatementStats> lista = new ArrayList<>(porForma.values());
+        if (otras.getCount() > 0) {
+            lista.add(otras);
+        }
+        lista.sort(Comparator.comparingLong(StatementStats::getP99Micros).reversed());
+        return lista;
+    }
+
+    public String resumen() {
+        StringBuilder sb = new StringBuilder("Métricas SQL\n  ").append(adquisicion);
+        for (StatementStats stats : getSentencias()) {
+            sb.append("\n  ").append(stats);
+        }
+        return sb.toString();
+    }
+
+    StatementStats stats(String sql) {
+        StatementStats stats = porSql.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+        String forma = normalizar(sql);
+        stats = porForma.get(forma);
+        if (stats == null) {
+            if (porForma.size() >= maxFormas) {
+                return otras;
+            }
+            boolean[] creada = {false};
+            stats = porForma.computeIfAbsent(forma, f -> {
+                creada[0] = true;
+                return new StatementStats(f);
+            });
+            if (creada[0]) {
+                registrarMBean("Sentencia", forma, stats);
+            }
+        }
+        // Varias variantes del mismo SQL pueden compartir forma; se acota el índice por texto
+        if (porSql.size() < maxFormas * 4) {
+            porSql.putIfAbsent(sql, stats);
+        }
+        return stats;
+    }
+
+    static String normalizar(String sql) {
+        String forma = ESPACIOS.matcher(sql.trim()).replaceAll(" ");
+        return LISTA_IN.matcher(forma).replaceAll("(?, ...)");
+    }
+
+    private void registrarMBean(String tipo, String nombre, StatementStats stats) {
+        if (mbeanServer == null) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName(DOMINIO_JMX + ":type=" + tipo + ",name=" + ObjectName.quote(nombre));
+            if (!mbeanServer.isRegistered(objectName)) {
+                mbeanServer.registerMBean(stats, objectName);
+            }
+        } catch (JMException e) {
+            LOG.log(Level.WARNING, "No se pudo registrar el MBean de " + nombre, e);
+        }
+    }
+}
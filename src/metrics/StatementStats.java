@@ -0,0 +1,95 @@
+package metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas acumuladas de una forma de sentencia SQL (o de la adquisición de conexiones).
+ */
+public final class StatementStats implements StatementStatsMBean {
+
+    private final String nombre;
+    private final LatencyHistogram latencias = new LatencyHistogram();
+    private final LongAdder errores = new LongAdder();
+    private final LongAdder filas = new LongAdder();
+
+    StatementStats(String nombre) {
+        this.nombre = nombre;
+    }
+
+    void registrar(long nanos, boolean error) {
+        latencias.record(nanos);
+        if (error) {
+            errores.increment();
+        }
+    }
+
+    void sumarFilas(long cantidad) {
+        if (cantidad > 0) {
+            filas.add(cantidad);
+        }
+    }
+
+    @Override
+    public String getNombre() {
+        return nombre;
+    }
+
+    @Override
+    public long getCount() {
+        return latencias.count();
+    }
+
+    @Override
+    public long getErrores() {
+        return errores.sum();
+    }
+
+    @Override
+    public long getFilas() {
+        return filas.sum();
+    }
+
+    @Override
+    public long getMeanMicros() {
+        return micros(latencias.meanNanos());
+    }
+
+    @Override
+    public long getP50Micros() {
+        return micros(latencias.percentileNanos(50));
+    }
+
+    @Override
+    public long getP95Micros() {
+        return micros(latencias.percentileNanos(95));
+    }
+
+    @Override
+    public long getP99Micros() {
+        return micros(latencias.percentileNanos(99));
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return micros(latencias.maxNanos());
+    }
+
+    @Override
+    public void reset() {
+        latencias.reset();
+        errores.reset();
+        filas.reset();
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    @Override
+    public String toString() {
+        return nombre + " count=" + getCount() + " errores=" + getErrores() + " filas=" + getFilas()
+                + " p50=" + getP50Micros() + "us p95=" + getP95Micros() + "us p99=" + getP99Micros()
+                + "us max=" + getMaxMicros() + "us";
+    }
+}
@@ -0,0 +1,26 @@
+package metrics;
+
+/**
+ * Atributos JMX de {@link StatementStats}. Latencias en microsegundos.
+ */
+public interface StatementStatsMBean {
+    String getNombre();
+
+    long getCount();
+
+    long getErrores();
+
+    long getFilas();
+
+    long getMeanMicros();
+
+    long getP50Micros();
+
+    long getP95Micros();
+
+    long getP99Micros();
+
+    long getMaxMicros();
+
+    void reset();
+}
@@ -0,0 +1,72 @@
+package migracion;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Avance de una importación confirmado en la base: hasta qué byte del archivo de origen se
+ * procesó, los contadores, y cuántos bytes tenía entonces el archivo de rechazados (al
+ * reanudar se trunca ahí, para no repetir los rechazos del tramo que quedó a medias).
+ *
+ * Se guarda como properties en un temporal que se renombra con ATOMIC_MOVE: un corte a mitad
+ * de la escritura deja el checkpoint anterior intacto.
+ *
+ * @param origen           Ruta absoluta del archivo importado
+ * @param tamanioOrigen    Tamaño del archivo al empezar; si cambió, no se puede reanudar
+ * @param bytes            Byte del origen donde empieza el próximo registro
+ * @param linea            Línea del origen en ese byte
+ * @param bytesRechazados  Tamaño del archivo de rechazados hasta lo confirmado
+ */
+record Checkpoint(String origen, long tamanioOrigen, long bytes, long linea, long leidas, long importadas,
+                  long rechazadas, long omitidas, long bytesRechazados) {
+
+    /**
+     * @return El checkpoint guardado, o null si el archivo no existe
+     */
+    static Checkpoint leer(Path archivo) throws IOException {
+        if (!Files.exists(archivo)) {
+            return null;
+        }
+        Properties p = new Properties();
+        try (Reader reader = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            p.load(reader);
+        }
+        try {
+            return new Checkpoint(p.getProperty("origen"),
+                    Long.parseLong(p.getProperty("tamanioOrigen")),
+                    Long.parseLong(p.getProperty("bytes")),
+                    Long.parseLong(p.getProperty("linea")),
+                    Long.parseLong(p.getProperty("leidas")),
+                    Long.parseLong(p.getProperty("importadas")),
+                    Long.parseLong(p.getProperty("rechazadas")),
+                    Long.parseLong(p.getProperty("omitidas")),
+                    Long.parseLong(p.getProperty("bytesRechazados")));
+        } catch (NumberFormatException e) {
+            throw new IOException("Checkpoint dañado: " + archivo, e);
+        }
+    }
+
+    void guardar(Path archivo) throws IOException {
+        Properties p = new Properties();
+        p.setProperty("origen", origen);
+        p.setProperty("tamanioOrigen", Long.toString(tamanioOrigen));
+        p.setProperty("bytes", Long.toString(bytes));
+        p.setProperty("linea", Long.toString(linea));
+        p.setProperty("leidas", Long.toString(leidas));
+        p.setProperty("importadas", Long.toString(importadas));
+        p.setProperty("rechazadas", Long.toString(rechazadas));
+        p.setProperty("omitidas", Long.toString(omitidas));
+        p.setProperty("bytesRechazados", Long.toString(bytesRechazados));
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporal, StandardCharsets.UTF_8)) {
+            p.store(writer, "Checkpoint de importacion");
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
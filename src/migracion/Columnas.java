@@ -0,0 +1,31 @@
+package migracion;
+
+import java.util.List;
+
+/**
+ * Nombres de las columnas de los archivos (los mismos que en la base). Una fila es un
+ * paciente con su historia clínica; las columnas de la historia son opcionales.
+ */
+final class Columnas {
+
+    static final String ID = "id";
+    static final String NOMBRE = "nombre";
+    static final String APELLIDO = "apellido";
+    static final String DNI = "dni";
+    static final String FECHA_NACIMIENTO = "fecha_nacimiento";
+    static final String NRO_HISTORIA = "nro_historia";
+    static final String GRUPO_SANGUINEO = "grupo_sanguineo";
+    static final String ANTECEDENTES = "antecedentes";
+    static final String MEDICACION_ACTUAL = "medicacion_actual";
+    static final String OBSERVACIONES = "observaciones";
+
+    /** Orden de las columnas al exportar. La importación ignora id: los pacientes reciben IDs nuevos. */
+    static final List<String> TODAS = List.of(ID, NOMBRE, APELLIDO, DNI, FECHA_NACIMIENTO,
+            NRO_HISTORIA, GRUPO_SANGUINEO, ANTECEDENTES, MEDICACION_ACTUAL, OBSERVACIONES);
+
+    static final List<String> REQUERIDAS = List.of(NOMBRE, APELLIDO, DNI);
+
+    private Columnas() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada.");
+    }
+}
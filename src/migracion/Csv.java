@@ -0,0 +1,101 @@
+package migracion;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lectura y escritura de registros CSV (RFC 4180): un campo con separador, comillas o saltos
+ * de línea va entre comillas dobles, y una comilla dentro del campo se duplica.
+ */
+final class Csv {
+
+    private Csv() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada.");
+    }
+
+    /**
+     * Separador del archivo según su encabezado: punto y coma si lo usa y no tiene comas
+     * (así exporta Excel con configuración regional en castellano), si no coma.
+     */
+    static char separadorDe(String encabezado) {
+        return encabezado.indexOf(';') >= 0 && encabezado.indexOf(',') < 0 ? ';' : ',';
+    }
+
+    /**
+     * Campos del registro. Un campo vacío sin comillas se lee como null; "" como cadena vacía.
+     *
+     * @throws IllegalArgumentException Si hay comillas sin cerrar o texto después de una comilla de cierre
+     */
+    static List<String> campos(String registro, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        int i = 0;
+        int largo = registro.length();
+        while (true) {
+            if (i < largo && registro.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= largo) {
+                        throw new IllegalArgumentException("Comillas sin cerrar en el registro CSV");
+                    }
+                    char c = registro.charAt(i++);
+                    if (c == '"') {
+                        if (i < largo && registro.charAt(i) == '"') {
+                            campo.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        campo.append(c);
+                    }
+                }
+                if (i < largo && registro.charAt(i) != separador) {
+                    throw new IllegalArgumentException("Texto después de la comilla de cierre en la posición " + i);
+                }
+                campos.add(campo.toString());
+            } else {
+                int fin = registro.indexOf(separador, i);
+                if (fin < 0) {
+                    fin = largo;
+                }
+                campos.add(fin == i ? null : registro.substring(i, fin));
+                i = fin;
+            }
+            campo.setLength(0);
+            if (i >= largo) {
+                return campos;
+            }
+            // Separador
+            i++;
+        }
+    }
+
+    /**
+     * Escribe un campo, entre comillas solo si hace falta. null se escribe vacío.
+     */
+    static void escribir(Appendable destino, String valor, char separador) throws IOException {
+        if (valor == null) {
+            return;
+        }
+        boolean comillas = false;
+        for (int i = 0; i < valor.length() && !comillas; i++) {
+            char c = valor.charAt(i);
+            comillas = c == separador || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!comillas) {
+            destino.append(valor);
+            return;
+        }
+        destino.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"') {
+                destino.append('"');
+            }
+            destino.append(c);
+        }
+        destino.append('"');
+    }
+}
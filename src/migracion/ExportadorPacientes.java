@@ -0,0 +1,144 @@
+package migracion;
+
+import dao.FetchMode;
+import dao.PacienteDAO;
+import models.HistoriaClinica;
+import models.Paciente;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Exportación de todos los pacientes activos (con su historia clínica) a CSV o NDJSON, con las
+ * mismas columnas que lee {@link ImportadorPacientes}.
+ *
+ * - Se lee con PacienteDAO.leerTodosStream: un cursor por partición, fetchSize filas por viaje,
+ *   y cada fila se escribe apenas llega. La memoria no depende de la cantidad de pacientes.
+ *   Con MySQL hace falta useCursorFetch=true en db.url (ver CursorStream).
+ * - Se escribe en un temporal junto al destino que se renombra con ATOMIC_MOVE al terminar:
+ *   una exportación cortada nunca queda con el nombre final.
+ *
+ * Configuración (system properties):
+ * - -Ddb.export.fetchSize (default 1000)
+ */
+public class ExportadorPacientes {
+
+    private static final Logger LOG = Logger.getLogger(ExportadorPacientes.class.getName());
+    private static final char SEPARADOR = ',';
+
+    private final PacienteDAO pacienteDao;
+    private final int fetchSize;
+
+    public ExportadorPacientes(PacienteDAO pacienteDao) {
+        this(pacienteDao, Integer.getInteger("db.export.fetchSize", 1_000));
+    }
+
+    public ExportadorPacientes(PacienteDAO pacienteDao, int fetchSize) {
+        this.pacienteDao = pacienteDao;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Exporta en el formato que corresponde a la extensión del destino.
+     */
+    public ResultadoExportacion exportar(Path destino) throws Exception {
+        return exportar(destino, Formato.desdeArchivo(destino));
+    }
+
+    public ResultadoExportacion exportar(Path destino, Formato formato) throws Exception {
+        long inicio = System.nanoTime();
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        long filas = 0;
+        try (Stream<Paciente> pacientes = pacienteDao.leerTodosStream(fetchSize, FetchMode.CON_HISTORIA);
+             FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer writer = new BufferedWriter(Channels.newWriter(canal, StandardCharsets.UTF_8), 1 << 16);
+            if (formato == Formato.CSV) {
+                encabezado(writer);
+            }
+            Iterator<Paciente> iterador = pacientes.iterator();
+            while (iterador.hasNext()) {
+                if (formato == Formato.CSV) {
+                    csv(writer, iterador.next());
+                } else {
+                    ndjson(writer, iterador.next());
+                }
+                filas++;
+            }
+            writer.flush();
+            canal.force(false);
+        } catch (Exception e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Duration duracion = Duration.ofNanos(System.nanoTime() - inicio);
+        ResultadoExportacion resultado = new ResultadoExportacion(filas, Files.size(destino), duracion,
+                ImportadorPacientes.porSegundo(filas, duracion));
+        LOG.log(Level.INFO, "Exportación a {0} terminada: {1}", new Object[]{destino, resultado});
+        return resultado;
+    }
+
+    private static void encabezado(Writer writer) throws IOException {
+        for (int i = 0; i < Columnas.TODAS.size(); i++) {
+            if (i > 0) {
+                writer.append(SEPARADOR);
+            }
+            writer.append(Columnas.TODAS.get(i));
+        }
+        writer.append('\n');
+    }
+
+    private static void csv(Writer writer, Paciente paciente) throws IOException {
+        String[] valores = valores(paciente);
+        for (int i = 0; i < valores.length; i++) {
+            if (i > 0) {
+                writer.append(SEPARADOR);
+            }
+            Csv.escribir(writer, valores[i], SEPARADOR);
+        }
+        writer.append('\n');
+    }
+
+    private static void ndjson(Writer writer, Paciente paciente) throws IOException {
+        String[] valores = valores(paciente);
+        // El ID va como número; el resto como string o null
+        writer.append("{\"").append(Columnas.ID).append("\":").append(valores[0]);
+        for (int i = 1; i < valores.length; i++) {
+            writer.append(',');
+            Json.escribir(writer, Columnas.TODAS.get(i), valores[i]);
+        }
+        writer.append("}\n");
+    }
+
+    /** Valores en el orden de Columnas.TODAS. */
+    private static String[] valores(Paciente paciente) {
+        HistoriaClinica historia = paciente.getHistoriaClinica();
+        return new String[]{
+                String.valueOf(paciente.getId()),
+                paciente.getNombre(),
+                paciente.getApellido(),
+                paciente.getDni(),
+                paciente.getFechaNacimiento() != null ? paciente.getFechaNacimiento().toString() : null,
+                historia != null ? historia.getNroHistoria() : null,
+                historia != null && historia.getGrupoSanguineo() != null ? historia.getGrupoSanguineo().getSimbolo() : null,
+                historia != null ? historia.getAntecedentes() : null,
+                historia != null ? historia.getMedicacionActual() : null,
+                historia != null ? historia.getObservaciones() : null
+        };
+    }
+}
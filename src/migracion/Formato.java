@@ -0,0 +1,30 @@
+package migracion;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Formato de los archivos de importación y exportación.
+ */
+public enum Formato {
+    /** Una fila por línea con encabezado; separador coma o punto y coma, comillas dobles según RFC 4180. */
+    CSV,
+    /** Un objeto JSON plano por línea, sin encabezado. */
+    NDJSON;
+
+    /**
+     * Formato según la extensión: .csv → CSV; .ndjson, .jsonl o .json → NDJSON.
+     *
+     * @throws IllegalArgumentException Si la extensión no corresponde a ningún formato
+     */
+    public static Formato desdeArchivo(Path archivo) {
+        String nombre = archivo.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (nombre.endsWith(".csv")) {
+            return CSV;
+        }
+        if (nombre.endsWith(".ndjson") || nombre.endsWith(".jsonl") || nombre.endsWith(".json")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("No se reconoce el formato del archivo: " + archivo);
+    }
+}
@@ -0,0 +1,521 @@
+package migracion;
+
+import config.TransactionManager;
+import dao.FetchMode;
+import dao.PacienteDAO;
+import models.Paciente;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Importación masiva de pacientes (con su historia clínica) desde CSV o NDJSON.
+ *
+ * Funcionamiento, en tres etapas unidas por colas acotadas:
+ * - Lectura: un hilo lee el archivo con {@link LectorRegistros} (FileChannel y buffer directo)
+ *   y lo corta en tramos de filasPorTransaccion registros.
+ * - Validación: hilosValidacion hilos parsean y validan cada tramo en paralelo (DNI, grupo
+ *   sanguíneo, fechas, largos; ver ValidadorPaciente).
+ * - Escritura: el hilo que llamó a importar() escribe los tramos en el orden del archivo, cada
+ *   uno en su transacción con PacienteDAO.crearLote. Los DNI ya registrados se detectan antes
+ *   con una consulta IN; si el lote falla igual (por ejemplo, nro_historia repetido), el tramo
+ *   se reintenta fila por fila y solo se rechazan las filas con errores de datos.
+ *
+ * Un semáforo limita los tramos en vuelo (leídos y todavía no escritos), así la memoria no
+ * depende del tamaño del archivo aunque la base sea más lenta que la lectura.
+ *
+ * Rechazados: cada registro inválido se escribe en el archivo de rechazados con su línea y el
+ * motivo, seguido del registro original (CSV: "linea,motivo,..." con el encabezado original;
+ * NDJSON: un objeto con linea, motivo y registro). Si no hubo rechazos, el archivo no queda.
+ *
+ * Checkpoint: tras cada tramo confirmado se guarda el avance. Si el proceso se corta, volver a
+ * llamar a importar() con el mismo checkpoint continúa desde el último tramo confirmado; los
+ * pacientes del tramo interrumpido que ya estaban en la base se cuentan como omitidos. Al
+ * terminar bien, el checkpoint se borra.
+ *
+ * Configuración (system properties):
+ * - -Ddb.import.hilos (default: procesadores disponibles)
+ * - -Ddb.import.filasPorTransaccion (default 1000)
+ * - -Ddb.import.tramosEnVuelo (default 2 por hilo de validación)
+ * - -Ddb.import.logIntervalSec (default 10): cada cuánto se informa el avance (nivel INFO)
+ */
+public class ImportadorPacientes {
+
+    private static final Logger LOG = Logger.getLogger(ImportadorPacientes.class.getName());
+    private static final long ESPERA_MS = 200;
+
+    private final PacienteDAO pacienteDao;
+    private final TransactionManager tx;
+    private final int hilosValidacion;
+    private final int filasPorTransaccion;
+    private final int tramosEnVuelo;
+    private final long intervaloLogNanos;
+
+    public ImportadorPacientes(PacienteDAO pacienteDao) {
+        this(pacienteDao, new TransactionManager(),
+                Integer.getInteger("db.import.hilos", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("db.import.filasPorTransaccion", 1_000),
+                Integer.getInteger("db.import.tramosEnVuelo", 0));
+    }
+
+    /**
+     * @param tramosEnVuelo Tramos leídos y todavía no escritos como máximo; 0 = 2 por hilo de validación
+     */
+    public ImportadorPacientes(PacienteDAO pacienteDao, TransactionManager tx, int hilosValidacion,
+                               int filasPorTransaccion, int tramosEnVuelo) {
+        if (hilosValidacion < 1) {
+            throw new IllegalArgumentException("hilosValidacion debe ser al menos 1: " + hilosValidacion);
+        }
+        if (filasPorTransaccion < 1) {
+            throw new IllegalArgumentException("filasPorTransaccion debe ser al menos 1: " + filasPorTransaccion);
+        }
+        if (tramosEnVuelo < 0) {
+            throw new IllegalArgumentException("tramosEnVuelo no puede ser negativo: " + tramosEnVuelo);
+        }
+        this.pacienteDao = pacienteDao;
+        this.tx = tx;
+        this.hilosValidacion = hilosValidacion;
+        this.filasPorTransaccion = filasPorTransaccion;
+        this.tramosEnVuelo = tramosEnVuelo > 0 ? tramosEnVuelo : 2 * hilosValidacion;
+        this.intervaloLogNanos = TimeUnit.SECONDS.toNanos(Long.getLong("db.import.logIntervalSec", 10L));
+    }
+
+    /**
+     * Importa sin checkpoint: si se corta, hay que empezar de nuevo (los ya importados se rechazan
+     * como DNI registrado).
+     */
+    public ResultadoImportacion importar(Path origen, Path rechazados) throws Exception {
+        return importar(origen, rechazados, null);
+    }
+
+    /**
+     * @param origen      Archivo .csv, .ndjson o .jsonl (ver {@link Formato#desdeArchivo})
+     * @param rechazados  Archivo de rechazados; se crea si no existe y se le agrega al final
+     * @param checkpoint  Archivo de checkpoint, o null para no guardar avance. Si existe, se reanuda
+     * @throws IllegalArgumentException Si al CSV le faltan columnas requeridas
+     * @throws IllegalStateException    Si el checkpoint es de otro archivo o el archivo cambió
+     */
+    public ResultadoImportacion importar(Path origen, Path rechazados, Path checkpoint) throws Exception {
+        long inicio = System.nanoTime();
+        Importacion importacion = new Importacion(origen, rechazados, checkpoint);
+        long procesadas;
+        try {
+            procesadas = importacion.ejecutar();
+        } finally {
+            importacion.cerrar();
+        }
+        if (checkpoint != null) {
+            Files.deleteIfExists(checkpoint);
+        }
+        if (importacion.rechazadas == 0) {
+            Files.deleteIfExists(rechazados);
+        }
+        Duration duracion = Duration.ofNanos(System.nanoTime() - inicio);
+        ResultadoImportacion resultado = new ResultadoImportacion(importacion.leidas, importacion.importadas,
+                importacion.rechazadas, importacion.omitidas, importacion.reanudada, duracion,
+                porSegundo(procesadas, duracion));
+        LOG.log(Level.INFO, "Importación de {0} terminada: {1}", new Object[]{origen, resultado});
+        return resultado;
+    }
+
+    static double porSegundo(long filas, Duration duracion) {
+        long nanos = Math.max(1, duracion.toNanos());
+        return filas * 1e9 / nanos;
+    }
+
+    /**
+     * Registros consecutivos del archivo: unidad de validación, de transacción y de checkpoint.
+     */
+    private static final class Tramo {
+        final long numero;
+        final List<LectorRegistros.Registro> registros;
+        final boolean ultimo;
+        /** Completados por la validación; origenes[i] es el registro de validos[i]. */
+        final List<Paciente> validos = new ArrayList<>();
+        final List<LectorRegistros.Registro> origenes = new ArrayList<>();
+        final List<Rechazo> rechazos = new ArrayList<>();
+
+        Tramo(long numero, List<LectorRegistros.Registro> registros, boolean ultimo) {
+            this.numero = numero;
+            this.registros = registros;
+            this.ultimo = ultimo;
+        }
+    }
+
+    private record Rechazo(LectorRegistros.Registro registro, String motivo) {
+    }
+
+    /**
+     * Estado de una llamada a importar().
+     */
+    private final class Importacion {
+        private final Path origen;
+        private final Path checkpoint;
+        private final Formato formato;
+        private final String origenAbsoluto;
+        private final long tamanioOrigen;
+        private final LocalDate hoy = LocalDate.now();
+        private final FileChannel canalRechazados;
+        private final Writer rechazados;
+
+        private List<String> encabezado;
+        private String encabezadoOriginal;
+        private char separador = ',';
+        private long bytes;
+        private long linea = 1;
+        private boolean reanudada;
+        /** Si el próximo tramo a escribir es el que quedó a medias antes del corte. */
+        private boolean tramoInterrumpido;
+
+        private long leidas;
+        private long importadas;
+        private long rechazadas;
+        private long omitidas;
+
+        private final BlockingQueue<Tramo> leidos;
+        private final BlockingQueue<Tramo> validados;
+        private final Semaphore enVuelo = new Semaphore(tramosEnVuelo);
+        private final AtomicReference<Throwable> falla = new AtomicReference<>();
+        private ExecutorService hilos;
+
+        Importacion(Path origen, Path archivoRechazados, Path checkpoint) throws IOException {
+            this.origen = origen;
+            this.checkpoint = checkpoint;
+            this.formato = Formato.desdeArchivo(origen);
+            this.origenAbsoluto = origen.toAbsolutePath().normalize().toString();
+            this.tamanioOrigen = Files.size(origen);
+            this.leidos = new ArrayBlockingQueue<>(tramosEnVuelo);
+            this.validados = new ArrayBlockingQueue<>(tramosEnVuelo);
+            if (formato == Formato.CSV) {
+                leerEncabezado();
+            }
+
+            Checkpoint previo = checkpoint != null ? Checkpoint.leer(checkpoint) : null;
+            long bytesRechazados = 0;
+            if (previo != null) {
+                if (!previo.origen().equals(origenAbsoluto) || previo.tamanioOrigen() != tamanioOrigen) {
+                    throw new IllegalStateException("El checkpoint " + checkpoint + " es de otro archivo o "
+                            + origen + " cambió desde que se empezó a importar.");
+                }
+                reanudada = true;
+                tramoInterrumpido = true;
+                bytes = previo.bytes();
+                linea = previo.linea();
+                leidas = previo.leidas();
+                importadas = previo.importadas();
+                rechazadas = previo.rechazadas();
+                omitidas = previo.omitidas();
+                bytesRechazados = previo.bytesRechazados();
+            }
+            this.canalRechazados = FileChannel.open(archivoRechazados, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // Lo escrito después del último checkpoint se vuelve a escribir al reprocesar el tramo
+            canalRechazados.truncate(reanudada ? bytesRechazados : canalRechazados.size());
+            canalRechazados.position(canalRechazados.size());
+            this.rechazados = new BufferedWriter(Channels.newWriter(canalRechazados, StandardCharsets.UTF_8), 1 << 16);
+            if (formato == Formato.CSV && encabezado != null && canalRechazados.size() == 0) {
+                rechazados.append("linea").append(separador).append("motivo").append(separador)
+                        .append(encabezadoOriginal).append('\n');
+            }
+        }
+
+        /**
+         * @return Registros procesados en esta ejecución
+         */
+        long ejecutar() throws Exception {
+            long leidasAntes = leidas;
+            if (formato == Formato.CSV && encabezado == null) {
+                // Archivo vacío
+                return 0;
+            }
+            AtomicInteger contador = new AtomicInteger();
+            hilos = Executors.newFixedThreadPool(hilosValidacion + 1, r -> {
+                Thread t = new Thread(r, "importacion-" + contador.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            hilos.execute(this::leer);
+            for (int i = 0; i < hilosValidacion; i++) {
+                hilos.execute(this::validar);
+            }
+
+            TreeMap<Long, Tramo> pendientes = new TreeMap<>();
+            long siguiente = 0;
+            long ultimoLog = System.nanoTime();
+            long inicio = ultimoLog;
+            boolean terminado = false;
+            while (!terminado) {
+                Tramo tramo = validados.poll(ESPERA_MS, TimeUnit.MILLISECONDS);
+                if (tramo == null) {
+                    verificarFalla();
+                    continue;
+                }
+                pendientes.put(tramo.numero, tramo);
+                // Los tramos llegan validados en cualquier orden; se escriben en el del archivo
+                while ((tramo = pendientes.remove(siguiente)) != null) {
+                    escribir(tramo);
+                    siguiente++;
+                    enVuelo.release();
+                    terminado = tramo.ultimo;
+                }
+                long ahora = System.nanoTime();
+                if (intervaloLogNanos > 0 && ahora - ultimoLog >= intervaloLogNanos) {
+                    ultimoLog = ahora;
+                    LOG.log(Level.INFO, String.format(Locale.ROOT,
+                            "Importando %s: %d leídas, %d importadas, %d rechazadas, %d omitidas (%.0f filas/s)",
+                            origen, leidas, importadas, rechazadas, omitidas,
+                            porSegundo(leidas - leidasAntes, Duration.ofNanos(ahora - inicio))));
+                }
+            }
+            return leidas - leidasAntes;
+        }
+
+        void cerrar() throws IOException {
+            if (hilos != null) {
+                hilos.shutdownNow();
+            }
+            rechazados.close();
+        }
+
+        private void leerEncabezado() throws IOException {
+            try (LectorRegistros lector = new LectorRegistros(origen, 0, 1, true)) {
+                LectorRegistros.Registro registro = lector.siguiente();
+                if (registro == null) {
+                    return;
+                }
+                encabezadoOriginal = registro.texto();
+                separador = Csv.separadorDe(encabezadoOriginal);
+                encabezado = new ArrayList<>();
+                for (String columna : Csv.campos(encabezadoOriginal, separador)) {
+                    encabezado.add(columna != null ? columna.strip().toLowerCase(Locale.ROOT) : "");
+                }
+                for (String requerida : Columnas.REQUERIDAS) {
+                    if (!encabezado.contains(requerida)) {
+                        throw new IllegalArgumentException("Falta la columna " + requerida + " en el encabezado de " + origen);
+                    }
+                }
+                bytes = registro.fin();
+                linea = registro.lineaSiguiente();
+            }
+        }
+
+        /** Etapa 1: corta el archivo en tramos. */
+        private void leer() {
+            try (LectorRegistros lector = new LectorRegistros(origen, bytes, linea, formato == Formato.CSV)) {
+                for (long numero = 0; ; numero++) {
+                    enVuelo.acquire();
+                    List<LectorRegistros.Registro> registros = new ArrayList<>(filasPorTransaccion);
+                    LectorRegistros.Registro registro = null;
+                    while (registros.size() < filasPorTransaccion && (registro = lector.siguiente()) != null) {
+                        registros.add(registro);
+                    }
+                    boolean ultimo = registro == null;
+                    leidos.put(new Tramo(numero, registros, ultimo));
+                    if (ultimo) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                falla.compareAndSet(null, e);
+            }
+        }
+
+        /** Etapa 2: parsea y valida tramos hasta que se apaga el pool. */
+        private void validar() {
+            try {
+                while (true) {
+                    Tramo tramo = leidos.take();
+                    validar(tramo);
+                    validados.put(tramo);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                falla.compareAndSet(null, e);
+            }
+        }
+
+        private void validar(Tramo tramo) {
+            Map<String, LectorRegistros.Registro> porDni = new HashMap<>();
+            for (LectorRegistros.Registro registro : tramo.registros) {
+                try {
+                    Paciente paciente = ValidadorPaciente.paciente(fila(registro.texto()), hoy);
+                    LectorRegistros.Registro anterior = porDni.putIfAbsent(paciente.getDni(), registro);
+                    if (anterior != null) {
+                        throw new IllegalArgumentException("DNI repetido en la línea " + anterior.linea());
+                    }
+                    tramo.validos.add(paciente);
+                    tramo.origenes.add(registro);
+                } catch (IllegalArgumentException e) {
+                    tramo.rechazos.add(new Rechazo(registro, e.getMessage()));
+                }
+            }
+        }
+
+        private Map<String, String> fila(String texto) {
+            if (formato == Formato.NDJSON) {
+                return Json.objeto(texto);
+            }
+            List<String> campos = Csv.campos(texto, separador);
+            if (campos.size() != encabezado.size()) {
+                throw new IllegalArgumentException("Se esperaban " + encabezado.size() + " columnas y hay " + campos.size());
+            }
+            Map<String, String> fila = new HashMap<>(encabezado.size() * 2);
+            for (int i = 0; i < campos.size(); i++) {
+                fila.put(encabezado.get(i), campos.get(i));
+            }
+            return fila;
+        }
+
+        /** Etapa 3: inserta el tramo, escribe sus rechazos y guarda el checkpoint. */
+        private void escribir(Tramo tramo) throws Exception {
+            List<Rechazo> rechazos = new ArrayList<>(tramo.rechazos);
+            List<Paciente> aInsertar = new ArrayList<>(tramo.validos.size());
+            List<LectorRegistros.Registro> origenes = new ArrayList<>(tramo.validos.size());
+            if (!tramo.validos.isEmpty()) {
+                List<String> dnis = new ArrayList<>(tramo.validos.size());
+                for (Paciente paciente : tramo.validos) {
+                    dnis.add(paciente.getDni());
+                }
+                Map<String, Paciente> existentes = pacienteDao.buscarPorDnis(dnis, FetchMode.SIN_HISTORIA);
+                for (int i = 0; i < tramo.validos.size(); i++) {
+                    Paciente paciente = tramo.validos.get(i);
+                    if (!existentes.containsKey(paciente.getDni())) {
+                        aInsertar.add(paciente);
+                        origenes.add(tramo.origenes.get(i));
+                    } else if (tramoInterrumpido) {
+                        omitidas++;
+                    } else {
+                        rechazos.add(new Rechazo(tramo.origenes.get(i), "DNI ya registrado: " + paciente.getDni()));
+                    }
+                }
+            }
+            if (!aInsertar.isEmpty()) {
+                insertar(aInsertar, origenes, rechazos);
+            }
+            tramoInterrumpido = false;
+
+            rechazos.sort(Comparator.comparingLong(rechazo -> rechazo.registro().linea()));
+            for (Rechazo rechazo : rechazos) {
+                escribirRechazo(rechazo);
+            }
+            rechazados.flush();
+            leidas += tramo.registros.size();
+            rechazadas += rechazos.size();
+            if (!tramo.registros.isEmpty()) {
+                LectorRegistros.Registro ultimo = tramo.registros.get(tramo.registros.size() - 1);
+                bytes = ultimo.fin();
+                linea = ultimo.lineaSiguiente();
+            }
+            if (checkpoint != null) {
+                new Checkpoint(origenAbsoluto, tamanioOrigen, bytes, linea, leidas, importadas, rechazadas,
+                        omitidas, canalRechazados.position()).guardar(checkpoint);
+            }
+        }
+
+        /**
+         * Un lote por transacción; si falla, fila por fila para rechazar solo las que tienen
+         * errores de datos. Cualquier otro error (conexión, etc.) corta la importación.
+         */
+        private void insertar(List<Paciente> pacientes, List<LectorRegistros.Registro> origenes,
+                              List<Rechazo> rechazos) throws Exception {
+            try {
+                tx.ejecutar(conn -> pacienteDao.crearLote(pacientes, filasPorTransaccion, conn));
+                importadas += pacientes.size();
+                return;
+            } catch (Exception e) {
+                if (!esErrorDeDatos(e)) {
+                    throw e;
+                }
+                LOG.log(Level.FINE, "Falló el lote; se reintenta fila por fila", e);
+            }
+            for (int i = 0; i < pacientes.size(); i++) {
+                Paciente paciente = pacientes.get(i);
+                paciente.setId(null);
+                if (paciente.getHistoriaClinica() != null) {
+                    paciente.getHistoriaClinica().setId(null);
+                }
+                try {
+                    tx.ejecutar(conn -> pacienteDao.crearLote(List.of(paciente), 1, conn));
+                    importadas++;
+                } catch (Exception e) {
+                    if (!esErrorDeDatos(e)) {
+                        throw e;
+                    }
+                    rechazos.add(new Rechazo(origenes.get(i), "Rechazado por la base: " + e.getMessage()));
+                }
+            }
+        }
+
+        private void escribirRechazo(Rechazo rechazo) throws IOException {
+            if (formato == Formato.CSV) {
+                rechazados.append(Long.toString(rechazo.registro().linea())).append(separador);
+                Csv.escribir(rechazados, rechazo.motivo(), separador);
+                rechazados.append(separador).append(rechazo.registro().texto()).append('\n');
+            } else {
+                rechazados.append("{\"linea\":").append(Long.toString(rechazo.registro().linea())).append(',');
+                Json.escribir(rechazados, "motivo", rechazo.motivo());
+                rechazados.append(',');
+                Json.escribir(rechazados, "registro", rechazo.registro().texto());
+                rechazados.append("}\n");
+            }
+        }
+
+        private void verificarFalla() throws Exception {
+            Throwable e = falla.get();
+            if (e instanceof Exception excepcion) {
+                throw excepcion;
+            }
+            if (e != null) {
+                throw new IllegalStateException("Falló la importación de " + origen + ": " + e, e);
+            }
+        }
+    }
+
+    /**
+     * Errores propios de la fila: SQLState de clase 22 (dato inválido o demasiado largo) o 23
+     * (clave repetida, restricción violada). Se mira el SQLState y no el tipo de excepción porque
+     * los INSERT por lotes los informan como BatchUpdateException.
+     */
+    private static boolean esErrorDeDatos(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                for (SQLException s = sql; s != null; s = s.getNextException()) {
+                    String estado = s.getSQLState();
+                    if (estado != null && (estado.startsWith("22") || estado.startsWith("23"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,204 @@
+package migracion;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Lectura y escritura de objetos JSON planos: claves a valores string, número, booleano o null.
+ * No hace falta más para una fila; los valores anidados se rechazan.
+ */
+final class Json {
+
+    private static final Pattern NUMERO = Pattern.compile("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?");
+
+    private Json() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada.");
+    }
+
+    /**
+     * Claves y valores del objeto, en orden. Números y booleanos quedan como su texto; null como null.
+     *
+     * @throws IllegalArgumentException Si el texto no es un objeto JSON plano válido
+     */
+    static Map<String, String> objeto(String texto) {
+        Lector lector = new Lector(texto);
+        Map<String, String> valores = new LinkedHashMap<>();
+        lector.esperar('{');
+        if (!lector.consumir('}')) {
+            do {
+                String clave = lector.cadena();
+                lector.esperar(':');
+                valores.put(clave, lector.valor());
+            } while (lector.consumir(','));
+            lector.esperar('}');
+        }
+        lector.saltearEspacios();
+        if (!lector.alFinal()) {
+            throw new IllegalArgumentException("Texto después del objeto JSON en la posición " + lector.i);
+        }
+        return valores;
+    }
+
+    /**
+     * Escribe un par "clave":valor; el valor como string JSON, o null.
+     */
+    static void escribir(Appendable destino, String clave, String valor) throws IOException {
+        cadena(destino, clave);
+        destino.append(':');
+        if (valor == null) {
+            destino.append("null");
+        } else {
+            cadena(destino, valor);
+        }
+    }
+
+    private static void cadena(Appendable destino, String valor) throws IOException {
+        destino.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"':
+                    destino.append("\\\"");
+                    break;
+                case '\\':
+                    destino.append("\\\\");
+                    break;
+                case '\n':
+                    destino.append("\\n");
+                    break;
+                case '\r':
+                    destino.append("\\r");
+                    break;
+                case '\t':
+                    destino.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        destino.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        destino.append(c);
+                    }
+            }
+        }
+        destino.append('"');
+    }
+
+    private static final class Lector {
+        private final String texto;
+        private int i;
+
+        Lector(String texto) {
+            this.texto = texto;
+        }
+
+        boolean alFinal() {
+            return i >= texto.length();
+        }
+
+        void saltearEspacios() {
+            while (i < texto.length() && Character.isWhitespace(texto.charAt(i))) {
+                i++;
+            }
+        }
+
+        boolean consumir(char c) {
+            saltearEspacios();
+            if (i < texto.length() && texto.charAt(i) == c) {
+                i++;
+                return true;
+            }
+            return false;
+        }
+
+        void esperar(char c) {
+            if (!consumir(c)) {
+                throw new IllegalArgumentException("Se esperaba '" + c + "' en la posición " + i + " del JSON");
+            }
+        }
+
+        String valor() {
+            saltearEspacios();
+            if (alFinal()) {
+                throw new IllegalArgumentException("Falta un valor al final del JSON");
+            }
+            char c = texto.charAt(i);
+            if (c == '"') {
+                return cadena();
+            }
+            if (c == '{' || c == '[') {
+                throw new IllegalArgumentException("Valor anidado no soportado en la posición " + i + " del JSON");
+            }
+            int comienzo = i;
+            while (i < texto.length() && ",}] \t\r\n".indexOf(texto.charAt(i)) < 0) {
+                i++;
+            }
+            String literal = texto.substring(comienzo, i);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.equals("true") || literal.equals("false") || NUMERO.matcher(literal).matches()) {
+                return literal;
+            }
+            throw new IllegalArgumentException("Valor JSON inválido en la posición " + comienzo + ": " + literal);
+        }
+
+        String cadena() {
+            esperar('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (alFinal()) {
+                    throw new IllegalArgumentException("String sin cerrar en el JSON");
+                }
+                char c = texto.charAt(i++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (alFinal()) {
+                    throw new IllegalArgumentException("Escape incompleto al final del JSON");
+                }
+                char escape = texto.charAt(i++);
+                switch (escape) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        sb.append(escape);
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        if (i + 4 > texto.length()) {
+                            throw new IllegalArgumentException("Escape \\u incompleto en el JSON");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(texto.substring(i, i + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Escape \\u inválido en la posición " + i + " del JSON");
+                        }
+                        i += 4;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Escape inválido \\" + escape + " en el JSON");
+                }
+            }
+        }
+    }
+}
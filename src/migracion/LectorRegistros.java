@@ -0,0 +1,139 @@
+package migracion;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lee un archivo UTF-8 registro por registro a través de un FileChannel y un buffer directo,
+ * sin BufferedReader ni decodificar el archivo entero.
+ *
+ * - Un registro termina en un salto de línea; con comillas (CSV), los saltos dentro de un
+ *   campo entre comillas dobles no cuentan. Se puede buscar '\n' y '"' byte a byte porque en
+ *   UTF-8 esos bytes nunca forman parte de un caracter multibyte.
+ * - Se descartan el BOM inicial, el '\r' final de cada línea y las líneas en blanco.
+ * - Cada registro informa su línea de comienzo y el byte donde termina, para el checkpoint:
+ *   abrir el lector en ese byte continúa desde el registro siguiente.
+ */
+final class LectorRegistros implements Closeable {
+
+    private static final int TAMANIO_BUFFER = 1 << 20;
+
+    /**
+     * @param linea          Línea del archivo donde empieza el registro (desde 1)
+     * @param fin            Posición en bytes inmediatamente después del registro
+     * @param lineaSiguiente Línea del archivo en fin
+     */
+    record Registro(long linea, String texto, long fin, long lineaSiguiente) {
+    }
+
+    private final FileChannel canal;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(TAMANIO_BUFFER);
+    private final boolean comillas;
+    private byte[] actual = new byte[256];
+    private long posicion;
+    private long linea;
+    private boolean agotado;
+
+    /**
+     * @param desde        Byte donde empieza el primer registro a leer (0 = comienzo del archivo)
+     * @param lineaInicial Línea del archivo en ese byte
+     * @param comillas     Si los saltos de línea entre comillas dobles son parte del registro
+     */
+    LectorRegistros(Path archivo, long desde, long lineaInicial, boolean comillas) throws IOException {
+        this.canal = FileChannel.open(archivo, StandardOpenOption.READ);
+        this.comillas = comillas;
+        this.posicion = desde;
+        this.linea = lineaInicial;
+        canal.position(desde);
+        buffer.flip();
+        if (desde == 0) {
+            saltearBom();
+        }
+    }
+
+    /**
+     * @return El próximo registro no vacío, o null al final del archivo
+     */
+    Registro siguiente() throws IOException {
+        while (true) {
+            long comienzo = linea;
+            int largo = 0;
+            boolean entreComillas = false;
+            boolean leyo = false;
+            while (true) {
+                if (!buffer.hasRemaining() && !llenar()) {
+                    break;
+                }
+                leyo = true;
+                byte b = buffer.get();
+                posicion++;
+                if (b == '\n') {
+                    linea++;
+                    if (!entreComillas) {
+                        break;
+                    }
+                } else if (b == '"' && comillas) {
+                    entreComillas = !entreComillas;
+                }
+                if (largo == actual.length) {
+                    actual = Arrays.copyOf(actual, largo * 2);
+                }
+                actual[largo++] = b;
+            }
+            if (!leyo) {
+                return null;
+            }
+            if (largo > 0 && actual[largo - 1] == '\r') {
+                largo--;
+            }
+            if (!enBlanco(largo)) {
+                return new Registro(comienzo, new String(actual, 0, largo, StandardCharsets.UTF_8), posicion, linea);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    private boolean llenar() throws IOException {
+        if (agotado) {
+            return false;
+        }
+        buffer.clear();
+        int leidos = canal.read(buffer);
+        buffer.flip();
+        if (leidos <= 0) {
+            agotado = true;
+            return false;
+        }
+        return true;
+    }
+
+    private void saltearBom() throws IOException {
+        if (!llenar()) {
+            return;
+        }
+        if (buffer.remaining() >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB
+                && buffer.get(2) == (byte) 0xBF) {
+            buffer.position(3);
+            posicion = 3;
+        }
+    }
+
+    private boolean enBlanco(int largo) {
+        for (int i = 0; i < largo; i++) {
+            if (actual[i] != ' ' && actual[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,12 @@
+package migracion;
+
+import java.time.Duration;
+
+/**
+ * Resultado de {@link ExportadorPacientes#exportar}.
+ *
+ * @param filas Pacientes escritos
+ * @param bytes Tamaño del archivo generado
+ */
+public record ResultadoExportacion(long filas, long bytes, Duration duracion, double filasPorSegundo) {
+}
@@ -0,0 +1,18 @@
+package migracion;
+
+import java.time.Duration;
+
+/**
+ * Resultado de {@link ImportadorPacientes#importar}. Los contadores incluyen lo importado
+ * antes de una reanudación; duración y filas por segundo son solo de esta ejecución.
+ *
+ * @param leidas      Registros leídos del archivo
+ * @param importadas  Pacientes insertados
+ * @param rechazadas  Registros escritos en el archivo de rechazados
+ * @param omitidas    Registros del tramo reanudado cuyo DNI ya estaba en la base: se habían
+ *                    importado antes del corte
+ * @param reanudada   Si se continuó desde un checkpoint
+ */
+public record ResultadoImportacion(long leidas, long importadas, long rechazadas, long omitidas,
+                                   boolean reanudada, Duration duracion, double filasPorSegundo) {
+}
@@ -0,0 +1,127 @@
+package migracion;
+
+import models.GrupoSanguineo;
+import models.HistoriaClinica;
+import models.Paciente;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Convierte una fila importada en Paciente (con su HistoriaClinica si la fila trae datos de
+ * historia), validando cada campo. Los errores son IllegalArgumentException con un mensaje
+ * pensado para el archivo de rechazados.
+ */
+final class ValidadorPaciente {
+
+    /** Largos máximos de las columnas VARCHAR (ver sql/create_db_tables.sql). */
+    private static final int MAX_NOMBRE = 80;
+    private static final int MAX_NRO_HISTORIA = 20;
+    /** TEXT de MySQL: 65.535 bytes; se controla en caracteres, alcanza para rechazar lo absurdo. */
+    private static final int MAX_TEXTO = 65_535;
+    private static final LocalDate FECHA_MINIMA = LocalDate.of(1900, 1, 1);
+    private static final DateTimeFormatter DIA_MES_ANIO = DateTimeFormatter.ofPattern("dd/MM/uuuu", Locale.ROOT)
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    private ValidadorPaciente() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada.");
+    }
+
+    /**
+     * @param fila Columna → valor (null o en blanco = sin valor)
+     * @param hoy  Fecha de referencia para rechazar nacimientos futuros
+     * @throws IllegalArgumentException Si algún campo no es válido
+     */
+    static Paciente paciente(Map<String, String> fila, LocalDate hoy) {
+        Paciente paciente = new Paciente();
+        paciente.setNombre(texto(fila, Columnas.NOMBRE, MAX_NOMBRE, true));
+        paciente.setApellido(texto(fila, Columnas.APELLIDO, MAX_NOMBRE, true));
+        paciente.setDni(dni(valor(fila, Columnas.DNI)));
+        paciente.setFechaNacimiento(fecha(valor(fila, Columnas.FECHA_NACIMIENTO), hoy));
+
+        String nroHistoria = texto(fila, Columnas.NRO_HISTORIA, MAX_NRO_HISTORIA, false);
+        String grupo = valor(fila, Columnas.GRUPO_SANGUINEO);
+        String antecedentes = texto(fila, Columnas.ANTECEDENTES, MAX_TEXTO, false);
+        String medicacion = texto(fila, Columnas.MEDICACION_ACTUAL, MAX_TEXTO, false);
+        String observaciones = texto(fila, Columnas.OBSERVACIONES, MAX_TEXTO, false);
+        if (nroHistoria != null || grupo != null || antecedentes != null || medicacion != null || observaciones != null) {
+            HistoriaClinica historia = new HistoriaClinica();
+            historia.setNroHistoria(nroHistoria);
+            historia.setGrupoSanguineo(grupo != null ? GrupoSanguineo.desdeSimbolo(grupo.toUpperCase(Locale.ROOT)) : null);
+            historia.setAntecedentes(antecedentes);
+            historia.setMedicacionActual(medicacion);
+            historia.setObservaciones(observaciones);
+            paciente.setHistoriaClinica(historia);
+        }
+        return paciente;
+    }
+
+    /**
+     * DNI sin puntos ni espacios ("35.111.222" → "35111222"): 7 u 8 dígitos.
+     */
+    static String dni(String valor) {
+        if (valor == null) {
+            throw new IllegalArgumentException("Falta el DNI");
+        }
+        StringBuilder digitos = new StringBuilder(valor.length());
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digitos.append(c);
+            } else if (c != '.' && c != ' ') {
+                throw new IllegalArgumentException("DNI inválido: " + valor);
+            }
+        }
+        if (digitos.length() < 7 || digitos.length() > 8) {
+            throw new IllegalArgumentException("DNI inválido (debe tener 7 u 8 dígitos): " + valor);
+        }
+        return digitos.toString();
+    }
+
+    /**
+     * Fecha ISO (1990-05-14) o dd/MM/yyyy (14/05/1990), entre 1900 y hoy. Sin valor → null.
+     */
+    static LocalDate fecha(String valor, LocalDate hoy) {
+        if (valor == null) {
+            return null;
+        }
+        LocalDate fecha;
+        try {
+            fecha = valor.indexOf('/') >= 0 ? LocalDate.parse(valor, DIA_MES_ANIO) : LocalDate.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Fecha de nacimiento inválida: " + valor);
+        }
+        if (fecha.isAfter(hoy) || fecha.isBefore(FECHA_MINIMA)) {
+            throw new IllegalArgumentException("Fecha de nacimiento fuera de rango: " + valor);
+        }
+        return fecha;
+    }
+
+    private static String texto(Map<String, String> fila, String columna, int maximo, boolean requerido) {
+        String valor = valor(fila, columna);
+        if (valor == null) {
+            if (requerido) {
+                throw new IllegalArgumentException("Falta " + columna);
+            }
+            return null;
+        }
+        if (valor.length() > maximo) {
+            throw new IllegalArgumentException(columna + " supera los " + maximo + " caracteres");
+        }
+        return valor;
+    }
+
+    /** Valor recortado; null si falta o está en blanco. */
+    private static String valor(Map<String, String> fila, String columna) {
+        String valor = fila.get(columna);
+        if (valor == null) {
+            return null;
+        }
+        valor = valor.strip();
+        return valor.isEmpty() ? null : valor;
+    }
+}
@@ -1,8 +1,24 @@
 package models;
 
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
 public abstract class Base {
     private Long id;
     private Boolean eliminado;
+
+    /**
+     * Versión de la fila cuando se leyó (columna version). Los DAOs la comparan en el UPDATE
+     * para no pisar cambios de otro usuario y la incrementan al guardar. 0 en entidades nuevas.
+     */
+    private long version;
+
+    /**
+     * Campos modificados desde que la entidad se leyó de la base.
+     * null = sin seguimiento (entidad creada por el caller): se considera todo modificado.
+     */
+    private Set<String> camposModificados;
     
     public Base(Long id, Boolean eliminado){
         this.id = id;
@@ -21,6 +37,69 @@ public abstract class Base {
         return eliminado;
     }
     
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public Base() {}
-    
+
+    /**
+     * Activa el seguimiento de cambios con todos los campos limpios.
+     * Lo llaman los DAOs al mapear una entidad leída de la base.
+     */
+    public void iniciarSeguimiento() {
+        camposModificados = new HashSet<>();
+    }
+
+    /**
+     * Indica si el campo cambió desde la lectura. Sin seguimiento, siempre true.
+     */
+    public boolean fueModificado(String campo) {
+        return camposModificados == null || camposModificados.contains(campo);
+    }
+
+    /**
+     * Indica si hay algo para guardar. Sin seguimiento, siempre true.
+     */
+    public boolean tieneCambios() {
+        return camposModificados == null || !camposModificados.isEmpty();
+    }
+
+    /**
+     * Marca todos los campos como guardados. Lo llaman los DAOs tras un UPDATE exitoso.
+     */
+    public void limpiarCambios() {
+        if (camposModificados != null) {
+            camposModificados.clear();
+        }
+    }
+
+    /**
+     * Captura la versión y los campos modificados antes de guardar. La acción retornada los
+     * restaura si la transacción del UPDATE se deshace (ver TransactionSynchronization.afterRollback),
+     * conservando además los campos modificados después.
+     */
+    public Runnable capturarEstado() {
+        long versionGuardada = version;
+        Set<String> camposGuardados = camposModificados != null ? new HashSet<>(camposModificados) : null;
+        return () -> {
+            version = versionGuardada;
+            if (camposModificados != null && camposGuardados != null) {
+                camposModificados.addAll(camposGuardados);
+            }
+        };
+    }
+
+    /**
+     * Registra el cambio de un campo si el seguimiento está activo y el valor realmente cambió.
+     */
+    protected void marcarModificado(String campo, Object anterior, Object nuevo) {
+        if (camposModificados != null && !Objects.equals(anterior, nuevo)) {
+            camposModificados.add(campo);
+        }
+    }
 }
\ No newline at end of file
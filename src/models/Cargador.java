@@ -0,0 +1,10 @@
+package models;
+
+/**
+ * Carga diferida de una parte de la entidad (la usan los DAOs para lazy loading).
+ * Se invoca una sola vez, en el primer acceso al dato.
+ */
+@FunctionalInterface
+public interface Cargador<T> {
+    T cargar() throws Exception;
+}
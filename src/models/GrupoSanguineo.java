@@ -1,13 +1,50 @@
 package models;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public enum GrupoSanguineo {
     A_POS("A+"), A_NEG("A-"), B_POS("B+"), B_NEG("B-"), AB_POS("AB+"), AB_NEG("AB-"), O_POS("O+"), O_NEG("O-");
     
+    /** Tabla símbolo → enum (y nombre → enum, para datos viejos), armada una sola vez. */
+    private static final Map<String, GrupoSanguineo> POR_SIMBOLO = new HashMap<>();
+
+    static {
+        for (GrupoSanguineo grupo : values()) {
+            POR_SIMBOLO.put(grupo.simbolo, grupo);
+            POR_SIMBOLO.put(grupo.name(), grupo);
+        }
+    }
+
     private final String simbolo;
     
     GrupoSanguineo(String simbolo) {
         this.simbolo = simbolo;
     }
+
+    /**
+     * Símbolo tal como lo guarda el ENUM de la columna grupo_sanguineo (ej: "A+").
+     */
+    public String getSimbolo() {
+        return simbolo;
+    }
+
+    /**
+     * Convierte el valor de la columna grupo_sanguineo al enum.
+     * Acepta el símbolo ("A+") o el nombre ("A_POS"); null si el valor es null.
+     *
+     * @throws IllegalArgumentException si el valor no corresponde a ningún grupo
+     */
+    public static GrupoSanguineo desdeSimbolo(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        GrupoSanguineo grupo = POR_SIMBOLO.get(valor);
+        if (grupo == null) {
+            throw new IllegalArgumentException("Grupo sanguíneo desconocido: " + valor);
+        }
+        return grupo;
+    }
     
     @Override
     public String toString() {
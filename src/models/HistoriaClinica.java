@@ -1,14 +1,28 @@
 package models;
 
 public class HistoriaClinica extends Base{
+    /** Nombres de campo para el seguimiento de cambios (ver {@link Base#fueModificado}). */
+    public static final String NRO_HISTORIA = "nroHistoria";
+    public static final String GRUPO_SANGUINEO = "grupoSanguineo";
+    public static final String ANTECEDENTES = "antecedentes";
+    public static final String MEDICACION_ACTUAL = "medicacionActual";
+    public static final String OBSERVACIONES = "observaciones";
+
     private String nroHistoria;
     private GrupoSanguineo grupoSanguineo;
     private String antecedentes;
     private String medicacionActual;
     private String observaciones;
+    /** Si no es null, los campos TEXT todavía no se cargaron y se cargarán en el primer acceso. */
+    private Cargador<Textos> cargadorTextos;
+
+    /**
+     * Campos TEXT de la historia, para la carga diferida.
+     */
+    public record Textos(String antecedentes, String medicacionActual, String observaciones) {}
     
     public HistoriaClinica(Long id, Boolean eliminado, String nroHistoria, GrupoSanguineo grupoSanguineo, String antecedentes, String medicacionActual, String observaciones ) {
-        super(id, false);
+        super(id, eliminado);
         this.nroHistoria = nroHistoria;
         this.grupoSanguineo = grupoSanguineo;
         this.antecedentes = antecedentes;
@@ -25,6 +39,7 @@ public class HistoriaClinica extends Base{
     }
     
     public void setNroHistoria(String nroHistoria) {
+        marcarModificado(NRO_HISTORIA, this.nroHistoria, nroHistoria);
         this.nroHistoria = nroHistoria;
     }
 
@@ -33,33 +48,78 @@ public class HistoriaClinica extends Base{
     }
     
     public void setGrupoSanguineo(GrupoSanguineo grupoSanguineo) {
+        marcarModificado(GRUPO_SANGUINEO, this.grupoSanguineo, grupoSanguineo);
         this.grupoSanguineo = grupoSanguineo;
     }
 
     public String getAntecedentes() {
+        cargarTextos();
         return antecedentes;
     }
     
     public void setAntecedentes(String antecedentes) {
+        cargarTextos();
+        marcarModificado(ANTECEDENTES, this.antecedentes, antecedentes);
         this.antecedentes = antecedentes;
     }
 
     public String getMedicacionActual() {
+        cargarTextos();
         return medicacionActual;
     }
     
     public void setMedicacionActual(String medicacionActual) {
+        cargarTextos();
+        marcarModificado(MEDICACION_ACTUAL, this.medicacionActual, medicacionActual);
         this.medicacionActual = medicacionActual;
     }
 
     public String getObservaciones() {
+        cargarTextos();
         return observaciones;
     }
     
     public void setObservaciones(String observaciones) {
+        cargarTextos();
+        marcarModificado(OBSERVACIONES, this.observaciones, observaciones);
         this.observaciones = observaciones;
     }
 
+    /**
+     * Difiere la carga de antecedentes, medicación actual y observaciones hasta el primer acceso.
+     */
+    public void setCargadorTextos(Cargador<Textos> cargadorTextos) {
+        this.cargadorTextos = cargadorTextos;
+    }
+
+    /**
+     * Indica si los campos TEXT ya están en memoria.
+     */
+    public boolean isTextosCargados() {
+        return cargadorTextos == null;
+    }
+
+    private void cargarTextos() {
+        if (cargadorTextos == null) {
+            return;
+        }
+        Cargador<Textos> cargador = cargadorTextos;
+        cargadorTextos = null;
+        Textos textos;
+        try {
+            textos = cargador.cargar();
+        } catch (Exception e) {
+            cargadorTextos = cargador;
+            throw new IllegalStateException("No se pudieron cargar los textos de la historia clínica " + getId() + ": " + e.getMessage(), e);
+        }
+        // Asignación directa: la carga no cuenta como modificación
+        if (textos != null) {
+            this.antecedentes = textos.antecedentes();
+            this.medicacionActual = textos.medicacionActual();
+            this.observaciones = textos.observaciones();
+        }
+    }
+
     @Override
     public String toString() {
         return "HistoriaClinica{" +
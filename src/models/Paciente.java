@@ -3,14 +3,22 @@ package models;
 import java.time.LocalDate;
 
 public class Paciente extends Base {
+    /** Nombres de campo para el seguimiento de cambios (ver {@link Base#fueModificado}). */
+    public static final String NOMBRE = "nombre";
+    public static final String APELLIDO = "apellido";
+    public static final String DNI = "dni";
+    public static final String FECHA_NACIMIENTO = "fechaNacimiento";
+
     private String nombre;
     private String apellido;
     private String dni;
     private LocalDate fechaNacimiento;
     private HistoriaClinica historiaClinica;
+    /** Si no es null, la historia todavía no se cargó y se cargará en el primer acceso. */
+    private Cargador<HistoriaClinica> cargadorHistoria;
     
     public Paciente(Long id, Boolean eliminado, String nombre, String apellido, String dni, LocalDate fechaNacimiento, HistoriaClinica historiaClinica) {
-        super(id, false);
+        super(id, eliminado);
         this.nombre = nombre;
         this.apellido = apellido;
         this.dni = dni;
@@ -27,6 +35,7 @@ public class Paciente extends Base {
     }
     
     public void setNombre(String nombre) {
+        marcarModificado(NOMBRE, this.nombre, nombre);
         this.nombre = nombre;
     }
 
@@ -35,6 +44,7 @@ public class Paciente extends Base {
     }
     
     public void setApellido(String apellido) {
+        marcarModificado(APELLIDO, this.apellido, apellido);
         this.apellido = apellido;
     }
 
@@ -43,6 +53,7 @@ public class Paciente extends Base {
     }
     
     public void setDni(String dni) {
+        marcarModificado(DNI, this.dni, dni);
         this.dni = dni;
     }
 
@@ -51,16 +62,43 @@ public class Paciente extends Base {
     }
     
     public void setFechaNacimiento(LocalDate fechaNacimiento) {
+        marcarModificado(FECHA_NACIMIENTO, this.fechaNacimiento, fechaNacimiento);
         this.fechaNacimiento = fechaNacimiento;
     }
 
     public HistoriaClinica getHistoriaClinica() {
+        if (cargadorHistoria != null) {
+            Cargador<HistoriaClinica> cargador = cargadorHistoria;
+            cargadorHistoria = null;
+            try {
+                historiaClinica = cargador.cargar();
+            } catch (Exception e) {
+                cargadorHistoria = cargador;
+                throw new IllegalStateException("No se pudo cargar la historia clínica del paciente " + getId() + ": " + e.getMessage(), e);
+            }
+        }
         return historiaClinica;
     }
     public void setHistoriaClinica(HistoriaClinica historiaClinica) {
+        this.cargadorHistoria = null;
         this.historiaClinica = historiaClinica;
     }
 
+    /**
+     * Difiere la carga de la historia clínica hasta el primer getHistoriaClinica().
+     */
+    public void setCargadorHistoria(Cargador<HistoriaClinica> cargadorHistoria) {
+        this.cargadorHistoria = cargadorHistoria;
+        this.historiaClinica = null;
+    }
+
+    /**
+     * Indica si la historia clínica ya está en memoria (o no había que cargarla).
+     */
+    public boolean isHistoriaCargada() {
+        return cargadorHistoria == null;
+    }
+
     @Override
     public String toString() {
         return "Paciente{" +
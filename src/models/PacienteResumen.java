@@ -0,0 +1,59 @@
+package models;
+
+/**
+ * Proyección liviana de paciente + historia clínica para listados.
+ * No incluye los campos TEXT de la historia.
+ */
+public final class PacienteResumen {
+    private final long id;
+    private final String nombre;
+    private final String apellido;
+    private final String dni;
+    private final String nroHistoria;
+    private final GrupoSanguineo grupoSanguineo;
+
+    public PacienteResumen(long id, String nombre, String apellido, String dni, String nroHistoria, GrupoSanguineo grupoSanguineo) {
+        this.id = id;
+        this.nombre = nombre;
+        this.apellido = apellido;
+        this.dni = dni;
+        this.nroHistoria = nroHistoria;
+        this.grupoSanguineo = grupoSanguineo;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public String getApellido() {
+        return apellido;
+    }
+
+    public String getDni() {
+        return dni;
+    }
+
+    public String getNroHistoria() {
+        return nroHistoria;
+    }
+
+    public GrupoSanguineo getGrupoSanguineo() {
+        return grupoSanguineo;
+    }
+
+    @Override
+    public String toString() {
+        return "PacienteResumen{" +
+                "id=" + id +
+                ", nombre='" + nombre + '\'' +
+                ", apellido='" + apellido + '\'' +
+                ", dni='" + dni + '\'' +
+                ", nroHistoria='" + nroHistoria + '\'' +
+                ", grupoSanguineo=" + grupoSanguineo +
+                '}';
+    }
+}
@@ -0,0 +1,12 @@
+package search;
+
+/**
+ * Paciente encontrado por {@link IndiceNombres}.
+ *
+ * @param pacienteId ID del paciente
+ * @param similitud  Entre 0 y 1. En la búsqueda aproximada, cuánto se parecen las palabras
+ *                   de la consulta a las del nombre (1 = las mismas); en el autocompletado, qué
+ *                   fracción de la palabra completa cubre el prefijo escrito
+ */
+public record CoincidenciaNombre(long pacienteId, double similitud) {
+}
@@ -0,0 +1,77 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consulta de texto ya interpretada: cláusulas unidas por OR, cada una con términos unidos por AND.
+ *
+ * Sintaxis:
+ * - Palabras separadas por espacios (o por AND) deben aparecer todas: "asma losartan".
+ * - OR (en mayúsculas) separa alternativas: "asma OR epoc".
+ * - Un * al final busca por prefijo: "losart*".
+ * AND tiene precedencia sobre OR: "asma losartan OR epoc" = (asma AND losartan) OR epoc.
+ */
+final class ConsultaTexto {
+
+    /** Largo mínimo de un prefijo: uno más corto expandiría a buena parte del diccionario. */
+    static final int LARGO_MINIMO_PREFIJO = 3;
+
+    /**
+     * Término normalizado de la consulta.
+     */
+    record Termino(String texto, boolean prefijo) {
+    }
+
+    private final List<List<Termino>> clausulas;
+
+    private ConsultaTexto(List<List<Termino>> clausulas) {
+        this.clausulas = clausulas;
+    }
+
+    /**
+     * Cláusulas de la consulta; ninguna está vacía.
+     */
+    List<List<Termino>> clausulas() {
+        return clausulas;
+    }
+
+    /**
+     * Interpreta la consulta. Las palabras vacías y los prefijos demasiado cortos se ignoran.
+     */
+    static ConsultaTexto parsear(String consulta) {
+        if (consulta == null) {
+            throw new IllegalArgumentException("La consulta no puede ser null.");
+        }
+        List<List<Termino>> clausulas = new ArrayList<>();
+        List<Termino> actual = new ArrayList<>();
+        for (String palabra : consulta.trim().split("\\s+")) {
+            if (palabra.equals("OR")) {
+                cerrar(clausulas, actual);
+                actual = new ArrayList<>();
+                continue;
+            }
+            if (palabra.equals("AND") || palabra.isEmpty()) {
+                continue;
+            }
+            boolean prefijo = palabra.endsWith("*");
+            List<String> terminos = NormalizadorTexto.terminos(prefijo ? palabra.substring(0, palabra.length() - 1) : palabra);
+            for (int i = 0; i < terminos.size(); i++) {
+                // En "anti-infl*" solo el último término es prefijo
+                boolean esPrefijo = prefijo && i == terminos.size() - 1;
+                if (esPrefijo && terminos.get(i).length() < LARGO_MINIMO_PREFIJO) {
+                    continue;
+                }
+                actual.add(new Termino(terminos.get(i), esPrefijo));
+            }
+        }
+        cerrar(clausulas, actual);
+        return new ConsultaTexto(clausulas);
+    }
+
+    private static void cerrar(List<List<Termino>> clausulas, List<Termino> clausula) {
+        if (!clausula.isEmpty()) {
+            clausulas.add(clausula);
+        }
+    }
+}
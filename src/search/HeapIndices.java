@@ -0,0 +1,79 @@
+package search;
+
+/**
+ * Heap binario de índices sin boxing: en el tope queda el menor según el orden recibido.
+ */
+final class HeapIndices {
+
+    @FunctionalInterface
+    interface Orden {
+        boolean menor(int x, int y);
+    }
+
+    private final int[] elementos;
+    private final Orden orden;
+    private int tamanio;
+
+    HeapIndices(int capacidad, Orden orden) {
+        this.elementos = new int[capacidad];
+        this.orden = orden;
+    }
+
+    int tamanio() {
+        return tamanio;
+    }
+
+    int tope() {
+        return elementos[0];
+    }
+
+    void agregar(int elemento) {
+        int i = tamanio++;
+        elementos[i] = elemento;
+        while (i > 0) {
+            int padre = (i - 1) >>> 1;
+            if (!orden.menor(elementos[i], elementos[padre])) {
+                break;
+            }
+            intercambiar(i, padre);
+            i = padre;
+        }
+    }
+
+    void quitarTope() {
+        elementos[0] = elementos[--tamanio];
+        bajarTope();
+    }
+
+    void reemplazarTope(int elemento) {
+        elementos[0] = elemento;
+        bajarTope();
+    }
+
+    /** Reubica el tope después de que cambió su clave. */
+    void bajarTope() {
+        int i = 0;
+        while (true) {
+            int menor = i;
+            int izquierdo = 2 * i + 1;
+            int derecho = izquierdo + 1;
+            if (izquierdo < tamanio && orden.menor(elementos[izquierdo], elementos[menor])) {
+                menor = izquierdo;
+            }
+            if (derecho < tamanio && orden.menor(elementos[derecho], elementos[menor])) {
+                menor = derecho;
+            }
+            if (menor == i) {
+                return;
+            }
+            intercambiar(i, menor);
+            i = menor;
+        }
+    }
+
+    private void intercambiar(int i, int j) {
+        int aux = elementos[i];
+        elementos[i] = elementos[j];
+        elementos[j] = aux;
+    }
+}
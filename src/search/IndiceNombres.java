@@ -0,0 +1,783 @@
+package search;
+
+import models.Paciente;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Índice en memoria de nombres de pacientes para la búsqueda de recepción mientras se escribe.
+ *
+ * Funcionamiento:
+ * - Nombre y apellido se normalizan con {@link NormalizadorTexto#palabras} (sin tildes, en
+ *   minúsculas): "Gomez" encuentra "Gómez".
+ * - Diccionario: cada palabra distinta ("juan", "gomez", ...) tiene un número y una lista de
+ *   pacientes, un int[] ordenado de posiciones internas: 4 bytes por entrada, sin boxing.
+ *   Cada paciente guarda los números de sus palabras.
+ * - Búsqueda aproximada (tolera errores de tipeo): las palabras del diccionario se parten en
+ *   trigramas con bordes ("  g", " go", "gom", ...). Un trigrama se codifica como int en
+ *   [0, 38^3), así el índice de trigramas es un arreglo de listas de números de palabra.
+ *   Cada palabra de la consulta se compara primero contra el diccionario (decenas de miles
+ *   de palabras, no millones de pacientes) y recién después se recorren los pacientes de las
+ *   palabras parecidas.
+ * - Autocompletado: el diccionario está en orden alfabético; un prefijo es un rango del
+ *   diccionario y se recorre hasta juntar el límite.
+ * - PacienteDAO lo mantiene al día tras el commit de crear, actualizar y eliminar.
+ *
+ * Las posiciones de los pacientes eliminados, y los números de las palabras que ya no usa
+ * nadie, no se reutilizan hasta reconstruir().
+ * Es seguro para uso concurrente: las búsquedas comparten un lock de lectura.
+ */
+public final class IndiceNombres {
+
+    /** Símbolos de un trigrama: borde, a-z, 0-9 y "otro" (letras fuera de a-z tras normalizar). */
+    private static final int SIMBOLOS = 38;
+    private static final int TRIGRAMAS = SIMBOLOS * SIMBOLOS * SIMBOLOS;
+    private static final int BORDE = 0;
+
+    /**
+     * Similitud de Jaccard mínima entre los trigramas de una palabra de la consulta y los de
+     * una palabra del diccionario para tomarlas como la misma ("perz" y "perez" dan 0,375).
+     */
+    private static final double SIMILITUD_MINIMA_PALABRA = 0.35;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Trigrama → números de las palabras que lo contienen. Protegido por lock. */
+    private ListaEnteros[] porTrigrama = new ListaEnteros[TRIGRAMAS];
+    /** Diccionario en orden alfabético. */
+    private TreeMap<String, Palabra> porPalabra = new TreeMap<>();
+    /** Palabras por número; null las que ya no usa ningún paciente. */
+    private Palabra[] palabras = new Palabra[1024];
+    private int palabrasUsadas;
+    /** Por posición: ID del paciente y números de sus palabras distintas (null si se eliminó). */
+    private long[] ids = new long[1024];
+    private int[][] palabrasPorPosicion = new int[1024][];
+    /**
+     * Cantidad de palabras por posición (tope 127), aparte para que la cota de la búsqueda
+     * lea un arreglo compacto en lugar de seguir la referencia a cada int[].
+     */
+    private byte[] cantidadPalabras = new byte[1024];
+    /** Posiciones usadas (incluye las de pacientes eliminados). */
+    private int usadas;
+    private TablaIds posicionPorId = new TablaIds();
+
+    /**
+     * Indexa un paciente, o reemplaza su nombre si ya estaba indexado.
+     */
+    public void indexar(long pacienteId, String nombre, String apellido) {
+        LinkedHashSet<String> distintas = new LinkedHashSet<>(NormalizadorTexto.palabras(nombre));
+        distintas.addAll(NormalizadorTexto.palabras(apellido));
+        lock.writeLock().lock();
+        try {
+            int posicion = posicionPorId.get(pacienteId);
+            if (posicion >= 0) {
+                if (mismasPalabras(palabrasPorPosicion[posicion], distintas)) {
+                    return;
+                }
+                quitar(posicion);
+            } else {
+                posicion = nuevaPosicion(pacienteId);
+            }
+            int[] numeros = new int[distintas.size()];
+            int n = 0;
+            for (String texto : distintas) {
+                Palabra palabra = porPalabra.get(texto);
+                if (palabra == null) {
+                    palabra = nuevaPalabra(texto);
+                }
+                palabra.pacientes.agregar(posicion);
+                numeros[n++] = palabra.numero;
+            }
+            palabrasPorPosicion[posicion] = numeros;
+            cantidadPalabras[posicion] = (byte) Math.min(numeros.length, Byte.MAX_VALUE);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void indexar(Paciente paciente) {
+        indexar(paciente.getId(), paciente.getNombre(), paciente.getApellido());
+    }
+
+    public void eliminar(long pacienteId) {
+        lock.writeLock().lock();
+        try {
+            int posicion = posicionPorId.get(pacienteId);
+            if (posicion >= 0) {
+                quitar(posicion);
+                posicionPorId.remove(pacienteId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reemplaza todo el contenido por los pacientes recibidos (y compacta las posiciones).
+     * Las búsquedas siguen usando el contenido anterior hasta que termina.
+     */
+    public void reconstruir(Stream<Paciente> pacientes) {
+        IndiceNombres nuevo = new IndiceNombres();
+        pacientes.forEach(nuevo::indexar);
+        lock.writeLock().lock();
+        try {
+            porTrigrama = nuevo.porTrigrama;
+            porPalabra = nuevo.porPalabra;
+            palabras = nuevo.palabras;
+            palabrasUsadas = nuevo.palabrasUsadas;
+            ids = nuevo.ids;
+            palabrasPorPosicion = nuevo.palabrasPorPosicion;
+            cantidadPalabras = nuevo.cantidadPalabras;
+            usadas = nuevo.usadas;
+            posicionPorId = nuevo.posicionPorId;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cantidad de pacientes indexados.
+     */
+    public int pacientes() {
+        lock.readLock().lock();
+        try {
+            return posicionPorId.tamanio;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Búsqueda aproximada, sin importar el orden de las palabras ("gomes juan" encuentra
+     * "Juan Gómez"). Cada palabra de la consulta coincide con las palabras del diccionario
+     * que se le parecen por trigramas; de cada paciente cuenta la más parecida. La similitud es la suma de esas similitudes sobre la cantidad de palabras
+     * distintas entre consulta y nombre: 1 si son las mismas palabras, menos si a la consulta
+     * le faltan o le sobran palabras respecto del nombre.
+     *
+     * Puede faltar una de cada tres palabras de la consulta. Como un resultado tiene que tener
+     * casi todas, solo se recorren los pacientes de las palabras de la consulta con menos
+     * pacientes (filtro de prefijo); y una vez que hay un top-k, se descartan sin evaluarlos los
+     * que ni con su mejor puntaje posible superarían al último.
+     *
+     * @return Los de mayor similitud primero (a igual similitud, en el orden en que se
+     *         indexaron; tras reconstruir(), el del stream recibido)
+     */
+    public List<CoincidenciaNombre> buscar(String consulta, int limite) {
+        validarLimite(limite);
+        List<String> textos = new ArrayList<>(new LinkedHashSet<>(NormalizadorTexto.palabras(consulta)));
+        if (textos.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            int cantidad = textos.size();
+            Parecidas[] parecidas = new Parecidas[cantidad];
+            for (int i = 0; i < cantidad; i++) {
+                parecidas[i] = parecidas(textos.get(i));
+            }
+            Arrays.sort(parecidas, (a, b) -> Long.compare(a.pacientes, b.pacientes));
+            int minimo = cantidad - cantidad / 3;
+            int filtro = cantidad - minimo + 1;
+
+            TablaPalabras tabla = new TablaPalabras(parecidas, filtro);
+            double sumaMaximos = 0;
+            for (Parecidas p : parecidas) {
+                sumaMaximos += p.maximo();
+            }
+
+            int[] posicionesTop = new int[limite];
+            double[] similitudesTop = new double[limite];
+            HeapIndices heap = new HeapIndices(limite, (x, y) -> peor(
+                    similitudesTop[x], posicionesTop[x], similitudesTop[y], posicionesTop[y]));
+            double[] mejores = new double[cantidad];
+            int orden = 0;
+            for (int f = 0; f < filtro; f++) {
+                Parecidas actual = parecidas[f];
+                // Un paciente que tenga alguna palabra de las anteriores ya se evaluó desde allí
+                sumaMaximos -= actual.maximo();
+                double resto = sumaMaximos;
+                for (int j = 0; j < actual.cantidad; j++) {
+                    int ordenActual = orden++;
+                    double similitudPalabra = actual.similitudes[j];
+                    ListaEnteros lista = palabras[actual.numeros[j]].pacientes;
+                    for (int k = 0; k < lista.tamanio; k++) {
+                        int posicion = lista.valores[k];
+                        if (heap.tamanio() == limite) {
+                            int tope = heap.tope();
+                            double cota = (resto + similitudPalabra) / Math.max(cantidad, cantidadPalabras[posicion]);
+                            if (!peor(similitudesTop[tope], posicionesTop[tope], cota, posicion)) {
+                                continue;
+                            }
+                        }
+                        // Evaluación completa; si el paciente tiene una palabra que aparece antes
+                        // en este recorrido, ya se evaluó desde esa
+                        int[] suyas = palabrasPorPosicion[posicion];
+                        Arrays.fill(mejores, 0);
+                        int primerOrden = Integer.MAX_VALUE;
+                        for (int numero : suyas) {
+                            for (int e = tabla.primera(numero); e >= 0; e = tabla.siguiente[e]) {
+                                int i = tabla.consulta[e];
+                                mejores[i] = Math.max(mejores[i], tabla.similitud[e]);
+                                primerOrden = Math.min(primerOrden, tabla.orden[e]);
+                            }
+                        }
+                        if (primerOrden != ordenActual) {
+                            continue;
+                        }
+                        int coincidentes = 0;
+                        double suma = 0;
+                        for (double mejor : mejores) {
+                            if (mejor > 0) {
+                                coincidentes++;
+                                suma += mejor;
+                            }
+                        }
+                        if (coincidentes < minimo) {
+                            continue;
+                        }
+                        double similitud = suma / (cantidad + suyas.length - Math.min(coincidentes, suyas.length));
+                        if (heap.tamanio() < limite) {
+                            int slot = heap.tamanio();
+                            posicionesTop[slot] = posicion;
+                            similitudesTop[slot] = similitud;
+                            heap.agregar(slot);
+                        } else {
+                            int tope = heap.tope();
+                            if (peor(similitudesTop[tope], posicionesTop[tope], similitud, posicion)) {
+                                posicionesTop[tope] = posicion;
+                                similitudesTop[tope] = similitud;
+                                heap.bajarTope();
+                            }
+                        }
+                    }
+                }
+            }
+            CoincidenciaNombre[] resultado = new CoincidenciaNombre[heap.tamanio()];
+            // El heap entrega del peor al mejor
+            for (int n = resultado.length - 1; n >= 0; n--) {
+                int slot = heap.tope();
+                heap.quitarTope();
+                resultado[n] = new CoincidenciaNombre(ids[posicionesTop[slot]], similitudesTop[slot]);
+            }
+            return Arrays.asList(resultado);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Autocompletado: pacientes con una palabra que empieza con cada palabra escrita
+     * ("gom ju" encuentra "Juan Gómez"). Recorre el rango del diccionario de la palabra
+     * escrita más larga y verifica las demás sobre las palabras del paciente.
+     *
+     * @return En orden alfabético de la palabra que completa el prefijo más largo
+     */
+    public List<CoincidenciaNombre> autocompletar(String prefijo, int limite) {
+        validarLimite(limite);
+        List<String> escritas = NormalizadorTexto.palabras(prefijo);
+        if (escritas.isEmpty()) {
+            return List.of();
+        }
+        String guia = escritas.get(0);
+        for (String escrita : escritas) {
+            if (escrita.length() > guia.length()) {
+                guia = escrita;
+            }
+        }
+        List<String> otras = new ArrayList<>(escritas);
+        otras.remove(guia);
+        List<CoincidenciaNombre> resultado = new ArrayList<>(Math.min(limite, 64));
+        int[] vistas = new int[Math.min(limite, 1024)];
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Palabra> entrada
+                    : porPalabra.subMap(guia, true, guia + Character.MAX_VALUE, false).entrySet()) {
+                double similitud = (double) guia.length() / entrada.getKey().length();
+                ListaEnteros lista = entrada.getValue().pacientes;
+                for (int j = 0; j < lista.tamanio; j++) {
+                    int posicion = lista.valores[j];
+                    if (contiene(vistas, resultado.size(), posicion) || !tienePrefijos(posicion, otras)) {
+                        continue;
+                    }
+                    if (resultado.size() < vistas.length) {
+                        vistas[resultado.size()] = posicion;
+                    }
+                    resultado.add(new CoincidenciaNombre(ids[posicion], similitud));
+                    if (resultado.size() == limite) {
+                        return resultado;
+                    }
+                }
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void validarLimite(int limite) {
+        if (limite < 1) {
+            throw new IllegalArgumentException("El límite debe ser mayor a cero: " + limite);
+        }
+    }
+
+    /**
+     * true si el candidato x va después que y: menor similitud o, a igual similitud, indexado
+     * después. Desempatar por posición y no por ID evita leer ids[] en la cota de la búsqueda.
+     */
+    private static boolean peor(double similitudX, int posicionX, double similitudY, int posicionY) {
+        int porSimilitud = Double.compare(similitudX, similitudY);
+        return porSimilitud != 0 ? porSimilitud < 0 : posicionX > posicionY;
+    }
+
+    private static boolean contiene(int[] vistas, int cantidad, int posicion) {
+        for (int i = 0; i < Math.min(cantidad, vistas.length); i++) {
+            if (vistas[i] == posicion) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean tienePrefijos(int posicion, List<String> prefijos) {
+        for (String prefijo : prefijos) {
+            boolean encontrado = false;
+            for (int numero : palabrasPorPosicion[posicion]) {
+                if (palabras[numero].texto.startsWith(prefijo)) {
+                    encontrado = true;
+                    break;
+                }
+            }
+            if (!encontrado) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean mismasPalabras(int[] numeros, LinkedHashSet<String> textos) {
+        if (numeros == null || numeros.length != textos.size()) {
+            return false;
+        }
+        int n = 0;
+        for (String texto : textos) {
+            if (!palabras[numeros[n++]].texto.equals(texto)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Palabras del diccionario parecidas a la de la consulta, de la más parecida a la menos.
+     * Con el mismo filtro de prefijo que la búsqueda de pacientes: para llegar a la similitud
+     * mínima una palabra tiene que compartir al menos m de los n trigramas de la consulta, así
+     * que está en alguna de las n - m + 1 listas más cortas; en las demás se la busca por
+     * búsqueda binaria.
+     */
+    private Parecidas parecidas(String texto) {
+        int[] trigramas = trigramas(texto);
+        ListaEnteros[] listas = new ListaEnteros[trigramas.length];
+        for (int i = 0; i < trigramas.length; i++) {
+            ListaEnteros lista = porTrigrama[trigramas[i]];
+            listas[i] = lista != null ? lista : ListaEnteros.VACIA;
+        }
+        Arrays.sort(listas, (a, b) -> Integer.compare(a.tamanio, b.tamanio));
+        int minimo = Math.max(1, (int) Math.ceil(trigramas.length * SIMILITUD_MINIMA_PALABRA));
+        int filtro = trigramas.length - minimo + 1;
+
+        int candidatos = 0;
+        for (int i = 0; i < filtro; i++) {
+            candidatos += listas[i].tamanio;
+        }
+        ContadorEnteros contador = new ContadorEnteros(candidatos);
+        for (int i = 0; i < filtro; i++) {
+            ListaEnteros lista = listas[i];
+            for (int j = 0; j < lista.tamanio; j++) {
+                contador.sumar(lista.valores[j]);
+            }
+        }
+        for (int i = filtro; i < listas.length; i++) {
+            for (int c = 0; c < contador.tamanio; c++) {
+                if (listas[i].contiene(contador.claves[c])) {
+                    contador.cuentas[c]++;
+                }
+            }
+        }
+
+        // Clave de orden: (1 - similitud) como float en los 32 bits altos, índice en los bajos.
+        // Los float no negativos se ordenan igual que sus bits.
+        long[] orden = new long[contador.tamanio];
+        double[] similitudes = new double[contador.tamanio];
+        int aceptadas = 0;
+        for (int c = 0; c < contador.tamanio; c++) {
+            int compartidos = contador.cuentas[c];
+            if (compartidos < minimo) {
+                continue;
+            }
+            Palabra palabra = palabras[contador.claves[c]];
+            double similitud = (double) compartidos / (trigramas.length + palabra.cantidadTrigramas - compartidos);
+            if (similitud >= SIMILITUD_MINIMA_PALABRA) {
+                similitudes[c] = similitud;
+                orden[aceptadas++] = (long) Float.floatToIntBits((float) (1 - similitud)) << 32 | c;
+            }
+        }
+        Arrays.sort(orden, 0, aceptadas);
+        Parecidas parecidas = new Parecidas(aceptadas);
+        for (int n = 0; n < aceptadas; n++) {
+            int c = (int) orden[n];
+            int numero = contador.claves[c];
+            parecidas.numeros[n] = numero;
+            parecidas.similitudes[n] = similitudes[c];
+            parecidas.pacientes += palabras[numero].pacientes.tamanio;
+        }
+        return parecidas;
+    }
+
+    private Palabra nuevaPalabra(String texto) {
+        if (palabrasUsadas == palabras.length) {
+            palabras = Arrays.copyOf(palabras, palabrasUsadas * 2);
+        }
+        int[] trigramas = trigramas(texto);
+        Palabra palabra = new Palabra(palabrasUsadas++, texto, trigramas.length);
+        palabras[palabra.numero] = palabra;
+        porPalabra.put(texto, palabra);
+        for (int trigrama : trigramas) {
+            ListaEnteros lista = porTrigrama[trigrama];
+            if (lista == null) {
+                lista = new ListaEnteros();
+                porTrigrama[trigrama] = lista;
+            }
+            lista.agregar(palabra.numero);
+        }
+        return palabra;
+    }
+
+    private int nuevaPosicion(long pacienteId) {
+        if (usadas == ids.length) {
+            ids = Arrays.copyOf(ids, usadas * 2);
+            palabrasPorPosicion = Arrays.copyOf(palabrasPorPosicion, usadas * 2);
+            cantidadPalabras = Arrays.copyOf(cantidadPalabras, usadas * 2);
+        }
+        int posicion = usadas++;
+        ids[posicion] = pacienteId;
+        posicionPorId.put(pacienteId, posicion);
+        return posicion;
+    }
+
+    /**
+     * Saca la posición de las listas de sus palabras, y del diccionario las palabras que
+     * quedan sin pacientes; la posición queda libre hasta que se vuelva a indexar.
+     */
+    private void quitar(int posicion) {
+        int[] numeros = palabrasPorPosicion[posicion];
+        if (numeros == null) {
+            return;
+        }
+        for (int numero : numeros) {
+            Palabra palabra = palabras[numero];
+            if (palabra.pacientes.quitar(posicion)) {
+                porPalabra.remove(palabra.texto);
+                for (int trigrama : trigramas(palabra.texto)) {
+                    porTrigrama[trigrama].quitar(numero);
+                }
+                palabras[numero] = null;
+            }
+        }
+        palabrasPorPosicion[posicion] = null;
+        cantidadPalabras[posicion] = 0;
+    }
+
+    /**
+     * Trigramas distintos de la palabra, ordenados. La palabra lleva dos bordes al comienzo
+     * y uno al final, así "go" da "  g", " go" y "go ".
+     */
+    private static int[] trigramas(String palabra) {
+        int[] trigramas = new int[palabra.length() + 1];
+        int a = BORDE;
+        int b = BORDE;
+        for (int i = 0; i <= palabra.length(); i++) {
+            int c = i < palabra.length() ? simbolo(palabra.charAt(i)) : BORDE;
+            trigramas[i] = (a * SIMBOLOS + b) * SIMBOLOS + c;
+            a = b;
+            b = c;
+        }
+        Arrays.sort(trigramas);
+        int distintos = 0;
+        for (int i = 0; i < trigramas.length; i++) {
+            if (i == 0 || trigramas[i] != trigramas[i - 1]) {
+                trigramas[distintos++] = trigramas[i];
+            }
+        }
+        return Arrays.copyOf(trigramas, distintos);
+    }
+
+    private static int simbolo(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 1;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 27;
+        }
+        return SIMBOLOS - 1;
+    }
+
+    /** Palabra del diccionario. */
+    private static final class Palabra {
+        final int numero;
+        final String texto;
+        final int cantidadTrigramas;
+        /** Posiciones de los pacientes que la tienen. */
+        final ListaEnteros pacientes = new ListaEnteros();
+
+        Palabra(int numero, String texto, int cantidadTrigramas) {
+            this.numero = numero;
+            this.texto = texto;
+            this.cantidadTrigramas = cantidadTrigramas;
+        }
+    }
+
+    /** Palabras del diccionario parecidas a una de la consulta, de la más parecida a la menos. */
+    private static final class Parecidas {
+        final int cantidad;
+        final int[] numeros;
+        final double[] similitudes;
+        /** Suma de los pacientes de todas las palabras: lo que cuesta recorrerlas. */
+        long pacientes;
+
+        Parecidas(int cantidad) {
+            this.cantidad = cantidad;
+            this.numeros = new int[cantidad];
+            this.similitudes = new double[cantidad];
+        }
+
+        double maximo() {
+            return cantidad == 0 ? 0 : similitudes[0];
+        }
+    }
+
+    /**
+     * Número de palabra → coincidencias con palabras de la consulta, con direccionamiento
+     * abierto. Una palabra del diccionario puede parecerse a más de una de la consulta; sus
+     * coincidencias quedan encadenadas por {@code siguiente}.
+     */
+    private static final class TablaPalabras {
+        private final int[] tabla;
+        private final int mascara;
+        private final int[] numero;
+        /** Índice de la palabra de la consulta. */
+        final int[] consulta;
+        final double[] similitud;
+        /** Orden en que la búsqueda recorre la palabra; MAX_VALUE si no la recorre. */
+        final int[] orden;
+        final int[] siguiente;
+
+        TablaPalabras(Parecidas[] parecidas, int filtro) {
+            int total = 0;
+            for (Parecidas p : parecidas) {
+                total += p.cantidad;
+            }
+            this.mascara = Integer.highestOneBit(Math.max(2, total) * 2 - 1) * 2 - 1;
+            // Índice + 1 de la primera coincidencia; 0 = libre
+            this.tabla = new int[mascara + 1];
+            this.numero = new int[total];
+            this.consulta = new int[total];
+            this.similitud = new double[total];
+            this.orden = new int[total];
+            this.siguiente = new int[total];
+            int e = 0;
+            for (int i = 0; i < parecidas.length; i++) {
+                for (int j = 0; j < parecidas[i].cantidad; j++) {
+                    numero[e] = parecidas[i].numeros[j];
+                    consulta[e] = i;
+                    similitud[e] = parecidas[i].similitudes[j];
+                    orden[e] = i < filtro ? e : Integer.MAX_VALUE;
+                    int slot = slot(numero[e]);
+                    while (tabla[slot] != 0 && numero[tabla[slot] - 1] != numero[e]) {
+                        slot = (slot + 1) & mascara;
+                    }
+                    siguiente[e] = tabla[slot] - 1;
+                    tabla[slot] = e + 1;
+                    e++;
+                }
+            }
+        }
+
+        /** @return Índice de la primera coincidencia de la palabra, o -1 */
+        int primera(int clave) {
+            for (int slot = slot(clave); tabla[slot] != 0; slot = (slot + 1) & mascara) {
+                if (numero[tabla[slot] - 1] == clave) {
+                    return tabla[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        private int slot(int clave) {
+            int h = clave * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mascara;
+        }
+    }
+
+    /**
+     * Lista ordenada de enteros sin repetidos. Las altas suelen ir al final (posiciones nuevas).
+     */
+    private static final class ListaEnteros {
+        static final ListaEnteros VACIA = new ListaEnteros();
+
+        private int[] valores = new int[2];
+        private int tamanio;
+
+        void agregar(int valor) {
+            int i = tamanio == 0 || valores[tamanio - 1] < valor
+                    ? -tamanio - 1
+                    : Arrays.binarySearch(valores, 0, tamanio, valor);
+            if (i >= 0) {
+                return;
+            }
+            i = -i - 1;
+            if (tamanio == valores.length) {
+                valores = Arrays.copyOf(valores, tamanio * 2);
+            }
+            System.arraycopy(valores, i, valores, i + 1, tamanio - i);
+            valores[i] = valor;
+            tamanio++;
+        }
+
+        /**
+         * @return true si la lista quedó vacía
+         */
+        boolean quitar(int valor) {
+            int i = Arrays.binarySearch(valores, 0, tamanio, valor);
+            if (i >= 0) {
+                System.arraycopy(valores, i + 1, valores, i, tamanio - i - 1);
+                tamanio--;
+            }
+            return tamanio == 0;
+        }
+
+        boolean contiene(int valor) {
+            return Arrays.binarySearch(valores, 0, tamanio, valor) >= 0;
+        }
+    }
+
+    /**
+     * Conteo por entero con direccionamiento abierto; claves y cuentas en orden de alta.
+     */
+    private static final class ContadorEnteros {
+        private final int[] tabla;
+        private final int mascara;
+        private final int[] claves;
+        private final int[] cuentas;
+        private int tamanio;
+
+        ContadorEnteros(int maximo) {
+            this.mascara = Integer.highestOneBit(Math.max(2, maximo) * 2 - 1) * 2 - 1;
+            // Índice + 1 en claves/cuentas; 0 = libre
+            this.tabla = new int[mascara + 1];
+            this.claves = new int[maximo];
+            this.cuentas = new int[maximo];
+        }
+
+        void sumar(int clave) {
+            int h = clave * 0x9E3779B9;
+            int slot = (h ^ (h >>> 16)) & mascara;
+            while (tabla[slot] != 0) {
+                int i = tabla[slot] - 1;
+                if (claves[i] == clave) {
+                    cuentas[i]++;
+                    return;
+                }
+                slot = (slot + 1) & mascara;
+            }
+            claves[tamanio] = clave;
+            cuentas[tamanio] = 1;
+            tabla[slot] = ++tamanio;
+        }
+    }
+
+    /**
+     * Mapa ID de paciente → posición, con direccionamiento abierto sobre arreglos primitivos.
+     */
+    private static final class TablaIds {
+        private long[] claves = new long[1024];
+        /** Posición + 1; 0 = libre. */
+        private int[] valores = new int[1024];
+        private int tamanio;
+
+        int get(long id) {
+            int mascara = claves.length - 1;
+            for (int slot = slot(id, mascara); valores[slot] != 0; slot = (slot + 1) & mascara) {
+                if (claves[slot] == id) {
+                    return valores[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        void put(long id, int posicion) {
+            if ((tamanio + 1) * 2 > claves.length) {
+                agrandar();
+            }
+            int mascara = claves.length - 1;
+            int slot = slot(id, mascara);
+            while (valores[slot] != 0 && claves[slot] != id) {
+                slot = (slot + 1) & mascara;
+            }
+            if (valores[slot] == 0) {
+                tamanio++;
+            }
+            claves[slot] = id;
+            valores[slot] = posicion + 1;
+        }
+
+        /**
+         * Borrado con corrimiento hacia atrás: no deja marcas de borrado que alarguen las búsquedas.
+         */
+        void remove(long id) {
+            int mascara = claves.length - 1;
+            int slot = slot(id, mascara);
+            while (valores[slot] != 0 && claves[slot] != id) {
+                slot = (slot + 1) & mascara;
+            }
+            if (valores[slot] == 0) {
+                return;
+            }
+            tamanio--;
+            int libre = slot;
+            for (int actual = (libre + 1) & mascara; valores[actual] != 0; actual = (actual + 1) & mascara) {
+                int ideal = slot(claves[actual], mascara);
+                // Se mueve si su slot ideal no está entre el hueco (exclusive) y su posición actual
+                if (((actual - ideal) & mascara) >= ((actual - libre) & mascara)) {
+                    claves[libre] = claves[actual];
+                    valores[libre] = valores[actual];
+                    libre = actual;
+                }
+            }
+            valores[libre] = 0;
+        }
+
+        private void agrandar() {
+            long[] clavesViejas = claves;
+            int[] valoresViejos = valores;
+            claves = new long[clavesViejas.length * 2];
+            valores = new int[valoresViejos.length * 2];
+            tamanio = 0;
+            for (int i = 0; i < clavesViejas.length; i++) {
+                if (valoresViejos[i] != 0) {
+                    put(clavesViejas[i], valoresViejos[i] - 1);
+                }
+            }
+        }
+
+        private static int slot(long id, int mascara) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mascara;
+        }
+    }
+}
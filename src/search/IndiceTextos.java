@@ -0,0 +1,594 @@
+package search;
+
+import models.HistoriaClinica;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Índice invertido en memoria sobre los campos TEXT de las historias clínicas
+ * (antecedentes, medicación actual y observaciones).
+ *
+ * Funcionamiento:
+ * - El texto se normaliza con {@link NormalizadorTexto} (sin tildes, en minúsculas).
+ * - Cada término tiene su lista de historias ordenada por ID, con la frecuencia en cada campo.
+ *   El diccionario está ordenado, así una búsqueda por prefijo es un rango del diccionario.
+ * - Los resultados se ordenan por BM25, ponderando cada campo (la medicación pesa más).
+ * - HistoriaClinicaDAO lo mantiene al día tras el commit de crear, actualizar y eliminar.
+ * - guardar() y cargar() lo persisten en disco para no reconstruirlo desde la base al iniciar.
+ *   El archivo solo refleja las escrituras hechas por este proceso: si otra instancia escribe
+ *   en la misma base, hay que reconstruir el índice (HistoriaClinicaDAO.reconstruirIndice()).
+ *
+ * Es seguro para uso concurrente: las búsquedas comparten un lock de lectura.
+ */
+public final class IndiceTextos {
+
+    /**
+     * Campos indexados, con su peso en el puntaje.
+     */
+    public enum Campo {
+        ANTECEDENTES(1.0), MEDICACION_ACTUAL(1.5), OBSERVACIONES(1.0);
+
+        private final double peso;
+
+        Campo(double peso) {
+            this.peso = peso;
+        }
+    }
+
+    private static final Campo[] CAMPOS = Campo.values();
+    private static final String[] SIN_TERMINOS = new String[0];
+
+    /** Parámetros de BM25: saturación de la frecuencia y normalización por largo del campo. */
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /** Encabezado del archivo: "HCTI" y versión del formato. */
+    private static final int MAGIA = 0x48435449;
+    private static final int VERSION = 1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Término → historias que lo contienen. Protegido por lock. */
+    private final TreeMap<String, Postings> diccionario = new TreeMap<>();
+    /** Términos de cada historia por campo (con repeticiones), para quitarlos al actualizar. */
+    private final HashMap<Long, String[][]> documentos = new HashMap<>();
+    /** Suma de los largos de cada campo, para el largo promedio de BM25. */
+    private final long[] largoTotal = new long[CAMPOS.length];
+
+    /**
+     * Indexa (o reindexa) los tres campos de una historia.
+     */
+    public void indexar(long historiaId, String antecedentes, String medicacionActual, String observaciones) {
+        String[][] campos = {terminos(antecedentes), terminos(medicacionActual), terminos(observaciones)};
+        lock.writeLock().lock();
+        try {
+            quitar(historiaId);
+            agregar(historiaId, campos);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void indexar(HistoriaClinica hc) {
+        indexar(hc.getId(), hc.getAntecedentes(), hc.getMedicacionActual(), hc.getObservaciones());
+    }
+
+    /**
+     * Reemplaza un solo campo (lo que cambia un UPDATE parcial). Si la historia no estaba
+     * indexada, queda indexada solo con ese campo.
+     */
+    public void actualizarCampo(long historiaId, Campo campo, String texto) {
+        String[] nuevos = terminos(texto);
+        lock.writeLock().lock();
+        try {
+            String[][] campos = documentos.get(historiaId);
+            if (campos == null) {
+                campos = vacios();
+                documentos.put(historiaId, campos);
+            }
+            quitarCampo(historiaId, campo.ordinal(), campos[campo.ordinal()]);
+            campos[campo.ordinal()] = nuevos;
+            agregarCampo(historiaId, campo.ordinal(), nuevos);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(long historiaId) {
+        lock.writeLock().lock();
+        try {
+            quitar(historiaId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reemplaza todo el contenido por las historias recibidas. Las búsquedas siguen usando el
+     * contenido anterior hasta que termina; las escrituras confirmadas mientras tanto pueden
+     * perderse, así que conviene hacerlo sin escrituras en curso.
+     */
+    public void reconstruir(Stream<HistoriaClinica> historias) {
+        IndiceTextos nuevo = new IndiceTextos();
+        historias.forEach(nuevo::indexar);
+        lock.writeLock().lock();
+        try {
+            diccionario.clear();
+            diccionario.putAll(nuevo.diccionario);
+            documentos.clear();
+            documentos.putAll(nuevo.documentos);
+            System.arraycopy(nuevo.largoTotal, 0, largoTotal, 0, largoTotal.length);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca las historias que cumplen la consulta (sintaxis en {@link ConsultaTexto}):
+     * términos unidos por AND, alternativas con OR y prefijos con *.
+     *
+     * @param limite Cantidad máxima de resultados
+     * @return Resultados de mayor a menor puntaje (a igual puntaje, por ID)
+     */
+    public List<ResultadoBusqueda> buscar(String consulta, int limite) {
+        if (limite < 1) {
+            throw new IllegalArgumentException("El límite debe ser mayor a cero: " + limite);
+        }
+        ConsultaTexto parseada = ConsultaTexto.parsear(consulta);
+        lock.readLock().lock();
+        try {
+            Coincidencias total = Coincidencias.NINGUNA;
+            for (List<ConsultaTexto.Termino> clausula : parseada.clausulas()) {
+                Coincidencias todas = null;
+                for (ConsultaTexto.Termino termino : clausula) {
+                    Coincidencias coincidencias = coincidencias(termino);
+                    todas = todas == null ? coincidencias : todas.interseccion(coincidencias);
+                    if (todas.tamanio == 0) {
+                        break;
+                    }
+                }
+                total = total.union(todas);
+            }
+            return total.mejores(limite);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cantidad de historias indexadas.
+     */
+    public int documentos() {
+        lock.readLock().lock();
+        try {
+            return documentos.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cantidad de términos distintos.
+     */
+    public int terminos() {
+        lock.readLock().lock();
+        try {
+            return diccionario.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Escribe el índice en el archivo. Se escribe primero un temporal y se reemplaza
+     * con un move atómico, así un corte a mitad de camino no deja un archivo roto.
+     * Las escrituras sobre el índice esperan mientras se guarda.
+     *
+     * Formato: encabezado, diccionario (términos en orden) y, por historia, los IDs
+     * de término de cada campo.
+     */
+    public void guardar(Path archivo) throws IOException {
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal)))) {
+            out.writeInt(MAGIA);
+            out.writeInt(VERSION);
+            Map<String, Integer> ids = new HashMap<>(diccionario.size() * 2);
+            out.writeInt(diccionario.size());
+            for (String termino : diccionario.keySet()) {
+                ids.put(termino, ids.size());
+                out.writeUTF(termino);
+            }
+            // En orden de ID: al cargar, las listas se arman agregando siempre al final
+            long[] historias = new long[documentos.size()];
+            int n = 0;
+            for (long id : documentos.keySet()) {
+                historias[n++] = id;
+            }
+            Arrays.sort(historias);
+            out.writeInt(historias.length);
+            for (long id : historias) {
+                out.writeLong(id);
+                for (String[] campo : documentos.get(id)) {
+                    out.writeInt(campo.length);
+                    for (String termino : campo) {
+                        out.writeInt(ids.get(termino));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Lee un índice guardado con {@link #guardar}. Si el archivo no existe retorna un índice vacío.
+     *
+     * @throws IOException Si el archivo no se puede leer o no tiene el formato esperado
+     */
+    public static IndiceTextos cargar(Path archivo) throws IOException {
+        IndiceTextos indice = new IndiceTextos();
+        if (!Files.exists(archivo)) {
+            return indice;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo)))) {
+            if (in.readInt() != MAGIA || in.readInt() != VERSION) {
+                throw new IOException("Formato de índice no reconocido: " + archivo);
+            }
+            String[] terminos = new String[in.readInt()];
+            for (int i = 0; i < terminos.length; i++) {
+                terminos[i] = in.readUTF();
+            }
+            int historias = in.readInt();
+            for (int d = 0; d < historias; d++) {
+                long id = in.readLong();
+                String[][] campos = new String[CAMPOS.length][];
+                for (int c = 0; c < campos.length; c++) {
+                    String[] campo = new String[in.readInt()];
+                    for (int t = 0; t < campo.length; t++) {
+                        campo[t] = terminos[in.readInt()];
+                    }
+                    campos[c] = campo;
+                }
+                indice.agregar(id, campos);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Índice dañado: " + archivo, e);
+        }
+        return indice;
+    }
+
+    private static String[] terminos(String texto) {
+        return NormalizadorTexto.terminos(texto).toArray(SIN_TERMINOS);
+    }
+
+    private static String[][] vacios() {
+        String[][] campos = new String[CAMPOS.length][];
+        Arrays.fill(campos, SIN_TERMINOS);
+        return campos;
+    }
+
+    private void agregar(long historiaId, String[][] campos) {
+        documentos.put(historiaId, campos);
+        for (int c = 0; c < campos.length; c++) {
+            agregarCampo(historiaId, c, campos[c]);
+        }
+    }
+
+    private void quitar(long historiaId) {
+        String[][] campos = documentos.remove(historiaId);
+        if (campos != null) {
+            for (int c = 0; c < campos.length; c++) {
+                quitarCampo(historiaId, c, campos[c]);
+            }
+        }
+    }
+
+    private void agregarCampo(long historiaId, int campo, String[] terminos) {
+        largoTotal[campo] += terminos.length;
+        for (String termino : terminos) {
+            diccionario.computeIfAbsent(termino, t -> new Postings()).sumar(historiaId, campo, terminos.length);
+        }
+    }
+
+    private void quitarCampo(long historiaId, int campo, String[] terminos) {
+        largoTotal[campo] -= terminos.length;
+        for (String termino : terminos) {
+            Postings postings = diccionario.get(termino);
+            if (postings != null && postings.restar(historiaId, campo)) {
+                diccionario.remove(termino);
+            }
+        }
+    }
+
+    /**
+     * Historias que contienen el término (o alguno que empiece con él, si es prefijo), con su puntaje.
+     * Si un prefijo coincide con varios términos en la misma historia, cuenta el de mayor puntaje.
+     */
+    private Coincidencias coincidencias(ConsultaTexto.Termino termino) {
+        Collection<Postings> listas;
+        if (termino.prefijo()) {
+            listas = diccionario.subMap(termino.texto(), true, termino.texto() + Character.MAX_VALUE, false).values();
+        } else {
+            Postings postings = diccionario.get(termino.texto());
+            listas = postings != null ? List.of(postings) : List.of();
+        }
+        if (listas.size() == 1) {
+            return puntuar(listas.iterator().next());
+        }
+        List<Coincidencias> expansiones = new ArrayList<>(listas.size());
+        for (Postings postings : listas) {
+            expansiones.add(puntuar(postings));
+        }
+        return Coincidencias.maximos(expansiones);
+    }
+
+    /**
+     * BM25 con frecuencias ponderadas por campo (BM25F simplificado).
+     */
+    private Coincidencias puntuar(Postings postings) {
+        int total = documentos.size();
+        double idf = Math.log(1 + (total - postings.tamanio + 0.5) / (postings.tamanio + 0.5));
+        double[] largoPromedio = new double[CAMPOS.length];
+        for (int c = 0; c < CAMPOS.length; c++) {
+            largoPromedio[c] = Math.max(1.0, (double) largoTotal[c] / Math.max(1, total));
+        }
+        Coincidencias resultado = new Coincidencias(postings.tamanio);
+        for (int i = 0; i < postings.tamanio; i++) {
+            double frecuencia = 0;
+            for (int c = 0; c < CAMPOS.length; c++) {
+                int tf = postings.frecuencias[i * CAMPOS.length + c];
+                if (tf > 0) {
+                    int largo = postings.largos[i * CAMPOS.length + c];
+                    frecuencia += CAMPOS[c].peso * tf / (1 - B + B * largo / largoPromedio[c]);
+                }
+            }
+            resultado.agregar(postings.historias[i], idf * frecuencia * (K1 + 1) / (frecuencia + K1));
+        }
+        return resultado;
+    }
+
+    /**
+     * Historias de un término, ordenadas por ID, con la frecuencia del término en cada campo.
+     * Guarda también el largo de cada campo, así puntuar no tiene que buscar la historia.
+     * Las historias nuevas suelen tener el ID más alto, por eso agregar al final es el caso rápido.
+     */
+    private static final class Postings {
+        private long[] historias = new long[4];
+        /** Frecuencias por campo: las de historias[i] están en [i * CAMPOS, (i + 1) * CAMPOS). */
+        private int[] frecuencias = new int[4 * CAMPOS.length];
+        /** Largo (en términos) de cada campo de la historia, con la misma disposición. */
+        private int[] largos = new int[4 * CAMPOS.length];
+        private int tamanio;
+
+        void sumar(long historiaId, int campo, int largo) {
+            int i = posicion(historiaId);
+            if (i < 0) {
+                i = -i - 1;
+                insertar(i, historiaId);
+            }
+            frecuencias[i * CAMPOS.length + campo]++;
+            largos[i * CAMPOS.length + campo] = largo;
+        }
+
+        /**
+         * @return true si la lista quedó vacía
+         */
+        boolean restar(long historiaId, int campo) {
+            int i = posicion(historiaId);
+            if (i < 0) {
+                return tamanio == 0;
+            }
+            frecuencias[i * CAMPOS.length + campo]--;
+            for (int c = 0; c < CAMPOS.length; c++) {
+                if (frecuencias[i * CAMPOS.length + c] > 0) {
+                    return false;
+                }
+            }
+            System.arraycopy(historias, i + 1, historias, i, tamanio - i - 1);
+            System.arraycopy(frecuencias, (i + 1) * CAMPOS.length, frecuencias, i * CAMPOS.length,
+                    (tamanio - i - 1) * CAMPOS.length);
+            System.arraycopy(largos, (i + 1) * CAMPOS.length, largos, i * CAMPOS.length,
+                    (tamanio - i - 1) * CAMPOS.length);
+            tamanio--;
+            return tamanio == 0;
+        }
+
+        private int posicion(long historiaId) {
+            if (tamanio == 0 || historias[tamanio - 1] < historiaId) {
+                return -tamanio - 1;
+            }
+            return Arrays.binarySearch(historias, 0, tamanio, historiaId);
+        }
+
+        private void insertar(int i, long historiaId) {
+            if (tamanio == historias.length) {
+                historias = Arrays.copyOf(historias, tamanio * 2);
+                frecuencias = Arrays.copyOf(frecuencias, tamanio * 2 * CAMPOS.length);
+                largos = Arrays.copyOf(largos, tamanio * 2 * CAMPOS.length);
+            }
+            System.arraycopy(historias, i, historias, i + 1, tamanio - i);
+            System.arraycopy(frecuencias, i * CAMPOS.length, frecuencias, (i + 1) * CAMPOS.length,
+                    (tamanio - i) * CAMPOS.length);
+            System.arraycopy(largos, i * CAMPOS.length, largos, (i + 1) * CAMPOS.length,
+                    (tamanio - i) * CAMPOS.length);
+            historias[i] = historiaId;
+            Arrays.fill(frecuencias, i * CAMPOS.length, (i + 1) * CAMPOS.length, 0);
+            Arrays.fill(largos, i * CAMPOS.length, (i + 1) * CAMPOS.length, 0);
+            tamanio++;
+        }
+    }
+
+    /**
+     * Historias con su puntaje, ordenadas por ID: AND y OR se resuelven recorriendo dos listas a la vez.
+     */
+    private static final class Coincidencias {
+        static final Coincidencias NINGUNA = new Coincidencias(0);
+
+        private long[] historias;
+        private double[] puntajes;
+        private int tamanio;
+
+        Coincidencias(int capacidad) {
+            this.historias = new long[capacidad];
+            this.puntajes = new double[capacidad];
+        }
+
+        void agregar(long historiaId, double puntaje) {
+            if (tamanio == historias.length) {
+                historias = Arrays.copyOf(historias, Math.max(4, tamanio * 2));
+                puntajes = Arrays.copyOf(puntajes, historias.length);
+            }
+            historias[tamanio] = historiaId;
+            puntajes[tamanio] = puntaje;
+            tamanio++;
+        }
+
+        /** AND: las historias de ambas, sumando puntajes. */
+        Coincidencias interseccion(Coincidencias otra) {
+            Coincidencias resultado = new Coincidencias(Math.min(tamanio, otra.tamanio));
+            int i = 0;
+            int j = 0;
+            while (i < tamanio && j < otra.tamanio) {
+                long a = historias[i];
+                long b = otra.historias[j];
+                if (a == b) {
+                    resultado.agregar(a, puntajes[i++] + otra.puntajes[j++]);
+                } else if (a < b) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            return resultado;
+        }
+
+        /** OR: las historias de cualquiera de las dos, sumando puntajes. */
+        Coincidencias union(Coincidencias otra) {
+            if (tamanio == 0) {
+                return otra;
+            }
+            if (otra.tamanio == 0) {
+                return this;
+            }
+            Coincidencias resultado = new Coincidencias(tamanio + otra.tamanio);
+            int i = 0;
+            int j = 0;
+            while (i < tamanio || j < otra.tamanio) {
+                long a = i < tamanio ? historias[i] : Long.MAX_VALUE;
+                long b = j < otra.tamanio ? otra.historias[j] : Long.MAX_VALUE;
+                if (i < tamanio && j < otra.tamanio && a == b) {
+                    double x = puntajes[i++];
+                    double y = otra.puntajes[j++];
+                    resultado.agregar(a, x + y);
+                } else if (j == otra.tamanio || (i < tamanio && a < b)) {
+                    resultado.agregar(a, puntajes[i++]);
+                } else {
+                    resultado.agregar(b, otra.puntajes[j++]);
+                }
+            }
+            return resultado;
+        }
+
+        /**
+         * OR de las expansiones de un prefijo, quedándose con el mayor puntaje por historia.
+         * Con prefijos cortos hay cientos de listas: en lugar de unirlas de a pares (o con un
+         * heap de cursores) se acumulan en una tabla hash de direccionamiento abierto y al
+         * final se ordenan los IDs.
+         */
+        static Coincidencias maximos(List<Coincidencias> listas) {
+            int total = 0;
+            for (Coincidencias lista : listas) {
+                total += lista.tamanio;
+            }
+            int mascara = Integer.highestOneBit(Math.max(2, total) * 2 - 1) * 2 - 1;
+            long[] claves = new long[mascara + 1];
+            // Posición + 1 de la historia en ids/puntajes; 0 = libre
+            int[] posiciones = new int[mascara + 1];
+            long[] ids = new long[total];
+            double[] puntajes = new double[total];
+            int distintas = 0;
+            for (Coincidencias lista : listas) {
+                for (int i = 0; i < lista.tamanio; i++) {
+                    long historiaId = lista.historias[i];
+                    int slot = ranura(historiaId, mascara);
+                    while (posiciones[slot] != 0 && claves[slot] != historiaId) {
+                        slot = (slot + 1) & mascara;
+                    }
+                    if (posiciones[slot] == 0) {
+                        claves[slot] = historiaId;
+                        ids[distintas] = historiaId;
+                        puntajes[distintas] = lista.puntajes[i];
+                        posiciones[slot] = ++distintas;
+                    } else {
+                        int p = posiciones[slot] - 1;
+                        puntajes[p] = Math.max(puntajes[p], lista.puntajes[i]);
+                    }
+                }
+            }
+            long[] ordenados = Arrays.copyOf(ids, distintas);
+            Arrays.sort(ordenados);
+            Coincidencias resultado = new Coincidencias(distintas);
+            for (long historiaId : ordenados) {
+                int slot = ranura(historiaId, mascara);
+                while (claves[slot] != historiaId) {
+                    slot = (slot + 1) & mascara;
+                }
+                resultado.agregar(historiaId, puntajes[posiciones[slot] - 1]);
+            }
+            return resultado;
+        }
+
+        private static int ranura(long historiaId, int mascara) {
+            long h = historiaId * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mascara;
+        }
+
+        /**
+         * Los limite de mayor puntaje, con un heap de tamaño limite cuyo tope es el peor de ellos.
+         */
+        List<ResultadoBusqueda> mejores(int limite) {
+            HeapIndices heap = new HeapIndices(Math.min(limite, tamanio), this::peor);
+            for (int i = 0; i < tamanio; i++) {
+                if (heap.tamanio() < limite) {
+                    heap.agregar(i);
+                } else if (peor(heap.tope(), i)) {
+                    heap.reemplazarTope(i);
+                }
+            }
+            ResultadoBusqueda[] resultado = new ResultadoBusqueda[heap.tamanio()];
+            // El heap entrega del peor al mejor
+            for (int n = resultado.length - 1; n >= 0; n--) {
+                int i = heap.tope();
+                heap.quitarTope();
+                resultado[n] = new ResultadoBusqueda(historias[i], puntajes[i]);
+            }
+            return Arrays.asList(resultado);
+        }
+
+        /** true si x va después que y en el resultado: menor puntaje o, a igual puntaje, mayor ID. */
+        private boolean peor(int x, int y) {
+            int porPuntaje = Double.compare(puntajes[x], puntajes[y]);
+            return porPuntaje != 0 ? porPuntaje < 0 : historias[x] > historias[y];
+        }
+    }
+}
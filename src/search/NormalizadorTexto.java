@@ -0,0 +1,69 @@
+package search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Normaliza texto en castellano para indexarlo y para buscarlo.
+ *
+ * - Quita tildes y diéresis, y pasa a minúsculas: "Losartán" y "LOSARTAN" dan "losartan".
+ *   La ñ queda como n, así "nino" encuentra "niño".
+ * - Separa en palabras por cualquier caracter que no sea letra o dígito.
+ * - Para el texto libre ({@link #terminos}) descarta términos de un caracter y palabras vacías
+ *   ("de", "la", "con", ...). Los nombres ({@link #palabras}) se usan completos.
+ */
+public final class NormalizadorTexto {
+
+    /** Palabras vacías: aparecen en casi todos los textos y no sirven para buscar. */
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "al", "como", "con", "de", "del", "el", "en", "es", "la", "las", "le", "lo", "los", "mas",
+            "no", "para", "pero", "por", "que", "se", "sin", "su", "sus", "un", "una", "uno", "y");
+
+    private NormalizadorTexto() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada.");
+    }
+
+    /**
+     * Términos del texto, en orden y con repeticiones. Texto null → lista vacía.
+     */
+    public static List<String> terminos(String texto) {
+        List<String> terminos = palabras(texto);
+        terminos.removeIf(termino -> termino.length() < 2 || PALABRAS_VACIAS.contains(termino));
+        return terminos;
+    }
+
+    /**
+     * Todas las palabras normalizadas del texto, en orden. Texto null → lista vacía.
+     */
+    public static List<String> palabras(String texto) {
+        List<String> palabras = new ArrayList<>();
+        if (texto == null || texto.isEmpty()) {
+            return palabras;
+        }
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder actual = new StringBuilder();
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                // Tilde, diéresis o virgulilla separada de su letra por la descomposición NFD
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                actual.append(Character.toLowerCase(c));
+            } else {
+                agregar(palabras, actual);
+            }
+        }
+        agregar(palabras, actual);
+        return palabras;
+    }
+
+    private static void agregar(List<String> palabras, StringBuilder actual) {
+        if (actual.length() > 0) {
+            palabras.add(actual.toString());
+            actual.setLength(0);
+        }
+    }
+}
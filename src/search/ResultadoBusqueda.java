@@ -0,0 +1,10 @@
+package search;
+
+/**
+ * Historia clínica encontrada por {@link IndiceTextos#buscar}.
+ *
+ * @param historiaId ID de la historia clínica
+ * @param puntaje    Relevancia (BM25); solo sirve para comparar resultados de la misma consulta
+ */
+public record ResultadoBusqueda(long historiaId, double puntaje) {
+}
@@ -0,0 +1,132 @@
+package service;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compartimento (bulkhead) de una clase de carga: como mucho limite.actual() operaciones a la
+ * vez; las demás esperan en una cola FIFO acotada, cada una con su plazo.
+ *
+ * - Con la cola llena se rechaza en el acto; si vence el plazo esperando, también.
+ * - Al terminar una operación se cede el lugar directamente al primero de la cola, así una
+ *   llegada nueva no se adelanta a quien ya esperaba.
+ */
+final class Compartimento {
+
+    /** Una operación en la cola, despertada cuando se le cede un lugar. */
+    private static final class Espera {
+        private final Condition turno;
+        private boolean concedida;
+
+        private Espera(Condition turno) {
+            this.turno = turno;
+        }
+    }
+
+    private final TipoCarga carga;
+    private final LimiteAdaptativo limite;
+    private final int maxCola;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Espera> cola = new ArrayDeque<>();
+    private int enCurso;
+    private long admitidas;
+    private long rechazadas;
+
+    Compartimento(TipoCarga carga, LimiteAdaptativo limite, int maxCola) {
+        if (maxCola < 0) {
+            throw new IllegalArgumentException("El tamaño de la cola no puede ser negativo: " + maxCola);
+        }
+        this.carga = carga;
+        this.limite = limite;
+        this.maxCola = maxCola;
+    }
+
+    /**
+     * Espera un lugar hasta el plazo (System.nanoTime()).
+     *
+     * @throws SobrecargaException Si la cola está llena o se vence el plazo
+     */
+    void adquirir(long plazoNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            if (cola.isEmpty() && enCurso < limite.actual()) {
+                enCurso++;
+                admitidas++;
+                return;
+            }
+            if (cola.size() >= maxCola) {
+                rechazadas++;
+                throw new SobrecargaException(carga, "cola de espera llena (" + cola.size() + " en espera, "
+                        + enCurso + " en curso, límite " + limite.actual() + ")");
+            }
+            Espera espera = new Espera(lock.newCondition());
+            cola.addLast(espera);
+            try {
+                while (!espera.concedida) {
+                    long restante = plazoNanos - System.nanoTime();
+                    if (restante <= 0) {
+                        cola.remove(espera);
+                        rechazadas++;
+                        throw new SobrecargaException(carga, "se venció el plazo de espera ("
+                                + enCurso + " en curso, límite " + limite.actual() + ")");
+                    }
+                    espera.turno.awaitNanos(restante);
+                }
+            } catch (InterruptedException e) {
+                if (espera.concedida) {
+                    // Ya se le había cedido el lugar: se devuelve
+                    enCurso--;
+                    ceder();
+                } else {
+                    cola.remove(espera);
+                }
+                throw e;
+            }
+            admitidas++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Libera el lugar de una operación terminada y ajusta el límite con su duración.
+     *
+     * @param caida Si la operación falló por saturación (timeout, sin conexiones)
+     */
+    void liberar(long duracionNanos, boolean caida) {
+        lock.lock();
+        try {
+            enCurso--;
+            if (caida) {
+                limite.registrarCaida();
+            } else {
+                limite.registrar(duracionNanos, enCurso);
+            }
+            ceder();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    EstadisticasCompartimento estadisticas() {
+        lock.lock();
+        try {
+            return new EstadisticasCompartimento(carga, limite.actual(), enCurso, cola.size(), admitidas,
+                    rechazadas, limite.latenciaCortaNanos() / TimeUnit.MILLISECONDS.toNanos(1),
+                    limite.latenciaLargaNanos() / TimeUnit.MILLISECONDS.toNanos(1));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ceder() {
+        while (!cola.isEmpty() && enCurso < limite.actual()) {
+            Espera siguiente = cola.pollFirst();
+            siguiente.concedida = true;
+            enCurso++;
+            siguiente.turno.signal();
+        }
+    }
+}
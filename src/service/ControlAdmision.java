@@ -0,0 +1,159 @@
+package service;
+
+import config.DatabaseConnection;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Control de admisión de los servicios: antes de tocar la base, cada operación toma un lugar
+ * en el compartimento de su {@link TipoCarga}. Así, cuando MySQL se pone lento, los hilos no
+ * se apilan esperando conexiones del pool: esperan en una cola acotada, con plazo, y si no
+ * hay lugar fallan enseguida con {@link SobrecargaException}.
+ *
+ * - Cada compartimento tiene su límite adaptativo (ver LimiteAdaptativo). El masivo arranca
+ *   en 1, tiene como techo la mitad del pool y tolera menos aumento de latencia: ante una base
+ *   lenta se achica primero, y las consultas interactivas conservan sus conexiones.
+ * - Una operación llamada desde otra ya admitida (en el mismo hilo) no toma otro lugar.
+ * - Los servicios usan por defecto la instancia compartida, porque todos comparten el pool.
+ *
+ * Configuración (system properties), con carga = interactiva o masiva:
+ * - -Ddb.servicio.&lt;carga&gt;.limiteMax (default db.pool.maxSize; masiva: la mitad)
+ * - -Ddb.servicio.&lt;carga&gt;.cola (default 100; masiva: 1000)
+ * - -Ddb.servicio.&lt;carga&gt;.esperaMs (default 200; masiva: 30000)
+ *
+ * Uso:
+ * <pre>
+ * Paciente p = control.ejecutar(TipoCarga.INTERACTIVA, () -> pacienteDao.buscarPorDni(dni));
+ * </pre>
+ */
+public class ControlAdmision {
+
+    /**
+     * Operación a ejecutar una vez admitida.
+     */
+    @FunctionalInterface
+    public interface Operacion<R> {
+        R ejecutar() throws Exception;
+    }
+
+    /** Marca el hilo que ya está dentro de una operación admitida. */
+    private static final ThreadLocal<Boolean> ADMITIDO = new ThreadLocal<>();
+
+    private static volatile ControlAdmision compartido;
+
+    private final Map<TipoCarga, Compartimento> compartimentos = new EnumMap<>(TipoCarga.class);
+    private final Map<TipoCarga, Duration> esperas = new EnumMap<>(TipoCarga.class);
+
+    /**
+     * Control configurado con las system properties, dimensionado según el pool.
+     */
+    public ControlAdmision() {
+        int pool = DatabaseConnection.getMaxConexiones();
+        configurar(TipoCarga.INTERACTIVA, Math.max(1, pool / 2), propiedad("interactiva.limiteMax", pool),
+                2.0, propiedad("interactiva.cola", 100), Duration.ofMillis(propiedad("interactiva.esperaMs", 200)));
+        configurar(TipoCarga.MASIVA, 1, propiedad("masiva.limiteMax", Math.max(1, pool / 2)),
+                1.2, propiedad("masiva.cola", 1_000), Duration.ofMillis(propiedad("masiva.esperaMs", 30_000)));
+    }
+
+    /**
+     * Control con los mismos parámetros para las dos cargas (útil para pruebas y herramientas).
+     */
+    public ControlAdmision(int limiteMax, int cola, Duration espera) {
+        for (TipoCarga carga : TipoCarga.values()) {
+            configurar(carga, 1, limiteMax, carga == TipoCarga.MASIVA ? 1.2 : 2.0, cola, espera);
+        }
+    }
+
+    /**
+     * Instancia compartida por los servicios que no reciben una propia.
+     */
+    public static ControlAdmision compartido() {
+        ControlAdmision actual = compartido;
+        if (actual == null) {
+            synchronized (ControlAdmision.class) {
+                actual = compartido;
+                if (actual == null) {
+                    actual = new ControlAdmision();
+                    compartido = actual;
+                }
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Ejecuta la operación con la espera máxima configurada para su carga.
+     */
+    public <R> R ejecutar(TipoCarga carga, Operacion<R> operacion) throws Exception {
+        return ejecutar(carga, esperas.get(carga), operacion);
+    }
+
+    /**
+     * Ejecuta la operación cuando haya lugar en el compartimento de la carga.
+     *
+     * @param esperaMaxima Plazo para conseguir lugar (Duration.ZERO = no esperar)
+     * @throws SobrecargaException Si no se consiguió lugar; la operación no se ejecutó
+     */
+    public <R> R ejecutar(TipoCarga carga, Duration esperaMaxima, Operacion<R> operacion) throws Exception {
+        if (ADMITIDO.get() != null) {
+            return operacion.ejecutar();
+        }
+        Compartimento compartimento = compartimentos.get(carga);
+        compartimento.adquirir(System.nanoTime() + esperaMaxima.toNanos());
+        ADMITIDO.set(Boolean.TRUE);
+        long inicio = System.nanoTime();
+        boolean caida = false;
+        try {
+            return operacion.ejecutar();
+        } catch (Exception e) {
+            caida = esSaturacion(e);
+            throw e;
+        } finally {
+            ADMITIDO.remove();
+            compartimento.liberar(System.nanoTime() - inicio, caida);
+        }
+    }
+
+    public List<EstadisticasCompartimento> getEstadisticas() {
+        List<EstadisticasCompartimento> estadisticas = new ArrayList<>();
+        for (Compartimento compartimento : compartimentos.values()) {
+            estadisticas.add(compartimento.estadisticas());
+        }
+        return estadisticas;
+    }
+
+    private void configurar(TipoCarga carga, int inicial, int maximo, double tolerancia, int cola, Duration espera) {
+        LimiteAdaptativo limite = new LimiteAdaptativo(Math.min(inicial, maximo), 1, maximo, tolerancia);
+        compartimentos.put(carga, new Compartimento(carga, limite, cola));
+        esperas.put(carga, espera);
+    }
+
+    /**
+     * Timeouts y errores transitorios de conexión (incluido el timeout del pool) indican
+     * que la base no da abasto; los demás errores no dicen nada de la carga.
+     */
+    private static boolean esSaturacion(Exception e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                String estado = ((SQLException) t).getSQLState();
+                if (estado != null && (estado.startsWith("08") || estado.startsWith("HYT"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int propiedad(String clave, int defaultValue) {
+        return Integer.getInteger("db.servicio." + clave, defaultValue);
+    }
+}
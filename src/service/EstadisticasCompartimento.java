@@ -0,0 +1,17 @@
+package service;
+
+/**
+ * Snapshot de un compartimento de {@link ControlAdmision}.
+ *
+ * @param limite         Concurrencia permitida actualmente (adaptativa)
+ * @param enCurso        Operaciones ejecutándose
+ * @param enEspera       Operaciones en la cola
+ * @param admitidas      Operaciones que llegaron a ejecutarse
+ * @param rechazadas     Operaciones rechazadas con SobrecargaException
+ * @param latenciaMs     Promedio reciente de duración de las operaciones
+ * @param latenciaBaseMs Promedio de largo plazo, la referencia para el límite
+ */
+public record EstadisticasCompartimento(TipoCarga carga, int limite, int enCurso, int enEspera,
+                                        long admitidas, long rechazadas, double latenciaMs,
+                                        double latenciaBaseMs) {
+}
@@ -1,5 +1,25 @@
 package service;
 
+import java.util.List;
+
+/**
+ * Operaciones comunes de los servicios. Las implementaciones pasan cada operación por
+ * {@link ControlAdmision}: las lecturas puntuales como carga interactiva y los listados
+ * completos como carga masiva.
+ *
+ * @param <T> Entidad del servicio
+ */
 public interface GenericService<T> {
-    
+
+    /**
+     * @return La entidad activa con ese ID, o null si no existe
+     * @throws SobrecargaException Si el servicio está saturado
+     */
+    T buscarPorId(long id) throws Exception;
+
+    /**
+     * @return Todas las entidades activas
+     * @throws SobrecargaException Si el servicio está saturado
+     */
+    List<T> listarTodos() throws Exception;
 }
@@ -1,7 +1,45 @@
 package service;
 
+import dao.HistoriaClinicaDAO;
 import models.HistoriaClinica;
 
+import java.util.List;
+
+/**
+ * Consultas de historias clínicas sobre HistoriaClinicaDAO, a través del control de admisión.
+ */
 public class HistoriaClinicaServiceImpl implements GenericService<HistoriaClinica> {
-    
+
+    private final HistoriaClinicaDAO historiaClinicaDao;
+    private final ControlAdmision control;
+
+    public HistoriaClinicaServiceImpl(HistoriaClinicaDAO historiaClinicaDao) {
+        this(historiaClinicaDao, ControlAdmision.compartido());
+    }
+
+    public HistoriaClinicaServiceImpl(HistoriaClinicaDAO historiaClinicaDao, ControlAdmision control) {
+        this.historiaClinicaDao = historiaClinicaDao;
+        this.control = control;
+    }
+
+    @Override
+    public HistoriaClinica buscarPorId(long id) throws Exception {
+        return control.ejecutar(TipoCarga.INTERACTIVA, () -> historiaClinicaDao.leer(id));
+    }
+
+    public HistoriaClinica buscarPorNroHistoria(String nroHistoria) throws Exception {
+        return control.ejecutar(TipoCarga.INTERACTIVA, () -> historiaClinicaDao.buscarPorNroHistoria(nroHistoria));
+    }
+
+    /**
+     * Búsqueda en los campos de texto (requiere un HistoriaClinicaDAO con índice).
+     */
+    public List<HistoriaClinica> buscarEnTextos(String consulta, int limite) throws Exception {
+        return control.ejecutar(TipoCarga.INTERACTIVA, () -> historiaClinicaDao.buscarEnTextos(consulta, limite));
+    }
+
+    @Override
+    public List<HistoriaClinica> listarTodos() throws Exception {
+        return control.ejecutar(TipoCarga.MASIVA, () -> historiaClinicaDao.leerTodos());
+    }
 }
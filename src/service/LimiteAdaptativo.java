@@ -0,0 +1,93 @@
+package service;
+
+/**
+ * Límite de concurrencia que se ajusta según la latencia observada (algoritmo de gradiente):
+ *
+ * - Se llevan dos promedios móviles exponenciales de la duración: uno corto (últimas ~10
+ *   operaciones) y uno largo (~500), que hace de latencia "sin carga".
+ * - gradiente = tolerancia * largo / corto, acotado a [0.5, 1]. Mientras la latencia reciente
+ *   no supere tolerancia veces la de referencia, el gradiente es 1 y el límite crece en
+ *   sqrt(límite) por ajuste; cuando la base de datos se satura y la latencia sube, el
+ *   gradiente baja y el límite se achica en proporción.
+ * - Un timeout o falta de conexiones es una señal directa de saturación: el límite baja un
+ *   10% de inmediato (disminución multiplicativa, como AIMD).
+ * - Solo crece si se está usando al menos la mitad: sin demanda no hay evidencia para subir.
+ *
+ * No es thread-safe: Compartimento lo usa bajo su lock.
+ */
+final class LimiteAdaptativo {
+
+    private static final double SUAVIZADO = 0.2;
+    private static final double FACTOR_CAIDA = 0.9;
+    private static final int MUESTRAS_CORTO = 10;
+    private static final int MUESTRAS_LARGO = 500;
+
+    private final int minimo;
+    private final int maximo;
+    private final double tolerancia;
+    private double limite;
+    private double rttCorto;
+    private double rttLargo;
+
+    /**
+     * @param tolerancia Cuántas veces la latencia de referencia se acepta antes de achicar
+     */
+    LimiteAdaptativo(int inicial, int minimo, int maximo, double tolerancia) {
+        if (minimo < 1 || maximo < minimo || inicial < minimo || inicial > maximo) {
+            throw new IllegalArgumentException("Límites inválidos: inicial=" + inicial + ", min=" + minimo
+                    + ", max=" + maximo);
+        }
+        if (tolerancia < 1.0) {
+            throw new IllegalArgumentException("La tolerancia debe ser al menos 1: " + tolerancia);
+        }
+        this.limite = inicial;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.tolerancia = tolerancia;
+    }
+
+    int actual() {
+        return (int) limite;
+    }
+
+    double latenciaCortaNanos() {
+        return rttCorto;
+    }
+
+    double latenciaLargaNanos() {
+        return rttLargo;
+    }
+
+    /**
+     * @param enCurso Operaciones que seguían ejecutándose al terminar esta
+     */
+    void registrar(long duracionNanos, int enCurso) {
+        double rtt = Math.max(1, duracionNanos);
+        if (rttLargo == 0) {
+            rttCorto = rtt;
+            rttLargo = rtt;
+            return;
+        }
+        rttCorto += (rtt - rttCorto) / MUESTRAS_CORTO;
+        rttLargo += (rtt - rttLargo) / MUESTRAS_LARGO;
+        // Si la latencia bajó mucho (ej. terminó un pico), la referencia la sigue más rápido
+        if (rttLargo > 2 * rttCorto) {
+            rttLargo *= 0.95;
+        }
+
+        double gradiente = Math.max(0.5, Math.min(1.0, tolerancia * rttLargo / rttCorto));
+        double nuevo = limite * gradiente + Math.sqrt(limite);
+        if (nuevo > limite && enCurso + 1 < limite / 2) {
+            return;
+        }
+        ajustar(limite * (1 - SUAVIZADO) + nuevo * SUAVIZADO);
+    }
+
+    void registrarCaida() {
+        ajustar(limite * FACTOR_CAIDA);
+    }
+
+    private void ajustar(double nuevo) {
+        limite = Math.max(minimo, Math.min(maximo, nuevo));
+    }
+}
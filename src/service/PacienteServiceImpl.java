@@ -1,7 +1,101 @@
 package service;
 
+import config.TransactionManager;
+import dao.PacienteDAO;
+import models.HistoriaClinica;
 import models.Paciente;
+import models.PacienteResumen;
 
+import java.util.List;
+
+/**
+ * Casos de uso de pacientes sobre PacienteDAO. Las escrituras son unidades de trabajo de
+ * TransactionManager; todas las operaciones pasan por el control de admisión.
+ */
 public class PacienteServiceImpl implements GenericService<Paciente> {
-    
+
+    private final PacienteDAO pacienteDao;
+    private final TransactionManager tx;
+    private final ControlAdmision control;
+
+    public PacienteServiceImpl(PacienteDAO pacienteDao) {
+        this(pacienteDao, new TransactionManager(), ControlAdmision.compartido());
+    }
+
+    public PacienteServiceImpl(PacienteDAO pacienteDao, TransactionManager tx, ControlAdmision control) {
+        this.pacienteDao = pacienteDao;
+        this.tx = tx;
+        this.control = control;
+    }
+
+    @Override
+    public Paciente buscarPorId(long id) throws Exception {
+        return control.ejecutar(TipoCarga.INTERACTIVA, () -> pacienteDao.leer(id));
+    }
+
+    public Paciente buscarPorDni(String dni) throws Exception {
+        return control.ejecutar(TipoCarga.INTERACTIVA, () -> pacienteDao.buscarPorDni(dni));
+    }
+
+    /**
+     * Búsqueda por nombre aproximado (requiere un PacienteDAO con índice de nombres).
+     */
+    public List<Paciente> buscarPorNombre(String consulta, int limite) throws Exception {
+        return control.ejecutar(TipoCarga.INTERACTIVA, () -> pacienteDao.buscarPorNombre(consulta, limite));
+    }
+
+    @Override
+    public List<Paciente> listarTodos() throws Exception {
+        return control.ejecutar(TipoCarga.MASIVA, () -> pacienteDao.leerTodos());
+    }
+
+    public List<PacienteResumen> listarResumen() throws Exception {
+        return control.ejecutar(TipoCarga.MASIVA, () -> pacienteDao.listarResumen());
+    }
+
+    /**
+     * Admite un paciente nuevo junto con su historia clínica (si tiene): se insertan los dos
+     * o ninguno. Los IDs se asignan antes de escribir (ver PacienteDAO.admitir), así que la
+     * transacción no espera ninguna clave generada. Ante un deadlock se reintenta con IDs nuevos.
+     *
+     * @return El mismo paciente, con su ID y el de su historia asignados
+     * @throws IllegalArgumentException Si faltan nombre, apellido o DNI, o el paciente ya tiene ID
+     * @throws SobrecargaException Si el servicio está saturado (no se escribió nada)
+     */
+    public Paciente admitir(Paciente paciente) throws Exception {
+        validarAlta(paciente);
+        try {
+            control.ejecutar(TipoCarga.INTERACTIVA, () -> tx.ejecutar(conn -> pacienteDao.admitir(paciente, conn)));
+        } catch (Exception e) {
+            // Los IDs asignados en el intento fallido no corresponden a ninguna fila
+            paciente.setId(null);
+            if (paciente.getHistoriaClinica() != null) {
+                paciente.getHistoriaClinica().setId(null);
+            }
+            throw e;
+        }
+        return paciente;
+    }
+
+    private static void validarAlta(Paciente paciente) {
+        if (paciente == null) {
+            throw new IllegalArgumentException("El paciente no puede ser null.");
+        }
+        if (paciente.getId() != null) {
+            throw new IllegalArgumentException("El paciente ya tiene ID (" + paciente.getId() + "); no es un alta.");
+        }
+        requerido(paciente.getNombre(), "nombre");
+        requerido(paciente.getApellido(), "apellido");
+        requerido(paciente.getDni(), "DNI");
+        HistoriaClinica historia = paciente.getHistoriaClinica();
+        if (historia != null && historia.getId() != null) {
+            throw new IllegalArgumentException("La historia clínica ya tiene ID (" + historia.getId() + "); no es un alta.");
+        }
+    }
+
+    private static void requerido(String valor, String campo) {
+        if (valor == null || valor.isBlank()) {
+            throw new IllegalArgumentException("El " + campo + " del paciente es obligatorio.");
+        }
+    }
 }
@@ -0,0 +1,21 @@
+package service;
+
+/**
+ * La operación se rechazó sin ejecutarse porque su compartimento está saturado: la cola de
+ * espera estaba llena o se venció el plazo de espera. Se puede reintentar más tarde.
+ */
+public class SobrecargaException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final TipoCarga carga;
+
+    public SobrecargaException(TipoCarga carga, String motivo) {
+        super("Servicio sobrecargado (" + carga + "): " + motivo);
+        this.carga = carga;
+    }
+
+    public TipoCarga getCarga() {
+        return carga;
+    }
+}
@@ -0,0 +1,13 @@
+package service;
+
+/**
+ * Clase de trabajo de una operación de servicio. Cada una tiene su propio compartimento
+ * (límite de concurrencia y cola) en {@link ControlAdmision}, así los reportes y procesos
+ * masivos no les quitan conexiones a las consultas interactivas.
+ */
+public enum TipoCarga {
+    /** Búsquedas y altas de a un paciente, con alguien esperando la respuesta. */
+    INTERACTIVA,
+    /** Listados completos, reportes e importaciones: toleran esperar y se frenan primero. */
+    MASIVA
+}